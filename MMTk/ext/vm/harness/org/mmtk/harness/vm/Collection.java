@@ -36,9 +36,24 @@ public class Collection extends org.mmtk.vm.Collection {
     // Nothing to do
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * A concurrent collector thread has no mutator context of its own, and
+   * the harness has no handshake, so it stops the mutators and flushes
+   * each of their contexts while they are stopped.
+   */
   @Override
   public void requestMutatorFlush() {
-    Mutator.current().getContext().flush();
+    if (Scheduler.isMutator()) {
+      Mutator.current().getContext().flush();
+      return;
+    }
+    stopAllMutators();
+    for (Mutator m : Mutators.getAll()) {
+      m.getContext().flush();
+    }
+    resumeAllMutators();
   }
 
   /**
@@ -90,6 +105,12 @@ public class Collection extends org.mmtk.vm.Collection {
     Clock.start();
   }
 
+  @Override
+  public boolean bindToNumaNode(int node) {
+    // Collector threads are scheduled by the harness
+    return true;
+  }
+
   @Override
   public void stopAllMutators() {
     Clock.stop();
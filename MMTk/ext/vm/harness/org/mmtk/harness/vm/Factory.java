@@ -94,6 +94,11 @@ public class Factory extends org.mmtk.vm.Factory {
     return new FinalizableProcessor();
   }
 
+  @Override
+  public HeapCensus newHeapCensus() {
+    return new HeapCensus();
+  }
+
   @Override
   public Scanning newScanning() {
     return new Scanning();
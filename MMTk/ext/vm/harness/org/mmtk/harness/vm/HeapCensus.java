@@ -0,0 +1,84 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.harness.vm;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.mmtk.harness.Mutator;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.harness.Clock;
+
+/**
+ * Takes a census of the live heap, and prints a histogram of live
+ * objects by allocation site.
+ */
+@Uninterruptible
+public final class HeapCensus extends org.mmtk.vm.HeapCensus {
+
+  /** Live objects and bytes, by allocation site */
+  private final Map<String,long[]> histogram = new TreeMap<String,long[]>();
+
+  private long objects;
+  private long bytes;
+
+  @Override
+  public synchronized void prepare() {
+    histogram.clear();
+    objects = 0;
+    bytes = 0;
+  }
+
+  @Override
+  public void liveObject(ObjectReference object) {
+    Clock.stop();
+    String site = Mutator.getSiteName(object);
+    int size = ObjectModel.getSize(object);
+    synchronized (this) {
+      long[] entry = histogram.get(site);
+      if (entry == null) {
+        entry = new long[2];
+        histogram.put(site, entry);
+      }
+      entry[0]++;
+      entry[1] += size;
+      objects++;
+      bytes += size;
+    }
+    Clock.start();
+  }
+
+  @Override
+  public void liveRoot(ObjectReference object) {
+  }
+
+  @Override
+  public void release() {
+  }
+
+  @Override
+  public synchronized void report() {
+    Clock.stop();
+    System.err.printf("Heap census: %d objects, %d bytes%n", objects, bytes);
+    for (Map.Entry<String,long[]> entry : histogram.entrySet()) {
+      System.err.printf("%10d %12d  %s%n", entry.getValue()[0], entry.getValue()[1], entry.getKey());
+    }
+    Clock.start();
+  }
+
+  /** @return The number of live objects counted by the last census */
+  public synchronized long getObjects() {
+    return objects;
+  }
+}
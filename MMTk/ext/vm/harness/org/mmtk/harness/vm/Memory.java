@@ -134,6 +134,32 @@ public class Memory extends org.mmtk.vm.Memory {
     return SimulatedMemory.unprotect(start, size);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public boolean adviseHugePages(Address start, int size) {
+    // Simulated memory has no pages to speak of
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int numaNodes() {
+    return 1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int numaNode() {
+    return 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean numaBind(Address start, int size, int node) {
+    // Simulated memory has no placement
+    return true;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void zero(boolean useNT, Address start, Extent len) {
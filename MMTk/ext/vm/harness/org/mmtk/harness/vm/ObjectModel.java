@@ -162,14 +162,16 @@ public final class ObjectModel extends org.mmtk.vm.ObjectModel {
     int align = ArchitecturalWord.getModel().bitsInWord() == 64 ?
         MemoryConstants.BYTES_IN_WORD :
         (doubleAlign ? 2 : 1) * MemoryConstants.BYTES_IN_INT;
-    int allocator = context.checkAllocator(bytes, align, refCount == 0 ? Plan.ALLOC_NON_REFERENCE : Plan.ALLOC_DEFAULT);
+    /* Scripts are interpreted, so each allocation stands in for the compilation of its site */
+    int allocator = ActivePlan.plan.siteAllocator(refCount == 0 ? Plan.ALLOC_NON_REFERENCE : Plan.ALLOC_DEFAULT, site);
+    allocator = context.checkAllocator(bytes, align, allocator, site);
 
 //    if (allocator == Plan.ALLOC_LOS) {
 //      System.out.printf("Allocating %d bytes in LOS%n",bytes);
 //    }
 
     // Allocate the raw memory
-    Address region = context.alloc(bytes, align, 0, allocator, 0);
+    Address region = context.alloc(bytes, align, 0, allocator, site);
 
     // Create an object reference.
     ObjectReference ref = region.toObjectReference();
@@ -21,7 +21,9 @@ import java.util.Set;
 import org.mmtk.harness.lang.Trace;
 import org.mmtk.harness.lang.Trace.Item;
 import org.mmtk.harness.lang.runtime.ReferenceValue;
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
+import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.ObjectReference;
 import org.vmmagic.unboxed.harness.Clock;
@@ -103,32 +105,42 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   /**
    * {@inheritDoc}
    * <p>
-   * TODO support concurrent scans
+   * Each collector processes every n'th reference in the sets; the
+   * first collector to finish then rolls the sets over.
    * <p>
    * TODO the nursery/mature logic could be improved
    * <p>
    * TODO does the MMTk harness need to handle the retain parameter?
    */
   @Override
-  public synchronized void scan(TraceLocal trace, boolean nursery, boolean retain) {
-    Clock.stop();
-    Trace.trace(Item.REFERENCES, "Scanning %s references: current = %d, new = %d, %s",
-        semantics,currentRefs.size(), newRefs.size(), nursery  ? "nursery" : "full-heap",
-        retain ? "retaining references" : "not retaining references");
-    Clock.start();
+  public void scan(TraceLocal trace, boolean nursery, boolean retain) {
+    CollectorContext collector = VM.activePlan.collector();
+    if (collector.parallelWorkerOrdinal() == 0) {
+      Clock.stop();
+      Trace.trace(Item.REFERENCES, "Scanning %s references: current = %d, new = %d, %s",
+          semantics,currentRefs.size(), newRefs.size(), nursery  ? "nursery" : "full-heap",
+          retain ? "retaining references" : "not retaining references");
+      Clock.start();
+    }
     if (!nursery) {
-      scanReferenceSet(trace, currentRefs);
+      scanReferenceSet(trace, currentRefs, collector);
+    }
+    scanReferenceSet(trace, newRefs, collector);
+    if (collector.rendezvous() == 0) {
+      oldRefs.clear();
+      oldRefs.addAll(currentRefs);
+      oldRefs.addAll(newRefs);
+      currentRefs.clear();
+      newRefs.clear();
     }
-    scanReferenceSet(trace, newRefs);
-    oldRefs.clear();
-    oldRefs.addAll(currentRefs);
-    oldRefs.addAll(newRefs);
-    currentRefs.clear();
-    newRefs.clear();
   }
 
-  private void scanReferenceSet(TraceLocal trace, Set<ReferenceValue> set) {
+  private void scanReferenceSet(TraceLocal trace, Set<ReferenceValue> set, CollectorContext collector) {
+    int ordinal = collector.parallelWorkerOrdinal();
+    int workers = collector.parallelWorkerCount();
+    int i = 0;
     for (ReferenceValue value : set) {
+      if (i++ % workers != ordinal) continue;
       ObjectReference referent = value.getObjectValue();
       if (trace.isReferentLive(referent)) {
         value.processReference(trace);
@@ -145,11 +157,18 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
-    Clock.stop();
-    Trace.trace(Item.REFERENCES, "Forwarding %s references: %s",
-        semantics,nursery ? "nursery" : "full-heap");
-    Clock.start();
+    CollectorContext collector = VM.activePlan.collector();
+    int ordinal = collector.parallelWorkerOrdinal();
+    int workers = collector.parallelWorkerCount();
+    if (ordinal == 0) {
+      Clock.stop();
+      Trace.trace(Item.REFERENCES, "Forwarding %s references: %s",
+          semantics,nursery ? "nursery" : "full-heap");
+      Clock.start();
+    }
+    int i = 0;
     for (ReferenceValue value : oldRefs) {
+      if (i++ % workers != ordinal) continue;
       value.forwardReference(trace);
     }
   }
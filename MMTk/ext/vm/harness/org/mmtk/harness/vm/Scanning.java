@@ -141,6 +141,14 @@ public class Scanning extends org.mmtk.vm.Scanning {
     /* None */
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void computeBootImageSlots(TransitiveClosure closure) {
+    /* None */
+  }
+
   /**
    * {@inheritDoc}
    */
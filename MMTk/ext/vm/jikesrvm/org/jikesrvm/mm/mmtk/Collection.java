@@ -21,6 +21,7 @@ import org.jikesrvm.mm.mminterface.MemoryManager;
 import org.jikesrvm.mm.mminterface.Selected;
 import org.jikesrvm.mm.mminterface.CollectorThread;
 import org.jikesrvm.runtime.SysCall;
+import org.jikesrvm.scheduler.Lock;
 import org.jikesrvm.scheduler.RVMThread;
 import org.jikesrvm.scheduler.FinalizerThread;
 
@@ -54,6 +55,11 @@ public class Collection extends org.mmtk.vm.Collection {
     return SysCall.sysCall.sysNumProcessors();
   }
 
+  @Override
+  public boolean bindToNumaNode(int node) {
+    return SysCall.sysCall.sysThreadBindToNode(node) == 0;
+  }
+
   @Override
   public int getActiveThreads() {
     return RVMThread.getNumActiveThreads() - RVMThread.getNumActiveDaemons();
@@ -119,6 +125,7 @@ public class Collection extends org.mmtk.vm.Collection {
   @Unpreemptible
   public void stopAllMutators() {
     RVMThread.blockAllMutatorsForGC();
+    Lock.reclaimLocks();
   }
 
   @Override
@@ -145,6 +145,16 @@ public final class Factory extends org.mmtk.vm.Factory {
     }
   }
 
+  @Override
+  public org.mmtk.vm.HeapCensus newHeapCensus() {
+    try {
+      return new HeapCensus();
+    } catch (Exception e) {
+      VM.sysFail("Failed to allocate new HeapCensus!");
+      return null; // never get here
+    }
+  }
+
   @Override
   public org.mmtk.vm.Scanning newScanning() {
     try {
@@ -16,9 +16,15 @@ import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_ADDRESS;
 
 import org.jikesrvm.VM;
 import org.jikesrvm.mm.mminterface.Selected;
+import org.jikesrvm.runtime.Entrypoints;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.scheduler.RVMThread;
+import org.jikesrvm.scheduler.Synchronization;
 import org.jikesrvm.util.Services;
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
+import org.mmtk.utility.options.Options;
+import org.vmmagic.pragma.Entrypoint;
 import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.pragma.UninterruptibleNoWarn;
@@ -32,7 +38,19 @@ import org.vmmagic.unboxed.Word;
 /**
  * This class manages the processing of finalizable objects.
  * <p>
- * TODO can this be a linked list?
+ * Candidates are added to the table without locking, in the same way as
+ * references are added to the tables of the {@link ReferenceProcessor}:
+ * a slot is claimed by atomically bumping <code>maxIndex</code>, and a
+ * thread that finds either table full grows them after setting the
+ * <code>GROWING</code> bit of <code>maxIndex</code>.  At GC time the
+ * candidate table is divided into chunks that are dealt out to the
+ * collector threads.
+ * <p>
+ * Objects ready to be finalized are appended to <code>readyForFinalize</code>
+ * by the collector threads, and are taken from it by any number of
+ * finalizer threads, each of which claims an entry by atomically bumping
+ * <code>nextReadyIndex</code>.  Entries are only appended during GC, when
+ * the queue is also slid back to the start of the array.
  */
 @Uninterruptible
 public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor {
@@ -53,13 +71,20 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   /** Amount to grow the table by when it is filled */
   private static final double GROWTH_FACTOR = 2.0;
 
+  /** Number of table entries in each chunk of work handed to a collector thread */
+  private static final int LOG_CHUNK_SIZE = 10;
+  private static final int CHUNK_SIZE = 1 << LOG_CHUNK_SIZE;
+
+  /**
+   * Bit of <code>maxIndex</code> set while a thread is installing new tables,
+   * and of <code>nextReadyIndex</code> while it is copying the ready queue.
+   */
+  private static final int GROWING = 1 << 31;
+
   /*************************************************************************
    * Instance fields
    */
 
-  /** Used to ensure mutual exclusion during table manipulation */
-  private final Lock lock = new Lock("AddressTable");
-
   /** The table of candidates */
   protected volatile AddressArray table = AddressArray.create(INITIAL_SIZE);
 
@@ -69,13 +94,32 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   /** Index of first entry created since last collection */
   protected int nurseryIndex = 0;
 
-  /** Index of the first free slot in the table. */
+  /**
+   * Index of the first free slot in the table, with the <code>GROWING</code>
+   * bit set while the tables are being replaced.
+   */
+  @Entrypoint
   protected volatile int maxIndex = 0;
 
+  /**
+   * Number of slots below <code>maxIndex</code> that have been filled in.
+   * The table may only be copied once this catches up with <code>maxIndex</code>.
+   */
+  @Entrypoint
+  private volatile int published = 0;
+
+  /**
+   * The number of live candidates left at the start of each chunk
+   * by the collector thread that scanned it.
+   */
+  private volatile int[] chunkSurvivors = new int[chunksFor(INITIAL_SIZE)];
+
   /** Next object ready to be finalized */
+  @Entrypoint
   private volatile int nextReadyIndex = 0;
 
   /** Last object ready to be finalized */
+  @Entrypoint
   private volatile int lastReadyIndex = 0;
 
   /**
@@ -83,6 +127,14 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
    */
   protected FinalizableProcessor() {}
 
+  /**
+   * @param entries a number of table entries
+   * @return the number of chunks needed to cover them
+   */
+  private static int chunksFor(int entries) {
+    return (entries + CHUNK_SIZE - 1) >> LOG_CHUNK_SIZE;
+  }
+
   /**
    * Allocate an entry in the table. This should be called from an unpreemptible
    * context so that the entry can be filled. This method is responsible for growing
@@ -93,81 +145,124 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   @NoInline
   @UnpreemptibleNoWarn("Non-preemptible but yield when table needs to be grown")
   public void add(Object object) {
-    lock.acquire();
-    while (maxIndex >= table.length() || maxIndex >= freeReady()) {
-      int newTableSize = -1;
-      int newReadyForFinalizeSize = -1;
-      AddressArray newTable = null;
-      Object[] newReadyForFinalize = null;
-
-      if (maxIndex >= table.length()) {
-        newTableSize = STRESS ? table.length() + 1 : (int)(table.length() * GROWTH_FACTOR);
-      }
-
-      if (maxIndex >= freeReady()) {
-        newReadyForFinalizeSize = table.length() + countReady();
-        if (newReadyForFinalizeSize <= readyForFinalize.length) {
-          newReadyForFinalizeSize = -1;
-        }
+    /*
+     * Claim a slot by bumping maxIndex.  There must be room for every
+     * candidate to become ready without the ready queue overflowing.
+     * Nothing between a successful claim and publishing the filled slot
+     * may yield.
+     */
+    Offset maxIndexOffset = Entrypoints.finalizableProcessorMaxIndexField.getOffset();
+    int index;
+    while (true) {
+      index = Magic.prepareInt(this, maxIndexOffset);
+      if ((index & GROWING) != 0) {
+        RVMThread.yieldWithHandshake(); // Allow another thread to grow the tables
+      } else if (index >= table.length() || index >= freeReady()) {
+        growTables();
+      } else if (Magic.attemptInt(this, maxIndexOffset, index, index + 1)) {
+        break;
       }
+    }
+    table.set(index, Magic.objectAsAddress(object));
+    Synchronization.fetchAndAdd(this, Entrypoints.finalizableProcessorPublishedField.getOffset(), 1);
+  }
 
-      {
-        lock.release();
-        if (newTableSize >= 0) {
-          newTable = AddressArray.create(newTableSize);
-        }
-        if (newReadyForFinalizeSize >= 0) {
-          newReadyForFinalize = new Object[newReadyForFinalizeSize];
-        }
-        lock.acquire();
-      }
+  /**
+   * Grow the candidate table and the ready queue as needed for another
+   * candidate to be added.  The new arrays are allocated before any claim
+   * is made on the old ones, since allocating may trigger a GC.  If another
+   * thread installs new arrays in the meantime, ours are dropped.
+   * <p>
+   * Finalizer threads are held off while the pending part of the ready
+   * queue is copied, by setting the <code>GROWING</code> bit of
+   * <code>nextReadyIndex</code>.  Entries keep their indices in the new queue.
+   *
+   * <p>Marked as UninterruptibleNoWarn because it can GC when it allocates, but
+   * the rest of the code can't tolerate GC.
+   */
+  @UninterruptibleNoWarn
+  private void growTables() {
+    AddressArray oldTable = table;
+    Object[] oldReady = readyForFinalize;
+    int newTableLength = oldTable.length();
+    if ((maxIndex & ~GROWING) >= newTableLength) {
+      newTableLength = STRESS ? newTableLength + 1 : (int)(newTableLength * GROWTH_FACTOR);
+    }
+    int newReadyLength = newTableLength + lastReadyIndex;
+    AddressArray newTable = null;
+    int[] newChunkSurvivors = null;
+    Object[] newReady = null;
+    if (newTableLength > oldTable.length()) {
+      newTable = AddressArray.create(newTableLength);
+      newChunkSurvivors = new int[chunksFor(newTableLength)];
+    }
+    if (newReadyLength > oldReady.length) {
+      newReady = new Object[newReadyLength];
+    }
 
-      if (maxIndex >= table.length() && newTable != null) {
-        for (int i = 0; i < table.length(); i++) {
-          newTable.set(i, table.get(i));
-        }
-        table = newTable;
+    Offset maxIndexOffset = Entrypoints.finalizableProcessorMaxIndexField.getOffset();
+    int index = Magic.prepareInt(this, maxIndexOffset);
+    if ((index & GROWING) != 0 || !Magic.attemptInt(this, maxIndexOffset, index, index | GROWING)) {
+      return;
+    }
+    if (table != oldTable || readyForFinalize != oldReady ||
+        (newReady != null && newReady.length < lastReadyIndex)) {
+      /* Another thread got there first, or a GC filled the ready queue while we allocated */
+      maxIndex = index;
+      return;
+    }
+    /* No more slots can be claimed; wait for those already claimed to be filled */
+    while (published != index) {
+      Magic.pause();
+    }
+    if (newTable != null) {
+      for (int i = 0; i < index; i++) {
+        newTable.set(i, oldTable.get(i));
       }
-
-      if (maxIndex >= freeReady() && newReadyForFinalize != null) {
-        int j = 0;
-        for (int i = nextReadyIndex; i < lastReadyIndex && i < readyForFinalize.length; i++) {
-          newReadyForFinalize[j++] = readyForFinalize[i];
-        }
-        if (lastReadyIndex < nextReadyIndex) {
-          for (int i = 0; i < lastReadyIndex; i++) {
-            newReadyForFinalize[j++] = readyForFinalize[i];
-          }
-        }
-        lastReadyIndex = j;
-        nextReadyIndex = 0;
-        readyForFinalize = newReadyForFinalize;
+      table = newTable;
+      chunkSurvivors = newChunkSurvivors;
+    }
+    if (newReady != null) {
+      Offset nextReadyOffset = Entrypoints.finalizableProcessorNextReadyIndexField.getOffset();
+      int next;
+      do {
+        next = Magic.prepareInt(this, nextReadyOffset);
+      } while (!Magic.attemptInt(this, nextReadyOffset, next, next | GROWING));
+      for (int i = next; i < lastReadyIndex; i++) {
+        newReady[i] = oldReady[i];
       }
+      readyForFinalize = newReady;
+      Magic.fence();
+      nextReadyIndex = next;
     }
-    table.set(maxIndex++, Magic.objectAsAddress(object));
-    lock.release();
+    Magic.fence();
+    maxIndex = index;
   }
 
   @Override
   public void clear() {
-    maxIndex = 0;
+    nurseryIndex = maxIndex = published = 0;
   }
 
   /**
    * {@inheritDoc}.
    * <p>
    * Currently ignores the nursery hint.
-   * <p>
-   * TODO parallelise this code?
    *
    * @param trace The trace
    * @param nursery Is this a nursery collection ?
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
-    for (int i = 0 ; i < maxIndex; i++) {
-      ObjectReference ref = table.get(i).toObjectReference();
-      table.set(i, trace.getForwardedFinalizable(ref).toAddress());
+    CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    int workers = cc.parallelWorkerCount();
+    int end = maxIndex;
+    for (int chunk = cc.parallelWorkerOrdinal(); chunk < chunksFor(end); chunk += workers) {
+      int limit = chunkLimit(0, chunk, end);
+      for (int i = chunk << LOG_CHUNK_SIZE; i < limit; i++) {
+        ObjectReference ref = table.get(i).toObjectReference();
+        table.set(i, trace.getForwardedFinalizable(ref).toAddress());
+      }
     }
   }
 
@@ -179,55 +274,163 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
    * Depending on the value of <code>nursery</code>, we will either
    * scan all references, or just those created since the last scan.
    * <p>
-   * TODO parallelise this code
+   * Each collector thread takes every n'th chunk of the table, packs
+   * the candidates that are still live at the start of the chunk, and
+   * appends the rest to the ready queue.  Once all chunks are done, one
+   * thread closes the gaps in the table and slides the ready queue back
+   * to the start of its array.
    *
    * @param nursery Scan only the newly created references
    */
   @Override
   @UninterruptibleNoWarn
   public void scan(TraceLocal trace, boolean nursery) {
-    int toIndex = nursery ? nurseryIndex : 0;
+    CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    int workers = cc.parallelWorkerCount();
+    int start = nursery ? nurseryIndex : 0;
+    int end = maxIndex;
+    int chunks = chunksFor(end - start);
+    Offset lastReadyOffset = Entrypoints.finalizableProcessorLastReadyIndexField.getOffset();
+
+    for (int chunk = cc.parallelWorkerOrdinal(); chunk < chunks; chunk += workers) {
+      int chunkStart = start + (chunk << LOG_CHUNK_SIZE);
+      int limit = chunkLimit(start, chunk, end);
+      int toIndex = chunkStart;
+      for (int fromIndex = chunkStart; fromIndex < limit; fromIndex++) {
+        ObjectReference ref = table.get(fromIndex).toObjectReference();
+
+        /* Determine liveness (and forward if necessary) */
+        if (trace.isLive(ref)) {
+          table.set(toIndex++, trace.getForwardedFinalizable(ref).toAddress());
+          continue;
+        }
 
-    for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
-      ObjectReference ref = table.get(fromIndex).toObjectReference();
+        /* Make ready for finalize */
+        ref = trace.retainForFinalize(ref);
 
-      /* Determine liveness (and forward if necessary) */
-      if (trace.isLive(ref)) {
-        table.set(toIndex++, trace.getForwardedFinalizable(ref).toAddress());
-        continue;
+        /* Add to object table */
+        setReady(Synchronization.fetchAndAdd(this, lastReadyOffset, 1), ref);
       }
+      chunkSurvivors[chunk] = toIndex - chunkStart;
+    }
 
-      /* Make ready for finalize */
-      ref = trace.retainForFinalize(ref);
+    if (cc.rendezvous() == 0) {
+      int toIndex = compact(start, chunks);
+      int ready = slideReady();
+      if (Options.verbose.getValue() >= 3) {
+        VM.sysWriteln("finalizable objects: ",end," -> ",toIndex);
+        VM.sysWriteln("objects ready for finalization: ",ready);
+      }
+      nurseryIndex = maxIndex = published = toIndex;
 
-      /* Add to object table */
-      Offset offset = Word.fromIntZeroExtend(lastReadyIndex).lsh(LOG_BYTES_IN_ADDRESS).toOffset();
-      Selected.Plan.get().storeObjectReference(Magic.objectAsAddress(readyForFinalize).plus(offset), ref);
-      lastReadyIndex = (lastReadyIndex + 1) % readyForFinalize.length;
+      /* Possible schedule finalizers to run */
+      Collection.scheduleFinalizerThread();
     }
-    nurseryIndex = maxIndex = toIndex;
+  }
+
+  /**
+   * @param start the table index of the first chunk
+   * @param chunk a chunk
+   * @param end the table index at which scanning stops
+   * @return the table index one past the end of the chunk
+   */
+  private static int chunkLimit(int start, int chunk, int end) {
+    int limit = start + ((chunk + 1) << LOG_CHUNK_SIZE);
+    return limit < end ? limit : end;
+  }
 
-    /* Possible schedule finalizers to run */
-    Collection.scheduleFinalizerThread();
+  /**
+   * Close the gaps left between the candidates that survived a scan.
+   *
+   * @param start the table index of the first chunk
+   * @param chunks the number of chunks that were scanned
+   * @return the index of the first free slot
+   */
+  private int compact(int start, int chunks) {
+    int toIndex = start;
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      int fromIndex = start + (chunk << LOG_CHUNK_SIZE);
+      int survivors = chunkSurvivors[chunk];
+      if (fromIndex != toIndex) {
+        for (int i = 0; i < survivors; i++) {
+          table.set(toIndex + i, table.get(fromIndex + i));
+        }
+      }
+      toIndex += survivors;
+    }
+    return toIndex;
   }
 
   /**
-   * Get an object to run finalize().
+   * Move the objects waiting to be finalized to the start of the ready
+   * queue, clearing the slots they leave behind.  Called during GC, when
+   * no finalizer thread can be part way through taking an object.
+   *
+   * @return the number of objects waiting to be finalized
+   */
+  private int slideReady() {
+    int next = nextReadyIndex;
+    int last = lastReadyIndex;
+    if (next != 0) {
+      for (int i = next; i < last; i++) {
+        setReady(i - next, ObjectReference.fromObject(readyForFinalize[i]));
+      }
+      for (int i = last - next; i < last; i++) {
+        setReady(i, ObjectReference.nullReference());
+      }
+    }
+    nextReadyIndex = 0;
+    lastReadyIndex = last - next;
+    return last - next;
+  }
+
+  /**
+   * Store into the ready queue during GC.
+   *
+   * @param index the index in the ready queue
+   * @param ref the object to store
+   */
+  private void setReady(int index, ObjectReference ref) {
+    Offset offset = Word.fromIntZeroExtend(index).lsh(LOG_BYTES_IN_ADDRESS).toOffset();
+    Selected.Plan.get().storeObjectReference(Magic.objectAsAddress(readyForFinalize).plus(offset), ref);
+  }
+
+  /**
+   * Get an object to run finalize().  Any number of threads may call
+   * this at once; each entry is claimed by atomically bumping
+   * <code>nextReadyIndex</code>.
+   * <p>
+   * The queue is read before the entry is claimed, since a thread growing
+   * the queue only copies entries that have not yet been claimed.  For the
+   * same reason the entry is cleared in whichever queue is current once
+   * it has been taken.
    *
    * @return The object to finalize()
    */
   @NoInline
-  @Unpreemptible("Non-preemptible but may pause if another thread is growing the table")
   public Object getReady() {
-    lock.acquire();
-    Object result = null;
-    if (nextReadyIndex != lastReadyIndex) {
-      result = readyForFinalize[nextReadyIndex];
-      Services.setArrayUninterruptible(readyForFinalize, nextReadyIndex, null);
-      nextReadyIndex = (nextReadyIndex + 1) % readyForFinalize.length;
+    Offset nextReadyOffset = Entrypoints.finalizableProcessorNextReadyIndexField.getOffset();
+    while (true) {
+      Object[] ready = readyForFinalize;
+      int index = Magic.prepareInt(this, nextReadyOffset);
+      if ((index & GROWING) != 0) {
+        /* Another thread is copying the queue */
+        Magic.pause();
+        continue;
+      }
+      if (index >= lastReadyIndex) {
+        return null;
+      }
+      if (Magic.attemptInt(this, nextReadyOffset, index, index + 1)) {
+        Object result = ready[index];
+        Services.setArrayUninterruptible(ready, index, null);
+        Object[] current = readyForFinalize;
+        if (current != ready) {
+          Services.setArrayUninterruptible(current, index, null);
+        }
+        return result;
+      }
     }
-    lock.release();
-    return result;
   }
 
   /***********************************************************************
@@ -238,21 +441,21 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
    * @return the number of entries in the table.
    */
   public int count() {
-    return maxIndex;
+    return maxIndex & ~GROWING;
   }
 
   /**
    * @return the number of entries ready to be finalized.
    */
   public int countReady() {
-    return ((lastReadyIndex - nextReadyIndex) + readyForFinalize.length) % readyForFinalize.length;
+    return lastReadyIndex - (nextReadyIndex & ~GROWING);
   }
 
   /**
-   * @return the number of entries ready to be finalized.
+   * @return the number of entries that can still be added to the ready queue.
    */
   public int freeReady() {
-    return readyForFinalize.length - countReady();
+    return readyForFinalize.length - lastReadyIndex;
   }
 
   /***********************************************************************
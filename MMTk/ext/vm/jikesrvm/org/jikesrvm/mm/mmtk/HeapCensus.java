@@ -0,0 +1,230 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.mm.mmtk;
+
+import static org.jikesrvm.runtime.JavaSizeConstants.LOG_BYTES_IN_INT;
+import static org.jikesrvm.runtime.JavaSizeConstants.LOG_BYTES_IN_LONG;
+import static org.jikesrvm.runtime.SysCall.sysCall;
+
+import org.mmtk.plan.Plan;
+import org.mmtk.utility.options.Options;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.mm.mminterface.HeapDump;
+import org.jikesrvm.objectmodel.ObjectModel;
+import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.scheduler.RVMThread;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * Takes a histogram of the live heap by type, and writes heap dumps,
+ * during the collection that takes a heap census.<p>
+ *
+ * Each collector thread counts the objects it scans in its own table,
+ * allocated outside the Java heap, so the trace needs no synchronization.
+ * Once the mutators have resumed, the tables are summed and the types
+ * that use the most space are printed.
+ */
+@Uninterruptible
+public final class HeapCensus extends org.mmtk.vm.HeapCensus {
+
+  /** Number of types listed in a histogram */
+  private static final int HISTOGRAM_TYPES = 100;
+
+  /** Has a histogram been requested? */
+  private static volatile boolean histogramRequested;
+
+  /** A heap dump waiting for the next census */
+  private static HeapDump dumpRequested;
+
+  /** Is the current census taking a histogram? */
+  private boolean histogram;
+
+  /** The heap dump being taken by the current census */
+  private HeapDump dump;
+
+  /** Number of types when the current census started */
+  private int types;
+
+  /** Number of instances of each type, counted by each collector */
+  private Address counts;
+
+  /** Bytes used by the instances of each type, counted by each collector */
+  private Address volumes;
+
+  /**
+   * Request that the next full heap collection prints a histogram of
+   * the live heap.  May be called from uninterruptible code.
+   *
+   * @return {@code false} if the plan can not take a census
+   */
+  public static boolean requestHistogram() {
+    histogramRequested = true;
+    return Plan.requestHeapCensus();
+  }
+
+  /**
+   * Request that the next full heap collection takes a heap dump.
+   *
+   * @param dump The heap dump to take
+   * @return {@code false} if the plan can not take a census
+   */
+  public static boolean requestDump(HeapDump dump) {
+    dumpRequested = dump;
+    if (Plan.requestHeapCensus()) return true;
+    dumpRequested = null;
+    return false;
+  }
+
+  @Override
+  public void prepare() {
+    histogram = histogramRequested;
+    histogramRequested = false;
+    dump = dumpRequested;
+    dumpRequested = null;
+    types = RVMType.numTypes() + 1;
+    if (histogram) {
+      int entries = types * Options.threads.getValue();
+      counts = sysCall.sysCalloc(entries << LOG_BYTES_IN_INT);
+      volumes = sysCall.sysCalloc(entries << LOG_BYTES_IN_LONG);
+      if (counts.isZero() || volumes.isZero()) {
+        VM.sysWriteln("Heap histogram skipped: out of native memory");
+        freeTables();
+      }
+    }
+  }
+
+  @Override
+  public void liveObject(ObjectReference object) {
+    int collector = collector();
+    if (histogram) {
+      RVMType type = Magic.getObjectType(object.toObject());
+      int index = collector * types + type.getId();
+      Address count = counts.plus(index << LOG_BYTES_IN_INT);
+      count.store(count.loadInt() + 1);
+      Address volume = volumes.plus(index << LOG_BYTES_IN_LONG);
+      volume.store(volume.loadLong() + ObjectModel.bytesUsed(object.toObject()));
+    }
+    if (dump != null) {
+      dump.liveObject(collector, object);
+    }
+  }
+
+  @Override
+  public void liveRoot(ObjectReference object) {
+    if (dump != null) {
+      dump.liveRoot(collector(), object);
+    }
+  }
+
+  @Override
+  public void release() {
+    if (dump != null) {
+      dump.release(collector());
+      dump = null;
+    }
+  }
+
+  @Override
+  public void report() {
+    if (histogram) {
+      printHistogram();
+      freeTables();
+    }
+  }
+
+  /**
+   * @return The id of the current collector thread
+   */
+  @Inline
+  private static int collector() {
+    int id = RVMThread.getCurrentThread().getCollectorContext().getId();
+    if (VM.VerifyAssertions) VM._assert(id < Options.threads.getValue());
+    return id;
+  }
+
+  private void freeTables() {
+    if (!counts.isZero()) sysCall.sysFree(counts);
+    if (!volumes.isZero()) sysCall.sysFree(volumes);
+    counts = Address.zero();
+    volumes = Address.zero();
+    histogram = false;
+  }
+
+  /**
+   * Fold the tables of all collectors into the first, and print the
+   * types whose instances use the most space.
+   */
+  private void printHistogram() {
+    long totalObjects = 0;
+    long totalBytes = 0;
+    int collectors = Options.threads.getValue();
+    for (int id = 1; id < types; id++) {
+      int count = 0;
+      long volume = 0;
+      for (int c = 0; c < collectors; c++) {
+        int index = c * types + id;
+        count += counts.loadInt(Offset.fromIntZeroExtend(index << LOG_BYTES_IN_INT));
+        volume += volumes.loadLong(Offset.fromIntZeroExtend(index << LOG_BYTES_IN_LONG));
+      }
+      counts.store(count, Offset.fromIntZeroExtend(id << LOG_BYTES_IN_INT));
+      volumes.store(volume, Offset.fromIntZeroExtend(id << LOG_BYTES_IN_LONG));
+      totalObjects += count;
+      totalBytes += volume;
+    }
+
+    VM.sysWriteln();
+    VM.sysWriteln(" num     #instances         #bytes  class name");
+    VM.sysWriteln("----------------------------------------------");
+    for (int rank = 1; rank <= HISTOGRAM_TYPES; rank++) {
+      int largest = 0;
+      long largestVolume = 0;
+      for (int id = 1; id < types; id++) {
+        long volume = volumes.loadLong(Offset.fromIntZeroExtend(id << LOG_BYTES_IN_LONG));
+        if (volume > largestVolume) {
+          largest = id;
+          largestVolume = volume;
+        }
+      }
+      if (largest == 0) break;
+      writeField(4, rank);
+      VM.sysWrite(":");
+      writeField(15, counts.loadInt(Offset.fromIntZeroExtend(largest << LOG_BYTES_IN_INT)));
+      writeField(15, largestVolume);
+      VM.sysWrite("  ");
+      VM.sysWrite(RVMType.getType(largest).getDescriptor());
+      VM.sysWriteln();
+      volumes.store(0L, Offset.fromIntZeroExtend(largest << LOG_BYTES_IN_LONG));
+    }
+    VM.sysWrite("Total");
+    writeField(15, totalObjects);
+    writeField(15, totalBytes);
+    VM.sysWriteln();
+  }
+
+  /**
+   * Write a number right aligned in a field.
+   *
+   * @param width The width of the field
+   * @param value The number
+   */
+  private static void writeField(int width, long value) {
+    int digits = 1;
+    for (long v = value; v >= 10; v /= 10) digits++;
+    for (int i = digits; i < width; i++) VM.sysWrite(" ");
+    VM.sysWriteLong(value);
+  }
+}
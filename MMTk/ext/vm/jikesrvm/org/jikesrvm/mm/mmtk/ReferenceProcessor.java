@@ -12,6 +12,7 @@
  */
 package org.jikesrvm.mm.mmtk;
 
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.utility.options.Options;
 
@@ -24,6 +25,7 @@ import org.jikesrvm.mm.mminterface.Selected;
 import org.jikesrvm.runtime.Entrypoints;
 import org.jikesrvm.runtime.Magic;
 import org.jikesrvm.scheduler.RVMThread;
+import org.jikesrvm.scheduler.Synchronization;
 
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
@@ -46,6 +48,16 @@ import java.lang.ref.PhantomReference;
  * <p>
  * As an optimization for generational collectors, each reference type
  * maintains two queues: a nursery queue and the main queue.
+ * <p>
+ * Mutators add references to the table without locking: a slot is
+ * claimed by atomically bumping <code>maxIndex</code>, and a thread that
+ * finds the table full grows it after setting the <code>GROWING</code>
+ * bit of <code>maxIndex</code>, which holds off further claims until the
+ * new table is installed.  At GC time the table is divided into chunks
+ * that are dealt out to the collector threads.  The class library's
+ * reference queues are not safe for concurrent use, so the collector
+ * threads only gather the references to be enqueued, and a single
+ * thread enqueues them once all chunks are done.
  */
 @Uninterruptible
 public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
@@ -54,8 +66,6 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * Class fields
    */
 
-  private static final Lock lock = new Lock("ReferenceProcessor");
-
   private static final ReferenceProcessor softReferenceProcessor =
     new ReferenceProcessor(Semantics.SOFT);
   private static final ReferenceProcessor weakReferenceProcessor =
@@ -78,6 +88,13 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   private static final double GROWTH_FACTOR = 2.0;
 
+  /** Number of table entries in each chunk of work handed to a collector thread */
+  private static final int LOG_CHUNK_SIZE = 10;
+  private static final int CHUNK_SIZE = 1 << LOG_CHUNK_SIZE;
+
+  /** Bit of <code>maxIndex</code> set while a thread is installing a new table */
+  private static final int GROWING = 1 << 31;
+
 
   /*************************************************************************
    * Instance fields
@@ -103,15 +120,30 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   private int nurseryIndex = 0;
 
   /**
-   * Index of the first free slot in the reference table.
+   * Index of the first free slot in the reference table, with the
+   * <code>GROWING</code> bit set while the table is being replaced.
    */
+  @Entrypoint
   private volatile int maxIndex = 0;
 
   /**
-   * Flag to prevent a race between threads growing the reference object
-   * table.
+   * Number of slots below <code>maxIndex</code> that have been filled in.
+   * The table may only be copied once this catches up with <code>maxIndex</code>.
+   */
+  @Entrypoint
+  private volatile int published = 0;
+
+  /**
+   * The number of live references left at the start of each chunk
+   * by the collector thread that scanned it.
    */
-  private volatile boolean growingTable = false;
+  private volatile int[] chunkSurvivors = new int[chunksFor(INITIAL_SIZE)];
+
+  /**
+   * The number of references to be enqueued left at the start of each
+   * chunk, ahead of the live ones, by the collector thread that scanned it.
+   */
+  private volatile int[] chunkEnqueued = new int[chunksFor(INITIAL_SIZE)];
 
   /**
    * Semantics
@@ -153,14 +185,11 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   }
 
   /**
-   * Add a reference at the end of the table
-   * @param ref The reference to add
-   * @param referent the object pointed to by the reference
+   * @param entries a number of table entries
+   * @return the number of chunks needed to cover them
    */
-  private void addReference(Reference<?> ref, ObjectReference referent) {
-    ObjectReference reference = ObjectReference.fromObject(ref);
-    setReferent(reference, referent);
-    setReference(maxIndex++,reference);
+  private static int chunksFor(int entries) {
+    return (entries + CHUNK_SIZE - 1) >> LOG_CHUNK_SIZE;
   }
 
   /**
@@ -188,24 +217,44 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   }
 
   /**
-   * Grow the reference table by GROWTH_FACTOR.
+   * Grow the reference table by GROWTH_FACTOR.  The new table is allocated
+   * before any claim is made on the old one, since allocating may trigger
+   * a GC that compacts the old table.  If another thread installs a table
+   * in the meantime, ours is dropped.
    *
    * <p>Marked as UninterruptibleNoWarn because it can GC when it allocates, but
    * the rest of the code can't tolerate GC.
-   *
-   * <p>This method is called without the reference processor lock held,
-   * but with the flag <code>growingTable</code> set.
-   *
-   * @return the start address of the new reference table
    */
   @UninterruptibleNoWarn
-  private AddressArray growReferenceTable() {
-    int newLength = STRESS ? references.length() + 1 : (int)(references.length() * GROWTH_FACTOR);
+  private void growReferenceTable() {
+    AddressArray oldReferences = references;
+    int newLength = STRESS ? oldReferences.length() + 1 : (int)(oldReferences.length() * GROWTH_FACTOR);
     if (TRACE) VM.sysWriteln("Expanding reference type table ",semanticsStr," to ",newLength);
     AddressArray newReferences = AddressArray.create(newLength);
-    for (int i = 0; i < references.length(); i++)
-      newReferences.set(i,references.get(i));
-    return newReferences;
+    int[] newChunkSurvivors = new int[chunksFor(newLength)];
+    int[] newChunkEnqueued = new int[chunksFor(newLength)];
+
+    Offset maxIndexOffset = Entrypoints.referenceProcessorMaxIndexField.getOffset();
+    int index = Magic.prepareInt(this, maxIndexOffset);
+    if ((index & GROWING) != 0 || !Magic.attemptInt(this, maxIndexOffset, index, index | GROWING)) {
+      return;
+    }
+    if (references != oldReferences) {
+      /* Another thread got there first */
+      maxIndex = index;
+      return;
+    }
+    /* No more slots can be claimed; wait for those already claimed to be filled */
+    while (published != index) {
+      Magic.pause();
+    }
+    for (int i = 0; i < index; i++)
+      newReferences.set(i,oldReferences.get(i));
+    references = newReferences;
+    chunkSurvivors = newChunkSurvivors;
+    chunkEnqueued = newChunkEnqueued;
+    Magic.fence();
+    maxIndex = index;
   }
 
   /**
@@ -215,7 +264,7 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * is correctly installed in the reference table.
    *
    * (SJF: This method must NOT be inlined into an inlined allocation
-   * sequence, since it contains a lock!)
+   * sequence, since it may have to wait for the table to be grown!)
    *
    * @param referent The referent of the reference
    * @param ref The reference to add
@@ -230,37 +279,30 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     }
 
     /*
-     * Ensure that only one thread at a time can grow the
-     * table of references.  The volatile flag <code>growingTable</code> is
-     * used to allow growing the table to trigger GC, but to prevent
-     * any other thread from accessing the table while it is being grown.
+     * Claim a slot by bumping maxIndex.  If the table is full, grow it
+     * and try again.  If another thread is installing a new table,
+     * yield at (1) until it is done.
      *
-     * If the table has space, threads will add the reference, incrementing maxIndex
-     * and exit.
-     *
-     * If the table is full, the first thread to notice will grow the table.
-     * Subsequent threads will release the lock and yield at (1) while the
-     * first thread
+     * Nothing between a successful claim and publishing the filled slot
+     * may yield, so that neither a GC nor a thread growing the table can
+     * observe a claimed slot that has not been filled.
      */
-    lock.acquire();
-    while (growingTable || maxIndex >= references.length()) {
-      if (growingTable) {
-        // FIXME: We should probably speculatively allocate a new table instead.
-        // note, we can copy without the lock after installing the new table (unint during copy).
-        lock.release();
+    Offset maxIndexOffset = Entrypoints.referenceProcessorMaxIndexField.getOffset();
+    int index;
+    while (true) {
+      index = Magic.prepareInt(this, maxIndexOffset);
+      if ((index & GROWING) != 0) {
         RVMThread.yieldWithHandshake(); // (1) Allow another thread to grow the table
-        lock.acquire();
-      } else {
-        growingTable = true;  // Prevent other threads from growing table while lock is released
-        lock.release();       // Can't hold the lock while allocating
-        AddressArray newTable = growReferenceTable();
-        lock.acquire();
-        references = newTable;
-        growingTable = false; // Allow other threads to grow the table rather than waiting for us
+      } else if (index >= references.length()) {
+        growReferenceTable();
+      } else if (Magic.attemptInt(this, maxIndexOffset, index, index + 1)) {
+        break;
       }
     }
-    addReference(ref,referent);
-    lock.release();
+    ObjectReference reference = ObjectReference.fromObject(ref);
+    setReferent(reference, referent);
+    setReference(index, reference);
+    Synchronization.fetchAndAdd(this, Entrypoints.referenceProcessorPublishedField.getOffset(), 1);
   }
 
   /***********************************************************************
@@ -274,9 +316,6 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * using separate traces.
    * <p>
    * Currently ignores the nursery hint.
-   * <p>
-   * TODO parallelise this code
-   *
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
@@ -288,21 +327,30 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       VM.sysWriteln("unforwardedReferences is ",
           Magic.objectAsAddress(unforwardedReferences));
     }
-    for (int i = 0; i < maxIndex; i++) {
-      if (TRACE_DETAIL) VM.sysWrite("slot ",i,": ");
-      ObjectReference reference = unforwardedReferences.get(i).toObjectReference();
-      if (TRACE_DETAIL) VM.sysWriteln("forwarding ",reference);
-      setReferent(reference, trace.getForwardedReferent(getReferent(reference)));
-      ObjectReference newReference = trace.getForwardedReference(reference);
-      unforwardedReferences.set(i, newReference.toAddress());
+    CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    int workers = cc.parallelWorkerCount();
+    int end = maxIndex;
+    for (int chunk = cc.parallelWorkerOrdinal(); chunk < chunksFor(end); chunk += workers) {
+      int limit = chunkLimit(0, chunk, end);
+      for (int i = chunk << LOG_CHUNK_SIZE; i < limit; i++) {
+        if (TRACE_DETAIL) VM.sysWrite("slot ",i,": ");
+        ObjectReference reference = unforwardedReferences.get(i).toObjectReference();
+        if (TRACE_DETAIL) VM.sysWriteln("forwarding ",reference);
+        setReferent(reference, trace.getForwardedReferent(getReferent(reference)));
+        ObjectReference newReference = trace.getForwardedReference(reference);
+        unforwardedReferences.set(i, newReference.toAddress());
+      }
+    }
+    if (cc.rendezvous() == 0) {
+      unforwardedReferences = null;
     }
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.forward(",semanticsStr,")");
-    unforwardedReferences = null;
   }
 
   @Override
   public void clear() {
     maxIndex = 0;
+    published = 0;
   }
 
   /**
@@ -313,7 +361,10 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * Depending on the value of <code>nursery</code>, we will either
    * scan all references, or just those created since the last scan.
    * <p>
-   * TODO parallelise this code
+   * Each collector thread takes every n'th chunk of the table, and
+   * packs the references to be enqueued at the start of the chunk,
+   * followed by those that stay on the list.  Once all chunks are done,
+   * one thread enqueues the references and closes the gaps.
    *
    * @param nursery Scan only the newly created references
    */
@@ -322,36 +373,63 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     unforwardedReferences = references;
 
     if (TRACE) VM.sysWriteln("Starting ReferenceGlue.scan(",semanticsStr,")");
-    int toIndex = nursery ? nurseryIndex : 0;
+    CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    int workers = cc.parallelWorkerCount();
+    int start = nursery ? nurseryIndex : 0;
+    int end = maxIndex;
+    int chunks = chunksFor(end - start);
 
     if (TRACE_DETAIL) VM.sysWriteln(semanticsStr," Reference table is ",Magic.objectAsAddress(references));
     if (retain) {
-      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
+      for (int chunk = cc.parallelWorkerOrdinal(); chunk < chunks; chunk += workers) {
+        int limit = chunkLimit(start, chunk, end);
+        for (int fromIndex = start + (chunk << LOG_CHUNK_SIZE); fromIndex < limit; fromIndex++) {
           ObjectReference reference = getReference(fromIndex);
           retainReferent(trace, reference);
         }
+      }
     } else {
-      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
-        ObjectReference reference = getReference(fromIndex);
-
-        /* Determine liveness (and forward if necessary) the reference */
-        ObjectReference newReference = processReference(trace,reference);
-        if (!newReference.isNull()) {
-          setReference(toIndex++,newReference);
-          if (TRACE_DETAIL) {
-            int index = toIndex - 1;
-            VM.sysWrite("SCANNED ",index);
-            VM.sysWrite(" ",references.get(index));
-            VM.sysWrite(" -> ");
-            VM.sysWriteln(getReferent(references.get(index).toObjectReference()));
+      for (int chunk = cc.parallelWorkerOrdinal(); chunk < chunks; chunk += workers) {
+        int chunkStart = start + (chunk << LOG_CHUNK_SIZE);
+        int limit = chunkLimit(start, chunk, end);
+        int enqueueIndex = chunkStart;
+        int toIndex = chunkStart;
+        for (int fromIndex = chunkStart; fromIndex < limit; fromIndex++) {
+          ObjectReference reference = getReference(fromIndex);
+
+          /* Determine liveness (and forward if necessary) the reference */
+          ObjectReference newReference = processReference(trace,reference);
+          if (newReference.isNull()) continue;
+          if (getReferent(newReference).isNull()) {
+            /* To be enqueued: move the first live reference out of the way */
+            if (toIndex != enqueueIndex) {
+              setReference(toIndex,getReference(enqueueIndex));
+            }
+            setReference(enqueueIndex++,newReference);
+            toIndex++;
+          } else {
+            setReference(toIndex++,newReference);
+            if (TRACE_DETAIL) {
+              int index = toIndex - 1;
+              VM.sysWrite("SCANNED ",index);
+              VM.sysWrite(" ",references.get(index));
+              VM.sysWrite(" -> ");
+              VM.sysWriteln(getReferent(references.get(index).toObjectReference()));
+            }
           }
-               }
-             }
-      if (Options.verbose.getValue() >= 3) {
-        VM.sysWrite(semanticsStr);
-        VM.sysWriteln(" references: ",maxIndex," -> ",toIndex);
+        }
+        chunkEnqueued[chunk] = enqueueIndex - chunkStart;
+        chunkSurvivors[chunk] = toIndex - enqueueIndex;
+      }
+      if (cc.rendezvous() == 0) {
+        enqueue(start, chunks);
+        int toIndex = compact(start, chunks);
+        if (Options.verbose.getValue() >= 3) {
+          VM.sysWrite(semanticsStr);
+          VM.sysWriteln(" references: ",end," -> ",toIndex);
+        }
+        nurseryIndex = maxIndex = published = toIndex;
       }
-      nurseryIndex = maxIndex = toIndex;
     }
 
     /* flush out any remset entries generated during the above activities */
@@ -359,6 +437,55 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.scan(",semanticsStr,")");
   }
 
+  /**
+   * @param start the table index of the first chunk
+   * @param chunk a chunk
+   * @param end the table index at which scanning stops
+   * @return the table index one past the end of the chunk
+   */
+  private static int chunkLimit(int start, int chunk, int end) {
+    int limit = start + ((chunk + 1) << LOG_CHUNK_SIZE);
+    return limit < end ? limit : end;
+  }
+
+  /**
+   * Enqueue the references that a scan left at the start of each chunk.
+   *
+   * @param start the table index of the first chunk
+   * @param chunks the number of chunks that were scanned
+   */
+  private void enqueue(int start, int chunks) {
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      int fromIndex = start + (chunk << LOG_CHUNK_SIZE);
+      int limit = fromIndex + chunkEnqueued[chunk];
+      for (int i = fromIndex; i < limit; i++) {
+        enqueueReference(getReference(i));
+      }
+    }
+  }
+
+  /**
+   * Close the gaps left between the references that survived a scan.
+   *
+   * @param start the table index of the first chunk
+   * @param chunks the number of chunks that were scanned
+   * @return the index of the first free slot
+   */
+  private int compact(int start, int chunks) {
+    int toIndex = start;
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      int fromIndex = start + (chunk << LOG_CHUNK_SIZE) + chunkEnqueued[chunk];
+      int survivors = chunkSurvivors[chunk];
+      if (fromIndex != toIndex) {
+        for (int i = 0; i < survivors; i++) {
+          references.set(toIndex + i, references.get(fromIndex + i));
+        }
+      }
+      toIndex += survivors;
+    }
+    return toIndex;
+  }
+
   /**
    * This method deals only with soft references. It retains the referent
    * if the reference is definitely reachable.
@@ -462,7 +589,9 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * be the address of a heap object, depending on the VM.
    * @param trace the thread local trace element.
    * @return an updated reference (e.g. with a new address) if the reference
-   *  is still live, {@code ObjectReference.nullReference()} otherwise
+   *  is still live, {@code ObjectReference.nullReference()} otherwise.  A
+   *  live reference whose referent has been cleared must be enqueued by
+   *  the caller; otherwise it stays on the list.
    */
   public ObjectReference processReference(TraceLocal trace, ObjectReference reference) {
     if (VM.VerifyAssertions) VM._assert(!reference.isNull());
@@ -549,8 +678,7 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       else if (TRACE_UNREACHABLE) VM.sysWriteln(" UNREACHABLE referent:  ",oldReferent);
 
       clearReferent(newReference);
-      enqueueReference(newReference);
-      return ObjectReference.nullReference();
+      return newReference;
     }
   }
 
@@ -601,6 +729,6 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
 
   @Override
   public int countWaitingReferences() {
-    return maxIndex;
+    return maxIndex & ~GROWING;
   }
 }
@@ -16,6 +16,7 @@ import static org.mmtk.utility.Constants.*;
 
 import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
+import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.utility.Log;
 import org.jikesrvm.VM;
 import org.jikesrvm.runtime.BootRecord;
@@ -77,7 +78,7 @@ public class ScanBootImage {
 
     /* process chunks in parallel till done */
     while (cursor.LT(mapEnd)) {
-      processChunk(cursor, imageStart, mapStart, mapEnd, trace);
+      processChunk(cursor, imageStart, mapStart, mapEnd, trace, true);
       cursor = cursor.plus(stride);
     }
 
@@ -91,21 +92,40 @@ public class ScanBootImage {
   }
 
   /**
-   * Process a chunk of encoded reference data, enqueuing each
-   * reference (optionally filtering them on whether they point
-   * outside the boot image).
+   * Report every reference slot in the boot image to a closure,
+   * whatever it currently points to.  Executed by a single thread.
+   *
+   * @param closure The closure to which each slot should be reported
+   */
+  @Uninterruptible
+  public static void scanBootImageSlots(TransitiveClosure closure) {
+    Address mapStart = BootRecord.the_boot_record.bootImageRMapStart;
+    Address mapEnd = BootRecord.the_boot_record.bootImageRMapEnd;
+    Address imageStart = BootRecord.the_boot_record.bootImageDataStart;
+
+    for (Address cursor = mapStart; cursor.LT(mapEnd); cursor = cursor.plus(CHUNK_BYTES)) {
+      processChunk(cursor, imageStart, mapStart, mapEnd, closure, false);
+    }
+  }
+
+  /**
+   * Process a chunk of encoded reference data, either enqueuing each
+   * reference as a root (optionally filtering them on whether they point
+   * outside the boot image), or reporting each slot as an edge.
    *
    * @param chunkStart The address of the first byte of encoded data
    * @param imageStart The address of the start of the boot image
    * @param mapStart The address of the start of the encoded reference map
    * @param mapEnd The address of the end of the encoded reference map
-   * @param trace The <code>TraceLocal</code> into which roots should
-   * be enqueued.
+   * @param closure The closure to which the slots should be reported.
+   * If <code>roots</code> is true, this must be the <code>TraceLocal</code>
+   * into which roots should be enqueued.
+   * @param roots {@code true} if the slots are roots of a trace
    */
   @Inline
   @Uninterruptible
   private static void processChunk(Address chunkStart, Address imageStart,
-      Address mapStart, Address mapEnd, TraceLocal trace) {
+      Address mapStart, Address mapEnd, TransitiveClosure closure, boolean roots) {
     int value;
     Offset offset = Offset.zero();
     Address cursor = chunkStart;
@@ -127,27 +147,41 @@ public class ScanBootImage {
       /* enqueue the specified slot or slots */
       if (VM.VerifyAssertions) VM._assert(isAddressAligned(offset));
       Address slot = imageStart.plus(offset);
-      if (DEBUG) refs++;
-      if (!FILTER || slot.loadAddress().GT(mapEnd)) {
-        if (DEBUG) roots++;
-        trace.processRootEdge(slot, false);
-      }
+      processSlot(slot, mapEnd, closure, roots);
       if (runlength != 0) {
         for (int i = 0; i < runlength; i++) {
           offset = offset.plus(BYTES_IN_ADDRESS);
           slot = imageStart.plus(offset);
           if (VM.VerifyAssertions) VM._assert(isAddressAligned(slot));
-          if (DEBUG) refs++;
-          if (!FILTER || slot.loadAddress().GT(mapEnd)) {
-            if (DEBUG) roots++;
-            if (ScanThread.VALIDATE_REFS) checkReference(slot);
-            trace.processRootEdge(slot, false);
-          }
+          processSlot(slot, mapEnd, closure, roots);
         }
       }
     }
   }
 
+  /**
+   * Process a single reference slot of the boot image.
+   *
+   * @param slot The address of the slot
+   * @param mapEnd The address of the end of the encoded reference map
+   * @param closure The closure to which the slot should be reported
+   * @param roots {@code true} if the slot should be enqueued as a root
+   */
+  @Inline
+  @Uninterruptible
+  private static void processSlot(Address slot, Address mapEnd, TransitiveClosure closure, boolean roots) {
+    if (!roots) {
+      closure.processEdge(ObjectReference.nullReference(), slot);
+      return;
+    }
+    if (DEBUG) refs++;
+    if (!FILTER || slot.loadAddress().GT(mapEnd)) {
+      if (DEBUG) ScanBootImage.roots++;
+      if (ScanThread.VALIDATE_REFS) checkReference(slot);
+      ((TraceLocal) closure).processRootEdge(slot, false);
+    }
+  }
+
   /**
    * Check that a reference encountered during scanning is valid.  If
    * the reference is invalid, dump stack and die.
@@ -209,6 +209,11 @@ public final class Scanning extends org.mmtk.vm.Scanning {
     ScanBootImage.scanBootImage(trace);
   }
 
+  @Override
+  public void computeBootImageSlots(TransitiveClosure closure) {
+    ScanBootImage.scanBootImageSlots(closure);
+  }
+
   @Override
   public boolean supportsReturnBarrier() {
     return VM.BuildForIA32 && VM.BuildFor32Addr;
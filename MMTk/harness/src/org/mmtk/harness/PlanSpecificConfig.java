@@ -18,6 +18,8 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.mmtk.plan.generational.Gen;
+
 /**
  * Per-plan configuration for the various MMTk plans.  Here we specify:
  * <ul>
@@ -59,22 +61,32 @@ public class PlanSpecificConfig {
     /* Heap factors determined by min heap size for FixedLive benchmark */
     final double BASE_HEAP = 9472d; // Heap size in k for MS
 
+    /* Generational plans reserve a space for the card table when they use one */
+    final String[] GEN_SPACES = Gen.USE_CARD_BARRIER ? new String[] { "nursery", "cards" } : new String[] { "nursery" };
+
+    register(
+        new PlanSpecific("org.mmtk.plan.concurrent.immix.ConcImmix")
+        .addExpectedSpaces("immix"),
+        "ConcImmix");
     register(
         new PlanSpecific("org.mmtk.plan.copyms.CopyMS")
         .addExpectedSpaces("nursery", "ms"),
         "CopyMS");
     register(
         new PlanSpecific("org.mmtk.plan.generational.copying.GenCopy")
-        .addExpectedSpaces("nursery", "ss0", "ss1")
+        .addExpectedSpaces(GEN_SPACES)
+        .addExpectedSpaces("ss0", "ss1")
         .heapFactor(18816 / BASE_HEAP),
         "GenCopy");
     register(
         new PlanSpecific("org.mmtk.plan.generational.immix.GenImmix")
-        .addExpectedSpaces("nursery", "immix"),
+        .addExpectedSpaces(GEN_SPACES)
+        .addExpectedSpaces("immix"),
         "GenImmix");
     register(
         new PlanSpecific("org.mmtk.plan.generational.marksweep.GenMS")
-        .addExpectedSpaces("nursery", "ms"),
+        .addExpectedSpaces(GEN_SPACES)
+        .addExpectedSpaces("ms"),
         "GenMS");
     register(
         new PlanSpecific("org.mmtk.plan.immix.Immix")
@@ -112,6 +124,11 @@ public class PlanSpecificConfig {
         .addExpectedSpaces("nursery", "rclos", "rc")
         .heapFactor(9984 / BASE_HEAP),
         "GenRC");
+    register(
+        new PlanSpecific("org.mmtk.plan.regional.Regional")
+        .addExpectedSpaces("region")
+        .heapFactor(18816 / BASE_HEAP),
+        "Regional");
     register(
         new PlanSpecific("org.mmtk.plan.semispace.SS")
         .heapFactor(18816 / BASE_HEAP)
@@ -20,7 +20,9 @@ import org.mmtk.harness.lang.runtime.SoftReferenceValue;
 import org.mmtk.harness.lang.runtime.WeakReferenceValue;
 import org.mmtk.harness.scheduler.Scheduler;
 import org.mmtk.harness.vm.Collection;
+import org.mmtk.harness.vm.HeapCensus;
 import org.mmtk.plan.Plan;
+import org.mmtk.vm.VM;
 
 /**
  * "built in" intrinsic functions
@@ -92,6 +94,18 @@ public class Intrinsics {
     Mutator.dumpHeap();
   }
 
+  /**
+   * Take a census of the live heap, forcing a full heap collection
+   * @param env Thread-local environment (language-dependent mutator context)
+   * @return the number of live objects found by the census, or -1 if
+   * the plan can not take a census
+   */
+  public static int heapCensus(Env env) {
+    if (!Plan.requestHeapCensus()) return -1;
+    Plan.handleUserCollectionRequest();
+    return (int)((HeapCensus)VM.heapCensus).getObjects();
+  }
+
   /**
    * Unit test method for the Intrinsic method
    *
@@ -54,6 +54,7 @@ public class GlobalDefs {
       new IntrinsicMethod("setSeed",INTRINSICS,"setRandomSeed",
           new Class<?>[] { int.class }),
       new IntrinsicMethod("heapDump",INTRINSICS,"heapDump"),
+      new IntrinsicMethod("heapCensus",INTRINSICS,"heapCensus"),
       new IntrinsicMethod("weakRef",INTRINSICS,"weakRef",
           new Class<?>[] { ObjectValue.class }),
       new IntrinsicMethod("getWeakReferent",INTRINSICS,"getReferent",
@@ -239,13 +239,22 @@ public final class JavaThreadModel extends ThreadModel {
   }
 
   /**
-   * Trigger a collection for the given reason
+   * Trigger a collection for the given reason.
+   * <p>
+   * If the mutators were resumed so recently that they have yet to
+   * leave {@code waitForGC}, no mutator will arrive to block the world,
+   * so we do it here.
    */
   @Override
   public void stopAllMutators() {
     Trace.trace(Item.SCHEDULER, "stopAllMutators");
     synchronized (trigger) {
       setState(BLOCKING);
+      synchronized (count) {
+        if (allWaitingForGC()) {
+          setState(BLOCKED);
+        }
+      }
       trigger.notifyAll();
     }
     waitForGCStart();
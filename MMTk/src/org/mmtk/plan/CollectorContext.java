@@ -163,6 +163,18 @@ public abstract class CollectorContext {
     return 1;
   }
 
+  /**
+   * The number of parallel workers in the pool this collector context
+   * belongs to.  Unlike {@link #parallelWorkerCount()}, this does not
+   * change from one collection to the next, so it can be used to place
+   * workers on NUMA nodes.
+   *
+   * @return The number of parallel workers in the pool.
+   */
+  public int parallelWorkerPoolSize() {
+    return parallelWorkerCount();
+  }
+
   /**
    * The ordinal of the current worker. This is in the range of 0 to the result
    * of parallelWorkerCount() exclusive.
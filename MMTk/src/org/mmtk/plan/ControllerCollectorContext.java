@@ -119,6 +119,9 @@ public class ControllerCollectorContext extends CollectorContext {
       if (Options.verbose.getValue() >= 5) Log.writeln("[STWController: Resuming mutators...]");
       VM.collection.resumeAllMutators();
 
+      // Report any census of the live heap outside the pause
+      Plan.reportHeapCensus();
+
       // Start threads that will perform concurrent collection work alongside mutators.
       if (concurrentCollection) {
         if (Options.verbose.getValue() >= 5) Log.writeln("[STWController: Triggering concurrent collectors...]");
@@ -178,6 +178,25 @@ public abstract class MutatorContext {
 
     return allocator;
   }
+  /**
+   * Run-time check of the allocator to use for a given allocation
+   * site.  Plans choose the allocator for a site when it is compiled
+   * (see {@link Plan#siteAllocator(int, int)}); this lets them re-check
+   * allocations that compiled code sends to an allocator they chose.
+   * Allocations at other sites only pay for the size-based check of
+   * {@link #checkAllocator(int, int, int)}.
+   *
+   * @param bytes The number of bytes to be allocated
+   * @param align The requested alignment.
+   * @param allocator The allocator statically assigned to this allocation
+   * @param site The allocation site
+   * @return The allocator dynamically assigned to this allocation
+   */
+  @Inline
+  public int checkAllocator(int bytes, int align, int allocator, int site) {
+    return checkAllocator(bytes, align, allocator);
+  }
+
 
   /**
    * Allocate memory for an object.
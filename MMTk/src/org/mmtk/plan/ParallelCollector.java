@@ -12,6 +12,7 @@
  */
 package org.mmtk.plan;
 
+import org.mmtk.utility.heap.Numa;
 import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.*;
@@ -45,6 +46,7 @@ public abstract class ParallelCollector extends CollectorContext {
   @Override
   @Unpreemptible
   public void run() {
+    Numa.bindWorker(workerOrdinal, group.size());
     while (true) {
       park();
       collect();
@@ -88,6 +90,11 @@ public abstract class ParallelCollector extends CollectorContext {
     return group.activeWorkerCount();
   }
 
+  @Override
+  public int parallelWorkerPoolSize() {
+    return group.size();
+  }
+
   @Override
   public int parallelWorkerOrdinal() {
     return workerOrdinal;
@@ -40,6 +40,12 @@ public class ParallelCollectorGroup {
   /** The number of cycles triggered */
   private volatile int triggerCount;
 
+  /** The number of contexts taking part in the current cycle */
+  private volatile int activeContexts;
+
+  /** The number of contexts to take part in the rest of the cycle, or zero if unchanged */
+  private int nextActiveContexts;
+
   /** The number of threads that are currently parked */
   private volatile int contextsParked;
 
@@ -64,11 +70,40 @@ public class ParallelCollectorGroup {
     this.name = name;
   }
 
+  /**
+   * @return The number of collector contexts in the group, whether or
+   * not they take part in the current cycle.
+   */
+  public int size() {
+    return contexts.length;
+  }
+
   /**
    * @return The number of active collector contexts.
    */
   public int activeWorkerCount() {
-    return contexts.length;
+    return activeContexts;
+  }
+
+  /**
+   * Reduce the number of collector contexts taking part in the current
+   * cycle.  The change takes effect at the next rendezvous, after which
+   * the contexts with the highest ordinals leave the cycle and park.
+   * Called by a single thread between two rendezvous.
+   *
+   * @param count The number of contexts to keep, at least one
+   */
+  public void setActiveWorkers(int count) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(count > 0 && count <= activeContexts);
+    nextActiveContexts = count;
+  }
+
+  /**
+   * @param context A context in this group
+   * @return {@code true} if the context takes part in the current cycle
+   */
+  public boolean isActive(ParallelCollector context) {
+    return context.workerOrdinal < activeContexts;
   }
 
   /**
@@ -82,6 +117,7 @@ public class ParallelCollectorGroup {
     this.lock = VM.newHeavyCondLock("CollectorContextGroup");
     this.triggerCount = 1;
     this.contexts = new ParallelCollector[size];
+    this.activeContexts = size;
     for (int i = 0; i < size; i++) {
       try {
         contexts[i] = klass.newInstance();
@@ -101,6 +137,7 @@ public class ParallelCollectorGroup {
     lock.lock();
     triggerCount++;
     contextsParked = 0;
+    activeContexts = contexts.length;
     lock.broadcast();
     lock.unlock();
   }
@@ -180,12 +217,17 @@ public class ParallelCollectorGroup {
     lock.lock();
     int i = currentRendezvousCounter;
     int me = rendezvousCounter[i]++;
-    if (me == contexts.length - 1) {
+    if (me == activeContexts - 1) {
       currentRendezvousCounter ^= 1;
       rendezvousCounter[currentRendezvousCounter] = 0;
+      if (nextActiveContexts != 0) {
+        activeContexts = nextActiveContexts;
+        nextActiveContexts = 0;
+      }
       lock.broadcast();
     } else {
-      while (rendezvousCounter[i] < contexts.length) {
+      // the count only ever shrinks during a cycle, so this also sees a change
+      while (rendezvousCounter[i] < activeContexts) {
         lock.await();
       }
     }
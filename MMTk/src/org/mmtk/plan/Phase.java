@@ -421,7 +421,8 @@ public abstract class Phase {
     ParallelCollector collector = (ParallelCollector)VM.activePlan.collector();
 
     int order = collector.rendezvous();
-    final boolean primary = order == 0;
+    /* The first collector is the primary, since it takes part in every phase */
+    final boolean primary = collector.parallelWorkerOrdinal() == 0;
 
     boolean log = Options.verbose.getValue() >= 6;
     boolean logDetails = Options.verbose.getValue() >= 7;
@@ -463,7 +464,8 @@ public abstract class Phase {
         }
         if (p.timer != null) p.timer.start();
         if (startComplexTimer > 0) {
-          Phase.getPhase(startComplexTimer).timer.start();
+          /* On resumption the complex phase is already on the stack and its timer was resumed above */
+          if (!resume) Phase.getPhase(startComplexTimer).timer.start();
           startComplexTimer = 0;
         }
       }
@@ -542,6 +544,11 @@ public abstract class Phase {
       /* Sync point after execution of a phase */
       collector.rendezvous();
 
+      /* Collectors not needed for the rest of the cycle leave it here */
+      if (!collector.group.isActive(collector)) {
+        return;
+      }
+
       /* Mutator phase reset */
       if (primary && schedule == SCHEDULE_MUTATOR) {
         VM.activePlan.resetMutatorIterator();
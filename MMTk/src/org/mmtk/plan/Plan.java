@@ -24,6 +24,7 @@ import org.mmtk.utility.alloc.LinearScan;
 import org.mmtk.utility.Conversions;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.heap.HeapGrowthManager;
+import org.mmtk.utility.heap.Numa;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.utility.Log;
@@ -167,13 +168,18 @@ public abstract class Plan {
     Options.nurseryZeroing = new NurseryZeroing();
     Options.pretenureThresholdFraction = new PretenureThresholdFraction();
     Options.variableSizeHeap = new VariableSizeHeap();
+    Options.gcOverheadTarget = new GCOverheadTarget();
+    Options.pauseTarget = new PauseTarget();
     Options.eagerMmapSpaces = new EagerMmapSpaces();
+    Options.numaAware = new NumaAware();
+    Options.hugePages = new HugePages();
     Options.sanityCheck = new SanityCheck();
     Options.debugAddress = new DebugAddress();
     Options.perfEvents = new PerfEvents();
     Options.useReturnBarrier = new UseReturnBarrier();
     Options.useShortStackScans = new UseShortStackScans();
     Options.threads = new Threads();
+    Options.elasticThreads = new ElasticThreads();
     Options.cycleTriggerThreshold = new CycleTriggerThreshold();
     HeapLayout.vmMap.finalizeStaticSpaceMap();
     registerSpecializedMethods();
@@ -227,6 +233,7 @@ public abstract class Plan {
     if (Options.verbose.getValue() > 3) VM.config.printConfig();
     if (Options.verbose.getValue() > 0) Stats.startAll();
     if (Options.eagerMmapSpaces.getValue()) Space.eagerlyMmapMMTkSpaces();
+    Numa.boot();
     pretenureThreshold = (int) ((Options.nurserySize.getMaxNursery() << LOG_BYTES_IN_PAGE) * Options.pretenureThresholdFraction.getValue());
   }
 
@@ -423,6 +430,20 @@ public abstract class Plan {
       return DEFAULT_SITE;
   }
 
+  /**
+   * Choose the allocator for allocations at a given site.  Plans that
+   * profile their allocation sites may redirect a site to a different
+   * allocator.  This is called when an allocation site is compiled, not
+   * on each allocation.
+   *
+   * @param allocator The allocator statically chosen for the allocation
+   * @param site The allocation site
+   * @return The allocator to use for allocations at the site
+   */
+  public int siteAllocator(int allocator, int site) {
+    return allocator;
+  }
+
   /****************************************************************************
    * Collection.
    */
@@ -748,6 +769,174 @@ public abstract class Plan {
     return lastInternalTriggeredCollection;
   }
 
+  /****************************************************************************
+   * Heap census
+   */
+
+  /** Has a census of the live heap been requested? */
+  protected static volatile boolean heapCensusRequested;
+
+  /** Is the current collection taking a census of the live heap? */
+  private static boolean heapCensusInProgress;
+
+  /** Has a census been taken that is yet to be reported? */
+  private static boolean heapCensusTaken;
+
+  /**
+   * Request a census of the live heap.  The census is taken by the
+   * next collection that traces the whole heap, and reported to
+   * {@link VM#heapCensus}.  This does not itself trigger a collection.
+   *
+   * @return {@code false} if the plan can never take a census, in which
+   * case nothing is requested
+   */
+  public static boolean requestHeapCensus() {
+    if (!VM.activePlan.global().supportsHeapCensus()) return false;
+    heapCensusRequested = true;
+    return true;
+  }
+
+  /**
+   * @return {@code true} if some collections of this plan can take a
+   * census of the live heap
+   */
+  public boolean supportsHeapCensus() {
+    return true;
+  }
+
+  /**
+   * @return {@code true} if the current collection is taking a census
+   * of the live heap
+   */
+  @Inline
+  public static boolean isHeapCensusInProgress() {
+    return heapCensusInProgress;
+  }
+
+  /**
+   * @return {@code true} if the current collection scans every live
+   * object exactly once, at its final address, and so can take a census
+   * of the live heap
+   */
+  protected boolean tracesWholeHeap() {
+    return supportsHeapCensus() && !isCurrentGCNursery();
+  }
+
+  /**
+   * Start a census of the live heap if one has been requested and the
+   * current collection can take it.  Called during the global prepare
+   * phase.
+   */
+  protected final void prepareHeapCensus() {
+    if (heapCensusRequested && tracesWholeHeap()) {
+      heapCensusRequested = false;
+      heapCensusInProgress = true;
+      VM.heapCensus.prepare();
+    }
+  }
+
+  /**
+   * Finish the census of the live heap, if one is being taken.  Called
+   * during the global release phase.
+   */
+  protected final void releaseHeapCensus() {
+    if (heapCensusInProgress) {
+      VM.heapCensus.release();
+      heapCensusInProgress = false;
+      heapCensusTaken = true;
+    }
+  }
+
+  /**
+   * Report the census taken by the last collection, if any.  Called
+   * once the mutators have resumed, so that the report does not
+   * lengthen the pause.
+   */
+  public static void reportHeapCensus() {
+    if (heapCensusTaken) {
+      heapCensusTaken = false;
+      VM.heapCensus.report();
+    }
+  }
+
+  /****************************************************************************
+   * Collector threads
+   */
+
+  /** Pages expected to survive a nursery collection for each collector thread */
+  private static final int SURVIVOR_PAGES_PER_COLLECTOR = 256;
+
+  /** The weight of the previous estimate of the nursery survival rate */
+  private static final double SURVIVAL_DECAY = 0.5;
+
+  /** Pages in use at the end of the last collection */
+  private int pagesUsedAfterCollection;
+
+  /** Pages allocated between the last collection and the current one */
+  private int pagesAllocated;
+
+  /** Estimated fraction of the pages allocated that survive a nursery collection */
+  private double nurserySurvival = 1.0;
+
+  /**
+   * Choose how many collector threads take part in the current
+   * collection, once its kind is known.  The rest are parked until
+   * the next collection.  Called by a single collector thread during
+   * the global initiate phase.
+   */
+  protected final void chooseCollectors() {
+    pagesAllocated = getPagesUsed() - pagesUsedAfterCollection;
+    if (pagesAllocated < 0) pagesAllocated = 0;
+    int available = parallelWorkers.activeWorkerCount();
+    int collectors = collectorsForCollection(available);
+    if (collectors < available) {
+      if (Options.verbose.getValue() >= 5) {
+        Log.write("[Using ");
+        Log.write(collectors);
+        Log.write(" of ");
+        Log.write(available);
+        Log.writeln(" collector threads]");
+      }
+      parallelWorkers.setActiveWorkers(collectors);
+    }
+  }
+
+  /**
+   * Choose the number of collector threads for the current collection.
+   * Threads only pay for their synchronization when there is enough
+   * work to share, so a nursery collection uses one thread for every
+   * <code>SURVIVOR_PAGES_PER_COLLECTOR</code> pages expected to survive
+   * it.  Other collections use every thread, since their collectors
+   * must all release their local state.
+   *
+   * @param available The number of collector threads
+   * @return The number of collector threads to use, at least one
+   */
+  protected int collectorsForCollection(int available) {
+    if (!Options.elasticThreads.getValue() || !isCurrentGCNursery()) {
+      return available;
+    }
+    int survivors = (int) (pagesAllocated * nurserySurvival);
+    int collectors = 1 + survivors / SURVIVOR_PAGES_PER_COLLECTOR;
+    return collectors < available ? collectors : available;
+  }
+
+  /**
+   * Update the estimate of the nursery survival rate from the pages in
+   * use after the current collection.  Called during the global complete
+   * phase.
+   */
+  protected final void updateSurvivalEstimate() {
+    int pagesUsed = getPagesUsed();
+    if (isCurrentGCNursery() && pagesAllocated > 0) {
+      int survived = pagesUsed - pagesUsedAfterCollection;
+      double survival = survived <= 0 ? 0 : (double) survived / pagesAllocated;
+      if (survival > 1) survival = 1;
+      nurserySurvival = SURVIVAL_DECAY * nurserySurvival + (1 - SURVIVAL_DECAY) * survival;
+    }
+    pagesUsedAfterCollection = pagesUsed;
+  }
+
   /****************************************************************************
    * Harness
    */
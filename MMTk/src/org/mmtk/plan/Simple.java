@@ -202,6 +202,7 @@ public abstract class Simple extends Plan {
 
     if (phaseId == INITIATE) {
       setGCStatus(GC_PREPARE);
+      chooseCollectors();
       return;
     }
 
@@ -219,6 +220,7 @@ public abstract class Simple extends Plan {
       }
       immortalSpace.prepare();
       VM.memory.globalPrepareVMSpace();
+      prepareHeapCensus();
       return;
     }
 
@@ -243,11 +245,13 @@ public abstract class Simple extends Plan {
       }
       immortalSpace.release();
       VM.memory.globalReleaseVMSpace();
+      releaseHeapCensus();
       return;
     }
 
     if (phaseId == COMPLETE) {
       setGCStatus(NOT_IN_GC);
+      updateSurvivalEstimate();
       return;
     }
 
@@ -13,6 +13,7 @@
 package org.mmtk.plan;
 
 import org.mmtk.utility.deque.SharedDeque;
+import org.mmtk.utility.deque.StealingSharedDeque;
 import org.mmtk.policy.RawPageSpace;
 
 import org.vmmagic.pragma.*;
@@ -34,7 +35,7 @@ public class Trace {
    *  instance
    */
   public Trace(RawPageSpace metaDataSpace) {
-    valuePool = new SharedDeque("valuePool",metaDataSpace, 1);
+    valuePool = new StealingSharedDeque("valuePool", metaDataSpace, 1);
     rootLocationPool = new SharedDeque("rootLocations", metaDataSpace, 1);
   }
 
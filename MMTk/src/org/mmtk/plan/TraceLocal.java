@@ -134,6 +134,7 @@ public abstract class TraceLocal extends TransitiveClosure {
       if (untraced) slot.store(newObject);
       else     VM.activePlan.global().storeObjectReference(slot, newObject);
     }
+    if (Plan.isHeapCensusInProgress() && !newObject.isNull()) VM.heapCensus.liveRoot(newObject);
   }
 
   /**
@@ -162,6 +163,7 @@ public abstract class TraceLocal extends TransitiveClosure {
     if (overwriteReferenceDuringTrace()) {
       slot.store(newTarget.toAddress().plus(offset));
     }
+    if (root && Plan.isHeapCensusInProgress()) VM.heapCensus.liveRoot(newTarget);
   }
 
   /**
@@ -493,6 +495,7 @@ public abstract class TraceLocal extends TransitiveClosure {
       while (!values.isEmpty()) {
         ObjectReference v = values.pop();
         scanObject(v);
+        if (Plan.isHeapCensusInProgress()) VM.heapCensus.liveObject(v);
       }
       processRememberedSets();
     } while (!values.isEmpty());
@@ -515,6 +518,7 @@ public abstract class TraceLocal extends TransitiveClosure {
       while (!values.isEmpty() && units < workLimit) {
         ObjectReference v = values.pop();
         scanObject(v);
+        if (Plan.isHeapCensusInProgress()) VM.heapCensus.liveObject(v);
         units++;
       }
     } while (!values.isEmpty() && units < workLimit);
@@ -155,6 +155,16 @@ public abstract class Concurrent extends Simple {
       ((getPagesReserved() * 100) / getTotalPages()) > Options.concurrentTrigger.getValue();
   }
 
+  /**
+   * {@inheritDoc}
+   * Objects allocated while marking proceeds concurrently are never
+   * scanned.
+   */
+  @Override
+  public boolean supportsHeapCensus() {
+    return false;
+  }
+
   @Override
   public boolean lastCollectionFullHeap() {
     // TODO: Why this?
@@ -0,0 +1,123 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.concurrent.immix;
+
+import org.mmtk.plan.*;
+import org.mmtk.plan.concurrent.Concurrent;
+import org.mmtk.policy.Space;
+import org.mmtk.policy.immix.ImmixSpace;
+import org.mmtk.utility.heap.VMRequest;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * This class implements the global state of a concurrent immix collector.<p>
+ *
+ * Marking proceeds concurrently with the mutators, which maintain a
+ * snapshot-at-the-beginning invariant through the deletion barrier in
+ * {@link org.mmtk.plan.concurrent.ConcurrentMutator}.  Objects allocated
+ * while marking is in progress are allocated black.  Since the mutators
+ * may hold references that the collector cannot see, objects are never
+ * moved: this plan does not perform opportunistic defragmentation.
+ */
+@Uninterruptible
+public class ConcImmix extends Concurrent {
+
+  /****************************************************************************
+   * Class variables
+   */
+
+  /**
+   *
+   */
+  public static final ImmixSpace immixSpace = new ImmixSpace("immix", VMRequest.discontiguous());
+  public static final int IMMIX = immixSpace.getDescriptor();
+
+  static {
+    smallCodeSpace.makeAllocAsMarked();
+    nonMovingSpace.makeAllocAsMarked();
+  }
+
+  /****************************************************************************
+   * Instance variables
+   */
+
+  /**
+   *
+   */
+  public final Trace immixTrace = new Trace(metaDataSpace);
+
+  /*****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Inline
+  public void collectionPhase(short phaseId) {
+    if (phaseId == SET_COLLECTION_KIND) {
+      super.collectionPhase(phaseId);
+      /* objects may not move under a concurrent trace, so never defragment */
+      immixSpace.decideWhetherToDefrag(false, false, 1, false);
+      return;
+    }
+
+    if (phaseId == PREPARE) {
+      super.collectionPhase(phaseId);
+      immixTrace.prepareNonBlocking();
+      immixSpace.prepare(true);
+      return;
+    }
+
+    if (phaseId == RELEASE) {
+      immixTrace.release();
+      immixSpace.release(true);
+      super.collectionPhase(phaseId);
+      return;
+    }
+
+    super.collectionPhase(phaseId);
+  }
+
+  /*****************************************************************************
+   *
+   * Accounting
+   */
+
+  /**
+   * {@inheritDoc}
+   * The superclass accounts for its spaces, we just
+   * augment this with the immix space's contribution.
+   */
+  @Override
+  public int getPagesUsed() {
+    return (immixSpace.reservedPages() + super.getPagesUsed());
+  }
+
+  @Override
+  public boolean willNeverMove(ObjectReference object) {
+    if (Space.isInSpace(IMMIX, object))
+      return true;
+    return super.willNeverMove(object);
+  }
+
+  @Override
+  @Interruptible
+  public void preCollectorSpawn() {
+    immixSpace.initializeDefrag();
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.generational;
+
+import org.mmtk.plan.Plan;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.deque.AddressPairDeque;
+import org.mmtk.utility.deque.SharedDeque;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class keeps the nursery survival profile of allocation sites
+ * for the generational collectors.<p>
+ *
+ * Each mutator samples one in every <code>2^LOG_SAMPLE_PERIOD</code>
+ * nursery allocations, recording the new object and its allocation
+ * site.  At the end of each collection the samples are checked against
+ * the nursery: a sample survived if its object was copied out.  Once a
+ * site has enough samples and nearly all of them survive, the site is
+ * pretenured, and subsequent allocations at it go directly to the
+ * mature space.<p>
+ *
+ * One in every <code>PROBE_PERIOD</code> allocations at a pretenured
+ * site is still made in the nursery and always sampled, so that the
+ * decision is revoked if the site stops producing long-lived objects.<p>
+ *
+ * Sites are kept in a fixed size open addressed hash table, tagged
+ * with the site they belong to, so each entry describes exactly one
+ * site.  A site that finds no free entry within <code>MAX_PROBES</code>
+ * of its home is not profiled, and so is never pretenured.
+ */
+@Uninterruptible
+public final class AllocationSiteProfile {
+
+  /****************************************************************************
+   *
+   * Constants
+   */
+
+  /** Every 2^n-th nursery allocation of each mutator is sampled */
+  public static final int LOG_SAMPLE_PERIOD = 8;
+  public static final int SAMPLE_PERIOD = 1 << LOG_SAMPLE_PERIOD;
+
+  /** One in this many allocations at pretenured sites probes the nursery */
+  public static final int PROBE_PERIOD = 32;
+
+  /** Number of entries in the per-site tables */
+  private static final int LOG_SITES = 12;
+  private static final int SITES = 1 << LOG_SITES;
+  private static final int SITE_MASK = SITES - 1;
+
+  /** Entries searched for a site before giving up on it */
+  private static final int MAX_PROBES = 8;
+
+  /** Multiplier used to spread consecutive site ids over the table */
+  private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+  /** Samples needed before a decision is made for a site */
+  private static final int MIN_SAMPLES = 64;
+
+  /** A site is pretenured if at least this percentage of its samples survive */
+  private static final int PRETENURE_SURVIVAL_PERCENT = 90;
+
+  /** A pretenured site is returned to the nursery if fewer than this percentage survive */
+  private static final int REVOKE_SURVIVAL_PERCENT = 50;
+
+  /****************************************************************************
+   *
+   * Instance fields
+   */
+
+  /** The site owning each entry, biased by one so that zero marks a free entry */
+  private final int[] tags = new int[SITES];
+
+  /** Samples taken at each site since the last decision */
+  private final int[] samples = new int[SITES];
+
+  /** Sampled objects at each site that survived a nursery collection */
+  private final int[] survivors = new int[SITES];
+
+  /** Non-zero for sites whose objects are allocated in the mature space */
+  private final byte[] pretenured = new byte[SITES];
+
+  /** Samples flushed by the mutators */
+  private final AddressPairDeque sampled;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   *
+   * @param samplePool The pool into which the mutators flush their samples
+   */
+  public AllocationSiteProfile(SharedDeque samplePool) {
+    sampled = new AddressPairDeque(samplePool);
+  }
+
+  /****************************************************************************
+   *
+   * Sampling
+   */
+
+  /**
+   * Record a sampled nursery allocation.  Called by mutators.
+   *
+   * @param samples The mutator's sample buffer
+   * @param cell The start of the newly allocated cell
+   * @param site The allocation site
+   */
+  @Inline
+  public static void sample(AddressPairDeque samples, Address cell, int site) {
+    if (site != Plan.DEFAULT_SITE && !cell.isZero()) {
+      // the deque can not hold zero, so bias the site by one
+      samples.insert(cell, Address.fromIntZeroExtend(site + 1));
+    }
+  }
+
+  /**
+   * Check each sample flushed since the last collection against the
+   * nursery, and update the pretenuring decisions.  This must be called
+   * by a single thread after the nursery has been traced, but before
+   * it is released.
+   *
+   * @param samplePool The pool into which the mutators flush their samples
+   */
+  public void processSamples(SharedDeque samplePool) {
+    samplePool.prepareNonBlocking();
+    while (true) {
+      Address cell = sampled.pop1();
+      if (cell.isZero()) break;
+      int site = sampled.pop2().toInt() - 1;
+      ObjectReference object = VM.objectModel.getObjectFromStartAddress(cell);
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Gen.inNursery(object));
+      update(site, Gen.nurserySpace.isLive(object));
+    }
+    samplePool.reset();
+  }
+
+  /**
+   * Add a sample to a site, and decide whether to pretenure the site
+   * once it has enough samples.
+   *
+   * @param site The allocation site
+   * @param survived Did the sampled object survive?
+   */
+  private void update(int site, boolean survived) {
+    int entry = find(site, true);
+    if (entry < 0) return;
+    samples[entry]++;
+    if (survived) survivors[entry]++;
+    if (samples[entry] >= MIN_SAMPLES) {
+      if (survivors[entry] * 100 >= samples[entry] * PRETENURE_SURVIVAL_PERCENT) {
+        if (pretenured[entry] == 0 && Options.verbose.getValue() >= 2) {
+          Log.write("[Pretenuring allocation site ");
+          Log.write(site);
+          Log.writeln("]");
+        }
+        pretenured[entry] = 1;
+      } else if (survivors[entry] * 100 < samples[entry] * REVOKE_SURVIVAL_PERCENT) {
+        if (pretenured[entry] != 0 && Options.verbose.getValue() >= 2) {
+          Log.write("[Revoking pretenuring of allocation site ");
+          Log.write(site);
+          Log.writeln("]");
+        }
+        pretenured[entry] = 0;
+      }
+      // age the profile so that it follows changes in behaviour
+      samples[entry] >>= 1;
+      survivors[entry] >>= 1;
+    }
+  }
+
+  /****************************************************************************
+   *
+   * Pretenuring decisions
+   */
+
+  /**
+   * @param site An allocation site
+   * @return {@code true} if objects allocated at the site should be
+   * allocated directly in the mature space
+   */
+  @Inline
+  public boolean isPretenured(int site) {
+    if (site == Plan.DEFAULT_SITE) return false;
+    int entry = find(site, false);
+    return entry >= 0 && pretenured[entry] != 0;
+  }
+
+  /****************************************************************************
+   *
+   * Site table
+   */
+
+  /**
+   * Find the entry for a site.  Entries are never freed, so the search
+   * stops at the first free entry.  Only the collector adds entries,
+   * while the mutators are stopped.
+   *
+   * @param site The allocation site
+   * @param add Should a free entry be claimed if the site has none?
+   * @return The index of the site's entry, or -1 if it has none
+   */
+  private int find(int site, boolean add) {
+    int tag = site + 1;
+    int entry = (site * HASH_MULTIPLIER) >>> (32 - LOG_SITES);
+    for (int i = 0; i < MAX_PROBES; i++) {
+      if (tags[entry] == tag) return entry;
+      if (tags[entry] == 0) {
+        if (!add) return -1;
+        tags[entry] = tag;
+        return entry;
+      }
+      entry = (entry + 1) & SITE_MASK;
+    }
+    return -1;
+  }
+}
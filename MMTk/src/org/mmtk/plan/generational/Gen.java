@@ -16,13 +16,16 @@ import static org.mmtk.utility.Constants.LOG_BYTES_IN_PAGE;
 
 import org.mmtk.plan.*;
 import org.mmtk.policy.CopySpace;
+import org.mmtk.policy.RawPageSpace;
 import org.mmtk.policy.Space;
 
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.deque.*;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.options.Options;
+import org.mmtk.utility.options.SitePretenuring;
 import org.mmtk.utility.sanitychecker.SanityChecker;
 import org.mmtk.utility.statistics.*;
 
@@ -65,6 +68,8 @@ public abstract class Gen extends StopTheWorld {
   public static final boolean USE_OBJECT_BARRIER_FOR_AASTORE = false; // choose between slot and object barriers
   public static final boolean USE_OBJECT_BARRIER_FOR_PUTFIELD = false; // choose between slot and object barriers
   public static final boolean USE_OBJECT_BARRIER = USE_OBJECT_BARRIER_FOR_AASTORE || USE_OBJECT_BARRIER_FOR_PUTFIELD;
+  /** Switch from remembered sets to card marking for stores into heap objects */
+  public static final boolean USE_CARD_BARRIER = false;
 
   /** Fraction of available virtual memory to give to the nursery (if contiguous) */
   protected static final float NURSERY_VM_FRACTION = 0.15f;
@@ -105,6 +110,9 @@ public abstract class Gen extends StopTheWorld {
   public static final int NURSERY = nurserySpace.getDescriptor();
   private static final Address NURSERY_START = nurserySpace.getStart();
 
+  /* Virtual memory for the card table, when the card marking barrier is in use */
+  private static final RawPageSpace cardSpace = USE_CARD_BARRIER ? new RawPageSpace("cards", VMRequest.fixedExtent(CardTable.EXTENT, true)) : null;
+
   /*****************************************************************************
    *
    * Instance fields
@@ -132,6 +140,12 @@ public abstract class Gen extends StopTheWorld {
   public final SharedDeque remsetPool = new SharedDeque("remSets",metaDataSpace, 1);
   public final SharedDeque arrayRemsetPool = new SharedDeque("arrayRemSets",metaDataSpace, 2);
 
+  /** Allocation samples flushed by the mutators */
+  public final SharedDeque siteSamplePool = new SharedDeque("siteSamples", metaDataSpace, 2);
+
+  /** The nursery survival profile of the allocation sites */
+  public final AllocationSiteProfile siteProfile = new AllocationSiteProfile(siteSamplePool);
+
   /*
    * Class initializer
    */
@@ -150,6 +164,7 @@ public abstract class Gen extends StopTheWorld {
       nurseryMark = null;
       nurseryCons = null;
     }
+    Options.sitePretenuring = new SitePretenuring();
   }
 
   /*****************************************************************************
@@ -204,6 +219,7 @@ public abstract class Gen extends StopTheWorld {
     }
 
     if (phaseId == RELEASE) {
+      siteProfile.processSamples(siteSamplePool);
       nurserySpace.release();
       switchNurseryZeroingApproach(nurserySpace);
       modbufPool.clearDeque(1);
@@ -244,6 +260,22 @@ public abstract class Gen extends StopTheWorld {
     return super.collectionRequired(spaceFull, space);
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Nursery allocations at sites whose objects mostly survive their
+   * first collection go directly to the mature space.  Code compiled
+   * while a site was pretenured goes back to the nursery once the
+   * decision is revoked (see {@link GenMutator#checkAllocator(int, int, int, int)}).
+   */
+  @Override
+  public final int siteAllocator(int allocator, int site) {
+    if (allocator == ALLOC_NURSERY || allocator == ALLOC_NON_REFERENCE) {
+      return siteProfile.isPretenured(site) ? ALLOC_MATURE : allocator;
+    }
+    return allocator;
+  }
+
   /**
    * Determine if this GC should be a full heap collection.
    *
@@ -254,7 +286,7 @@ public abstract class Gen extends StopTheWorld {
       return true;
     }
 
-    if (nextGCFullHeap || collectionAttempt > 1) {
+    if (nextGCFullHeap || heapCensusRequested || collectionAttempt > 1) {
       // Forces full heap collection
       return true;
     }
@@ -439,6 +471,13 @@ public abstract class Gen extends StopTheWorld {
     super.registerSpecializedMethods();
   }
 
+  @Interruptible
+  @Override
+  public void enableAllocation() {
+    super.enableAllocation();
+    if (USE_CARD_BARRIER) CardTable.boot(cardSpace.getStart(), vmSpace);
+  }
+
   @Interruptible
   @Override
   public void fullyBooted() {
@@ -0,0 +1,38 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.generational;
+
+import org.mmtk.utility.alloc.LinearScan;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * Callbacks from the card table are dispatched through this class, which
+ * scans each object overlapping a dirty card with the nursery trace.
+ */
+@Uninterruptible
+final class GenCardScan extends LinearScan {
+
+  private final GenNurseryTraceLocal trace;
+
+  GenCardScan(GenNurseryTraceLocal trace) {
+    this.trace = trace;
+  }
+
+  @Override
+  @Inline
+  public void scan(ObjectReference object) {
+    trace.scanObject(object);
+  }
+}
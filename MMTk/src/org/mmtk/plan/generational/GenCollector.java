@@ -14,6 +14,7 @@ package org.mmtk.plan.generational;
 
 import org.mmtk.plan.*;
 import org.mmtk.policy.LargeObjectLocal;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.deque.*;
 
 import org.mmtk.vm.VM;
@@ -27,7 +28,9 @@ import org.vmmagic.pragma.*;
  * Specifically, this class defines nursery collection behavior (through
  * <code>nurseryTrace</code> and the <code>collectionPhase</code> method).
  * Per-collector thread remset consumers are instantiated here (used by
- * sub-classes).
+ * sub-classes).  When the card marking barrier is in use, the collectors
+ * share the scanning of dirty cards in nursery collections, and full heap
+ * collections clean every card and rebuild the map of object starts.
  *
  * @see Gen
  * @see GenMutator
@@ -90,6 +93,9 @@ import org.vmmagic.pragma.*;
       global().arrayRemsetPool.prepareNonBlocking();
       global().remsetPool.prepareNonBlocking();
       global().modbufPool.prepareNonBlocking();
+      if (Gen.USE_CARD_BARRIER && global().traceFullHeap()) {
+        CardTable.clear(parallelWorkerOrdinal(), parallelWorkerCount());
+      }
       nurseryTrace.prepare();
       return;
     }
@@ -118,6 +124,9 @@ import org.vmmagic.pragma.*;
     if (phaseId == Gen.RELEASE) {
       los.release(true);
       if (!global().traceFullHeap()) {
+        if (Gen.USE_CARD_BARRIER) {
+          CardTable.cleanCards(parallelWorkerOrdinal(), parallelWorkerCount());
+        }
         nurseryTrace.release();
         global().arrayRemsetPool.reset();
         global().remsetPool.reset();
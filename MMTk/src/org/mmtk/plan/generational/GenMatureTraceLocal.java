@@ -14,6 +14,7 @@ package org.mmtk.plan.generational;
 
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.Trace;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.deque.*;
 
@@ -114,6 +115,20 @@ public abstract class GenMatureTraceLocal extends TraceLocal {
     return super.traceObject(object);
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * With the card marking barrier, we record the start of each object
+   * scanned, rebuilding the map of object starts cleared when the
+   * collection began.
+   */
+  @Override
+  @Inline
+  protected void scanObject(ObjectReference object) {
+    super.scanObject(object);
+    if (Gen.USE_CARD_BARRIER) CardTable.setObjectStart(object);
+  }
+
   /**
    * Process any remembered set entries.
    */
@@ -15,9 +15,11 @@ package org.mmtk.plan.generational;
 import org.mmtk.plan.*;
 import org.mmtk.policy.CopyLocal;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.deque.*;
 import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.options.Options;
 import org.mmtk.utility.statistics.Stats;
 import org.mmtk.vm.VM;
 import static org.mmtk.plan.generational.Gen.USE_OBJECT_BARRIER_FOR_AASTORE;
@@ -56,6 +58,10 @@ import org.vmmagic.unboxed.*;
   protected final WriteBuffer remset;           /* remember modified array fields */
   protected final AddressPairDeque arrayRemset; /* remember modified array ranges */
 
+  private final AddressPairDeque siteSamples;   /* sampled nursery allocations */
+  private int siteSampleCountdown = AllocationSiteProfile.SAMPLE_PERIOD;
+  private int siteProbeCountdown = AllocationSiteProfile.PROBE_PERIOD;
+
   /****************************************************************************
    *
    * Initialization
@@ -73,6 +79,7 @@ import org.vmmagic.unboxed.*;
     modbuf = new ObjectReferenceDeque("modbuf", global().modbufPool);
     remset = new WriteBuffer(global().remsetPool);
     arrayRemset = new AddressPairDeque(global().arrayRemsetPool);
+    siteSamples = new AddressPairDeque(global().siteSamplePool);
   }
 
   /****************************************************************************
@@ -88,17 +95,91 @@ import org.vmmagic.unboxed.*;
   public Address alloc(int bytes, int align, int offset, int allocator, int site) {
     if (allocator == Gen.ALLOC_NURSERY) {
       if (Stats.GATHER_MARK_CONS_STATS) Gen.nurseryCons.inc(bytes);
-      return nursery.alloc(bytes, align, offset);
+      Address cell = nursery.alloc(bytes, align, offset);
+      if (--siteSampleCountdown == 0) sampleSite(cell, site);
+      return cell;
     }
     return super.alloc(bytes, align, offset, allocator, site);
   }
 
+  /**
+   * Record a sampled nursery allocation for the allocation site profile.
+   *
+   * @param cell The start of the newly allocated cell
+   * @param site The allocation site
+   */
+  @NoInline
+  private void sampleSite(Address cell, int site) {
+    siteSampleCountdown = AllocationSiteProfile.SAMPLE_PERIOD;
+    if (Options.sitePretenuring.getValue()) {
+      AllocationSiteProfile.sample(siteSamples, cell, site);
+    }
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Objects allocated in the mature space by pretenured allocation
+   * sites are subject to the same size limits as the nursery.
+   */
+  @Override
+  @Inline
+  public int checkAllocator(int bytes, int align, int allocator) {
+    if (allocator == Gen.ALLOC_MATURE) {
+      int rtn = super.checkAllocator(bytes, align, Gen.ALLOC_DEFAULT);
+      return rtn == Gen.ALLOC_DEFAULT ? Gen.ALLOC_MATURE : rtn;
+    }
+    return super.checkAllocator(bytes, align, allocator);
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Only allocations that code compiled for a pretenured site sends to
+   * the mature space consult the site profile, out of line.  Other
+   * allocations pass the allocator chosen at compile time straight
+   * through.
+   */
+  @Override
+  @Inline
+  public int checkAllocator(int bytes, int align, int allocator, int site) {
+    int rtn = checkAllocator(bytes, align, allocator);
+    if (rtn == Gen.ALLOC_MATURE && site != Plan.DEFAULT_SITE) {
+      return checkPretenuredSite(site);
+    }
+    return rtn;
+  }
+
+  /**
+   * Check an allocation at a site that was pretenured when it was
+   * compiled.  The allocation goes back to the nursery if the decision
+   * has since been revoked.  Otherwise occasional allocations are sent
+   * to the nursery and sampled, so that the profile notices if the
+   * site stops producing long-lived objects.
+   *
+   * @param site The allocation site
+   * @return The allocator to use for the allocation
+   */
+  @NoInline
+  private int checkPretenuredSite(int site) {
+    if (!global().siteProfile.isPretenured(site)) {
+      return Gen.ALLOC_NURSERY;
+    }
+    if (--siteProbeCountdown == 0) {
+      siteProbeCountdown = AllocationSiteProfile.PROBE_PERIOD;
+      siteSampleCountdown = 1;
+      return Gen.ALLOC_NURSERY;
+    }
+    return Gen.ALLOC_MATURE;
+  }
+
   @Override
   @Inline
   public void postAlloc(ObjectReference ref, ObjectReference typeRef,
       int bytes, int allocator) {
     if (allocator != Gen.ALLOC_NURSERY) {
       super.postAlloc(ref, typeRef, bytes, allocator);
+      if (Gen.USE_CARD_BARRIER) CardTable.setObjectStart(ref);
     }
   }
 
@@ -115,7 +196,8 @@ import org.vmmagic.unboxed.*;
 
   /**
    * Perform the write barrier fast path, which may involve remembering
-   * a reference if necessary.
+   * a reference if necessary.  With the card marking barrier, the card
+   * holding the slot is dirtied regardless of the source and target.
    *
    * @param src The object into which the new reference will be stored
    * @param slot The address into which the new reference will be
@@ -126,7 +208,9 @@ import org.vmmagic.unboxed.*;
   @Inline
   private void fastPath(ObjectReference src, Address slot, ObjectReference tgt, int mode) {
     if (Gen.GATHER_WRITE_BARRIER_STATS) Gen.wbFast.inc();
-    if ((mode == ARRAY_ELEMENT && USE_OBJECT_BARRIER_FOR_AASTORE) ||
+    if (Gen.USE_CARD_BARRIER) {
+      CardTable.dirty(slot);
+    } else if ((mode == ARRAY_ELEMENT && USE_OBJECT_BARRIER_FOR_AASTORE) ||
         (mode == INSTANCE_FIELD && USE_OBJECT_BARRIER_FOR_PUTFIELD)) {
       if (HeaderByte.isUnlogged(src)) {
         if (Gen.GATHER_WRITE_BARRIER_STATS) Gen.wbSlow.inc();
@@ -211,13 +295,16 @@ import org.vmmagic.unboxed.*;
    * {@inheritDoc}<p>
    *
    * In this case, we remember the mutated source address range and
-   * will scan that address range at GC time.
+   * will scan that address range at GC time, or dirty the cards it
+   * overlaps.
    */
   @Inline
   @Override
   public final boolean objectReferenceBulkCopy(ObjectReference src, Offset srcOffset, ObjectReference dst, Offset dstOffset, int bytes) {
-    if (!Gen.inNursery(dst)) {
-      Address start = dst.toAddress().plus(dstOffset);
+    Address start = dst.toAddress().plus(dstOffset);
+    if (Gen.USE_CARD_BARRIER) {
+      CardTable.dirtyRange(start, start.plus(bytes));
+    } else if (!Gen.inNursery(dst)) {
       arrayRemset.insert(start, start.plus(bytes));
     }
     return false;
@@ -254,6 +341,7 @@ import org.vmmagic.unboxed.*;
 
     if (phaseId == Gen.PREPARE) {
       nursery.reset();
+      siteSamples.flushLocal();
       if (global().traceFullHeap()) {
         super.collectionPhase(phaseId, primary);
         modbuf.flushLocal();
@@ -14,8 +14,10 @@ package org.mmtk.plan.generational;
 
 import static org.mmtk.utility.Constants.BYTES_IN_ADDRESS;
 
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.Trace;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.deque.*;
 import org.mmtk.vm.VM;
@@ -41,6 +43,10 @@ public final class GenNurseryTraceLocal extends TraceLocal {
   private final ObjectReferenceDeque modbuf;
   private final AddressDeque remset;
   private final AddressPairDeque arrayRemset;
+  private final GenCardScan cardScan;
+
+  /** Have the dirty cards been scanned by this collector? */
+  private boolean cardsScanned;
 
   /**
    * @param trace the global trace class to use
@@ -51,6 +57,13 @@ public final class GenNurseryTraceLocal extends TraceLocal {
     this.modbuf = plan.modbuf;
     this.remset = plan.remset;
     this.arrayRemset = plan.arrayRemset;
+    this.cardScan = Gen.USE_CARD_BARRIER ? new GenCardScan(this) : null;
+  }
+
+  @Override
+  public void prepare() {
+    super.prepare();
+    cardsScanned = false;
   }
 
   /****************************************************************************
@@ -81,7 +94,21 @@ public final class GenNurseryTraceLocal extends TraceLocal {
   }
 
   /**
-   * Process any remembered set entries.
+   * {@inheritDoc}<p>
+   *
+   * With the card marking barrier, we record the start of each object
+   * promoted, so that it will be scanned when a card it overlaps is dirty.
+   */
+  @Override
+  @Inline
+  protected void scanObject(ObjectReference object) {
+    super.scanObject(object);
+    if (Gen.USE_CARD_BARRIER) CardTable.setObjectStart(object);
+  }
+
+  /**
+   * Process any remembered set entries, and this collector's share
+   * of the dirty cards.
    */
   @Override
   @Inline
@@ -110,6 +137,12 @@ public final class GenNurseryTraceLocal extends TraceLocal {
         start = start.plus(BYTES_IN_ADDRESS);
       }
     }
+    if (Gen.USE_CARD_BARRIER && !cardsScanned) {
+      logMessage(5, "processing dirty cards");
+      cardsScanned = true;
+      CollectorContext collector = VM.activePlan.collector();
+      CardTable.scanDirtyCards(cardScan, this, Gen.nurserySpace, collector.parallelWorkerOrdinal(), collector.parallelWorkerCount());
+    }
   }
 
   /**
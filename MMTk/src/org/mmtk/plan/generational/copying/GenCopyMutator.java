@@ -15,6 +15,7 @@ package org.mmtk.plan.generational.copying;
 import org.mmtk.plan.generational.GenMutator;
 import org.mmtk.policy.CopyLocal;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.vm.VM;
 
@@ -96,8 +97,10 @@ public class GenCopyMutator extends GenMutator {
   @Inline
   public final void postAlloc(ObjectReference object, ObjectReference typeRef,
       int bytes, int allocator) {
-    // nothing to be done
-    if (allocator == GenCopy.ALLOC_MATURE) return;
+    if (allocator == GenCopy.ALLOC_MATURE) {
+      if (GenCopy.USE_CARD_BARRIER) CardTable.setObjectStart(object);
+      return;
+    }
     super.postAlloc(object, typeRef, bytes, allocator);
   }
 
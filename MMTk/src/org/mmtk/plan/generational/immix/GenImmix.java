@@ -117,6 +117,17 @@ public class GenImmix extends Gen {
     super.collectionPhase(phaseId);
   }
 
+  /**
+   * A nursery collection does not trace the mature space, so cannot
+   * defragment it.  Once the mature space is fragmented enough for
+   * defragmentation to be worthwhile, the next nursery collection is
+   * instead promoted to a full heap collection, which defragments.
+   */
+  @Override
+  protected boolean requiresFullHeapCollection() {
+    return super.requiresFullHeapCollection() || immixSpace.wantsDefrag();
+  }
+
   @Override
   public boolean lastCollectionWasExhaustive() {
     return lastGCWasDefrag;
@@ -15,6 +15,7 @@ package org.mmtk.plan.generational.immix;
 import org.mmtk.plan.generational.*;
 import org.mmtk.policy.Space;
 import org.mmtk.policy.immix.MutatorLocal;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.alloc.Allocator;
 
 import org.mmtk.vm.VM;
@@ -81,7 +82,6 @@ public class GenImmixMutator extends GenMutator {
   @Inline
   public final Address alloc(int bytes, int align, int offset, int allocator, int site) {
     if (allocator == GenImmix.ALLOC_MATURE) {
-      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(false); // no pretenuring yet
       return mature.alloc(bytes, align, offset);
     }
     return super.alloc(bytes, align, offset, allocator, site);
@@ -92,7 +92,8 @@ public class GenImmixMutator extends GenMutator {
   public final void postAlloc(ObjectReference ref, ObjectReference typeRef,
       int bytes, int allocator) {
     if (allocator == GenImmix.ALLOC_MATURE) {
-      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(false); // no pretenuring yet
+      GenImmix.immixSpace.postAlloc(ref, bytes);
+      if (GenImmix.USE_CARD_BARRIER) CardTable.setObjectStart(ref);
     } else {
       super.postAlloc(ref, typeRef, bytes, allocator);
     }
@@ -17,6 +17,7 @@ import org.mmtk.policy.Space;
 import org.mmtk.policy.immix.ImmixSpace;
 import org.mmtk.policy.immix.ObjectHeader;
 import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.Options;
 
 import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.*;
@@ -115,6 +116,7 @@ public class Immix extends StopTheWorld {
     if (phaseId == RELEASE) {
       immixTrace.release();
       lastGCWasDefrag = immixSpace.release(true);
+      switchNurseryZeroingApproach(immixSpace);
       super.collectionPhase(phaseId);
       return;
     }
@@ -172,4 +174,11 @@ public class Immix extends StopTheWorld {
   public void preCollectorSpawn() {
     immixSpace.initializeDefrag();
   }
+
+  @Interruptible
+  @Override
+  public void fullyBooted() {
+    super.fullyBooted();
+    immixSpace.setZeroingApproach(Options.nurseryZeroing.getNonTemporal(), Options.nurseryZeroing.getConcurrent());
+  }
 }
@@ -179,6 +179,16 @@ import org.vmmagic.unboxed.ObjectReference;
     return (mcSpace.reservedPages() + super.getPagesUsed());
   }
 
+  /**
+   * {@inheritDoc}
+   * Objects are compacted after the marking trace, so the addresses
+   * seen by the trace are not final.
+   */
+  @Override
+  public boolean supportsHeapCensus() {
+    return false;
+  }
+
   @Override
   public boolean willNeverMove(ObjectReference object) {
     if (Space.isInSpace(MARK_COMPACT, object))
@@ -24,6 +24,7 @@ import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.LinearScan;
 import org.mmtk.utility.deque.SharedDeque;
 import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.ConcurrentCycleCollection;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.sanitychecker.SanityChecker;
 import org.mmtk.vm.VM;
@@ -55,6 +56,21 @@ public class RCBase extends StopTheWorld {
   public static boolean performCycleCollection;
   public static final short BT_CLOSURE             = Phase.createSimple("closure-bt");
 
+  public static final short CC_START               = Phase.createSimple("cc-start");
+  public static final short CC_FLUSH               = Phase.createSimple("cc-flush");
+  public static final short CC_FINISH              = Phase.createSimple("cc-finish");
+
+  /** No concurrent cycle collection is under way */
+  public static final int CC_IDLE                  = 0;
+  /** The roots are being snapshot for a concurrent cycle collection */
+  public static final int CC_STARTING              = 1;
+  /** The concurrent cycle collection is tracing alongside the mutators */
+  public static final int CC_MARKING               = 2;
+  /** The concurrent cycle collection is completing its trace and sweeping */
+  public static final int CC_FINISHING             = 3;
+  /** The state of the concurrent cycle collection */
+  public static int ccState = CC_IDLE;
+
   /** True if we are building for generational RC */
   public static final boolean BUILD_FOR_GENRC = ((RCBaseConstraints) VM.activePlan.constraints()).buildForGenRC();
 
@@ -77,6 +93,31 @@ public class RCBase extends StopTheWorld {
       Phase.scheduleGlobal     (BT_CLOSURE),
       Phase.scheduleCollector  (BT_CLOSURE));
 
+  /**
+   * Start a concurrent cycle collection.  The roots found by this
+   * collection are marked as they are processed, and the mutators log
+   * the referents of the objects they modify from here on.
+   */
+  protected static final short concurrentCycleStartPhase = Phase.createComplex("cycle-start", null,
+      Phase.scheduleGlobal     (CC_START),
+      Phase.scheduleMutator    (CC_START));
+
+  /**
+   * When we preempt the concurrent cycle trace we flush the mutators.  The
+   * trace is then completed by the collection that follows.
+   */
+  public static final short CONCURRENT_CYCLE_CLOSURE = Phase.createConcurrent("concurrent-cycle-closure",
+      Phase.scheduleMutator    (CC_FLUSH));
+
+  /**
+   * Complete the concurrent cycle trace, before any reference counting
+   * work of the collection frees objects the trace may still visit.
+   */
+  protected static final short concurrentCycleFinishPhase = Phase.createComplex("cycle-finish", null,
+      Phase.scheduleMutator    (CC_FINISH),
+      Phase.scheduleGlobal     (CC_FINISH),
+      Phase.scheduleCollector  (CC_FINISH));
+
   protected static final short genRCCollectionPhase = Phase.createComplex("release", null,
       Phase.scheduleGlobal     (PROCESS_OLDROOTBUFFER),
       Phase.scheduleCollector  (PROCESS_OLDROOTBUFFER),
@@ -133,6 +174,41 @@ public class RCBase extends StopTheWorld {
       Phase.scheduleComplex(completeClosurePhase),
       Phase.scheduleComplex(finishPhase));
 
+  /**
+   * This is the phase that is executed to perform a collection that
+   * collects cycles concurrently.  The first increment is an ordinary
+   * collection that also snapshots the roots, the heap is then traced
+   * alongside the mutators, and the final increment is a second
+   * collection that completes the trace and sweeps any unreachable cycles.
+   */
+  public short refCountConcurrentCycleCollection = Phase.createComplex("concurrent-cycle-collection", null,
+      Phase.scheduleComplex   (initPhase),
+      Phase.scheduleComplex   (concurrentCycleStartPhase),
+      Phase.scheduleComplex   (refCountRootClosurePhase),
+      Phase.scheduleComplex   (refCountCollectionPhase),
+      Phase.scheduleComplex   (completeClosurePhase),
+      Phase.scheduleConcurrent(CONCURRENT_CYCLE_CLOSURE),
+      Phase.scheduleComplex   (initPhase),
+      Phase.scheduleComplex   (concurrentCycleFinishPhase),
+      Phase.scheduleComplex   (refCountRootClosurePhase),
+      Phase.scheduleComplex   (refCountCollectionPhase),
+      Phase.scheduleComplex   (completeClosurePhase),
+      Phase.scheduleComplex   (finishPhase));
+
+  public short genRCConcurrentCycleCollection = Phase.createComplex("concurrent-cycle-collection", null,
+      Phase.scheduleComplex   (initPhase),
+      Phase.scheduleComplex   (concurrentCycleStartPhase),
+      Phase.scheduleComplex   (genRCRootClosurePhase),
+      Phase.scheduleComplex   (genRCCollectionPhase),
+      Phase.scheduleComplex   (completeClosurePhase),
+      Phase.scheduleConcurrent(CONCURRENT_CYCLE_CLOSURE),
+      Phase.scheduleComplex   (initPhase),
+      Phase.scheduleComplex   (concurrentCycleFinishPhase),
+      Phase.scheduleComplex   (genRCRootClosurePhase),
+      Phase.scheduleComplex   (genRCCollectionPhase),
+      Phase.scheduleComplex   (completeClosurePhase),
+      Phase.scheduleComplex   (finishPhase));
+
   // CHECKSTYLE:ON
 
   /*****************************************************************************
@@ -153,6 +229,7 @@ public class RCBase extends StopTheWorld {
   public final SharedDeque decPool = new SharedDeque("dec", metaDataSpace, 1);
   public final SharedDeque newRootPool = new SharedDeque("newRoot", metaDataSpace, 1);
   public final SharedDeque oldRootPool = new SharedDeque("oldRoot", metaDataSpace, 1);
+  public final SharedDeque snapshotPool = new SharedDeque("snapshot", metaDataSpace, 1);
 
   /*****************************************************************************
    *
@@ -164,8 +241,11 @@ public class RCBase extends StopTheWorld {
    */
   public final Trace rootTrace;
   public final Trace backupTrace;
+  public final Trace cycleTrace;
   private final BTSweeper rcSweeper;
   private final BTFreeLargeObjectSweeper loFreeSweeper;
+  /** Should the next collection start a concurrent cycle collection? */
+  private boolean concurrentCycleRequested;
 
   /**
    * Constructor
@@ -173,8 +253,10 @@ public class RCBase extends StopTheWorld {
   public RCBase() {
     Options.noReferenceTypes.setDefaultValue(true);
     Options.noFinalizer.setDefaultValue(true);
+    Options.concurrentCycleCollection = new ConcurrentCycleCollection();
     rootTrace = new Trace(metaDataSpace);
     backupTrace = new Trace(metaDataSpace);
+    cycleTrace = new Trace(metaDataSpace);
     rcSweeper = new BTSweeper();
     loFreeSweeper = new BTFreeLargeObjectSweeper();
   }
@@ -204,6 +286,20 @@ public class RCBase extends StopTheWorld {
     return !object.isNull() && (Space.isInSpace(REF_COUNT, object) || Space.isInSpace(REF_COUNT_LOS, object));
   }
 
+  /**
+   * @return the collection to perform when a new phase stack is begun
+   */
+  public final short getCollection() {
+    boolean startCycleCollection = concurrentCycleRequested && isInternalTriggeredCollection();
+    if (BUILD_FOR_GENRC) return startCycleCollection ? genRCConcurrentCycleCollection : genRCCollection;
+    return startCycleCollection ? refCountConcurrentCycleCollection : refCountCollection;
+  }
+
+  @Override
+  protected boolean concurrentCollectionRequired() {
+    return concurrentCycleRequested && !Phase.concurrentPhaseActive();
+  }
+
   @Override
   public boolean lastCollectionFullHeap() {
     return performCycleCollection;
@@ -217,6 +313,8 @@ public class RCBase extends StopTheWorld {
         ccForceFull = Options.fullHeapSystemGC.getValue();
         if (BUILD_FOR_GENRC) performCycleCollection = (collectionAttempt > 1) || emergencyCollection || ccForceFull;
         else performCycleCollection |= (collectionAttempt > 1) || emergencyCollection || ccForceFull;
+        /* The concurrent trace collects the cycles in the final increment */
+        if (ccState == CC_MARKING) performCycleCollection = false;
         if (performCycleCollection && Options.verbose.getValue() > 0) Log.write(" [CC] ");
       }
       return;
@@ -235,6 +333,28 @@ public class RCBase extends StopTheWorld {
       return;
     }
 
+    if (phaseId == CC_START) {
+      concurrentCycleRequested = false;
+      if (!performCycleCollection) {
+        if (Options.verbose.getValue() > 0) Log.write(" [CC concurrent] ");
+        cycleTrace.prepareNonBlocking();
+        snapshotPool.prepareNonBlocking();
+        RCBaseMutator.newMutatorCycleBarrierActive = true;
+        ccState = CC_STARTING;
+      }
+      return;
+    }
+
+    if (phaseId == CC_FINISH) {
+      if (ccState == CC_MARKING) {
+        RCBaseMutator.newMutatorCycleBarrierActive = false;
+        snapshotPool.prepare();
+        cycleTrace.prepare();
+        ccState = CC_FINISHING;
+      }
+      return;
+    }
+
     if (phaseId == CLOSURE) {
       rootTrace.prepare();
       modPool.prepare();
@@ -271,14 +391,29 @@ public class RCBase extends StopTheWorld {
 
     if (phaseId == RELEASE) {
       rootTrace.release();
+      boolean cyclesCollected = true;
       if (CC_BACKUP_TRACE && performCycleCollection) {
         backupTrace.release();
         rcSpace.sweepCells(rcSweeper);
         rcloSpace.sweep(loFreeSweeper);
+      } else if (ccState == CC_FINISHING) {
+        cycleTrace.release();
+        snapshotPool.reset();
+        rcSpace.sweepCells(rcSweeper);
+        rcloSpace.sweep(loFreeSweeper);
+        ccState = CC_IDLE;
       } else {
         rcSpace.release();
+        if (ccState == CC_STARTING) ccState = CC_MARKING;
+        cyclesCollected = false;
+      }
+      boolean lowOnSpace = getPagesAvail() < Options.cycleTriggerThreshold.getPages();
+      if (Options.concurrentCycleCollection.getValue()) {
+        if (!BUILD_FOR_GENRC) performCycleCollection = false;
+        concurrentCycleRequested = lowOnSpace && !cyclesCollected && ccState == CC_IDLE;
+      } else if (!BUILD_FOR_GENRC) {
+        performCycleCollection = lowOnSpace;
       }
-      if (!BUILD_FOR_GENRC) performCycleCollection = getPagesAvail() < Options.cycleTriggerThreshold.getPages();
       return;
     }
 
@@ -298,6 +433,15 @@ public class RCBase extends StopTheWorld {
     return (rcSpace.reservedPages() + rcloSpace.reservedPages() + super.getPagesUsed());
   }
 
+  /**
+   * {@inheritDoc}
+   * Reference counting collections do not trace the live heap.
+   */
+  @Override
+  public boolean supportsHeapCensus() {
+    return false;
+  }
+
   /**
    * Perform a linear scan across all objects in the heap to check for leaks.
    */
@@ -17,13 +17,18 @@ import org.mmtk.plan.Plan;
 import org.mmtk.plan.StopTheWorldCollector;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.plan.refcount.backuptrace.BTConcurrentTraceLocal;
 import org.mmtk.plan.refcount.backuptrace.BTTraceLocal;
 import org.mmtk.policy.Space;
 import org.mmtk.policy.ExplicitFreeListSpace;
+import org.mmtk.utility.Log;
 import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.utility.heap.Numa;
+import org.mmtk.utility.options.Options;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.pragma.Unpreemptible;
 import org.vmmagic.unboxed.ObjectReference;
 
 /**
@@ -45,6 +50,8 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
    */
   protected final ObjectReferenceDeque newRootBuffer;
   private final BTTraceLocal backupTrace;
+  private final BTConcurrentTraceLocal cycleTrace;
+  private final ObjectReferenceDeque snapshotBuffer;
   private final ObjectReferenceDeque modBuffer;
   private final ObjectReferenceDeque oldRootBuffer;
   private final RCDecBuffer decBuffer;
@@ -59,6 +66,8 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
     modBuffer = new ObjectReferenceDeque("mod buf", global().modPool);
     decBuffer = new RCDecBuffer(global().decPool);
     backupTrace = new BTTraceLocal(global().backupTrace);
+    cycleTrace = new BTConcurrentTraceLocal(global().cycleTrace);
+    snapshotBuffer = new ObjectReferenceDeque("snapshot", global().snapshotPool);
     zero = new RCZero();
   }
 
@@ -77,13 +86,89 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
    * Collection
    */
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Threads in the concurrent worker group run the concurrent cycle trace.
+   */
+  @Override
+  @Unpreemptible
+  public void run() {
+    Numa.bindWorker(parallelWorkerOrdinal(), parallelWorkerPoolSize());
+    while (true) {
+      park();
+      if (Plan.concurrentWorkers.isMember(this)) {
+        do {
+          concurrentCollectionPhase(Phase.getConcurrentPhaseId());
+        } while (continueCollecting);
+      } else {
+        collect();
+      }
+    }
+  }
+
+  private static volatile boolean continueCollecting;
+
   /**
    * {@inheritDoc}
    */
   @Override
   public void collect() {
-    if (RCBase.BUILD_FOR_GENRC) Phase.beginNewPhaseStack(Phase.scheduleComplex(global().genRCCollection));
-    else Phase.beginNewPhaseStack(Phase.scheduleComplex(global().refCountCollection));
+    if (!Phase.isPhaseStackEmpty()) {
+      Phase.continuePhaseStack();
+    } else {
+      Phase.beginNewPhaseStack(Phase.scheduleComplex(global().getCollection()));
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Unpreemptible
+  public void concurrentCollectionPhase(short phaseId) {
+    if (phaseId == RCBase.CONCURRENT_CYCLE_CLOSURE) {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!Plan.gcInProgress());
+      /* The first increment may have fallen back to a full cycle collection */
+      if (RCBase.ccState == RCBase.CC_MARKING) {
+        do {
+          processSnapshotBuffer();
+          if (group.isAborted()) {
+            cycleTrace.flush();
+            break;
+          }
+        } while (!cycleTrace.incrementalTrace(100));
+      }
+      if (rendezvous() == 0) {
+        continueCollecting = false;
+        if (!group.isAborted()) {
+          /* We are responsible for ensuring termination. */
+          if (Options.verbose.getValue() >= 2) Log.writeln("< requesting mutator flush >");
+          VM.collection.requestMutatorFlush();
+          if (Options.verbose.getValue() >= 2) Log.writeln("< mutators flushed >");
+          if (!global().cycleTrace.hasWork() && global().snapshotPool.enqueuedPages() == 0) {
+            continueCollecting = Phase.notifyConcurrentPhaseComplete();
+          } else {
+            continueCollecting = true;
+            Phase.notifyConcurrentPhaseIncomplete();
+          }
+        }
+      }
+      rendezvous();
+      return;
+    }
+    super.concurrentCollectionPhase(phaseId);
+  }
+
+  /**
+   * Trace the referents logged by the mutators while the concurrent
+   * cycle trace is running.
+   */
+  private void processSnapshotBuffer() {
+    ObjectReference current;
+    while (!(current = snapshotBuffer.pop()).isNull()) {
+      cycleTrace.traceObject(current);
+    }
   }
 
   @Override
@@ -97,7 +182,8 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
     if (phaseId == RCBase.ROOTS) {
       VM.scanning.computeGlobalRoots(getCurrentTrace());
       VM.scanning.computeStaticRoots(getCurrentTrace());
-      if (Plan.SCAN_BOOT_IMAGE && RCBase.CC_BACKUP_TRACE && RCBase.performCycleCollection) {
+      if (Plan.SCAN_BOOT_IMAGE && RCBase.CC_BACKUP_TRACE &&
+          (RCBase.performCycleCollection || RCBase.ccState == RCBase.CC_STARTING)) {
         VM.scanning.computeBootImageRoots(getCurrentTrace());
       }
       return;
@@ -109,6 +195,14 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
       return;
     }
 
+    if (phaseId == RCBase.CC_FINISH) {
+      if (RCBase.ccState == RCBase.CC_FINISHING) {
+        processSnapshotBuffer();
+        cycleTrace.completeTrace();
+      }
+      return;
+    }
+
     if (phaseId == RCBase.BT_CLOSURE) {
       if (RCBase.CC_BACKUP_TRACE && RCBase.performCycleCollection) {
         backupTrace.completeTrace();
@@ -151,6 +245,7 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
         if (!RCBase.BUILD_FOR_GENRC) modBuffer.flushLocal();
         return;
       }
+      boolean snapshotRoots = RCBase.ccState == RCBase.CC_STARTING;
       while (!(current = newRootBuffer.pop()).isNull()) {
         if (RCBase.BUILD_FOR_GENRC) {
           RCHeader.incRC(current);
@@ -159,8 +254,14 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
             modBuffer.push(current);
           }
         }
+        if (snapshotRoots) {
+          cycleTrace.traceObject(current);
+        }
         oldRootBuffer.push(current);
       }
+      if (snapshotRoots) {
+        cycleTrace.flush();
+      }
       oldRootBuffer.flushLocal();
       if (!RCBase.BUILD_FOR_GENRC) modBuffer.flushLocal();
       return;
@@ -237,6 +338,9 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
     }
 
     if (phaseId == RCBase.RELEASE) {
+      if (RCBase.ccState == RCBase.CC_FINISHING) {
+        cycleTrace.release();
+      }
       if (RCBase.CC_BACKUP_TRACE && RCBase.performCycleCollection) {
         backupTrace.release();
         global().oldRootPool.clearDeque(1);
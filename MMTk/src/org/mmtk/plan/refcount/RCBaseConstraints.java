@@ -34,6 +34,10 @@ public class RCBaseConstraints extends StopTheWorldConstraints {
     return RCHeader.GC_HEADER_WORDS_REQUIRED;
   }
   @Override
+  public boolean needsConcurrentWorkers() {
+    return true;
+  }
+  @Override
   public boolean needsObjectReferenceWriteBarrier() {
     return true;
   }
@@ -13,6 +13,7 @@
 package org.mmtk.plan.refcount;
 
 import org.mmtk.plan.StopTheWorldMutator;
+import org.mmtk.plan.refcount.backuptrace.BTSnapshotBuffer;
 import org.mmtk.plan.refcount.backuptrace.BTSweepImmortalScanner;
 import org.mmtk.policy.ExplicitFreeListLocal;
 import org.mmtk.policy.ExplicitFreeListSpace;
@@ -47,6 +48,12 @@ public class RCBaseMutator extends StopTheWorldMutator {
   private final ObjectReferenceDeque modBuffer;
   private final RCDecBuffer decBuffer;
   private final BTSweepImmortalScanner btSweepImmortal;
+  private final BTSnapshotBuffer snapshotBuffer;
+
+  /** Should newly created mutators log referents for the concurrent cycle trace? */
+  public static boolean newMutatorCycleBarrierActive = false;
+  /** Are referents being logged for the concurrent cycle trace? */
+  private volatile boolean cycleBarrierActive;
 
   /************************************************************************
    *
@@ -62,6 +69,8 @@ public class RCBaseMutator extends StopTheWorldMutator {
     modBuffer = new ObjectReferenceDeque("mod", global().modPool);
     decBuffer = new RCDecBuffer(global().decPool);
     btSweepImmortal = new BTSweepImmortalScanner();
+    snapshotBuffer = new BTSnapshotBuffer(global().snapshotPool);
+    cycleBarrierActive = newMutatorCycleBarrierActive;
   }
 
   /****************************************************************************
@@ -95,6 +104,10 @@ public class RCBaseMutator extends StopTheWorldMutator {
   @Override
   @Inline
   public void postAlloc(ObjectReference ref, ObjectReference typeRef, int bytes, int allocator) {
+    if (cycleBarrierActive && allocator != RCBase.ALLOC_IMMORTAL) {
+      /* Objects allocated during a concurrent cycle trace are live */
+      RCHeader.testAndMark(ref);
+    }
     switch (allocator) {
     case RCBase.ALLOC_DEFAULT:
     case RCBase.ALLOC_NON_MOVING:
@@ -158,6 +171,22 @@ public class RCBaseMutator extends StopTheWorldMutator {
       return;
     }
 
+    if (phaseId == RCBase.CC_START) {
+      cycleBarrierActive = RCBase.ccState == RCBase.CC_STARTING;
+      return;
+    }
+
+    if (phaseId == RCBase.CC_FLUSH) {
+      snapshotBuffer.flushLocal();
+      return;
+    }
+
+    if (phaseId == RCBase.CC_FINISH) {
+      snapshotBuffer.flushLocal();
+      cycleBarrierActive = false;
+      return;
+    }
+
     if (phaseId == RCBase.RELEASE) {
       if (RCBase.CC_BACKUP_TRACE && RCBase.performCycleCollection) {
         immortal.linearScan(btSweepImmortal);
@@ -177,6 +206,7 @@ public class RCBaseMutator extends StopTheWorldMutator {
   public final void flushRememberedSets() {
     decBuffer.flushLocal();
     modBuffer.flushLocal();
+    snapshotBuffer.flushLocal();
     assertRemsetsFlushed();
   }
 
@@ -185,6 +215,7 @@ public class RCBaseMutator extends StopTheWorldMutator {
     if (VM.VERIFY_ASSERTIONS) {
       VM.assertions._assert(decBuffer.isFlushed());
       VM.assertions._assert(modBuffer.isFlushed());
+      VM.assertions._assert(snapshotBuffer.isFlushed());
     }
   }
 
@@ -256,7 +287,9 @@ public class RCBaseMutator extends StopTheWorldMutator {
    * the log bit, push an entry into the modified buffer and add a
    * decrement buffer entry for each referent object (in the RC space)
    * before setting the header bit to indicate that it has finished
-   * logging (allowing others in the race to continue).
+   * logging (allowing others in the race to continue).  While a concurrent
+   * cycle trace is running the referents are also logged for the trace,
+   * as they are the values the object held when the trace began.
    *
    * @param srcObj The object being mutated
    */
@@ -265,6 +298,7 @@ public class RCBaseMutator extends StopTheWorldMutator {
     if (RCHeader.attemptToLog(srcObj)) {
       modBuffer.push(srcObj);
       decBuffer.processChildren(srcObj);
+      if (cycleBarrierActive) snapshotBuffer.processChildren(srcObj);
       RCHeader.makeLogged(srcObj);
     }
   }
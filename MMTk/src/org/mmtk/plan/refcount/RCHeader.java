@@ -96,6 +96,8 @@ public class RCHeader {
    * Signify completion of logging <code>object</code>.
    *
    * <code>object</code> is left in the <code>LOGGED</code> state.
+   * The update is atomic because a concurrent cycle trace may be
+   * setting the mark bit in the same word.
    *
    * @see #attemptToLog(ObjectReference)
    * @param object The object whose state is to be changed.
@@ -103,9 +105,12 @@ public class RCHeader {
   @Inline
   @Uninterruptible
   public static void makeLogged(ObjectReference object) {
-    Word value = VM.objectModel.readAvailableBitsWord(object);
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(value.and(LOGGING_MASK).NE(LOGGED));
-    VM.objectModel.writeAvailableBitsWord(object, value.and(LOGGING_MASK.not()));
+    Word oldValue, newValue;
+    do {
+      oldValue = VM.objectModel.prepareAvailableBits(object);
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(oldValue.and(LOGGING_MASK).NE(LOGGED));
+      newValue = oldValue.and(LOGGING_MASK.not());
+    } while (!VM.objectModel.attemptAvailableBits(object, oldValue, newValue));
   }
 
   /**
@@ -0,0 +1,71 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.refcount.backuptrace;
+
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.plan.Trace;
+import org.mmtk.plan.refcount.RCBase;
+import org.mmtk.plan.refcount.RCHeader;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements the thread-local closure of a concurrent backup
+ * trace.  Unlike {@link BTTraceLocal} it only marks objects: reference
+ * counts are left alone, as the mutators continue to change them while
+ * the trace runs.  Objects that are still unmarked when the trace
+ * completes are unreachable cycles and are swept.
+ */
+@Uninterruptible
+public final class BTConcurrentTraceLocal extends TraceLocal {
+
+  /**
+   * @param trace the associated global trace
+   */
+  public BTConcurrentTraceLocal(Trace trace) {
+    super(trace);
+  }
+
+  /****************************************************************************
+   *
+   * Externally visible Object processing and tracing
+   */
+
+  /**
+   * Is the specified object reachable?
+   *
+   * @param object The object.
+   * @return <code>true</code> if the object is reachable.
+   */
+  @Override
+  public boolean isLive(ObjectReference object) {
+    return !RCBase.isRCObject(object) || RCHeader.isMarked(object);
+  }
+
+  /**
+   * Mark the object and enqueue it for scanning if this is the first
+   * time it has been reached.
+   *
+   * @param object The object to be traced.
+   * @return The new reference to the same object instance.
+   */
+  @Override
+  @Inline
+  public ObjectReference traceObject(ObjectReference object) {
+    if (RCBase.isRCObject(object) && RCHeader.testAndMark(object)) {
+      processNode(object);
+    }
+    return object;
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.refcount.backuptrace;
+
+import org.mmtk.plan.refcount.RCBase;
+import org.mmtk.plan.refcount.RCHeader;
+import org.mmtk.utility.deque.*;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements the snapshot buffer used by the write barrier
+ * while a concurrent backup trace is running.  When an object is logged
+ * the referents it held at the start of the trace are recorded here, so
+ * that the trace sees the object graph as it was when it began.
+ *
+ * @see BTConcurrentTraceLocal
+ */
+@Uninterruptible
+public final class BTSnapshotBuffer extends ObjectReferenceBuffer {
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   *
+   * @param queue The shared deque that is used.
+   */
+  public BTSnapshotBuffer(SharedDeque queue) {
+    super("snapshot", queue);
+  }
+
+  @Override
+  @Inline
+  protected void process(ObjectReference object) {
+    if (RCBase.isRCObject(object) && !RCHeader.isMarked(object)) {
+      push(object);
+    }
+  }
+}
@@ -103,6 +103,10 @@ public class GenRCCollector extends RCBaseCollector {
     RCHeader.initializeHeader(object, false);
     RCHeader.makeUnlogged(object);
     ExplicitFreeListSpace.unsyncSetLiveBit(object);
+    if (RCBase.ccState == RCBase.CC_FINISHING) {
+      /* The nursery only holds objects allocated during the concurrent cycle trace */
+      RCHeader.testAndMark(object);
+    }
   }
 
   @Override
@@ -0,0 +1,326 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.regional;
+
+import static org.mmtk.utility.Constants.LOG_BYTES_IN_PAGE;
+
+import org.mmtk.plan.*;
+import org.mmtk.policy.Space;
+import org.mmtk.policy.region.Region;
+import org.mmtk.policy.region.RegionSpace;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.deque.SharedDeque;
+import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.Options;
+import org.mmtk.utility.statistics.*;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements the global state of a region-based evacuating
+ * collector.<p>
+ *
+ * The heap is divided into equal sized regions.  Every collection
+ * evacuates a <i>collection set</i> of regions: all regions mutators
+ * have allocated into since the last collection, plus the old regions
+ * with the least live data that can be evacuated within the pause
+ * target (<code>-X:gc:pauseTarget</code>, in microseconds).  The cost
+ * of evacuation is predicted from the copying rate and the survival
+ * rate of young regions observed in earlier collections, and the
+ * number of young regions allowed between collections is sized from
+ * the same prediction.<p>
+ *
+ * Objects outside the collection set are not traced.  Instead, a write
+ * barrier logs each object outside the young regions the first time a
+ * reference into another region is stored into it, and collections
+ * rescan the logged objects.  Objects that still refer into other
+ * regions after a collection stay logged, so the remembered set
+ * persists from one collection to the next.  When the heap becomes
+ * too full, or the remembered set too large, the whole heap is traced
+ * instead; this also recomputes the live bytes of every region and
+ * rebuilds the remembered set from scratch.
+ */
+@Uninterruptible
+public class Regional extends StopTheWorld {
+
+  /****************************************************************************
+   * Constants
+   */
+
+  /**
+   *
+   */
+  private static final int MIN_YOUNG_PAGES = 4 << Region.LOG_PAGES_IN_REGION;
+  /** The largest fraction of the heap that young regions may occupy */
+  private static final float MAX_YOUNG_FRACTION = 0.5f;
+  /** The fraction of the pause target to spend on young survivors */
+  private static final float YOUNG_PAUSE_FRACTION = 0.5f;
+  /** Trace the full heap if the remembered set grows beyond this fraction of the heap */
+  private static final float REMSET_FRACTION = 0.125f;
+  /** Weight of history in the predictions made from each collection */
+  private static final double PREDICTION_DECAY = 0.5;
+  private static final double INITIAL_COPY_RATE = 64; // bytes per microsecond
+  private static final double INITIAL_SURVIVAL = 0.25;
+
+  /* Allocators */
+  public static final int ALLOC_YOUNG = ALLOC_DEFAULT;
+  public static final int ALLOC_SURVIVOR = StopTheWorld.ALLOCATORS + 1;
+
+  /****************************************************************************
+   * Class variables
+   */
+
+  /**
+   *
+   */
+  public static final RegionSpace regionSpace = new RegionSpace("region", VMRequest.discontiguous());
+  public static final int REGION = regionSpace.getDescriptor();
+
+  /* Statistics */
+  private static final BooleanCounter fullHeap = new BooleanCounter("majorGC", true, true);
+  private static final EventCounter collectionSetRegions = new EventCounter("csetRegions", true, true);
+  private static final SizeCounter evacuated = new SizeCounter("evacuated", true, true);
+
+  /****************************************************************************
+   * Instance variables
+   */
+
+  /**
+   *
+   */
+  public final Trace regionalTrace = new Trace(metaDataSpace);
+
+  /** Objects logged by the mutators since the last collection */
+  public final SharedDeque modbufPool = new SharedDeque("modBufs", metaDataSpace, 1);
+  /** Objects remembered by the last collection, and those remembered by the current one */
+  final SharedDeque[] remsetPools = {
+    new SharedDeque("remSet0", metaDataSpace, 1),
+    new SharedDeque("remSet1", metaDataSpace, 1)
+  };
+  private int currentRemset = 0;
+
+  public boolean gcFullHeap = false;
+  private boolean nextGCFullHeap = false;
+
+  /* pause prediction */
+  private long gcStartTime;
+  private long collectionSetBytes;
+  private long youngBytes;
+  private double copyRate = INITIAL_COPY_RATE;
+  private double youngSurvival = INITIAL_SURVIVAL;
+  private int youngTargetPages = MIN_YOUNG_PAGES;
+
+  /*****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void forceFullHeapCollection() {
+    nextGCFullHeap = true;
+  }
+
+  @Override
+  @NoInline
+  public void collectionPhase(short phaseId) {
+    if (phaseId == SET_COLLECTION_KIND) {
+      super.collectionPhase(phaseId);
+      gcStartTime = VM.statistics.nanoTime();
+      gcFullHeap = requiresFullHeapCollection();
+      nextGCFullHeap = false;
+      return;
+    }
+
+    if (phaseId == PREPARE) {
+      if (gcFullHeap) {
+        if (Stats.gatheringStats()) fullHeap.set();
+        super.collectionPhase(phaseId);
+        // a full heap trace rebuilds the remembered set
+        modbufPool.clearDeque(1);
+        remsetPools[currentRemset].clearDeque(1);
+      }
+      collectionSetBytes = regionSpace.selectCollectionSet(collectionSetBudget());
+      regionSpace.prepare(gcFullHeap);
+      youngBytes = (long) regionSpace.youngPages() << LOG_BYTES_IN_PAGE;
+      collectionSetRegions.inc(regionSpace.getCollectionSetRegions());
+      if (Options.verbose.getValue() >= 2) {
+        Log.write("[cset: ", regionSpace.getCollectionSetRegions());
+        Log.write(" old regions, ", collectionSetBytes >> 10);
+        Log.write("KB + ", youngBytes >> 10);
+        Log.write("KB young]");
+      }
+      regionalTrace.prepare();
+      return;
+    }
+
+    if (phaseId == CLOSURE) {
+      regionalTrace.prepare();
+      return;
+    }
+
+    if (phaseId == RELEASE) {
+      regionalTrace.release();
+      regionSpace.release();
+      if (gcFullHeap) {
+        super.collectionPhase(phaseId);
+      }
+      evacuated.inc((int) regionSpace.getBytesCopied());
+      updatePredictions();
+      modbufPool.reset();
+      remsetPools[currentRemset].reset();
+      currentRemset ^= 1;
+      nextGCFullHeap |= getPagesAvail() < MIN_YOUNG_PAGES ||
+        remsetPools[currentRemset].enqueuedPages() > (int) (getTotalPages() * REMSET_FRACTION);
+      return;
+    }
+
+    super.collectionPhase(phaseId);
+  }
+
+  /**
+   * Determine how many live bytes may be evacuated from old regions by
+   * this collection.  Collections that are not full heap are bounded by
+   * the pause target less the predicted cost of evacuating the young
+   * regions.  No collection may copy more than fits in the free pages
+   * once the young regions' worst case is accounted for.
+   *
+   * @return The evacuation budget for old regions, in bytes
+   */
+  private long collectionSetBudget() {
+    long free = (long) (getTotalPages() - getPagesUsed() - regionSpace.youngPages()) << LOG_BYTES_IN_PAGE;
+    if (free <= 0) return 0;
+    if (gcFullHeap) return free;
+    double young = (double) ((long) regionSpace.youngPages() << LOG_BYTES_IN_PAGE);
+    double budget = Options.pauseTarget.getMicroseconds() * copyRate - young * youngSurvival;
+    if (budget <= 0) return 0;
+    return budget < free ? (long) budget : free;
+  }
+
+  /**
+   * Fold the outcome of the collection just completed into the
+   * predictions of copying rate and young survival, and resize the
+   * young generation so that its predicted survivors take
+   * <code>YOUNG_PAUSE_FRACTION</code> of the pause target, within
+   * the pages that remain available.
+   */
+  private void updatePredictions() {
+    long copied = regionSpace.getBytesCopied();
+    if (!gcFullHeap) {
+      double elapsed = VM.statistics.nanosToMillis(VM.statistics.nanoTime() - gcStartTime) * 1000;
+      if (copied > 0 && elapsed > 0) {
+        copyRate = PREDICTION_DECAY * copyRate + (1 - PREDICTION_DECAY) * (copied / elapsed);
+      }
+    }
+    if (youngBytes > 0) {
+      long survived = copied - collectionSetBytes;
+      double survival = survived <= 0 ? 0 : (double) survived / youngBytes;
+      youngSurvival = PREDICTION_DECAY * youngSurvival + (1 - PREDICTION_DECAY) * (survival > 1 ? 1 : survival);
+    }
+    double target = Options.pauseTarget.getMicroseconds() * copyRate * YOUNG_PAUSE_FRACTION;
+    if (youngSurvival > 0) target /= youngSurvival;
+    int maxPages = (int) (getTotalPages() * MAX_YOUNG_FRACTION);
+    if (maxPages > getPagesAvail()) maxPages = getPagesAvail();
+    int pages = (int) (target / (1 << LOG_BYTES_IN_PAGE));
+    youngTargetPages = pages < MIN_YOUNG_PAGES ? MIN_YOUNG_PAGES : (pages > maxPages ? maxPages : pages);
+  }
+
+  @Override
+  public boolean collectionRequired(boolean spaceFull, Space space) {
+    if (regionSpace.youngPages() >= youngTargetPages) {
+      return true;
+    }
+
+    if (spaceFull && space != regionSpace) {
+      nextGCFullHeap = true;
+    }
+
+    return super.collectionRequired(spaceFull, space);
+  }
+
+  /**
+   * Determine if this GC should trace the full heap.
+   *
+   * @return <code>true</code> if this GC should trace the full heap.
+   */
+  protected boolean requiresFullHeapCollection() {
+    if (userTriggeredCollection && Options.fullHeapSystemGC.getValue()) {
+      return true;
+    }
+    return nextGCFullHeap || heapCensusRequested || collectionAttempt > 1;
+  }
+
+  @Override
+  protected boolean tracesWholeHeap() {
+    return gcFullHeap;
+  }
+
+  /*****************************************************************************
+   *
+   * Accounting
+   */
+
+  /**
+   * {@inheritDoc}
+   * The superclass accounts for its spaces, we just
+   * augment this with the region space's contribution.
+   */
+  @Override
+  public int getPagesUsed() {
+    return regionSpace.reservedPages() + super.getPagesUsed();
+  }
+
+  /**
+   * {@inheritDoc}
+   * In the worst case every young region must be evacuated.
+   */
+  @Override
+  public int getCollectionReserve() {
+    return regionSpace.youngPages() + super.getCollectionReserve();
+  }
+
+  /*****************************************************************************
+   *
+   * Miscellaneous
+   */
+
+  /**
+   * Print pre-collection statistics. In this class we prefix the output
+   * indicating whether the collection was full heap or not.
+   */
+  @Override
+  public void printPreStats() {
+    if ((Options.verbose.getValue() >= 1) && (gcFullHeap))
+      Log.write("[Full heap]");
+    super.printPreStats();
+  }
+
+  @Override
+  public boolean willNeverMove(ObjectReference object) {
+    if (Space.isInSpace(REGION, object))
+      return false;
+    return super.willNeverMove(object);
+  }
+
+  /**
+   * @return The index of the remembered set pool consumed by the current
+   * collection; the other pool receives the objects it remembers.
+   */
+  final int currentRemset() {
+    return currentRemset;
+  }
+}
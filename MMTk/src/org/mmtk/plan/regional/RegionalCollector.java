@@ -0,0 +1,148 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.regional;
+
+import org.mmtk.plan.*;
+import org.mmtk.utility.alloc.RegionAllocator;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements <i>per-collector thread</i> behavior
+ * and state for the <i>Regional</i> plan.<p>
+ *
+ * Each collector evacuates into regions of its own, and consumes the
+ * objects logged by mutators and remembered by the previous collection.
+ *
+ * @see Regional
+ * @see RegionalMutator
+ * @see StopTheWorldCollector
+ * @see CollectorContext
+ */
+@Uninterruptible
+public class RegionalCollector extends StopTheWorldCollector {
+
+  /****************************************************************************
+   * Instance fields
+   */
+
+  /**
+   *
+   */
+  protected final RegionAllocator copy;
+  protected final RegionalTraceLocal trace;
+
+  // remembered set consumers and producers
+  final ObjectReferenceDeque modbuf;
+  final ObjectReferenceDeque[] remsets;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   */
+  public RegionalCollector() {
+    copy = new RegionAllocator(Regional.regionSpace, true);
+    modbuf = new ObjectReferenceDeque("modbuf", global().modbufPool);
+    remsets = new ObjectReferenceDeque[] {
+      new ObjectReferenceDeque("remset", global().remsetPools[0]),
+      new ObjectReferenceDeque("remset", global().remsetPools[1])
+    };
+    trace = new RegionalTraceLocal(global().regionalTrace, this);
+  }
+
+  /****************************************************************************
+   *
+   * Collection-time allocation
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Inline
+  public Address allocCopy(ObjectReference original, int bytes,
+      int align, int offset, int allocator) {
+    if (VM.VERIFY_ASSERTIONS) {
+      VM.assertions._assert(bytes <= Plan.MAX_NON_LOS_COPY_BYTES);
+      VM.assertions._assert(allocator == Regional.ALLOC_SURVIVOR);
+    }
+    return copy.alloc(bytes, align, offset);
+  }
+
+  @Override
+  @Inline
+  public void postCopy(ObjectReference object, ObjectReference typeRef,
+      int bytes, int allocator) {
+    Regional.regionSpace.postCopy(object, bytes);
+  }
+
+  /****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @NoInline
+  public void collectionPhase(short phaseId, boolean primary) {
+    if (phaseId == Regional.PREPARE) {
+      super.collectionPhase(phaseId, primary);
+      global().modbufPool.prepareNonBlocking();
+      global().remsetPools[0].prepareNonBlocking();
+      global().remsetPools[1].prepareNonBlocking();
+      copy.prepare();
+      trace.prepare();
+      return;
+    }
+
+    if (phaseId == Regional.CLOSURE) {
+      trace.completeTrace();
+      return;
+    }
+
+    if (phaseId == Regional.RELEASE) {
+      trace.release();
+      copy.release();
+      remsets[global().currentRemset() ^ 1].flushLocal();
+      super.collectionPhase(phaseId, primary);
+      return;
+    }
+
+    super.collectionPhase(phaseId, primary);
+  }
+
+  /****************************************************************************
+   *
+   * Miscellaneous
+   */
+
+  /** @return The active global plan as a <code>Regional</code> instance. */
+  @Inline
+  private static Regional global() {
+    return (Regional) VM.activePlan.global();
+  }
+
+  @Override
+  public final TraceLocal getCurrentTrace() {
+    return trace;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.regional;
+
+import org.mmtk.plan.*;
+import org.mmtk.policy.Space;
+import org.mmtk.policy.region.Region;
+import org.mmtk.utility.HeaderByte;
+import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.alloc.RegionAllocator;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements <i>per-mutator thread</i> behavior
+ * and state for the <i>Regional</i> plan.<p>
+ *
+ * Mutators allocate into young regions.  The write barrier logs an
+ * object the first time a reference into a different region is
+ * stored into it.  Objects in young regions are never logged, since
+ * young regions are evacuated by every collection: they are born
+ * logged, and all other objects are unlogged when they are allocated,
+ * copied or traced.
+ *
+ * @see Regional
+ * @see RegionalCollector
+ * @see org.mmtk.plan.StopTheWorldMutator
+ * @see org.mmtk.plan.MutatorContext
+ */
+@Uninterruptible
+public class RegionalMutator extends StopTheWorldMutator {
+
+  /****************************************************************************
+   * Instance fields
+   */
+
+  /**
+   *
+   */
+  protected final RegionAllocator young;
+  private final ObjectReferenceDeque modbuf;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   */
+  public RegionalMutator() {
+    young = new RegionAllocator(Regional.regionSpace, false);
+    modbuf = new ObjectReferenceDeque("modbuf", global().modbufPool);
+  }
+
+  /****************************************************************************
+   *
+   * Mutator-time allocation
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Inline
+  public Address alloc(int bytes, int align, int offset, int allocator, int site) {
+    if (allocator == Regional.ALLOC_YOUNG) {
+      return young.alloc(bytes, align, offset);
+    }
+    return super.alloc(bytes, align, offset, allocator, site);
+  }
+
+  @Override
+  @Inline
+  public void postAlloc(ObjectReference ref, ObjectReference typeRef,
+      int bytes, int allocator) {
+    if (allocator != Regional.ALLOC_YOUNG) {
+      super.postAlloc(ref, typeRef, bytes, allocator);
+    }
+  }
+
+  @Override
+  public Allocator getAllocatorFromSpace(Space space) {
+    if (space == Regional.regionSpace) return young;
+    return super.getAllocatorFromSpace(space);
+  }
+
+  /****************************************************************************
+   *
+   * Barriers
+   */
+
+  /**
+   * Log the source of a reference store if it is unlogged and the
+   * target lies in a different region.
+   *
+   * @param src The object being mutated
+   * @param tgt The target of the new reference
+   */
+  @Inline
+  private void checkAndLog(ObjectReference src, ObjectReference tgt) {
+    if (HeaderByte.isUnlogged(src) && !tgt.isNull() && Space.isInSpace(Regional.REGION, tgt) &&
+        !Region.sameRegion(VM.objectModel.refToAddress(src), VM.objectModel.refToAddress(tgt))) {
+      logSource(src);
+    }
+  }
+
+  /**
+   * Add an object to the modified objects buffer and mark the
+   * object has having been logged.  Since duplicate entries do
+   * not raise any correctness issues, we do <i>not</i> worry
+   * about synchronization and allow threads to race to log the
+   * object, potentially including it twice.
+   *
+   * @param src The object to be logged
+   */
+  @NoInline
+  private void logSource(ObjectReference src) {
+    HeaderByte.markAsLogged(src);
+    modbuf.push(src);
+  }
+
+  @Override
+  @Inline
+  public final void objectReferenceWrite(ObjectReference src, Address slot,
+      ObjectReference tgt, Word metaDataA, Word metaDataB, int mode) {
+    checkAndLog(src, tgt);
+    VM.barriers.objectReferenceWrite(src, tgt, metaDataA, metaDataB, mode);
+  }
+
+  @Override
+  @Inline
+  public boolean objectReferenceTryCompareAndSwap(ObjectReference src, Address slot,
+      ObjectReference old, ObjectReference tgt, Word metaDataA, Word metaDataB, int mode) {
+    boolean result = VM.barriers.objectReferenceTryCompareAndSwap(src, old, tgt, metaDataA, metaDataB, mode);
+    if (result)
+      checkAndLog(src, tgt);
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * In this case we conservatively log the destination, since the
+   * copied references are not inspected.
+   */
+  @Override
+  @Inline
+  public final boolean objectReferenceBulkCopy(ObjectReference src, Offset srcOffset,
+      ObjectReference dst, Offset dstOffset, int bytes) {
+    if (HeaderByte.isUnlogged(dst))
+      logSource(dst);
+    return false;
+  }
+
+  @Override
+  public final void flushRememberedSets() {
+    modbuf.flushLocal();
+    assertRemsetsFlushed();
+  }
+
+  @Override
+  public final void assertRemsetsFlushed() {
+    if (VM.VERIFY_ASSERTIONS) {
+      VM.assertions._assert(modbuf.isFlushed());
+    }
+  }
+
+  /****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @NoInline
+  public void collectionPhase(short phaseId, boolean primary) {
+    if (phaseId == Regional.PREPARE) {
+      young.reset();
+      flushRememberedSets();
+      if (global().gcFullHeap) {
+        super.collectionPhase(phaseId, primary);
+      }
+      return;
+    }
+
+    if (phaseId == Regional.RELEASE) {
+      if (global().gcFullHeap) {
+        super.collectionPhase(phaseId, primary);
+      }
+      assertRemsetsFlushed();
+      return;
+    }
+
+    super.collectionPhase(phaseId, primary);
+  }
+
+  /****************************************************************************
+   *
+   * Miscellaneous
+   */
+
+  /** @return The active global plan as a <code>Regional</code> instance. */
+  @Inline
+  private static Regional global() {
+    return (Regional) VM.activePlan.global();
+  }
+}
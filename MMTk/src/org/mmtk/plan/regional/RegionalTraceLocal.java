@@ -0,0 +1,181 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.regional;
+
+import org.mmtk.plan.Trace;
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.policy.Space;
+import org.mmtk.policy.region.Region;
+import org.mmtk.utility.HeaderByte;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements the thread-local functionality for a transitive
+ * closure over the heap graph in the <i>Regional</i> plan.<p>
+ *
+ * Every object scanned by the trace is checked for references into
+ * other regions.  Those that have any are logged and remembered for
+ * the next collection; the rest are unlogged, so that the write barrier
+ * will catch the next such reference stored into them.
+ */
+@Uninterruptible
+public final class RegionalTraceLocal extends TraceLocal {
+
+  /****************************************************************************
+   *
+   * Instance fields
+   */
+
+  /**
+   *
+   */
+  private final ObjectReferenceDeque modbuf;
+  private final ObjectReferenceDeque[] remsets;
+
+  /** The region holding the object being scanned, or zero if it is outside the region space */
+  private Address scanRegion;
+  /** Has a reference out of the region holding the object being scanned been seen? */
+  private boolean remember;
+
+  /**
+   * @param trace the global trace class to use
+   * @param plan the state of the collector
+   */
+  public RegionalTraceLocal(Trace trace, RegionalCollector plan) {
+    super(trace);
+    this.modbuf = plan.modbuf;
+    this.remsets = plan.remsets;
+  }
+
+  /****************************************************************************
+   *
+   * Externally visible Object processing and tracing
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isLive(ObjectReference object) {
+    if (object.isNull()) return false;
+    if (Space.isInSpace(Regional.REGION, object)) {
+      return Regional.regionSpace.isLive(object);
+    }
+    /* Objects outside the region space are only collected by full heap traces */
+    if (global().gcFullHeap) {
+      return super.isLive(object);
+    }
+    return true;
+  }
+
+  @Override
+  @Inline
+  public ObjectReference traceObject(ObjectReference object) {
+    if (object.isNull()) return object;
+    if (Space.isInSpace(Regional.REGION, object)) {
+      return Regional.regionSpace.traceObject(this, object, Regional.ALLOC_SURVIVOR);
+    }
+    if (global().gcFullHeap) {
+      return super.traceObject(object);
+    }
+    return object;
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * In this case we note whether a reference found while scanning an
+   * object leads out of the object's region.
+   */
+  @Override
+  @Inline
+  public ObjectReference traceObject(ObjectReference object, boolean root) {
+    ObjectReference result = traceObject(object);
+    if (!root && !remember && !result.isNull() && Space.isInSpace(Regional.REGION, result) &&
+        Region.of(result).NE(scanRegion)) {
+      remember = true;
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * In this case the log state of the object is brought up to date with
+   * the references it holds once they have all been traced.
+   */
+  @Override
+  @Inline
+  protected void scanObject(ObjectReference object) {
+    scanRegion = Space.isInSpace(Regional.REGION, object) ? Region.of(object) : Address.zero();
+    remember = false;
+    super.scanObject(object);
+    if (remember) {
+      HeaderByte.markAsLogged(object);
+      remsets[global().currentRemset() ^ 1].push(object);
+    } else {
+      HeaderByte.markAsUnlogged(object);
+    }
+  }
+
+  /**
+   * Process the objects logged by the mutators and those remembered
+   * by the previous collection.  Objects in the collection set are
+   * skipped; if they are live their copies are scanned in any case.
+   */
+  @Override
+  @Inline
+  protected void processRememberedSets() {
+    logMessage(5, "processing modbuf");
+    ObjectReference obj;
+    while (!(obj = modbuf.pop()).isNull()) {
+      if (VM.DEBUG) VM.debugging.modbufEntry(obj);
+      rescan(obj);
+    }
+    logMessage(5, "processing remset");
+    ObjectReferenceDeque remset = remsets[global().currentRemset()];
+    while (!(obj = remset.pop()).isNull()) {
+      rescan(obj);
+    }
+  }
+
+  @Inline
+  private void rescan(ObjectReference object) {
+    if (Space.isInSpace(Regional.REGION, object) && Regional.regionSpace.isInCollectionSet(object)) {
+      return;
+    }
+    scanObject(object);
+  }
+
+  /**
+   * Will the object move from now on during the collection.
+   *
+   * @param object The object to query.
+   * @return {@code true} if the object is guaranteed not to move.
+   */
+  @Override
+  public boolean willNotMoveInCurrentCollection(ObjectReference object) {
+    if (object.isNull()) return false;
+    return !(Space.isInSpace(Regional.REGION, object) && Regional.regionSpace.isInCollectionSet(object));
+  }
+
+  /** @return The active global plan as a <code>Regional</code> instance. */
+  @Inline
+  private static Regional global() {
+    return (Regional) VM.activePlan.global();
+  }
+}
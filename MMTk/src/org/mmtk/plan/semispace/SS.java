@@ -16,6 +16,7 @@ import org.mmtk.policy.CopySpace;
 import org.mmtk.policy.Space;
 import org.mmtk.plan.*;
 import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.Options;
 
 import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.*;
@@ -184,4 +185,13 @@ public class SS extends StopTheWorld {
     TransitiveClosure.registerSpecializedScan(SCAN_SS, SSTraceLocal.class);
     super.registerSpecializedMethods();
   }
+
+  @Interruptible
+  @Override
+  public void fullyBooted() {
+    super.fullyBooted();
+    // the semi-spaces are discontiguous, so can not be zeroed concurrently
+    copySpace0.setZeroingApproach(Options.nurseryZeroing.getNonTemporal(), false);
+    copySpace1.setZeroingApproach(Options.nurseryZeroing.getNonTemporal(), false);
+  }
 }
@@ -119,6 +119,8 @@ public class StickyImmix extends Immix {
     if (phaseId == SET_COLLECTION_KIND) {
       super.collectionPhase(phaseId);
       collectWholeHeap = requiresFullHeapCollection();
+      /* the super class decided before the kind of this collection was known */
+      immixSpace.decideWhetherToDefrag(emergencyCollection, collectWholeHeap, collectionAttempt, userTriggeredCollection);
       if (Stats.gatheringStats() && collectWholeHeap) fullHeap.set();
       return;
     }
@@ -135,6 +137,7 @@ public class StickyImmix extends Immix {
       } else {
         immixTrace.release();
         lastGCWasDefrag = immixSpace.release(false);
+        switchNurseryZeroingApproach(immixSpace);
       }
       modPool.reset();
       lastCommittedImmixPages = immixSpace.committedPages();
@@ -170,7 +173,7 @@ public class StickyImmix extends Immix {
       return true;
     }
 
-    if (nextGCWholeHeap || collectionAttempt > 1) {
+    if (nextGCWholeHeap || heapCensusRequested || collectionAttempt > 1) {
       // Forces full heap collection
       return true;
     }
@@ -114,7 +114,7 @@ public class StickyMS extends MS {
   public final void collectionPhase(short phaseId) {
 
     if (phaseId == INITIATE) {
-      collectWholeHeap = MAJOR_GC_ONLY || emergencyCollection || nextGCWholeHeap;
+      collectWholeHeap = MAJOR_GC_ONLY || emergencyCollection || nextGCWholeHeap || heapCensusRequested;
       nextGCWholeHeap = false;
       super.collectionPhase(phaseId);
       return;
@@ -96,6 +96,18 @@ public abstract class BaseLargeObjectSpace extends Space {
     release(getSuperPage(cell));
   }
 
+  /**
+   * Acquire the pages for a new large object.  By default the pages
+   * come straight from the page resource, but subclasses may satisfy
+   * the request from page runs they have retained.
+   *
+   * @param pages The number of pages required
+   * @return The start of the first page, or zero on failure
+   */
+  public Address acquireLargePages(int pages) {
+    return acquire(pages);
+  }
+
   /****************************************************************************
    *
    * Superpages
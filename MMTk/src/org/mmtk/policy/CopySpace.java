@@ -67,6 +67,11 @@ import org.vmmagic.pragma.*;
     return fromSpace;
   }
 
+  @Override
+  public boolean prefersHugePages() {
+    return true;
+  }
+
   /****************************************************************************
    *
    * Initialization
@@ -15,11 +15,13 @@ package org.mmtk.policy;
 import static org.mmtk.utility.Constants.LOG_BYTES_IN_PAGE;
 
 import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.utility.Conversions;
 import org.mmtk.utility.heap.FreeListPageResource;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.Treadmill;
 
+import org.mmtk.vm.Lock;
 import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.*;
@@ -27,7 +29,14 @@ import org.vmmagic.unboxed.*;
 
 /**
  * Each instance of this class corresponds to one explicitly managed
- * large object space.
+ * large object space.<p>
+ *
+ * Dead objects of at most {@link #MAX_MEDIUM_PAGES} pages are not
+ * returned to the page resource when swept.  Their page runs are kept
+ * on free lists segregated by page count, and allocations of the same
+ * size reuse them without touching the page resource.  Unused runs are
+ * returned to the page resource when the next full heap collection
+ * starts.  The treadmill is swept by all collector threads.
  */
 @Uninterruptible
 public final class LargeObjectSpace extends BaseLargeObjectSpace {
@@ -46,6 +55,12 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
   private static final byte NURSERY_BIT =  2; // ...10
   private static final byte LOS_BIT_MASK = 3; // ...11
 
+  /** The largest page run kept on the medium object free lists */
+  public static final int MAX_MEDIUM_PAGES = 16;
+
+  /** The medium object free lists hold at most 1/2^n of the heap */
+  private static final int LOG_MEDIUM_HEAP_FRACTION = 6;
+
   /****************************************************************************
    *
    * Instance variables
@@ -57,6 +72,12 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
   private byte markState;
   private boolean inNurseryGC;
   private final Treadmill treadmill;
+  private boolean sweepPending;
+
+  /** Free page runs, indexed by their length in pages */
+  private final AddressArray mediumRuns = AddressArray.create(MAX_MEDIUM_PAGES + 1);
+  private int mediumPages;
+  private final Lock mediumLock;
 
   /****************************************************************************
    *
@@ -87,6 +108,7 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
   public LargeObjectSpace(String name, boolean zeroed, VMRequest vmRequest) {
     super(name, zeroed, vmRequest);
     treadmill = new Treadmill(LOG_BYTES_IN_PAGE, true);
+    mediumLock = VM.newLock(name + "-medium");
     markState = 0;
   }
 
@@ -108,9 +130,11 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
         VM.assertions._assert(treadmill.fromSpaceEmpty());
       }
       markState = (byte) (MARK_BIT - markState);
+      releaseMediumRuns();
     }
     treadmill.flip(fullHeap);
     inNurseryGC = !fullHeap;
+    sweepPending = true;
   }
 
   /**
@@ -120,10 +144,24 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
    * @param fullHeap whether the collection was full heap
    */
   public void release(boolean fullHeap) {
-    // sweep the large objects
+    // sweep whatever the collector threads have not already swept
     sweepLargePages(true);                // sweep the nursery
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(treadmill.nurseryEmpty());
     if (fullHeap) sweepLargePages(false); // sweep the mature space
+    sweepPending = false;
+  }
+
+  /**
+   * Sweep the large objects in parallel.  Each collector thread calls
+   * this during its release phase, before the global release.  The
+   * treadmill is locked, so the collectors simply race to pop dead
+   * objects off it.  This is a no-op if the space was not prepared for
+   * the current collection.
+   */
+  public void parallelSweep() {
+    if (!sweepPending) return;
+    sweepLargePages(true);
+    if (!inNurseryGC) sweepLargePages(false);
   }
 
   /**
@@ -136,7 +174,7 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
     while (true) {
       Address cell = sweepNursery ? treadmill.popNursery() : treadmill.pop();
       if (cell.isZero()) break;
-      release(getSuperPage(cell));
+      releaseSuperPage(getSuperPage(cell));
     }
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(sweepNursery ? treadmill.nurseryEmpty() : treadmill.fromSpaceEmpty());
   }
@@ -147,6 +185,100 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
     ((FreeListPageResource) pr).releasePages(first);
   }
 
+  /**
+   * Release a swept superpage, keeping it on the medium object free
+   * lists if it is small enough and the lists have room.
+   *
+   * @param first The first page of the superpage
+   */
+  private void releaseSuperPage(Address first) {
+    int pages = Conversions.bytesToPages(getSize(first));
+    if (pages > MAX_MEDIUM_PAGES || !cacheMediumRun(first, pages)) {
+      release(first);
+    }
+  }
+
+  /****************************************************************************
+   *
+   * Medium object page runs
+   */
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Runs of at most {@link #MAX_MEDIUM_PAGES} pages are taken from the
+   * medium object free list of the same length if it is not empty.
+   */
+  @Override
+  @Inline
+  public Address acquireLargePages(int pages) {
+    if (pages <= MAX_MEDIUM_PAGES && !mediumRuns.get(pages).isZero()) {
+      Address run = takeMediumRun(pages);
+      if (!run.isZero()) return run;
+    }
+    return acquire(pages);
+  }
+
+  /**
+   * Take a page run off the medium object free list for the given length.
+   *
+   * @param pages The length of the run in pages
+   * @return The first page of the run, or zero if the list is empty
+   */
+  private Address takeMediumRun(int pages) {
+    mediumLock.acquire();
+    Address run = mediumRuns.get(pages);
+    if (!run.isZero()) {
+      mediumRuns.set(pages, run.loadAddress());
+      mediumPages -= pages;
+    }
+    mediumLock.release();
+    if (!run.isZero() && zeroed) {
+      VM.memory.zero(false, run, Conversions.pagesToBytes(pages));
+    }
+    return run;
+  }
+
+  /**
+   * Put a dead page run on the medium object free list for its length.
+   * The pages remain reserved and committed in the page resource.
+   *
+   * @param first The first page of the run
+   * @param pages The length of the run in pages
+   * @return {@code true} if the run was kept, {@code false} if the free
+   * lists are full
+   */
+  private boolean cacheMediumRun(Address first, int pages) {
+    int limit = VM.activePlan.global().getTotalPages() >> LOG_MEDIUM_HEAP_FRACTION;
+    mediumLock.acquire();
+    boolean cached = mediumPages + pages <= limit;
+    if (cached) {
+      first.store(mediumRuns.get(pages));
+      mediumRuns.set(pages, first);
+      mediumPages += pages;
+    }
+    mediumLock.release();
+    return cached;
+  }
+
+  /**
+   * Return all page runs on the medium object free lists to the page
+   * resource, so that a full heap collection sees the true amount of
+   * free memory and the page resource can coalesce the runs.
+   */
+  private void releaseMediumRuns() {
+    for (int pages = 1; pages <= MAX_MEDIUM_PAGES; pages++) {
+      Address run = mediumRuns.get(pages);
+      while (!run.isZero()) {
+        Address next = run.loadAddress();
+        release(run);
+        run = next;
+      }
+      mediumRuns.set(pages, Address.zero());
+    }
+    mediumPages = 0;
+  }
+
   /****************************************************************************
    *
    * Object processing and tracing
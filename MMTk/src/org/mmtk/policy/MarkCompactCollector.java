@@ -35,9 +35,12 @@ import org.vmmagic.unboxed.ObjectReference;
  * </ul>
  *<p>
  * Each collector thread maintains a private list of the pages that it compacts.
- * If it runs out of work during the calculateForwardingPointers pass, it requests
- * a new region from the global MarkCompactSpace.  Regions compacted by a collector
- * remain local to the collector.
+ * Collectors claim regions one at a time from the global MarkCompactSpace during
+ * the calculateForwardingPointers pass, sliding the objects of each region they
+ * claim into the regions they claimed before it, so the collectors share both
+ * the calculate and the compact passes.  Each collector returns the regions it
+ * kept to the global list once it has compacted them, and the next collection
+ * shares them out afresh.
  *
  * @see MarkCompactSpace
  * @see MarkCompactLocal
@@ -556,5 +559,11 @@ public final class MarkCompactCollector {
       space.release(region);
       region = nextRegion;
     }
+
+    /*
+     * Return the regions we kept to the global list
+     */
+    space.append(regions);
+    regions = Address.zero();
   }
 }
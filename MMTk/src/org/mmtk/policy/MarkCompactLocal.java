@@ -65,4 +65,14 @@ public final class MarkCompactLocal extends BumpPointer {
     return Extent.fromIntZeroExtend(4 << LOG_BLOCK_SIZE);
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Compaction assumes every region is acquired one block at a time.
+   */
+  @Override
+  protected Extent maximumRequestSize() {
+    return Extent.fromIntZeroExtend(1 << LOG_BLOCK_SIZE);
+  }
+
 }
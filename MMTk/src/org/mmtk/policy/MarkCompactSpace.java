@@ -49,6 +49,7 @@ import org.vmmagic.pragma.*;
 
   /** The list of occupied regions */
   private Address regionList = Address.zero();
+  private Address regionListTail = Address.zero();
 
   // TODO - maintain a separate list of partially allocated regions
   // for threads to allocate into immediately after a collection.
@@ -327,16 +328,25 @@ import org.vmmagic.pragma.*;
     }
     Address result = regionList;
     regionList = BumpPointer.getNextRegion(regionList);
+    if (regionList.isZero()) regionListTail = Address.zero();
     BumpPointer.clearNextRegion(result);
     lock.release();
     return result;
   }
 
   /**
-   * Append a region or list of regions to the global list
+   * Append a region or list of regions to the global list.  Only the
+   * appended list is walked, so that returning every region to the
+   * global list takes time linear in the number of regions.
+   *
    * @param region the region to append
    */
   public void append(Address region) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!region.isZero());
+    Address tail = region;
+    while (!BumpPointer.getNextRegion(tail).isZero()) {
+      tail = BumpPointer.getNextRegion(tail);
+    }
     lock.acquire();
     if (MarkCompactCollector.VERBOSE) {
       Log.write("Appending region ", region);
@@ -345,18 +355,9 @@ import org.vmmagic.pragma.*;
     if (regionList.isZero()) {
       regionList = region;
     } else {
-      appendRegion(regionList,region);
+      BumpPointer.setNextRegion(regionListTail, region);
     }
+    regionListTail = tail;
     lock.release();
   }
-
-  public static void appendRegion(Address listHead, Address region) {
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!listHead.isZero());
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!region.isZero());
-    Address cursor = listHead;
-    while (!BumpPointer.getNextRegion(cursor).isZero()) {
-      cursor = BumpPointer.getNextRegion(cursor);
-    }
-    BumpPointer.setNextRegion(cursor,region);
-  }
 }
@@ -19,6 +19,7 @@ import org.mmtk.utility.heap.*;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.options.MarkSweepMarkBits;
 import org.mmtk.utility.options.EagerCompleteSweep;
+import org.mmtk.utility.options.FragmentationStats;
 import org.mmtk.utility.HeaderByte;
 
 import org.mmtk.vm.VM;
@@ -91,6 +92,7 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   static {
     Options.markSweepMarkBits = new MarkSweepMarkBits();
     Options.eagerCompleteSweep = new EagerCompleteSweep();
+    Options.fragmentationStats = new FragmentationStats();
   }
 
   /**
@@ -132,6 +134,11 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
     return !LAZY_SWEEP;
   }
 
+  @Override
+  public boolean prefersHugePages() {
+    return true;
+  }
+
   /****************************************************************************
    *
    * Allocation
@@ -214,6 +221,7 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
  */
   public void release() {
     sweepConsumedBlocks(!EAGER_MARK_CLEAR);
+    if (Options.fragmentationStats.getValue()) printFragmentationStats();
     inMSCollection = false;
   }
 
@@ -20,6 +20,7 @@ import org.mmtk.utility.heap.FreeListPageResource;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.utility.Conversions;
+import org.mmtk.utility.Log;
 import org.mmtk.utility.Memory;
 
 import org.mmtk.vm.Lock;
@@ -53,6 +54,8 @@ public abstract class SegregatedFreeListSpace extends Space {
   protected static final int MAX_CELLS = 99; // (1<<(INUSE_BITS-1))-1;
   protected static final int MAX_CELL_SIZE = 8 << 10;
   public static final int MAX_FREELIST_OBJECT_BYTES = MAX_CELL_SIZE;
+  /** The number of blocks a thread takes from, or returns to, the global pool at once */
+  public static final int BLOCK_CACHE_BLOCKS = 4;
 
   // live bits etc
   private static final int OBJECT_LIVE_SHIFT = LOG_MIN_ALIGNMENT; // 4 byte resolution
@@ -164,27 +167,68 @@ public abstract class SegregatedFreeListSpace extends Space {
   }
 
   /**
-   * Acquire a new block from the global pool to allocate into. This method
-   * with either return a non-empty free list, or zero when allocation
-   * fails.
+   * Return a list of consumed blocks to the global pool, taking the
+   * lock only once for the whole list.
    *
-   * This method will populate the passed in free list for the given size
-   * class and return the address of the block.
+   * @param blocks The first block of a list linked through the block
+   * <i>next</i> field
+   * @param sizeClass The size class of the blocks
+   */
+  public void returnConsumedBlocks(Address blocks, int sizeClass) {
+    if (blocks.isZero()) return;
+    Address last = blocks;
+    while (true) {
+      if (preserveFreeList()) {
+        setFreeList(last, Address.zero());
+      }
+      Address next = BlockAllocator.getNext(last);
+      if (next.isZero()) break;
+      last = next;
+    }
+    lock.acquire();
+    BlockAllocator.setNext(last, consumedBlockHead.get(sizeClass));
+    consumedBlockHead.set(sizeClass, blocks);
+    lock.release();
+  }
+
+  /**
+   * Return a list of blocks that a thread took from the global pool but
+   * did not allocate into.  The blocks are placed with the consumed
+   * blocks, so that the next collection sweeps them along with every
+   * other block of the size class.
+   *
+   * @param blocks The first block of a list linked through the block
+   * <i>next</i> field
+   * @param sizeClass The size class of the blocks
+   */
+  public void returnCachedBlocks(Address blocks, int sizeClass) {
+    if (blocks.isZero()) return;
+    Address last = blocks;
+    while (!BlockAllocator.getNext(last).isZero()) {
+      last = BlockAllocator.getNext(last);
+    }
+    lock.acquire();
+    BlockAllocator.setNext(last, consumedBlockHead.get(sizeClass));
+    consumedBlockHead.set(sizeClass, blocks);
+    lock.release();
+  }
+
+  /**
+   * Acquire a new block to allocate into, drawing on the calling thread's
+   * block cache.  When the cache is empty it is refilled with up to
+   * {@link #BLOCK_CACHE_BLOCKS} blocks from the global pool, so the lock
+   * is taken once per refill rather than once per block.  This method
+   * will either return a non-empty free list, or zero when allocation
+   * fails.
    *
    * @param sizeClass The size class to allocate into
    * @param freeList The free list to populate
+   * @param blockCache The calling thread's cached blocks for each size class
    * @return The address of the block
    */
-  public Address getAllocationBlock(int sizeClass, AddressArray freeList) {
-    lock.acquire();
+  public Address getAllocationBlock(int sizeClass, AddressArray freeList, AddressArray blockCache) {
     Address block;
-    while (!(block = availableBlockHead.get(sizeClass)).isZero()) {
-      availableBlockHead.set(sizeClass, BlockAllocator.getNext(block));
-      lock.release();
-
-      /* This block is no longer on any list */
-      BlockAllocator.setNext(block, Address.zero());
-
+    while (!(block = takeCachedBlock(sizeClass, blockCache)).isZero()) {
       /* Can we allocate into this block? */
       Address cell = advanceToBlock(block, sizeClass);
       if (!cell.isZero()) {
@@ -193,14 +237,41 @@ public abstract class SegregatedFreeListSpace extends Space {
       }
 
       /* Block was full */
-      lock.acquire();
-      BlockAllocator.setNext(block, consumedBlockHead.get(sizeClass));
-      consumedBlockHead.set(sizeClass, block);
+      returnConsumedBlock(block, sizeClass);
     }
-    lock.release();
     return expandSizeClass(sizeClass, freeList);
   }
 
+  /**
+   * Take the next block from a thread's block cache, refilling the
+   * cache from the global pool if it is empty.
+   *
+   * @param sizeClass The size class
+   * @param blockCache The calling thread's cached blocks for each size class
+   * @return The block, which is no longer on any list, or zero if the
+   * global pool has no available blocks of this size class
+   */
+  private Address takeCachedBlock(int sizeClass, AddressArray blockCache) {
+    Address block = blockCache.get(sizeClass);
+    if (block.isZero()) {
+      lock.acquire();
+      block = availableBlockHead.get(sizeClass);
+      if (!block.isZero()) {
+        Address last = block;
+        for (int i = 1; i < BLOCK_CACHE_BLOCKS && !BlockAllocator.getNext(last).isZero(); i++) {
+          last = BlockAllocator.getNext(last);
+        }
+        availableBlockHead.set(sizeClass, BlockAllocator.getNext(last));
+        BlockAllocator.setNext(last, Address.zero());
+      }
+      lock.release();
+      if (block.isZero()) return Address.zero();
+    }
+    blockCache.set(sizeClass, BlockAllocator.getNext(block));
+    BlockAllocator.setNext(block, Address.zero());
+    return block;
+  }
+
   /**
    * Expand a particular size class, allocating a new block, breaking
    * the block into cells and placing those cells on a free list for
@@ -674,6 +745,49 @@ public abstract class SegregatedFreeListSpace extends Space {
     return firstFree;
   }
 
+  /**
+   * Print the fragmentation of the blocks that survived the last sweep:
+   * for each size class, how many blocks are held and what proportion of
+   * their cells are live.  All blocks must be on the available lists,
+   * i.e. this must be called straight after the sweep.
+   */
+  protected final void printFragmentationStats() {
+    long totalBytes = 0;
+    long liveBytes = 0;
+    Log.write("Fragmentation of ");
+    Log.write(getName());
+    Log.writeln(":");
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      int blockSize = BlockAllocator.blockSize(blockSizeClass[sizeClass]);
+      int cellsPerBlock = (blockSize - blockHeaderSize[sizeClass]) / cellSize[sizeClass];
+      int blocks = 0;
+      int liveCells = 0;
+      for (Address block = availableBlockHead.get(sizeClass); !block.isZero(); block = BlockAllocator.getNext(block)) {
+        Address cursor = block.plus(blockHeaderSize[sizeClass]);
+        Address end = block.plus(blockSize);
+        while (cursor.LT(end)) {
+          ObjectReference current = VM.objectModel.getObjectFromStartAddress(cursor);
+          if (!current.isNull() && isCellLive(current)) liveCells++;
+          cursor = cursor.plus(cellSize[sizeClass]);
+        }
+        blocks++;
+      }
+      if (blocks == 0) continue;
+      Log.write("  ", cellSize[sizeClass]);
+      Log.write(" byte cells: ", blocks);
+      Log.write(" blocks, ", liveCells);
+      Log.write("/", blocks * cellsPerBlock);
+      Log.writeln(" cells live");
+      totalBytes += (long) blocks * blockSize;
+      liveBytes += (long) liveCells * cellSize[sizeClass];
+    }
+    Log.write("  ", totalBytes >> LOG_BYTES_IN_KBYTE);
+    Log.write("KB in blocks, ", liveBytes >> LOG_BYTES_IN_KBYTE);
+    Log.write("KB live, fragmentation ");
+    Log.write(totalBytes == 0 ? 0.0 : 100.0 * (totalBytes - liveBytes) / totalBytes, 1);
+    Log.writeln("%");
+  }
+
   /**
    * Sweeps all blocks for free objects.
    *
@@ -736,18 +850,26 @@ public abstract class SegregatedFreeListSpace extends Space {
   public void parallelSweepCells(Sweeper sweeper) {
     for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
       Address block;
+      Address availableHead = Address.zero();
+      Address availableTail = Address.zero();
       while (!(block = getSweepBlock(sizeClass)).isZero()) {
         boolean liveBlock = sweepCells(sweeper, block, sizeClass);
         if (!liveBlock) {
           BlockAllocator.setNext(block, Address.zero());
           BlockAllocator.free(this, block);
         } else {
-          lock.acquire();
-          BlockAllocator.setNext(block, availableBlockHead.get(sizeClass));
-          availableBlockHead.set(sizeClass, block);
-          lock.release();
+          /* Gather the live blocks locally and make them available together */
+          BlockAllocator.setNext(block, availableHead);
+          if (availableHead.isZero()) availableTail = block;
+          availableHead = block;
         }
       }
+      if (!availableHead.isZero()) {
+        lock.acquire();
+        BlockAllocator.setNext(availableTail, availableBlockHead.get(sizeClass));
+        availableBlockHead.set(sizeClass, availableHead);
+        lock.release();
+      }
     }
   }
 
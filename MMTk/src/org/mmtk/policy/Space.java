@@ -23,6 +23,7 @@ import org.mmtk.utility.heap.SpaceDescriptor;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.utility.options.Options;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.Conversions;
 import org.mmtk.utility.Log;
 
@@ -231,11 +232,27 @@ public abstract class Space {
     return immortal;
   }
 
+  /** @return {@code true} if memory is zeroed when it is acquired for this space */
+  public final boolean isZeroed() {
+    return zeroed;
+  }
+
   /** @return {@code true} if objects in this space may move */
   public boolean isMovable() {
     return movable;
   }
 
+  /**
+   * Spaces that allocate densely across their chunks may prefer to be
+   * backed by huge pages, which are then used if the <code>hugePages</code>
+   * option is set.
+   *
+   * @return {@code true} if this space prefers to be backed by huge pages
+   */
+  public boolean prefersHugePages() {
+    return false;
+  }
+
   /** @return The number of reserved pages */
   public final int reservedPages() {
     return pr.reservedPages();
@@ -488,12 +505,16 @@ public abstract class Space {
    * This hook is called by page resources each time a space grows.  The space may
    * tap into the hook to monitor heap growth.  The call is made from within the
    * page resources' critical region, immediately before yielding the lock.
+   * Overriding spaces must call this method, which maps the card table
+   * covering the new space when the plan uses one.
    *
    * @param start The start of the newly allocated space
    * @param bytes The size of the newly allocated space
    * @param newChunk {@code true} if the new space encroached upon or started a new chunk or chunks.
    */
-  public void growSpace(Address start, Extent bytes, boolean newChunk) {}
+  public void growSpace(Address start, Extent bytes, boolean newChunk) {
+    if (CardTable.isEnabled()) CardTable.ensureMapped(start, bytes);
+  }
 
   /**
    * Release one or more contiguous chunks associated with a discontiguous
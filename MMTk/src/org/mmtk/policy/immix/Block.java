@@ -89,6 +89,22 @@ public class Block  {
     getBlockMarkStateAddress(address).store(value);
   }
 
+  /**
+   * @param address the block's address
+   * @return whether sweeping of the block was deferred at the last collection
+   */
+  public static boolean isUnswept(final Address address) {
+    return getBlockMarkState(address) == UNSWEPT_BLOCK_STATE;
+  }
+
+  static boolean isUnsweptState(Address cursor) {
+    return cursor.loadShort() == UNSWEPT_BLOCK_STATE;
+  }
+
+  static void setStateAsUnswept(Address cursor) {
+    cursor.store(UNSWEPT_BLOCK_STATE);
+  }
+
   static Address getBlockMarkStateAddress(Address address) {
     Address chunk = Chunk.align(address);
     int index = getChunkIndex(address);
@@ -102,6 +118,41 @@ public class Block  {
     return rtn;
   }
 
+  /***************************************************************************
+   * Block liveness marks
+   */
+
+  /**
+   * Marks a block as containing at least one marked line.  The mark
+   * allows empty blocks to be identified without inspecting their line
+   * marks when sweeping is deferred.
+   *
+   * @param address an address within the block
+   * @param markValue the line mark value of the current collection
+   */
+  static void mark(Address address, final byte markValue) {
+    getBlockMarkAddress(address).store(markValue);
+  }
+
+  static boolean isMarked(Address address, final byte markValue) {
+    return getBlockMarkAddress(address).loadByte() == markValue;
+  }
+
+  static void clearMark(Address address) {
+    getBlockMarkAddress(address).store((byte) 0);
+  }
+
+  private static Address getBlockMarkAddress(Address address) {
+    Address chunk = Chunk.align(address);
+    int index = getChunkIndex(address);
+    Address rtn = chunk.plus(Chunk.BLOCK_MARK_TABLE_OFFSET).plus(index << LOG_BYTES_IN_BLOCK_MARK_ENTRY);
+    if (VM.VERIFY_ASSERTIONS) {
+      boolean valid = rtn.GE(chunk.plus(Chunk.BLOCK_MARK_TABLE_OFFSET)) && rtn.LT(chunk.plus(Chunk.BLOCK_MARK_TABLE_OFFSET + BLOCK_MARK_TABLE_BYTES));
+      VM.assertions._assert(valid);
+    }
+    return rtn;
+  }
+
   /***************************************************************************
    * Sweeping
    */
@@ -112,7 +163,10 @@ public class Block  {
    * TODO: needs better documentation.
    *
    * @param block the block's address
-   * @param markHistogram the mark histogram
+   * @param markHistogram the mark histogram, or {@code null} if the
+   * block's marks are not to be recorded.  The marked lines and the
+   * number of blocks with each spill count are recorded separately
+   * (see {@link ImmixConstants#SPILL_HISTOGRAM_ENTRIES}).
    * @param markState the mark value
    * @param resetMarkState whether to reset the mark state
    * @return number of marked lines
@@ -156,7 +210,10 @@ public class Block  {
 
     getDefragStateAddress(block).store(conservativeSpillCount);
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(markCount >= conservativeSpillCount);
-    markHistogram[conservativeSpillCount] += markCount;
+    if (markHistogram != null && markCount > 0) {
+      markHistogram[conservativeSpillCount] += markCount;
+      markHistogram[SPILL_HISTOGRAM_BUCKETS + conservativeSpillCount]++;
+    }
 
     markCount = (short) (markCount + conservativeSpillCount);
 
@@ -208,6 +265,7 @@ public class Block  {
   private static final short UNALLOCATED_BLOCK_STATE = 0;
   private static final short UNMARKED_BLOCK_STATE = (short) (MAX_BLOCK_MARK_STATE + 1);
   private static final short REUSED_BLOCK_STATE = (short) (MAX_BLOCK_MARK_STATE + 2);
+  private static final short UNSWEPT_BLOCK_STATE = (short) (MAX_BLOCK_MARK_STATE + 3);
 
   private static final short BLOCK_IS_NOT_DEFRAG_SOURCE = 0;
   private static final short BLOCK_IS_DEFRAG_SOURCE = 1;
@@ -222,4 +280,8 @@ public class Block  {
   static final int BYTES_IN_BLOCK_DEFRAG_STATE_ENTRY = 1 << LOG_BYTES_IN_BLOCK_DEFRAG_STATE_ENTRY;
 
   static final int BLOCK_DEFRAG_STATE_TABLE_BYTES = BLOCKS_IN_CHUNK << LOG_BYTES_IN_BLOCK_DEFRAG_STATE_ENTRY;
+
+  /* per-block liveness marks */
+  static final int LOG_BYTES_IN_BLOCK_MARK_ENTRY = 0;
+  static final int BLOCK_MARK_TABLE_BYTES = BLOCKS_IN_CHUNK << LOG_BYTES_IN_BLOCK_MARK_ENTRY;
 }
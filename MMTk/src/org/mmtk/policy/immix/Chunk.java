@@ -65,6 +65,7 @@ public class Chunk {
       } else {
         if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(marked > 0 && marked <= LINES_IN_BLOCK);
         Block.setState(cursor, marked);
+        if (resetMarks) Block.mark(block, RESET_LINE_MARK_STATE);
         if (defragSource) Defrag.defragBytesNotFreed.inc(BYTES_IN_BLOCK);
       }
       if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Block.isUnused(block) || (Block.getBlockMarkState(block) == marked && marked > 0 && marked <= MAX_BLOCK_MARK_STATE));
@@ -72,6 +73,76 @@ public class Chunk {
     }
   }
 
+  /**
+   * The cheap, eager part of a deferred sweep: release every block that
+   * was not marked in the last collection, and defer the sweep of the
+   * line marks of every other block, either to the allocator that
+   * recycles it, or to the start of the next collection.
+   *
+   * @param chunk the chunk
+   * @param end the chunk's high water mark
+   * @param space the space to which the chunk belongs
+   * @param markValue the line mark value of the last collection
+   */
+  static void releaseUnmarkedBlocks(Address chunk, Address end, ImmixSpace space, final byte markValue) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(isAligned(chunk));
+    Address start = getFirstUsableBlock(chunk);
+    Address cursor = Block.getBlockMarkStateAddress(start);
+    for (int index = FIRST_USABLE_BLOCK_INDEX; index < BLOCKS_IN_CHUNK; index++) {
+      Address block = chunk.plus(index << LOG_BYTES_IN_BLOCK);
+      if (block.GT(end)) break;
+      if (!Block.isUnusedState(cursor)) {
+        if (Block.isMarked(block, markValue))
+          Block.setStateAsUnswept(cursor);
+        else
+          space.release(block);
+      }
+      cursor = cursor.plus(Block.BYTES_IN_BLOCK_STATE_ENTRY);
+    }
+  }
+
+  /**
+   * Sweep every block of the chunk whose sweep was deferred at the last
+   * collection.
+   *
+   * @param chunk the chunk
+   * @param end the chunk's high water mark
+   * @param space the space to which the chunk belongs
+   * @param markHistogram the mark histogram
+   * @param markValue the line mark value of the collection that deferred the sweep
+   */
+  static void sweepUnsweptBlocks(Address chunk, Address end, ImmixSpace space, int[] markHistogram, final byte markValue) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(isAligned(chunk));
+    Address start = getFirstUsableBlock(chunk);
+    Address cursor = Block.getBlockMarkStateAddress(start);
+    for (int index = FIRST_USABLE_BLOCK_INDEX; index < BLOCKS_IN_CHUNK; index++) {
+      Address block = chunk.plus(index << LOG_BYTES_IN_BLOCK);
+      if (block.GT(end)) break;
+      if (Block.isUnsweptState(cursor))
+        sweepUnsweptBlock(block, cursor, space, markHistogram, markValue);
+      cursor = cursor.plus(Block.BYTES_IN_BLOCK_STATE_ENTRY);
+    }
+  }
+
+  /**
+   * Sweep a single block whose sweep was deferred, releasing it if none
+   * of its lines turn out to be marked.
+   *
+   * @param block the block
+   * @param cursor the address of the block's state
+   * @param space the space to which the block belongs
+   * @param markHistogram the mark histogram, or {@code null}
+   * @param markValue the line mark value of the collection that deferred the sweep
+   */
+  static void sweepUnsweptBlock(Address block, Address cursor, ImmixSpace space, int[] markHistogram, final byte markValue) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Block.isUnsweptState(cursor));
+    short marked = Block.sweepOneBlock(block, markHistogram, markValue, false);
+    if (marked == 0)
+      space.release(block);
+    else
+      Block.setState(cursor, marked);
+  }
+
   static void clearMetaData(Address chunk) {
     if (VM.VERIFY_ASSERTIONS) {
       VM.assertions._assert(isAligned(chunk));
@@ -154,7 +225,8 @@ public class Chunk {
   static final int LINE_MARK_TABLE_OFFSET = 0;
   static final int BLOCK_STATE_TABLE_OFFSET = LINE_MARK_TABLE_OFFSET + Line.LINE_MARK_TABLE_BYTES;
   static final int BLOCK_DEFRAG_STATE_TABLE_OFFSET = BLOCK_STATE_TABLE_OFFSET + Block.BLOCK_STATE_TABLE_BYTES;
-  static final int HIGHWATER_OFFSET = BLOCK_DEFRAG_STATE_TABLE_OFFSET + Block.BLOCK_DEFRAG_STATE_TABLE_BYTES;
+  static final int BLOCK_MARK_TABLE_OFFSET = BLOCK_DEFRAG_STATE_TABLE_OFFSET + Block.BLOCK_DEFRAG_STATE_TABLE_BYTES;
+  static final int HIGHWATER_OFFSET = BLOCK_MARK_TABLE_OFFSET + Block.BLOCK_MARK_TABLE_BYTES;
   static final int MAP_OFFSET = HIGHWATER_OFFSET + HIGHWATER_BYTES;
   static final int METADATA_BYTES_PER_CHUNK = MAP_OFFSET + MAP_BYTES;
 
@@ -36,6 +36,13 @@ public final class ChunkList {
     chunkMapLimit = chunkMapCursor;
   }
 
+  /**
+   * @return The last entry of the map visited by the chunk iterators
+   */
+  int getLimit() {
+    return chunkMapLimit;
+  }
+
   public Address getHeadChunk() {
     if (chunkMapLimit < 0)
       return Address.zero();
@@ -23,7 +23,9 @@ import org.vmmagic.unboxed.Address;
  * This class implements unsynchronized (local) elements of an
  * immix collector.  Marking is done using both a bit in
  * each header's object word, and a mark byte.  Sweeping is
- * performed lazily.
+ * performed lazily: at the end of a collection only empty blocks are
+ * released, and any blocks not swept by allocators in the meantime
+ * are swept in parallel at the start of the next collection.
  *
  */
 @Uninterruptible
@@ -71,14 +73,32 @@ public final class CollectorLocal {
    */
 
   /**
-   * Prepare for a collection. If paranoid, perform a sanity check.
+   * Prepare for a collection. If paranoid, perform a sanity check.<p>
+   *
+   * In a full heap collection, the histograms gathered by each collector
+   * as it swept are merged, and used to estimate the fragmentation of the
+   * space and, when defragmenting, to choose the blocks to evacuate.
    *
    * @param majorGC whether the collection will be a full heap collection
    */
   public void prepare(boolean majorGC) {
     int ordinal = VM.activePlan.collector().parallelWorkerOrdinal();
+    int stride = VM.activePlan.collector().parallelWorkerCount();
+    if (immixSpace.isSweepDeferred()) {
+      sweepUnsweptBlocks(ordinal);
+    }
     if (majorGC) {
-      if (immixSpace.inImmixDefragCollection()) {
+      boolean inDefrag = immixSpace.inImmixDefragCollection();
+      if (inDefrag) {
+        immixSpace.getAvailableLines(ordinal, stride, defrag.getSpillAvailHistogram(ordinal));
+      }
+      VM.activePlan.collector().rendezvous();
+      defrag.mergeHistograms(ordinal, stride);
+      if (VM.activePlan.collector().rendezvous() == 0) {
+        defrag.histogramsMerged();
+      }
+      VM.activePlan.collector().rendezvous();
+      if (inDefrag) {
         short threshold = Defrag.defragSpillThreshold;
         resetLineMarksAndDefragStateTable(ordinal, threshold);
       }
@@ -103,13 +123,39 @@ public final class CollectorLocal {
    * @param majorGC whether the collection was a full heap collection
    */
   public void release(boolean majorGC) {
-    sweepAllBlocks(majorGC);
+    if (immixSpace.deferSweep(majorGC))
+      releaseUnmarkedBlocks();
+    else
+      sweepAllBlocks(majorGC);
+  }
+
+  private void releaseUnmarkedBlocks() {
+    int stride = VM.activePlan.collector().parallelWorkerCount();
+    int ordinal = VM.activePlan.collector().parallelWorkerOrdinal();
+    defrag.getAndZeroSpillMarkHistogram(ordinal, stride);
+    Address chunk = chunkMap.firstChunk(ordinal, stride);
+    final byte markValue = immixSpace.lineMarkState;
+    while (!chunk.isZero()) {
+      Chunk.releaseUnmarkedBlocks(chunk, Chunk.getHighWater(chunk), immixSpace, markValue);
+      chunk = chunkMap.nextChunk(chunk, ordinal, stride);
+    }
+  }
+
+  private void sweepUnsweptBlocks(int ordinal) {
+    int stride = VM.activePlan.collector().parallelWorkerCount();
+    int[] markSpillHisto = defrag.getSpillMarkHistogram(ordinal);
+    Address chunk = chunkMap.firstChunk(ordinal, stride);
+    final byte markValue = immixSpace.getLineUnavailState();
+    while (!chunk.isZero()) {
+      Chunk.sweepUnsweptBlocks(chunk, Chunk.getHighWater(chunk), immixSpace, markSpillHisto, markValue);
+      chunk = chunkMap.nextChunk(chunk, ordinal, stride);
+    }
   }
 
   private void sweepAllBlocks(boolean majorGC) {
     int stride = VM.activePlan.collector().parallelWorkerCount();
     int ordinal = VM.activePlan.collector().parallelWorkerOrdinal();
-    int[] markSpillHisto = defrag.getAndZeroSpillMarkHistogram(ordinal);
+    int[] markSpillHisto = defrag.getAndZeroSpillMarkHistogram(ordinal, stride);
     Address chunk = chunkMap.firstChunk(ordinal, stride);
     final byte markValue = immixSpace.lineMarkState;
     final boolean resetMarks = majorGC && markValue == MAX_LINE_MARK_STATE;
@@ -28,6 +28,7 @@ import org.mmtk.utility.options.DefragStress;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.statistics.EventCounter;
 import org.mmtk.utility.statistics.SizeCounter;
+import org.mmtk.vm.Lock;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.Uninterruptible;
@@ -37,9 +38,17 @@ public class Defrag {
   private boolean inDefragCollection = false;
   private int debugBytesDefraged = 0;
   private int availableCleanPagesForDefrag;
+  private int cleanPagesForSpillThreshold;
   private boolean defragSpaceExhausted = true;
+  private boolean opportunisticDefrag = false;
+  private boolean fragmented = false;
   private int[][] spillMarkHistograms;
+  private int[][] spillAvailHistograms;
+  private final int[] spillMarkHistogram = new int[SPILL_HISTOGRAM_ENTRIES];
   private final int[] spillAvailHistogram = new int[SPILL_HISTOGRAM_BUCKETS];
+  /** The marks of the blocks swept by mutators, guarded by mutatorHistogramLock */
+  private final int[] mutatorSpillMarkHistogram = new int[SPILL_HISTOGRAM_ENTRIES];
+  private final Lock mutatorHistogramLock = VM.newLock("defragMutatorHistogram");
   public static SizeCounter defragCleanBytesUsed = new SizeCounter("cleanUsed");
 
   /* verbose stats (used only on stats runs since they induce overhead when gathered) */
@@ -69,7 +78,10 @@ public class Defrag {
   }
 
   /**
-   * Prepares the histograms.<p>
+   * Prepares the histograms.  Each collector fills its own histograms
+   * while sweeping, mutators that sweep blocks whose sweep was deferred
+   * share another, and they are only merged when the defrag heuristics
+   * need them.<p>
    *
    * This needs to happen at runtime because the collector count is not known
    * at build time.
@@ -77,7 +89,8 @@ public class Defrag {
   @Interruptible
   void prepareHistograms() {
     int collectorCount = VM.activePlan.collectorCount();
-    spillMarkHistograms = new int[collectorCount][SPILL_HISTOGRAM_BUCKETS];
+    spillMarkHistograms = new int[collectorCount][SPILL_HISTOGRAM_ENTRIES];
+    spillAvailHistograms = new int[collectorCount][SPILL_HISTOGRAM_BUCKETS];
   }
 
   boolean inDefrag() {
@@ -101,7 +114,8 @@ public class Defrag {
         Log.write("[Defrag]");
       }
       chunkMap.consolidateMap();
-      establishDefragSpillThreshold(chunkMap, space);
+      space.prepareAvailableLines();
+      cleanPagesForSpillThreshold = availableCleanPagesForDefrag;
       defrags.inc();
       defragCleanBytesAvailable.inc(availableCleanPagesForDefrag << LOG_BYTES_IN_PAGE);
     }
@@ -121,7 +135,12 @@ public class Defrag {
       Log.write(")");
     }
 
+    if (inDefragCollection) {
+      /* the histograms no longer describe the heap */
+      fragmented = false;
+    }
     inDefragCollection = false;
+    opportunisticDefrag = false;
     debugCollectionTypeDetermined = false;
   }
 
@@ -134,16 +153,41 @@ public class Defrag {
     return 0;
   }
 
+  /**
+   * Determine whether the current collection will defragment.  Besides
+   * the cases where defragmentation is forced, a whole heap collection
+   * defragments opportunistically when the histograms merged at the
+   * last whole heap collection showed enough lines worth freeing, and
+   * the recyclable lines have all been used since.
+   *
+   * @param emergencyCollection Is this collection an emergency?
+   * @param collectWholeHeap Is this a whole heap collection?
+   * @param collectionAttempt Which attempt is this to collect?
+   * @param userTriggered Was this collection requested by the user?
+   * @param exhaustedReusableSpace Have the recyclable lines been used up?
+   */
   void decideWhetherToDefrag(boolean emergencyCollection, boolean collectWholeHeap, int collectionAttempt, boolean userTriggered, boolean exhaustedReusableSpace) {
     inDefragCollection =  (collectionAttempt > 1) ||
         emergencyCollection ||
         collectWholeHeap && (Options.defragStress.getValue() || (userTriggered && Options.fullHeapSystemGC.getValue()));
+    opportunisticDefrag = !inDefragCollection && collectWholeHeap && wantsDefrag(exhaustedReusableSpace);
+    if (opportunisticDefrag) {
+      inDefragCollection = true;
+    }
     if (inDefragCollection) {
       debugBytesDefraged = 0;
     }
     debugCollectionTypeDetermined = true;
   }
 
+  /**
+   * @param exhaustedReusableSpace Have the recyclable lines been used up?
+   * @return {@code true} if a defragmenting collection is likely to be worthwhile
+   */
+  boolean wantsDefrag(boolean exhaustedReusableSpace) {
+    return fragmented && exhaustedReusableSpace;
+  }
+
   boolean determined(boolean inDefrag) {
     return debugCollectionTypeDetermined && !(inDefrag ^ inDefragCollection);
   }
@@ -157,12 +201,83 @@ public class Defrag {
     Defrag.defragCleanBytesUsed.inc(BYTES_IN_BLOCK);
   }
 
-  private void establishDefragSpillThreshold(ChunkList chunkMap, ImmixSpace space) {
-    int cleanLines = space.getAvailableLines(spillAvailHistogram);
-    int availableLines = cleanLines + availableCleanPagesForDefrag << (LOG_BYTES_IN_PAGE - LOG_BYTES_IN_LINE);
+  /**
+   * Merge the histograms of all collectors.  Each collector sums a
+   * disjoint set of buckets across the histograms of every collector,
+   * so no synchronization is needed beyond a rendezvous either side
+   * of the merge.
+   *
+   * @param ordinal The ordinal of the calling collector
+   * @param stride The number of collectors merging
+   */
+  void mergeHistograms(int ordinal, int stride) {
+    int collectors = spillMarkHistograms.length;
+    for (int i = ordinal; i < SPILL_HISTOGRAM_ENTRIES; i += stride) {
+      int sum = mutatorSpillMarkHistogram[i];
+      for (int c = 0; c < collectors; c++) sum += spillMarkHistograms[c][i];
+      spillMarkHistogram[i] = sum;
+      if (inDefragCollection && i < SPILL_HISTOGRAM_BUCKETS) {
+        sum = 0;
+        for (int c = 0; c < collectors; c++) sum += spillAvailHistograms[c][i];
+        spillAvailHistogram[i] = sum;
+      }
+    }
+  }
+
+  /**
+   * The histograms have been merged: estimate the fragmentation of the
+   * space, and if this is a defragmenting collection, choose the blocks
+   * to evacuate.  Performed by a single collector.
+   */
+  void histogramsMerged() {
+    fragmented = estimateFragmentation();
+    if (inDefragCollection) {
+      establishDefragSpillThreshold();
+    }
+  }
+
+  /**
+   * The cost model.  Evacuating the blocks of a bucket costs copying
+   * their marked lines, and frees every other line of those blocks.
+   *
+   * @param bucket The spill count of the blocks
+   * @param minYield The lines that must be freed per line copied
+   * @return {@code true} if the blocks of the bucket are worth evacuating
+   */
+  private boolean worthEvacuating(short bucket, float minYield) {
+    int markedLines = spillMarkHistogram[bucket];
+    int freedLines = spillMarkHistogram[SPILL_HISTOGRAM_BUCKETS + bucket] * LINES_IN_BLOCK - markedLines;
+    return freedLines >= markedLines * minYield;
+  }
+
+  /**
+   * @return {@code true} if evacuating the blocks worth evacuating
+   * would free enough of the space
+   */
+  private boolean estimateFragmentation() {
+    int liveBlocks = 0;
+    for (int i = 0; i < SPILL_HISTOGRAM_BUCKETS; i++) liveBlocks += spillMarkHistogram[SPILL_HISTOGRAM_BUCKETS + i];
+    int freeableLines = 0;
+    for (short index = MAX_CONSV_SPILL_COUNT; index >= TMP_MIN_SPILL_THRESHOLD && worthEvacuating(index, DEFRAG_MIN_YIELD); index--) {
+      freeableLines += spillMarkHistogram[SPILL_HISTOGRAM_BUCKETS + index] * LINES_IN_BLOCK - spillMarkHistogram[index];
+    }
+    if (Options.verbose.getValue() > 2) {
+      Log.write("[fragmentation: ");
+      Log.write("lb: ", liveBlocks);
+      Log.write(" fl: ", freeableLines);
+      Log.write("]");
+    }
+    return freeableLines > 0 && freeableLines >= liveBlocks * LINES_IN_BLOCK * DEFRAG_TRIGGER_FRACTION;
+  }
+
+  private void establishDefragSpillThreshold() {
+    int cleanLines = 0;
+    for (int i = 0; i < SPILL_HISTOGRAM_BUCKETS; i++) cleanLines += spillAvailHistogram[i];
+    int availableLines = cleanLines + (cleanPagesForSpillThreshold << (LOG_BYTES_IN_PAGE - LOG_BYTES_IN_LINE));
+    float minYield = opportunisticDefrag ? DEFRAG_MIN_YIELD : 0;
 
     int requiredLines = 0;
-    short threshold = MAX_CONSV_SPILL_COUNT;
+    short threshold = opportunisticDefrag ? SPILL_HISTOGRAM_BUCKETS : MAX_CONSV_SPILL_COUNT;
     int limit = (int) (availableLines / Options.defragLineReuseRatio.getValue());
     if (VM.VERIFY_ASSERTIONS && Options.verbose.getValue() > 2) {
       Log.write("[threshold: ");
@@ -170,16 +285,10 @@ public class Defrag {
       Log.write(" al: ", availableLines);
       Log.write(" lm: ", limit);
     }
-    int collectors = VM.activePlan.collectorCount();
-    for (short index = MAX_CONSV_SPILL_COUNT; index >= TMP_MIN_SPILL_THRESHOLD && limit > requiredLines; index--) {
+    for (short index = MAX_CONSV_SPILL_COUNT; index >= TMP_MIN_SPILL_THRESHOLD && limit > requiredLines && worthEvacuating(index, minYield); index--) {
       threshold = index;
-      int thisBucketMark = 0;
-      int thisBucketAvail = 0;
-      for (int c = 0; c < collectors; c++) thisBucketMark += spillMarkHistograms[c][threshold];
-
-      thisBucketAvail = spillAvailHistogram[threshold];
-      limit -= thisBucketAvail;
-      requiredLines += thisBucketMark;
+      limit -= spillAvailHistogram[threshold];
+      requiredLines += spillMarkHistogram[threshold];
       if (VM.VERIFY_ASSERTIONS && Options.verbose.getValue() > 2) {
         Log.write(" (", index);
         Log.write(" ", limit);
@@ -194,15 +303,54 @@ public class Defrag {
     defragSpillThreshold = threshold;
   }
 
-
   boolean spaceExhausted() {
     return defragSpaceExhausted;
   }
 
-  int[] getAndZeroSpillMarkHistogram(int ordinal) {
-    int[] rtn = spillMarkHistograms[ordinal];
-    for (int i = 0; i < SPILL_HISTOGRAM_BUCKETS; i++)
-      rtn[i] = 0;
-    return rtn;
+  int[] getSpillMarkHistogram(int ordinal) {
+    return spillMarkHistograms[ordinal];
+  }
+
+  int[] getSpillAvailHistogram(int ordinal) {
+    return spillAvailHistograms[ordinal];
+  }
+
+  /**
+   * Record the marks of a block swept by a mutator, which sweeps blocks
+   * whose sweep was deferred as it recycles them.
+   *
+   * @param spillCount The conservative spill count of the block
+   * @param markCount The number of lines marked in the block, not
+   * counting the spilled lines
+   */
+  void recordMutatorSweep(short spillCount, short markCount) {
+    mutatorHistogramLock.acquire();
+    mutatorSpillMarkHistogram[spillCount] += markCount;
+    mutatorSpillMarkHistogram[SPILL_HISTOGRAM_BUCKETS + spillCount]++;
+    mutatorHistogramLock.release();
+  }
+
+  /**
+   * Zero the mark histogram of a collector before it sweeps, along with
+   * those of any collectors not taking part in this collection (every
+   * collector with an ordinal of at least the stride), so that the
+   * histograms only describe the current sweep.  The first collector
+   * also zeroes the histogram of the blocks swept by mutators.
+   *
+   * @param ordinal The ordinal of the calling collector
+   * @param stride The number of collectors taking part
+   * @return The mark histogram of the calling collector
+   */
+  int[] getAndZeroSpillMarkHistogram(int ordinal, int stride) {
+    if (ordinal == 0) {
+      for (int i = 0; i < SPILL_HISTOGRAM_ENTRIES; i++)
+        mutatorSpillMarkHistogram[i] = 0;
+    }
+    for (int c = ordinal; c < spillMarkHistograms.length; c += stride) {
+      int[] histogram = spillMarkHistograms[c];
+      for (int i = 0; i < SPILL_HISTOGRAM_ENTRIES; i++)
+        histogram[i] = 0;
+    }
+    return spillMarkHistograms[ordinal];
   }
 }
@@ -35,6 +35,9 @@ public class ImmixConstants {
 
   public static final boolean SANITY_CHECK_LINE_MARKS = false && VM.VERIFY_ASSERTIONS;
 
+  /* defer sweeping of line marks to allocation time (the sanity check requires an eager sweep) */
+  public static final boolean LAZY_SWEEP = !SANITY_CHECK_LINE_MARKS;
+
   public static final float DEFAULT_LINE_REUSE_RATIO = (float) 0.99;
   public static final float DEFAULT_DEFRAG_LINE_REUSE_RATIO = (float) 0.99;
   public static final float DEFAULT_SIMPLE_SPILL_THRESHOLD = (float) 0.25;
@@ -42,6 +45,10 @@ public class ImmixConstants {
   public static final float DEFAULT_DEFRAG_HEADROOM_FRACTION = (float) 0.020;
   public static final int DEFAULT_DEFRAG_FREE_HEADROOM = 0; // number of pages.  This should only deviate from zero for analytical purposes.  Otherwise the defragmenter is cheating!
   public static final float DEFAULT_DEFRAG_FREE_HEADROOM_FRACTION = (float) 0.0;
+  /* opportunistic defrag: only evacuate blocks which free at least this many lines per line copied */
+  public static final float DEFRAG_MIN_YIELD = (float) 1.0;
+  /* opportunistic defrag: only defragment once this fraction of the lines of live blocks may be freed */
+  public static final float DEFRAG_TRIGGER_FRACTION = (float) 0.125;
   /* sizes etc */
   static final int LOG_BYTES_IN_BLOCK = (LOG_BYTES_IN_PAGE > 15 ? LOG_BYTES_IN_PAGE : 15);
   public static final int BYTES_IN_BLOCK = 1 << LOG_BYTES_IN_BLOCK;
@@ -67,6 +74,8 @@ public class ImmixConstants {
   public static final short MAX_BLOCK_MARK_STATE = LINES_IN_BLOCK;
          static final short MAX_CONSV_SPILL_COUNT = (short) (LINES_IN_BLOCK / 2);
   public static final short SPILL_HISTOGRAM_BUCKETS = (short) (MAX_CONSV_SPILL_COUNT + 1);
+  /* marked lines per spill count, followed by blocks per spill count */
+  public static final short SPILL_HISTOGRAM_ENTRIES = (short) (2 * SPILL_HISTOGRAM_BUCKETS);
   public static final short MARK_HISTOGRAM_BUCKETS = (short) (LINES_IN_BLOCK + 1);
 
   public static final Word RECYCLE_ALLOC_CHUNK_MASK = Word.fromIntZeroExtend(BYTES_IN_RECYCLE_ALLOC_CHUNK - 1);
@@ -75,6 +75,10 @@ public final class ImmixSpace extends Space {
   private Address allocBlockCursor = Address.zero();
   private Address allocBlockSentinel = Address.zero();
   private boolean exhaustedReusableSpace = true;
+  private boolean sweepDeferred = false;
+  private int availableRegionStart;
+  private int availableRegionBlocks;
+  private int availableBlockPositions;
 
   private final ChunkList chunkMap = new ChunkList();
   private final Defrag defrag;
@@ -152,6 +156,7 @@ public final class ImmixSpace extends Space {
    */
   public boolean release(boolean majorGC) {
     boolean didDefrag = defrag.inDefrag();
+    sweepDeferred = deferSweep(majorGC);
     if (majorGC) {
       if (lineMarkState == MAX_LINE_MARK_STATE)
         lineMarkState = RESET_LINE_MARK_STATE;
@@ -180,6 +185,57 @@ public final class ImmixSpace extends Space {
     return didDefrag;
   }
 
+  /**
+   * Determine whether the sweep at the end of the current collection
+   * may be deferred.  Only blocks with no marked lines are released
+   * eagerly; the line marks of all other blocks are swept by the
+   * allocator that recycles the block, or, failing that, in parallel
+   * by the collectors at the start of the next collection.<p>
+   *
+   * Defragmenting collections, and collections in which the line mark
+   * state wraps around (and every line mark must be reset), are always
+   * swept eagerly.
+   *
+   * @param majorGC whether the collection is a full heap collection
+   * @return {@code true} if the sweep should be deferred
+   */
+  public boolean deferSweep(boolean majorGC) {
+    return LAZY_SWEEP && !defrag.inDefrag() && !(majorGC && lineMarkState == MAX_LINE_MARK_STATE);
+  }
+
+  /**
+   * @return whether blocks remain whose sweep was deferred
+   * at the last collection
+   */
+  public boolean isSweepDeferred() {
+    return sweepDeferred;
+  }
+
+  /**
+   * Sweep a block whose sweep was deferred at the last collection, prior
+   * to recycling its free lines.  The block is released if none of its
+   * lines turn out to be marked, and otherwise its marks are recorded
+   * for the defrag heuristics of the next full heap collection.
+   *
+   * @param block the block to sweep
+   */
+  public void sweepUnsweptBlock(Address block) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!inCollection && Block.isUnswept(block));
+    Address cursor = Block.getBlockMarkStateAddress(block);
+    Chunk.sweepUnsweptBlock(block, cursor, this, null, lineUnavailState);
+    if (!Block.isUnusedState(cursor)) {
+      short spillCount = Block.getConservativeSpillCount(block);
+      defrag.recordMutatorSweep(spillCount, (short) (Block.getMarkState(cursor) - spillCount));
+    }
+  }
+
+  /**
+   * @return the line mark value of the last completed collection
+   */
+  byte getLineUnavailState() {
+    return lineUnavailState;
+  }
+
   /**
    * Determine the collection kind.
    *
@@ -192,6 +248,18 @@ public final class ImmixSpace extends Space {
     defrag.decideWhetherToDefrag(emergencyCollection, collectWholeHeap, collectionAttempt, userTriggeredCollection, exhaustedReusableSpace);
   }
 
+  /**
+   * Would a defragmenting collection be worthwhile?  This is the case
+   * when the histograms merged at the last whole heap collection showed
+   * enough lines worth freeing, and the recyclable lines have all been
+   * used since.
+   *
+   * @return {@code true} if a defragmenting collection is likely to be worthwhile
+   */
+  public boolean wantsDefrag() {
+    return defrag.wantsDefrag(exhaustedReusableSpace);
+  }
+
   /**
    * Return the amount of headroom required to allow defrag, so this can be included in a collection reserve.
    *
@@ -305,6 +373,11 @@ public final class ImmixSpace extends Space {
     }
   }
 
+  @Override
+  public boolean prefersHugePages() {
+    return true;
+  }
+
   public Address acquireReusableBlocks() {
     if (VM.VERIFY_ASSERTIONS) {
       VM.assertions._assert(isRecycleAllocChunkAligned(allocBlockCursor));
@@ -351,6 +424,8 @@ public final class ImmixSpace extends Space {
   public void release(Address block) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Block.isAligned(block));
     Block.setBlockAsUnallocated(block);
+    Block.clearMark(block);
+    Block.clearConservativeSpillCount(block);
     ((FreeListPageResource) pr).releasePages(block);
   }
 
@@ -385,6 +460,23 @@ public final class ImmixSpace extends Space {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!ForwardingWord.isForwardedOrBeingForwarded(object));
   }
 
+  /**
+   * Perform any required post allocation initialization for an object
+   * allocated while a concurrent trace is in progress.  The object is
+   * allocated black: both it and its lines are marked, so the trace need
+   * not visit it and the subsequent sweep will retain it.
+   *
+   * @param object the object ref to the storage to be initialized
+   * @param bytes size of the allocated object in bytes
+   */
+  @Inline
+  public void postAllocMarked(ObjectReference object, int bytes) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(inCollection && !defrag.inDefrag());
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(ObjectHeader.isNewObject(object));
+    ObjectHeader.writeMarkState(object, markState, bytes > BYTES_IN_LINE);
+    markLines(object);
+  }
+
  /**
   * Perform any required post copy (i.e. in-GC allocation) initialization.
   * This is relevant (for example) when Squish is used as the mature space in
@@ -450,6 +542,27 @@ public final class ImmixSpace extends Space {
     return object;
   }
 
+  /**
+   * Trace a reference to an object while mutators are running, either
+   * from a concurrent collector or from a mutator's write barrier.  The
+   * mark is set atomically since both may reach the same object at once.
+   *
+   * @param trace The trace performing the transitive closure
+   * @param object The object to be traced.
+   * @return The object (concurrent traces never move objects).
+   */
+  @Inline
+  public ObjectReference concurrentTraceObject(TransitiveClosure trace, ObjectReference object) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(defrag.determined(false));
+    if (ObjectHeader.attemptToMark(object, markState)) {
+      if (!MARK_LINE_AT_SCAN_TIME)
+        markLines(object);
+      trace.processNode(object);
+    }
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!ForwardingWord.isForwardedOrBeingForwarded(object));
+    return object;
+  }
+
   /**
    * Trace a reference to an object during a nursery collection for
    * a sticky mark bits implementation of immix.  If the object header
@@ -610,6 +723,7 @@ public final class ImmixSpace extends Space {
   public void markLines(ObjectReference object) {
     Address address = VM.objectModel.objectStartRef(object);
     Line.mark(address, lineMarkState);
+    Block.mark(address, lineMarkState);
     if (ObjectHeader.isStraddlingObject(object))
       Line.markMultiLine(address, object, lineMarkState);
   }
@@ -628,70 +742,84 @@ public final class ImmixSpace extends Space {
   */
 
   /**
-   * Establish the number of recyclable lines lines available for allocation
-   * during defragmentation, populating the spillAvailHistogram, which buckets
-   * available lines according to the number of holes on the block on which
-   * the available lines reside.
-   *
-   * @param spillAvailHistogram A histogram of availability to be populated
-   * @return The number of available recyclable lines
-   */
-  int getAvailableLines(int[] spillAvailHistogram) {
-    int availableLines;
+   * Establish the region of recyclable blocks not yet used by allocators,
+   * which will be available for allocation during defragmentation.  The
+   * region is recorded as a range of block positions in the chunk map,
+   * and must be established by a single thread once the chunk map has
+   * been consolidated.
+   */
+  void prepareAvailableLines() {
+    availableBlockPositions = (chunkMap.getLimit() + 1) << LOG_BLOCKS_IN_CHUNK;
     if (allocBlockCursor.isZero() || exhaustedReusableSpace) {
-      availableLines = 0;
+      availableRegionBlocks = 0;
     } else {
       if (allocBlockCursor.EQ(allocBlockSentinel)) {
         if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!exhaustedReusableSpace);
         allocBlockCursor = chunkMap.getHeadChunk();
         allocBlockSentinel = allocBlockCursor;
       }
-      availableLines = getUsableLinesInRegion(allocBlockCursor, allocBlockSentinel, spillAvailHistogram);
+      availableRegionStart = getBlockPosition(allocBlockCursor);
+      int end = getBlockPosition(allocBlockSentinel);
+      if (availableRegionStart < 0 || end < 0) {
+        availableRegionStart = 0;
+        availableRegionBlocks = availableBlockPositions;
+      } else {
+        availableRegionBlocks = end - availableRegionStart;
+        if (availableRegionBlocks <= 0) availableRegionBlocks += availableBlockPositions;
+      }
     }
-    return availableLines;
   }
 
   /**
-   * Return the number of lines usable for allocation during defragmentation in the
-   * address range specified by start and end.  Populate a histogram to indicate where
-   * the usable lines reside as a function of block hole count.
-   *
-   * @param start  The start of the region to be checked for availability
-   * @param end The end of the region to be checked for availability
-   * @param spillAvailHistogram The histogram which will be populated
-   * @return The number of usable lines
+   * @param block A block in this space
+   * @return The position of the block in the chunk map, or -1 if its
+   * chunk is no longer in the map
+   */
+  private int getBlockPosition(Address block) {
+    int entry = Chunk.getMap(Chunk.align(block));
+    if (entry > chunkMap.getLimit()) return -1;
+    return (entry << LOG_BLOCKS_IN_CHUNK) + (Chunk.getByteOffset(block) >> LOG_BYTES_IN_BLOCK);
+  }
+
+  /**
+   * Establish the number of recyclable lines available for allocation
+   * during defragmentation in the chunks visited by one collector,
+   * populating a histogram which buckets available lines according to
+   * the number of holes on the block on which the available lines reside.
+   * This is performed by all collectors in parallel, each with its own
+   * histogram.
+   *
+   * @param ordinal The ordinal of the calling collector
+   * @param stride The number of collectors taking part
+   * @param spillAvailHistogram A histogram of availability to be populated
+   * @return The number of available recyclable lines
    */
-  private int getUsableLinesInRegion(Address start, Address end, int[] spillAvailHistogram) {
+  int getAvailableLines(int ordinal, int stride, int[] spillAvailHistogram) {
+    for (int i = 0; i < SPILL_HISTOGRAM_BUCKETS; i++) spillAvailHistogram[i] = 0;
+    if (availableRegionBlocks == 0) return 0;
+
     int usableLines = 0;
-    Address blockCursor = Chunk.isAligned(start) ? start.plus(Chunk.FIRST_USABLE_BLOCK_INDEX << LOG_BYTES_IN_BLOCK) : start;
-    Address blockStateCursor = Block.getBlockMarkStateAddress(blockCursor);
-    Address chunkCursor = Chunk.align(blockCursor);
-    if (Chunk.getByteOffset(end) < Chunk.FIRST_USABLE_BLOCK_INDEX << LOG_BYTES_IN_BLOCK)
-      end = Chunk.align(end).plus(Chunk.FIRST_USABLE_BLOCK_INDEX << LOG_BYTES_IN_BLOCK);
-
-    for (int i = 0; i <= MAX_CONSV_SPILL_COUNT; i++) spillAvailHistogram[i] = 0;
-
-    Address highwater = Chunk.getHighWater(chunkCursor);
-    do {
-      short markState = blockStateCursor.loadShort();
-      if (markState != 0 && markState <= reusableMarkStateThreshold) {
-        int usable = LINES_IN_BLOCK - markState;
-        short bucket = Block.getConservativeSpillCount(blockCursor);
-        if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(bucket >= 0 && bucket <= MAX_CONSV_SPILL_COUNT);
-        spillAvailHistogram[bucket] += usable;
-        usableLines += usable;
+    Address chunk = chunkMap.firstChunk(ordinal, stride);
+    while (!chunk.isZero()) {
+      Address highwater = Chunk.getHighWater(chunk);
+      int position = Chunk.getMap(chunk) << LOG_BLOCKS_IN_CHUNK;
+      for (int index = Chunk.FIRST_USABLE_BLOCK_INDEX; index < BLOCKS_IN_CHUNK; index++) {
+        Address block = chunk.plus(index << LOG_BYTES_IN_BLOCK);
+        if (block.GT(highwater)) break;
+        int offset = position + index - availableRegionStart;
+        if (offset < 0) offset += availableBlockPositions;
+        if (offset >= availableRegionBlocks) continue;
+        short markState = Block.getBlockMarkState(block);
+        if (markState != 0 && markState <= reusableMarkStateThreshold) {
+          int usable = LINES_IN_BLOCK - markState;
+          short bucket = Block.getConservativeSpillCount(block);
+          if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(bucket >= 0 && bucket <= MAX_CONSV_SPILL_COUNT);
+          spillAvailHistogram[bucket] += usable;
+          usableLines += usable;
+        }
       }
-      blockCursor = blockCursor.plus(BYTES_IN_BLOCK);
-      if (blockCursor.GT(highwater)) {
-        chunkCursor = chunkMap.nextChunk(chunkCursor);
-        if (chunkCursor.isZero()) break;
-        blockCursor = chunkCursor.plus(Chunk.FIRST_USABLE_BLOCK_INDEX << LOG_BYTES_IN_BLOCK);
-        blockStateCursor = Block.getBlockMarkStateAddress(blockCursor);
-        highwater = Chunk.getHighWater(chunkCursor);
-      } else
-        blockStateCursor = blockStateCursor.plus(Block.BYTES_IN_BLOCK_STATE_ENTRY);
-    } while (blockCursor.NE(end));
-
+      chunk = chunkMap.nextChunk(chunk, ordinal, stride);
+    }
     return usableLines;
   }
 
@@ -18,6 +18,7 @@ import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Word;
 
 @Uninterruptible
 public class ObjectHeader {
@@ -81,6 +82,29 @@ public class ObjectHeader {
     return oldMarkState;
   }
 
+  /**
+   * Atomically test and set the mark bits of an object.  Used when
+   * mutators and collectors may race to mark the same object, as they
+   * do during a concurrent trace.
+   *
+   * @param object The object whose mark bits are to be written
+   * @param markState The value to which the mark bits will be set
+   * @return {@code true} if this call set the mark, {@code false} if
+   * the object was already marked
+   */
+  static boolean attemptToMark(ObjectReference object, byte markState) {
+    Word oldValue, newValue;
+    do {
+      oldValue = VM.objectModel.prepareAvailableBits(object);
+      byte oldMarkState = (byte) (oldValue.toInt() & MARK_MASK);
+      if (oldMarkState == markState) return false;
+      newValue = oldValue.and(Word.fromIntZeroExtend(MARK_MASK & 0xff).not()).or(Word.fromIntZeroExtend(markState & 0xff));
+      if (HeaderByte.NEEDS_UNLOGGED_BIT)
+        newValue = newValue.or(Word.fromIntZeroExtend(HeaderByte.UNLOGGED_BIT & 0xff));
+    } while (!VM.objectModel.attemptAvailableBits(object, oldValue, newValue));
+    return true;
+  }
+
   static void setMarkStateUnlogAndUnlock(ObjectReference object, byte gcByte, byte markState) {
     byte oldGCByte = gcByte;
     byte newGCByte = (byte) ((oldGCByte & ~MARK_AND_FORWARDING_MASK) | markState);
@@ -0,0 +1,254 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.policy.region;
+
+import static org.mmtk.utility.Constants.*;
+import static org.mmtk.utility.heap.layout.VMLayoutConstants.LOG_BYTES_IN_CHUNK;
+
+import org.mmtk.utility.Conversions;
+import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class defines operations over the fixed-size regions of a
+ * {@link RegionSpace}.  Each chunk of the space dedicates its first
+ * region to a table holding the state and the estimated live bytes of
+ * every region in the chunk.
+ */
+@Uninterruptible
+public final class Region {
+
+  /****************************************************************************
+   *
+   * Geometry
+   */
+
+  /**
+   *
+   */
+  public static final int LOG_BYTES_IN_REGION = 15;
+  public static final int BYTES_IN_REGION = 1 << LOG_BYTES_IN_REGION;
+  public static final int LOG_PAGES_IN_REGION = LOG_BYTES_IN_REGION - LOG_BYTES_IN_PAGE;
+  public static final int PAGES_IN_REGION = 1 << LOG_PAGES_IN_REGION;
+  private static final Word REGION_MASK = Word.fromIntZeroExtend(BYTES_IN_REGION - 1);
+
+  static final int LOG_REGIONS_IN_CHUNK = LOG_BYTES_IN_CHUNK - LOG_BYTES_IN_REGION;
+  static final int REGIONS_IN_CHUNK = 1 << LOG_REGIONS_IN_CHUNK;
+
+  /****************************************************************************
+   *
+   * Region states
+   */
+
+  /**
+   *
+   */
+  static final int FREE = 0;
+  static final int YOUNG = 1;
+  static final int OLD = 2;
+  private static final int STATE_MASK = 3;
+  /** Flag: the region will be evacuated by the current collection */
+  private static final int COLLECTION_SET = 1 << 2;
+  /** Flag: the region was acquired to receive survivors of the current collection */
+  private static final int TO_SPACE = 1 << 3;
+
+  /****************************************************************************
+   *
+   * Per-chunk metadata
+   */
+
+  /**
+   *
+   */
+  private static final int LOG_BYTES_IN_REGION_METADATA = 3;
+  private static final Offset STATE_OFFSET = Offset.zero();
+  private static final Offset LIVE_BYTES_OFFSET = Offset.fromIntSignExtend(BYTES_IN_INT);
+  private static final int METADATA_BYTES_PER_CHUNK = REGIONS_IN_CHUNK << LOG_BYTES_IN_REGION_METADATA;
+
+  /** The metadata table occupies the first region of every chunk */
+  static final int FIRST_USABLE_REGION_INDEX = 1;
+  static final int METADATA_PAGES_PER_CHUNK = PAGES_IN_REGION;
+
+  static {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(METADATA_BYTES_PER_CHUNK <= BYTES_IN_REGION);
+  }
+
+  /**
+   * @param address An address
+   * @return The start of the region containing the given address
+   */
+  @Inline
+  public static Address align(Address address) {
+    return address.toWord().and(REGION_MASK.not()).toAddress();
+  }
+
+  @Inline
+  static boolean isAligned(Address address) {
+    return address.toWord().and(REGION_MASK).isZero();
+  }
+
+  /**
+   * @param a An address
+   * @param b Another address
+   * @return {@code true} if both addresses lie within the same region
+   */
+  @Inline
+  public static boolean sameRegion(Address a, Address b) {
+    return a.toWord().xor(b.toWord()).and(REGION_MASK.not()).isZero();
+  }
+
+  /**
+   * Return the region containing an object.  We use the address
+   * returned by the object model (rather than the reference itself)
+   * since that is guaranteed to lie within the object's storage.
+   *
+   * @param object An object
+   * @return The start of the region containing the object
+   */
+  @Inline
+  public static Address of(ObjectReference object) {
+    return align(VM.objectModel.refToAddress(object));
+  }
+
+  @Inline
+  private static Address getMetaAddress(Address region) {
+    Address chunk = Conversions.chunkAlign(region, true);
+    int index = region.diff(chunk).toWord().rshl(LOG_BYTES_IN_REGION).toInt();
+    return chunk.plus(index << LOG_BYTES_IN_REGION_METADATA);
+  }
+
+  /**
+   * Clear the metadata table of a newly acquired chunk.
+   *
+   * @param chunk The chunk
+   */
+  static void clearMetaData(Address chunk) {
+    HeapLayout.mmapper.ensureMapped(chunk, METADATA_PAGES_PER_CHUNK);
+    VM.memory.zero(false, chunk, Extent.fromIntZeroExtend(METADATA_BYTES_PER_CHUNK));
+  }
+
+  /****************************************************************************
+   *
+   * State
+   */
+
+  /**
+   * @param region A region
+   * @return The raw state word of the region
+   */
+  @Inline
+  static int getState(Address region) {
+    return getMetaAddress(region).loadInt(STATE_OFFSET);
+  }
+
+  @Inline
+  static void setState(Address region, int state) {
+    getMetaAddress(region).store(state, STATE_OFFSET);
+  }
+
+  @Inline
+  static boolean isFree(int state) {
+    return (state & STATE_MASK) == FREE;
+  }
+
+  @Inline
+  static boolean isYoung(int state) {
+    return (state & STATE_MASK) == YOUNG;
+  }
+
+  @Inline
+  static boolean isOld(int state) {
+    return (state & STATE_MASK) == OLD;
+  }
+
+  @Inline
+  static boolean isInCollectionSet(int state) {
+    return (state & COLLECTION_SET) != 0;
+  }
+
+  @Inline
+  static boolean isToSpace(int state) {
+    return (state & TO_SPACE) != 0;
+  }
+
+  /**
+   * @param address An address within the space
+   * @return {@code true} if the region containing the address holds
+   * objects allocated by mutators since the last collection
+   */
+  @Inline
+  public static boolean isYoung(Address address) {
+    return isYoung(getState(align(address)));
+  }
+
+  /**
+   * @param address An address within the space
+   * @return {@code true} if the region containing the address is being
+   * evacuated by the current collection
+   */
+  @Inline
+  public static boolean isInCollectionSet(Address address) {
+    return isInCollectionSet(getState(align(address)));
+  }
+
+  static void addToCollectionSet(Address region) {
+    setState(region, getState(region) | COLLECTION_SET);
+  }
+
+  static void setAsToSpace(Address region) {
+    setState(region, OLD | TO_SPACE);
+  }
+
+  static void clearToSpace(Address region) {
+    setState(region, getState(region) & ~TO_SPACE);
+  }
+
+  /****************************************************************************
+   *
+   * Liveness
+   */
+
+  /**
+   * @param region A region
+   * @return An upper bound on the number of bytes live in the region,
+   * as established by the last full heap trace and any evacuation into it
+   */
+  @Inline
+  static int getLiveBytes(Address region) {
+    return getMetaAddress(region).loadInt(LIVE_BYTES_OFFSET);
+  }
+
+  @Inline
+  static void setLiveBytes(Address region, int bytes) {
+    getMetaAddress(region).store(bytes, LIVE_BYTES_OFFSET);
+  }
+
+  /**
+   * Atomically add to the live byte count of a region.  Collector
+   * threads race to do this while marking.
+   *
+   * @param region The region
+   * @param bytes The number of bytes to add
+   */
+  @Inline
+  static void addLiveBytes(Address region, int bytes) {
+    Address meta = getMetaAddress(region);
+    int old;
+    do {
+      old = meta.prepareInt(LIVE_BYTES_OFFSET);
+    } while (!meta.attempt(old, old + bytes, LIVE_BYTES_OFFSET));
+  }
+}
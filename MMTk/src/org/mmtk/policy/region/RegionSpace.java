@@ -0,0 +1,414 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.policy.region;
+
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.Conversions;
+import org.mmtk.utility.ForwardingWord;
+import org.mmtk.utility.heap.FreeListPageResource;
+import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements a space divided into equal sized regions.
+ * Mutators allocate into <i>young</i> regions, and every collection
+ * evacuates a <i>collection set</i> made up of all young regions plus
+ * those old regions the plan chooses to add.  Survivors are copied
+ * into fresh old regions.  When a collection traces the full heap,
+ * objects outside the collection set are marked in place and the
+ * live bytes of each old region are recomputed, which guides the
+ * choice of collection set in subsequent collections.<p>
+ *
+ * The per-region live byte counts are always an upper bound on the
+ * actual volume of live data in a region, since objects only ever
+ * die between traces, and survivors are accounted for as they are
+ * copied in.
+ */
+@Uninterruptible
+public final class RegionSpace extends Space {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /**
+   *
+   */
+  public static final int LOCAL_GC_BITS_REQUIRED = ForwardingWord.FORWARDING_BITS + 1;
+  public static final int GLOBAL_GC_BITS_REQUIRED = 0;
+  public static final int GC_HEADER_WORDS_REQUIRED = 0;
+
+  private static final byte MARK_BIT = 1 << ForwardingWord.FORWARDING_BITS;
+  private static final byte MARK_AND_FORWARDING_MASK = MARK_BIT | ForwardingWord.FORWARDING_MASK;
+
+  /** Regions with more live data than this are never evacuated */
+  private static final int LIVE_THRESHOLD_BYTES = (int) (Region.BYTES_IN_REGION * 0.85f);
+  /** Candidate regions are considered in this many bands of increasing liveness */
+  private static final int SELECTION_BANDS = 8;
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /**
+   *
+   */
+  private byte markState = 0;
+  private boolean inFullHeapTrace = false;
+  private int collectionSetRegions = 0;
+
+  /** Protects the counters below, which mutators and collectors update in parallel */
+  private final Lock lock = VM.newLock(getName() + "-regions");
+  private int youngRegions = 0;
+  private long bytesCopied = 0;
+
+  /* iteration state, only used from within global phases */
+  private Address nextRun;
+  private Address runLimit;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * The caller specifies the region of virtual memory to be used for
+   * this space.  Only discontiguous spaces are supported.
+   *
+   * @param name The name of this space (used when printing error messages etc)
+   * @param vmRequest The virtual memory request
+   */
+  public RegionSpace(String name, VMRequest vmRequest) {
+    super(name, true, false, true, vmRequest);
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(vmRequest.isDiscontiguous());
+    pr = new FreeListPageResource(this, Region.METADATA_PAGES_PER_CHUNK);
+  }
+
+  /****************************************************************************
+   *
+   * Global prepare and release
+   */
+
+  /**
+   * Add old regions to the collection set, least live first, until the
+   * estimated volume of live data to be evacuated reaches a budget.
+   * This must be called before {@link #prepare(boolean)}.
+   *
+   * @param budget The maximum number of live bytes to evacuate from old regions
+   * @return The estimated number of live bytes in the selected regions
+   */
+  public long selectCollectionSet(long budget) {
+    long selected = 0;
+    collectionSetRegions = 0;
+    for (int band = 1; band <= SELECTION_BANDS && selected < budget; band++) {
+      int threshold = (LIVE_THRESHOLD_BYTES / SELECTION_BANDS) * band;
+      for (Address region = firstRegion(); !region.isZero(); region = nextRegion(region)) {
+        int state = Region.getState(region);
+        if (!Region.isOld(state) || Region.isInCollectionSet(state)) continue;
+        int live = Region.getLiveBytes(region);
+        if (live <= threshold && selected + live <= budget) {
+          Region.addToCollectionSet(region);
+          selected += live;
+          collectionSetRegions++;
+        }
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Prepare for a new collection increment.  All young regions join
+   * the collection set.
+   *
+   * @param fullHeap {@code true} if the whole heap will be traced
+   */
+  public void prepare(boolean fullHeap) {
+    inFullHeapTrace = fullHeap;
+    if (fullHeap) markState ^= MARK_BIT;
+    youngRegions = 0;
+    bytesCopied = 0;
+    for (Address region = firstRegion(); !region.isZero(); region = nextRegion(region)) {
+      int state = Region.getState(region);
+      if (Region.isYoung(state)) {
+        Region.addToCollectionSet(region);
+        youngRegions++;
+      } else if (fullHeap && Region.isOld(state) && !Region.isInCollectionSet(state)) {
+        Region.setLiveBytes(region, 0);
+      }
+    }
+  }
+
+  /**
+   * A new collection increment has completed.  Release the evacuated
+   * regions and, after a full heap trace, any old region in which
+   * nothing was marked.
+   */
+  public void release() {
+    for (Address region = firstRegion(); !region.isZero(); region = nextRegion(region)) {
+      int state = Region.getState(region);
+      if (Region.isInCollectionSet(state)) {
+        release(region);
+      } else if (Region.isToSpace(state)) {
+        Region.clearToSpace(region);
+      } else if (inFullHeapTrace && Region.isOld(state) && Region.getLiveBytes(region) == 0) {
+        release(region);
+      }
+    }
+    youngRegions = 0;
+    inFullHeapTrace = false;
+  }
+
+  /****************************************************************************
+   *
+   * Region management
+   */
+
+  /**
+   * Return a pointer to a new region, or zero if the request failed.
+   *
+   * @param copy Is the region being acquired to hold evacuated objects?
+   * @return The region, or zero on failure
+   */
+  public Address getSpace(boolean copy) {
+    Address rtn = acquire(Region.PAGES_IN_REGION);
+    if (!rtn.isZero()) {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Region.isAligned(rtn));
+      Region.setLiveBytes(rtn, 0);
+      if (copy) {
+        Region.setAsToSpace(rtn);
+      } else {
+        Region.setState(rtn, Region.YOUNG);
+        lock.acquire();
+        youngRegions++;
+        lock.release();
+      }
+    }
+    return rtn;
+  }
+
+  /**
+   * A copy allocator wants to carry on filling the region it was
+   * copying into at the end of the last collection.  This is only
+   * possible if the region is not itself being evacuated.
+   *
+   * @param region The region
+   * @return {@code true} if the region may receive survivors of the
+   * current collection
+   */
+  public boolean reuseRegion(Address region) {
+    int state = Region.getState(region);
+    if (!Region.isOld(state) || Region.isInCollectionSet(state)) return false;
+    Region.setAsToSpace(region);
+    return true;
+  }
+
+  /**
+   * A copy allocator has stopped copying into a region, either because
+   * the region is full or because the collection is over.  Every byte
+   * it allocated since it last retired the region holds a survivor.
+   *
+   * @param region The region
+   * @param start The allocator's cursor when it began copying into the
+   * region in this collection
+   * @param cursor The allocator's cursor within the region
+   */
+  public void retireRegion(Address region, Address start, Address cursor) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Region.isToSpace(Region.getState(region)));
+    int bytes = cursor.diff(start).toInt();
+    Region.addLiveBytes(region, bytes);
+    lock.acquire();
+    bytesCopied += bytes;
+    lock.release();
+  }
+
+  @Override
+  public void growSpace(Address start, Extent bytes, boolean newChunk) {
+    super.growSpace(start, bytes, newChunk);
+    if (newChunk) {
+      Region.clearMetaData(Conversions.chunkAlign(start.plus(bytes), true));
+    }
+  }
+
+  @Override
+  public boolean prefersHugePages() {
+    return true;
+  }
+
+  /**
+   * Release a region.
+   *
+   * @param region The region to be released
+   */
+  @Override
+  public void release(Address region) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Region.isAligned(region));
+    Region.setState(region, Region.FREE);
+    Region.setLiveBytes(region, 0);
+    ((FreeListPageResource) pr).releasePages(region);
+  }
+
+  /**
+   * Iteration over the allocated regions of the space.  A run of
+   * contiguous chunks may be returned to the global pool while we
+   * visit it, so the successor of each run is established on entry.
+   *
+   * @return The first region of the space, or zero if there is none
+   */
+  private Address firstRegion() {
+    nextRun = headDiscontiguousRegion;
+    runLimit = Address.zero();
+    return nextRegion(Address.zero());
+  }
+
+  private Address nextRegion(Address region) {
+    Address next = region.plus(Region.BYTES_IN_REGION);
+    if (region.isZero() || next.GE(runLimit)) {
+      if (nextRun.isZero()) return Address.zero();
+      next = nextRun;
+      runLimit = next.plus(HeapLayout.vmMap.getContiguousRegionSize(next));
+      nextRun = HeapLayout.vmMap.getNextContiguousRegion(next);
+    }
+    if (Conversions.chunkAlign(next, true).EQ(next)) {
+      next = next.plus(Region.FIRST_USABLE_REGION_INDEX << Region.LOG_BYTES_IN_REGION);
+    }
+    return next;
+  }
+
+  /****************************************************************************
+   *
+   * Object tracing
+   */
+
+  /**
+   * Trace a reference to an object.  Objects in the collection set are
+   * evacuated.  During a full heap trace, other objects are marked
+   * in place and their size credited to their region.
+   *
+   * @param trace The trace being conducted.
+   * @param object The object to be traced.
+   * @param allocator The allocator to which survivors should be copied.
+   * @return The new reference to the same object instance.
+   */
+  @Inline
+  public ObjectReference traceObject(TransitiveClosure trace, ObjectReference object, int allocator) {
+    Address region = Region.of(object);
+    if (Region.isInCollectionSet(Region.getState(region))) {
+      Word forwardingWord = ForwardingWord.attemptToForward(object);
+      if (ForwardingWord.stateIsForwardedOrBeingForwarded(forwardingWord)) {
+        return ForwardingWord.spinAndGetForwardedObject(object, forwardingWord);
+      }
+      ObjectReference newObject = ForwardingWord.forwardObject(object, allocator);
+      trace.processNode(newObject);
+      return newObject;
+    }
+    if (inFullHeapTrace && testAndMark(object)) {
+      Region.addLiveBytes(region, VM.objectModel.getCurrentSize(object));
+      trace.processNode(object);
+    }
+    return object;
+  }
+
+  @Override
+  @Inline
+  public ObjectReference traceObject(TransitiveClosure trace, ObjectReference object) {
+    VM.assertions.fail("RegionSpace.traceObject called without allocator");
+    return ObjectReference.nullReference();
+  }
+
+  /**
+   * Perform any required initialization of the GC portion of the header.
+   * The forwarding bits of the original are cleared and the copy is
+   * marked, so a full heap trace will not scan it a second time.
+   *
+   * @param object the object ref to the storage to be initialized
+   * @param bytes the size of the copy in bytes
+   */
+  @Inline
+  public void postCopy(ObjectReference object, int bytes) {
+    byte oldValue = VM.objectModel.readAvailableByte(object);
+    VM.objectModel.writeAvailableByte(object, (byte) ((oldValue & ~MARK_AND_FORWARDING_MASK) | markState));
+  }
+
+  /**
+   * Atomically mark an object.
+   *
+   * @param object The object to be marked
+   * @return {@code true} if this call marked the object
+   */
+  @Inline
+  private boolean testAndMark(ObjectReference object) {
+    Word oldValue;
+    do {
+      oldValue = VM.objectModel.prepareAvailableBits(object);
+      if ((byte) (oldValue.toInt() & MARK_BIT) == markState) return false;
+    } while (!VM.objectModel.attemptAvailableBits(object, oldValue, oldValue.xor(Word.fromIntZeroExtend(MARK_BIT))));
+    return true;
+  }
+
+  /**
+   * @param object The object in question
+   * @return {@code true} if the object is being evacuated by the
+   * current collection
+   */
+  @Inline
+  public boolean isInCollectionSet(ObjectReference object) {
+    return Region.isInCollectionSet(Region.getState(Region.of(object)));
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Objects outside the collection set are only known to be dead
+   * after a full heap trace.
+   */
+  @Override
+  @Inline
+  public boolean isLive(ObjectReference object) {
+    if (isInCollectionSet(object))
+      return ForwardingWord.isForwarded(object);
+    if (inFullHeapTrace)
+      return (VM.objectModel.readAvailableByte(object) & MARK_BIT) == markState;
+    return true;
+  }
+
+  /****************************************************************************
+   *
+   * Accounting
+   */
+
+  /**
+   * @return The number of pages held by young regions, each of which
+   * may have to be evacuated in its entirety.
+   */
+  public int youngPages() {
+    return youngRegions << Region.LOG_PAGES_IN_REGION;
+  }
+
+  /** @return The number of old regions in the current collection set */
+  public int getCollectionSetRegions() {
+    return collectionSetRegions;
+  }
+
+  /** @return The number of bytes evacuated by the last collection */
+  public long getBytesCopied() {
+    return bytesCopied;
+  }
+}
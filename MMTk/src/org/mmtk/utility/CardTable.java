@@ -0,0 +1,502 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility;
+
+import static org.mmtk.utility.Constants.*;
+import static org.mmtk.utility.heap.layout.VMLayoutConstants.*;
+
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.alloc.LinearScan;
+import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements a card table, and a map of object starts with
+ * which the objects on a dirty card can be found.<p>
+ *
+ * The card table holds a byte for every <code>BYTES_IN_CARD</code> bytes
+ * of the address range used by the VM, which a write barrier dirties with
+ * a single unconditional store.  The object start map holds a bit for
+ * every <code>MIN_ALIGNMENT</code> bytes, which must be set for each object
+ * that is to be found when the dirty cards are scanned.  Both tables are
+ * laid out in a range of virtual memory reserved by the plan, and the
+ * parts covering a chunk are mapped when a space first grows into it.<p>
+ *
+ * The VM's own space (the boot image) holds objects whose starts we
+ * cannot find, so instead the map records a bit for every reference slot
+ * there, and only those slots on a dirty card are traced.<p>
+ *
+ * Dirty cards are scanned a chunk at a time, so that the collectors can
+ * share the work.  Each object overlapping a dirty card is scanned in
+ * its entirety, exactly once: by the chunk holding the first dirty card
+ * it overlaps.  So that every collector sees the same dirty cards, the
+ * cards are only cleaned once all scanning is over.
+ */
+@Uninterruptible
+public final class CardTable {
+
+  /****************************************************************************
+   *
+   * Constants
+   */
+
+  /**
+   *
+   */
+  public static final int LOG_BYTES_IN_CARD = 9;
+  public static final int BYTES_IN_CARD = 1 << LOG_BYTES_IN_CARD;
+
+  private static final byte CLEAN = 0;
+  private static final byte DIRTY = 1;
+
+  /** The number of bytes of address space covered by a word of the object start map */
+  private static final int LOG_BYTES_PER_START_WORD = LOG_MIN_ALIGNMENT + LOG_BITS_IN_WORD;
+  private static final Word START_BIT_MASK = Word.fromIntZeroExtend(BITS_IN_WORD - 1);
+  private static final Word HIGH_BIT = Word.one().lsh(BITS_IN_WORD - 1);
+
+  /** The number of bytes of address space whose cards share an mmap chunk */
+  private static final int LOG_BYTES_PER_CARD_MMAP_CHUNK = LOG_MMAP_CHUNK_BYTES + LOG_BYTES_IN_CARD;
+
+  private static final Word HEAP_BYTES = HEAP_END.diff(HEAP_START).toWord();
+  private static final Extent CARD_TABLE_BYTES = Conversions.chunkAlign(HEAP_BYTES.rshl(LOG_BYTES_IN_CARD).toExtent(), false);
+  private static final Extent START_MAP_BYTES =
+    Conversions.chunkAlign(HEAP_BYTES.rshl(LOG_BYTES_PER_START_WORD - LOG_BYTES_IN_WORD).toExtent(), false);
+
+  /** The virtual memory the plan must reserve to hold the tables */
+  public static final Extent EXTENT = CARD_TABLE_BYTES.plus(START_MAP_BYTES);
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /**
+   *
+   */
+  private static boolean enabled = false;
+
+  /** The card table and object start map, biased so they may be indexed by address */
+  private static Address cards;
+  private static Address starts;
+
+  /** The range of the VM's own space, whose reference slots are recorded in the start map */
+  private static Address vmStart;
+  private static Address vmEnd;
+
+  /** Records each reference slot of the VM's own space in the start map */
+  private static final TransitiveClosure slotRecorder = new TransitiveClosure() {
+    @Override
+    public void processEdge(ObjectReference source, Address slot) {
+      setStart(slot);
+    }
+  };
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Lay out the tables at the start of the given range of virtual memory,
+   * map those parts which cover the VM's own space, and record the
+   * reference slots of the VM's own space.  Spaces map the rest as they
+   * grow.
+   *
+   * @param start The start of a range of <code>EXTENT</code> bytes of virtual
+   * memory reserved for the tables
+   * @param vmSpace The space in which the VM places objects of its own
+   */
+  public static void boot(Address start, Space vmSpace) {
+    cards = start.minus(HEAP_START.toWord().rshl(LOG_BYTES_IN_CARD).toExtent());
+    starts = start.plus(CARD_TABLE_BYTES).minus(startWordOffset(HEAP_START));
+    vmStart = vmSpace.getStart();
+    vmEnd = vmStart.plus(vmSpace.getExtent());
+    enabled = true;
+    ensureMapped(vmStart, vmSpace.getExtent());
+    VM.scanning.computeBootImageSlots(slotRecorder);
+  }
+
+  /**
+   * @return {@code true} if the running plan has set up the tables
+   */
+  @Inline
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Ensure that the tables covering every chunk overlapped by the given
+   * range of memory are mapped.
+   *
+   * @param start The start of the range
+   * @param bytes The size of the range
+   */
+  public static void ensureMapped(Address start, Extent bytes) {
+    Address first = Conversions.chunkAlign(start, true);
+    Address last = Conversions.chunkAlign(start.plus(bytes), false);
+    int chunks = last.diff(first).toWord().rshl(LOG_BYTES_IN_CHUNK).toInt();
+    int cardPages = Conversions.bytesToPagesUp(Extent.fromIntZeroExtend(BYTES_IN_CHUNK >>> LOG_BYTES_IN_CARD));
+    int startPages = Conversions.bytesToPagesUp(Extent.fromIntZeroExtend(BYTES_IN_CHUNK >>> (LOG_BYTES_PER_START_WORD - LOG_BYTES_IN_WORD)));
+    HeapLayout.mmapper.ensureMapped(cardAddress(first), cardPages * chunks);
+    HeapLayout.mmapper.ensureMapped(startWordAddress(first), startPages * chunks);
+  }
+
+  /****************************************************************************
+   *
+   * Card marking
+   */
+
+  /**
+   * Dirty the card holding the given address.
+   *
+   * @param addr The address that has been written to
+   */
+  @Inline
+  public static void dirty(Address addr) {
+    cardAddress(addr).store(DIRTY);
+  }
+
+  /**
+   * Dirty every card overlapping a range of memory.
+   *
+   * @param start The start of the range that has been written to
+   * @param end The end (exclusive) of the range
+   */
+  @Inline
+  public static void dirtyRange(Address start, Address end) {
+    Address card = cardAddress(start);
+    Address last = cardAddress(end.minus(1));
+    while (card.LE(last)) {
+      card.store(DIRTY);
+      card = card.plus(1);
+    }
+  }
+
+  /**
+   * Record the start of an object, so that it will be scanned should
+   * any card it overlaps be dirty.
+   *
+   * @param object The object
+   */
+  @Inline
+  public static void setObjectStart(ObjectReference object) {
+    setStart(VM.objectModel.objectStartRef(object));
+  }
+
+  /**
+   * Set the bit for an address in the start map.
+   *
+   * @param start The address
+   */
+  @Inline
+  private static void setStart(Address start) {
+    Address word = startWordAddress(start);
+    Word mask = Word.one().lsh(startBit(start));
+    Word oldValue;
+    if (word.loadWord().and(mask).EQ(mask)) return;
+    do {
+      oldValue = word.prepareWord();
+    } while (!word.attempt(oldValue, oldValue.or(mask)));
+  }
+
+  /****************************************************************************
+   *
+   * Scanning and clearing
+   */
+
+  /**
+   * Scan the objects overlapping each dirty card, leaving the cards
+   * dirty.  The work is divided among the parallel workers by chunk.
+   * Cards in the given space are not scanned, since no object starts
+   * are recorded there.  On the dirty cards of the VM's own space, each
+   * recorded reference slot is reported to the closure instead.  Once
+   * every worker has finished scanning, the cards must be cleaned with
+   * <code>cleanCards</code>.
+   *
+   * @param scanner The scanner to apply to each object overlapping a dirty card
+   * @param slots The closure to which to report the slots on dirty cards
+   * of the VM's own space
+   * @param ignore A space whose dirty cards should not be scanned
+   * @param ordinal The ordinal of this worker
+   * @param stride The number of workers
+   */
+  public static void scanDirtyCards(LinearScan scanner, TransitiveClosure slots, Space ignore, int ordinal, int stride) {
+    Address chunk = HEAP_START;
+    while (chunk.LT(HEAP_END)) {
+      if (!HeapLayout.mmapper.addressIsMapped(cardAddress(chunk))) {
+        chunk = nextCardMmapChunk(chunk);
+        continue;
+      }
+      if (chunkIndex(chunk) % stride == ordinal) {
+        Space space = Space.getSpaceForAddress(chunk);
+        if (chunk.GE(vmStart) && chunk.LT(vmEnd)) {
+          scanSlots(chunk, slots);
+        } else if (space != null && space != ignore) {
+          scanChunk(chunk, scanner);
+        }
+      }
+      chunk = chunk.plus(BYTES_IN_CHUNK);
+    }
+  }
+
+  /**
+   * Clean every card.  The work is divided among the parallel workers
+   * by chunk.
+   *
+   * @param ordinal The ordinal of this worker
+   * @param stride The number of workers
+   */
+  public static void cleanCards(int ordinal, int stride) {
+    clear(ordinal, stride, false);
+  }
+
+  /**
+   * Clean every card and forget every object start, other than the
+   * slots recorded for the VM's own space.  The work is divided among
+   * the parallel workers by chunk.
+   *
+   * @param ordinal The ordinal of this worker
+   * @param stride The number of workers
+   */
+  public static void clear(int ordinal, int stride) {
+    clear(ordinal, stride, true);
+  }
+
+  /**
+   * Clean every card, and optionally forget every object start.
+   *
+   * @param ordinal The ordinal of this worker
+   * @param stride The number of workers
+   * @param starts {@code true} if object starts should be forgotten too
+   */
+  private static void clear(int ordinal, int stride, boolean starts) {
+    Address chunk = HEAP_START;
+    while (chunk.LT(HEAP_END)) {
+      if (!HeapLayout.mmapper.addressIsMapped(cardAddress(chunk))) {
+        chunk = nextCardMmapChunk(chunk);
+        continue;
+      }
+      if (chunkIndex(chunk) % stride == ordinal) {
+        VM.memory.zero(false, cardAddress(chunk), Extent.fromIntZeroExtend(BYTES_IN_CHUNK >>> LOG_BYTES_IN_CARD));
+        if (starts && !(chunk.GE(vmStart) && chunk.LT(vmEnd)) &&
+            HeapLayout.mmapper.addressIsMapped(startWordAddress(chunk))) {
+          VM.memory.zero(false, startWordAddress(chunk),
+              Extent.fromIntZeroExtend(BYTES_IN_CHUNK >>> (LOG_BYTES_PER_START_WORD - LOG_BYTES_IN_WORD)));
+        }
+      }
+      chunk = chunk.plus(BYTES_IN_CHUNK);
+    }
+  }
+
+  /**
+   * Report the recorded reference slots on the dirty cards of a chunk
+   * of the VM's own space.
+   *
+   * @param chunk The chunk
+   * @param slots The closure to which to report each slot
+   */
+  private static void scanSlots(Address chunk, TransitiveClosure slots) {
+    Address end = chunk.plus(BYTES_IN_CHUNK);
+    for (Address card = chunk; card.LT(end); card = card.plus(BYTES_IN_CARD)) {
+      if (cardAddress(card).loadByte() == CLEAN) continue;
+      Address cardEnd = card.plus(BYTES_IN_CARD);
+      Address slot = firstObjectStart(card, cardEnd);
+      while (!slot.isZero()) {
+        slots.processEdge(ObjectReference.nullReference(), slot);
+        slot = firstObjectStart(slot.plus(MIN_ALIGNMENT), cardEnd);
+      }
+    }
+  }
+
+  /**
+   * Scan the objects overlapping the dirty cards of a chunk.  Each object
+   * is scanned at most once, and an object that starts in an earlier chunk
+   * is left to that chunk if it overlaps a dirty card there.
+   *
+   * @param chunk The chunk
+   * @param scanner The scanner to apply to each object
+   */
+  private static void scanChunk(Address chunk, LinearScan scanner) {
+    Address end = chunk.plus(BYTES_IN_CHUNK);
+    Address scanned = chunk;   // the end of the last object scanned
+    for (Address card = chunk; card.LT(end); card = card.plus(BYTES_IN_CARD)) {
+      if (cardAddress(card).loadByte() == CLEAN) continue;
+      Address cardEnd = card.plus(BYTES_IN_CARD);
+      if (scanned.GE(cardEnd)) continue;
+      if (scanned.LE(card)) {
+        ObjectReference object = spanningObject(card);
+        if (!object.isNull()) {
+          Address start = VM.objectModel.objectStartRef(object);
+          if (start.GE(chunk) || !anyDirty(start, chunk)) {
+            scanner.scan(object);
+          }
+          scanned = VM.objectModel.getObjectEndAddress(object);
+          if (scanned.GE(cardEnd)) continue;
+        }
+      }
+      Address from = scanned.GT(card) ? scanned : card;
+      Address start = firstObjectStart(from, cardEnd);
+      while (!start.isZero()) {
+        ObjectReference object = VM.objectModel.getObjectFromStartAddress(start);
+        scanner.scan(object);
+        scanned = VM.objectModel.getObjectEndAddress(object);
+        start = firstObjectStart(scanned, cardEnd);
+      }
+    }
+  }
+
+  /**
+   * @param from The lowest address to consider
+   * @param to The address (exclusive) at which to stop
+   * @return {@code true} if any card overlapping the range is dirty
+   */
+  private static boolean anyDirty(Address from, Address to) {
+    Address last = cardAddress(to.minus(1));
+    for (Address card = cardAddress(from); card.LE(last); card = card.plus(1)) {
+      if (card.loadByte() != CLEAN) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Find the object, if any, that starts before a card and extends onto it.
+   * The search goes back chunk by chunk for as long as the chunks belong
+   * to the same space as the card.
+   *
+   * @param card The start of the card
+   * @return The object overlapping the start of the card, or
+   * {@code null} if there is none.
+   */
+  private static ObjectReference spanningObject(Address card) {
+    Space space = null;
+    Address limit = Conversions.chunkAlign(card, true);
+    Address before = card;
+    while (true) {
+      Address start = lastObjectStart(before, limit);
+      if (!start.isZero()) {
+        ObjectReference object = VM.objectModel.getObjectFromStartAddress(start);
+        if (VM.objectModel.getObjectEndAddress(object).GT(card)) return object;
+        return ObjectReference.nullReference();
+      }
+      if (limit.LE(HEAP_START)) return ObjectReference.nullReference();
+      Address previous = limit.minus(BYTES_IN_CHUNK);
+      if (space == null) space = Space.getSpaceForAddress(card);
+      if (Space.getSpaceForAddress(previous) != space ||
+          !HeapLayout.mmapper.addressIsMapped(startWordAddress(previous))) {
+        return ObjectReference.nullReference();
+      }
+      before = limit;
+      limit = previous;
+    }
+  }
+
+  /**
+   * @param from The lowest address to consider
+   * @param to The address (exclusive) at which to stop
+   * @return The lowest recorded object start in the range, or zero
+   * if there is none.
+   */
+  private static Address firstObjectStart(Address from, Address to) {
+    Address cursor = from.toWord().plus(Word.fromIntZeroExtend(MIN_ALIGNMENT - 1)).rshl(LOG_MIN_ALIGNMENT).lsh(LOG_MIN_ALIGNMENT).toAddress();
+    while (cursor.LT(to)) {
+      Word bits = startWordAddress(cursor).loadWord().rshl(startBit(cursor));
+      if (bits.isZero()) {
+        cursor = cursor.toWord().rshl(LOG_BYTES_PER_START_WORD).plus(Word.one()).lsh(LOG_BYTES_PER_START_WORD).toAddress();
+        continue;
+      }
+      while (bits.and(Word.one()).isZero()) {
+        bits = bits.rshl(1);
+        cursor = cursor.plus(MIN_ALIGNMENT);
+      }
+      return cursor.LT(to) ? cursor : Address.zero();
+    }
+    return Address.zero();
+  }
+
+  /**
+   * @param before The address (exclusive) below which to look
+   * @param limit The lowest address to consider
+   * @return The highest recorded object start in the range, or zero
+   * if there is none.
+   */
+  private static Address lastObjectStart(Address before, Address limit) {
+    Address cursor = before.minus(MIN_ALIGNMENT);
+    while (cursor.GE(limit)) {
+      Word bits = startWordAddress(cursor).loadWord().lsh(BITS_IN_WORD - 1 - startBit(cursor));
+      if (bits.isZero()) {
+        cursor = cursor.toWord().rshl(LOG_BYTES_PER_START_WORD).lsh(LOG_BYTES_PER_START_WORD).toAddress().minus(MIN_ALIGNMENT);
+        continue;
+      }
+      while (bits.and(HIGH_BIT).isZero()) {
+        bits = bits.lsh(1);
+        cursor = cursor.minus(MIN_ALIGNMENT);
+      }
+      return cursor.GE(limit) ? cursor : Address.zero();
+    }
+    return Address.zero();
+  }
+
+  /****************************************************************************
+   *
+   * Table addressing
+   */
+
+  /**
+   * @param addr An address
+   * @return The address of the card byte for the address
+   */
+  @Inline
+  private static Address cardAddress(Address addr) {
+    return cards.plus(addr.toWord().rshl(LOG_BYTES_IN_CARD).toExtent());
+  }
+
+  /**
+   * @param addr An address
+   * @return The address of the object start map word covering the address
+   */
+  @Inline
+  private static Address startWordAddress(Address addr) {
+    return starts.plus(startWordOffset(addr));
+  }
+
+  @Inline
+  private static Extent startWordOffset(Address addr) {
+    return addr.toWord().rshl(LOG_BYTES_PER_START_WORD).lsh(LOG_BYTES_IN_WORD).toExtent();
+  }
+
+  /**
+   * @param addr An address
+   * @return The index of the bit for the address in its object start map word
+   */
+  @Inline
+  private static int startBit(Address addr) {
+    return addr.toWord().rshl(LOG_MIN_ALIGNMENT).and(START_BIT_MASK).toInt();
+  }
+
+  private static int chunkIndex(Address chunk) {
+    return chunk.diff(HEAP_START).toWord().rshl(LOG_BYTES_IN_CHUNK).toInt();
+  }
+
+  /**
+   * @param chunk A chunk whose cards are not mapped
+   * @return The first chunk whose cards lie in the next mmap chunk of the card table
+   */
+  private static Address nextCardMmapChunk(Address chunk) {
+    Word offset = chunk.diff(HEAP_START).toWord().rshl(LOG_BYTES_PER_CARD_MMAP_CHUNK).plus(Word.one());
+    return HEAP_START.plus(offset.lsh(LOG_BYTES_PER_CARD_MMAP_CHUNK).toExtent());
+  }
+}
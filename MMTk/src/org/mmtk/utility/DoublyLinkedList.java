@@ -126,6 +126,18 @@ import org.vmmagic.unboxed.*;
   public void remove(Address node) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(isNode(node));
     if (lock != null) lock.acquire();
+    unlink(node);
+    if (lock != null) lock.release();
+  }
+
+  /**
+   * Splice a node out of the list.  The caller must hold the lock
+   * if the list is shared.
+   *
+   * @param node The node to remove
+   */
+  @Inline
+  private void unlink(Address node) {
     Address prev = node.loadAddress(PREV_OFFSET);
     Address next = node.loadAddress(NEXT_OFFSET);
     // Splice the node out of the list
@@ -138,7 +150,6 @@ import org.vmmagic.unboxed.*;
     // Null out node's reference to the list
     node.store(Address.zero(), PREV_OFFSET);
     node.store(Address.zero(), NEXT_OFFSET);
-    if (lock != null) lock.release();
   }
 
   @Inline
@@ -153,9 +164,11 @@ import org.vmmagic.unboxed.*;
 
   @Inline
   public Address pop() {
+    if (lock != null) lock.acquire();
     Address first = head;
     if (!first.isZero())
-      remove(first);
+      unlink(first);
+    if (lock != null) lock.release();
     return first;
   }
 
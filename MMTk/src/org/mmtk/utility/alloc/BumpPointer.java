@@ -25,6 +25,8 @@ import org.mmtk.policy.Space;
 import org.mmtk.utility.Conversions;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.gcspy.drivers.LinearSpaceDriver;
+import org.mmtk.utility.statistics.EventCounter;
+import org.mmtk.utility.statistics.SizeCounter;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.NoInline;
@@ -67,6 +69,14 @@ import org.vmmagic.unboxed.Word;
  * limit a lower location in the same region). This would be accompianied
  * with an alternative slow path that would allow reuse of empty regions.<p>
  *
+ * The size of the regions requested from the space adapts to the rate
+ * at which the owning thread allocates: each time the allocator is reset
+ * (which plans do once per collection), the request size is doubled if
+ * many regions were acquired since the last reset, and halved if at most
+ * one was.  Fast allocating mutator threads thus take the external slow
+ * path less often, while slow allocating threads reserve less space
+ * they will not use.  Collector threads always request the minimum.<p>
+ *
  * This class relies on the supporting virtual machine implementing the
  * getNextObject and related operations.
  */
@@ -106,6 +116,17 @@ import org.vmmagic.unboxed.Word;
 
   private static final int SIZE_OF_TWO_X86_CACHE_LINES_IN_BYTES = 128;
 
+  // Adaptive sizing of region requests.
+  private static final int MAX_REQUEST_SIZE = BLOCK_SIZE << 5;
+  /** Grow the request size if more regions than this were acquired since the last reset */
+  private static final int GROW_THRESHOLD = 8;
+  /** Shrink the request size if no more regions than this were acquired since the last reset */
+  private static final int SHRINK_THRESHOLD = 1;
+
+  private static final SizeCounter regionAcquires = new SizeCounter("bpAcquire", true, true);
+  private static final EventCounter requestGrows = new EventCounter("bpGrow", true, true);
+  private static final EventCounter requestShrinks = new EventCounter("bpShrink", true, true);
+
   private static final boolean VERBOSE = false;
 
   /****************************************************************************
@@ -127,6 +148,10 @@ import org.vmmagic.unboxed.Word;
   protected final boolean allowScanning;
   /** current contiguous region */
   protected Address region;
+  /** size in bytes of the next region to request from the space */
+  private int requestSize = BLOCK_SIZE;
+  /** number of regions acquired from the space since the last reset */
+  private int regionsAcquired = 0;
 
 
   /**
@@ -143,9 +168,13 @@ import org.vmmagic.unboxed.Word;
 
   /**
    * Reset the allocator. Note that this does not reset the space.
-   * This is must be done by the caller.
+   * This is must be done by the caller.<p>
+   *
+   * The size of subsequent region requests is adjusted according to the
+   * number of regions acquired since the previous reset.
    */
   public final void reset() {
+    adjustRequestSize();
     cursor = Address.zero();
     limit = Address.zero();
     internalLimit = Address.zero();
@@ -153,6 +182,23 @@ import org.vmmagic.unboxed.Word;
     region = Address.zero();
   }
 
+  /**
+   * Grow or shrink the size of region requests according to the
+   * number of regions acquired since the last adjustment.
+   */
+  private void adjustRequestSize() {
+    int maxRequestSize = maximumRequestSize().toInt();
+    if (regionsAcquired > GROW_THRESHOLD && requestSize < maxRequestSize) {
+      requestSize <<= 1;
+      requestGrows.inc();
+    } else if (regionsAcquired <= SHRINK_THRESHOLD && requestSize > BLOCK_SIZE) {
+      requestSize >>= 1;
+      requestShrinks.inc();
+    }
+    if (requestSize > maxRequestSize) requestSize = maxRequestSize;
+    regionsAcquired = 0;
+  }
+
   /**
    * Re-associate this bump pointer with a different space. Also
    * reset the bump pointer so that it will use the new space
@@ -299,9 +345,17 @@ import org.vmmagic.unboxed.Word;
     /* Acquire space, block aligned, that can accommodate the request */
     Extent blockSize = Word.fromIntZeroExtend(bytes).plus(BLOCK_MASK)
                        .and(BLOCK_MASK.not()).toExtent();
+    if (blockSize.LT(Extent.fromIntZeroExtend(requestSize)) && VM.activePlan.isMutator())
+      blockSize = Extent.fromIntZeroExtend(requestSize);
     Address start = space.acquire(Conversions.bytesToPages(blockSize));
 
-    if (start.isZero()) return start; // failed allocation
+    if (start.isZero()) { // failed allocation
+      /* space is short, so fall back to the smallest request size */
+      requestSize = BLOCK_SIZE;
+      return start;
+    }
+    regionsAcquired++;
+    regionAcquires.inc(blockSize.toInt());
 
     if (!allowScanning) { // simple allocator
       if (start.NE(limit)) cursor = start;  // discontiguous
@@ -628,6 +682,17 @@ import org.vmmagic.unboxed.Word;
     return Extent.max();
   }
 
+  /**
+   * Maximum size of a single request for space made by the external
+   * slow path (unless the pending allocation requires more).  Children
+   * that depend on the size of the regions they acquire should override
+   * this.
+   * @return the maximum request size
+   */
+  protected Extent maximumRequestSize() {
+    return Extent.fromIntZeroExtend(MAX_REQUEST_SIZE);
+  }
+
   /** @return the current cursor value */
   public final Address getCursor() {
     return cursor;
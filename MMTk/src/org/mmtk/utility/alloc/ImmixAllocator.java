@@ -189,6 +189,10 @@ public class ImmixAllocator extends Allocator {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Block.isAligned(ptr));
     lineUseCount = LINES_IN_BLOCK;
 
+    /* mutators need zeroed memory; recycled lines are zeroed as they are acquired */
+    if (!copy && !space.isZeroed())
+      zeroBlock(ptr);
+
     if (requestForLarge) {
       largeCursor = ptr;
       largeLimit = ptr.plus(BYTES_IN_BLOCK);
@@ -310,6 +314,8 @@ public class ImmixAllocator extends Allocator {
       } else {
         recyclableBlock = next;
       }
+      if (LAZY_SWEEP && Block.isUnswept(recyclableBlock))
+        space.sweepUnsweptBlock(recyclableBlock);
       markState = Block.getBlockMarkState(recyclableBlock);
       usable = (markState > 0 && markState <= ImmixSpace.getReusuableMarkStateThreshold(copy));
       if (copy && Block.isDefragSource(recyclableBlock))
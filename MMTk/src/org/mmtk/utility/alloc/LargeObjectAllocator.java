@@ -97,7 +97,7 @@ public abstract class LargeObjectAllocator extends Allocator {
     int header = space.getHeaderSize();
     int maxbytes = getMaximumAlignedSize(bytes + header, align);
     int pages = Conversions.bytesToPagesUp(Extent.fromIntZeroExtend(maxbytes));
-    Address sp = space.acquire(pages);
+    Address sp = space.acquireLargePages(pages);
     if (sp.isZero()) return sp;
     Address cell = sp.plus(header);
     return cell;
@@ -0,0 +1,158 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.alloc;
+
+import org.mmtk.policy.Space;
+import org.mmtk.policy.region.Region;
+import org.mmtk.policy.region.RegionSpace;
+
+import org.mmtk.vm.VM;
+
+import org.vmmagic.unboxed.*;
+import org.vmmagic.pragma.*;
+
+/**
+ * This class implements a bump pointer allocator over the regions of
+ * a {@link RegionSpace}.  Each allocator owns one region at a time;
+ * a copy allocator reports the volume it has copied into a region to
+ * the space when it moves on, and keeps its last region from one
+ * collection to the next so that the rest of it is not wasted.<p>
+ *
+ * {@link BumpPointer} (and so {@link org.mmtk.policy.CopyLocal}) is not
+ * used because it acquires block aligned runs of pages of varying size
+ * straight from the space, and threads its own headers through them.
+ * Regions must instead be acquired one at a time, aligned to the region
+ * size, and the space must hear when an allocator takes and gives up
+ * each one to keep the state and live bytes of every region.
+ */
+@Uninterruptible
+public class RegionAllocator extends Allocator {
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /**
+   *
+   */
+  protected final RegionSpace space;
+  private final boolean copy;
+
+  private Address region;
+  private Address cursor;
+  private Address limit;
+  /** Where copying into the current region began in this collection */
+  private Address start;
+
+  /**
+   * Constructor.
+   *
+   * @param space The space to bump point into.
+   * @param copy Does this allocator hold the survivors of a collection?
+   */
+  public RegionAllocator(RegionSpace space, boolean copy) {
+    this.space = space;
+    this.copy = copy;
+    region = Address.zero();
+    start = Address.zero();
+    reset();
+  }
+
+  /**
+   * Reset the allocator, retiring the current region.
+   */
+  public void reset() {
+    retireRegion();
+    region = Address.zero();
+    cursor = Address.zero();
+    limit = Address.zero();
+  }
+
+  /**
+   * A collection is starting.  A copy allocator carries on filling the
+   * region it held at the end of the last collection, unless that
+   * region is to be evacuated.
+   */
+  public void prepare() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(copy);
+    if (region.isZero()) return;
+    if (space.reuseRegion(region)) {
+      start = cursor;
+    } else {
+      region = Address.zero();
+      cursor = Address.zero();
+      limit = Address.zero();
+    }
+  }
+
+  /**
+   * A collection is over.  A copy allocator accounts for what it has
+   * copied, but keeps its region for the next collection.
+   */
+  public void release() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(copy);
+    retireRegion();
+  }
+
+  private void retireRegion() {
+    if (copy && !region.isZero()) {
+      space.retireRegion(region, start, cursor);
+      start = cursor;
+    }
+  }
+
+  /*****************************************************************************
+   *
+   * Public interface
+   */
+
+  /**
+   * Allocate space for a new object.
+   *
+   * @param bytes The number of bytes allocated
+   * @param align The requested alignment
+   * @param offset The offset from the alignment
+   * @return The address of the first byte of the allocated region
+   */
+  @Inline
+  public final Address alloc(int bytes, int align, int offset) {
+    Address start = alignAllocationNoFill(cursor, align, offset);
+    Address end = start.plus(bytes);
+    if (end.GT(limit))
+      return allocSlow(bytes, align, offset);
+    fillAlignmentGap(cursor, start);
+    cursor = end;
+    return start;
+  }
+
+  @Override
+  protected final Address allocSlowOnce(int bytes, int align, int offset) {
+    Address ptr = space.getSpace(copy);
+    if (ptr.isZero())
+      return ptr; // failed allocation --- we will need to GC
+
+    retireRegion();
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Region.align(ptr).EQ(ptr));
+    region = ptr;
+    cursor = ptr;
+    start = ptr;
+    limit = ptr.plus(Region.BYTES_IN_REGION);
+    return alloc(bytes, align, offset);
+  }
+
+  @Override
+  public final Space getSpace() {
+    return space;
+  }
+}
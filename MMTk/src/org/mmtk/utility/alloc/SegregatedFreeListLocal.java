@@ -37,7 +37,12 @@ import org.vmmagic.unboxed.*;
  * which will serve the role of the current free list.  When the free
  * list on the current block is exhausted, the next block for that
  * size class becomes the current block and its free list is used.  If
- * there are no more blocks the a new block is allocated.
+ * there are no more blocks the a new block is allocated.<p>
+ *
+ * To keep threads off the space's lock, each thread takes blocks from
+ * the global pool a few at a time into a per-size-class block cache,
+ * and gathers the blocks it has consumed before returning them
+ * together.  Both are handed back to the space on {@link #flush()}.
  */
 @Uninterruptible
 public abstract class SegregatedFreeListLocal<S extends SegregatedFreeListSpace> extends SegregatedFreeList<S> {
@@ -57,6 +62,15 @@ public abstract class SegregatedFreeListLocal<S extends SegregatedFreeListSpace>
    */
   protected final AddressArray currentBlock;
 
+  /** Blocks taken from the global pool that have not yet been allocated into */
+  private final AddressArray blockCache;
+
+  /** Consumed blocks waiting to be returned to the global pool */
+  private final AddressArray consumedBlocks;
+
+  /** The number of blocks on each of the consumed block lists */
+  private final int[] consumedBlockCount;
+
   /****************************************************************************
    *
    * Initialization
@@ -70,6 +84,9 @@ public abstract class SegregatedFreeListLocal<S extends SegregatedFreeListSpace>
   public SegregatedFreeListLocal(S space) {
     super(space);
     this.currentBlock = AddressArray.create(SegregatedFreeListSpace.sizeClassCount());
+    this.blockCache = AddressArray.create(SegregatedFreeListSpace.sizeClassCount());
+    this.consumedBlocks = AddressArray.create(SegregatedFreeListSpace.sizeClassCount());
+    this.consumedBlockCount = new int[SegregatedFreeListSpace.sizeClassCount()];
   }
 
   /****************************************************************************
@@ -112,13 +129,13 @@ public abstract class SegregatedFreeListLocal<S extends SegregatedFreeListSpace>
     if (cell.isZero()) {
       Address block = currentBlock.get(sizeClass);
       if (!block.isZero()) {
-        // Return the block if we currently own one
-        space.returnConsumedBlock(block, sizeClass);
+        // Retire the block if we currently own one
+        retireBlock(block, sizeClass);
         currentBlock.set(sizeClass, Address.zero());
       }
 
       // Get a new block for allocation, if returned, it is guaranteed to have a free cell
-      block = space.getAllocationBlock(sizeClass, freeList);
+      block = space.getAllocationBlock(sizeClass, freeList, blockCache);
 
       if (!block.isZero()) {
         // We have a new current block and free list.
@@ -137,6 +154,32 @@ public abstract class SegregatedFreeListLocal<S extends SegregatedFreeListSpace>
     return alignAllocation(cell, align, offset);
   }
 
+  /**
+   * Add a consumed block to this thread's list of consumed blocks,
+   * returning the list to the global pool once it is long enough.
+   *
+   * @param block The consumed block
+   * @param sizeClass The size class of the block
+   */
+  private void retireBlock(Address block, int sizeClass) {
+    BlockAllocator.setNext(block, consumedBlocks.get(sizeClass));
+    consumedBlocks.set(sizeClass, block);
+    if (++consumedBlockCount[sizeClass] == SegregatedFreeListSpace.BLOCK_CACHE_BLOCKS) {
+      returnConsumedBlocks(sizeClass);
+    }
+  }
+
+  /**
+   * Return this thread's consumed blocks of a size class to the global pool.
+   *
+   * @param sizeClass The size class
+   */
+  private void returnConsumedBlocks(int sizeClass) {
+    space.returnConsumedBlocks(consumedBlocks.get(sizeClass), sizeClass);
+    consumedBlocks.set(sizeClass, Address.zero());
+    consumedBlockCount[sizeClass] = 0;
+  }
+
   /****************************************************************************
    *
    * Preserving (saving & restoring) free lists
@@ -149,7 +192,9 @@ public abstract class SegregatedFreeListLocal<S extends SegregatedFreeListSpace>
    * free cells.  Then the free lists for each cell can be
    * reestablished during GC.  If the free lists are being preserved
    * on a per-block basis (eager mark-sweep and reference counting),
-   * then free lists are remembered for each block.
+   * then free lists are remembered for each block.  The consumed and
+   * cached blocks held by this thread are returned too, so that the
+   * space sees every block when it sweeps.
    */
   public final void flush() {
     for (int sizeClass = 0; sizeClass < SegregatedFreeListSpace.sizeClassCount(); sizeClass++) {
@@ -160,6 +205,13 @@ public abstract class SegregatedFreeListLocal<S extends SegregatedFreeListSpace>
         currentBlock.set(sizeClass, Address.zero());
         freeList.set(sizeClass, Address.zero());
       }
+      if (!consumedBlocks.get(sizeClass).isZero()) {
+        returnConsumedBlocks(sizeClass);
+      }
+      if (!blockCache.get(sizeClass).isZero()) {
+        space.returnCachedBlocks(blockCache.get(sizeClass), sizeClass);
+        blockCache.set(sizeClass, Address.zero());
+      }
     }
   }
 }
@@ -73,7 +73,7 @@ public class SharedDeque extends Deque {
    * @param arity the arity of this queue
    * @param toTail whether to enqueue to the tail of the shared queue
    */
-  final void enqueue(Address buf, int arity, boolean toTail) {
+  void enqueue(Address buf, int arity, boolean toTail) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == this.arity);
     lock();
     if (toTail) {
@@ -114,7 +114,7 @@ public class SharedDeque extends Deque {
     return dequeue(arity, false);
   }
 
-  final Address dequeue(int arity, boolean fromTail) {
+  Address dequeue(int arity, boolean fromTail) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == this.arity);
     return dequeue(false, fromTail);
   }
@@ -124,7 +124,7 @@ public class SharedDeque extends Deque {
     return dequeueAndWait(arity, false);
   }
 
-  final Address dequeueAndWait(int arity, boolean fromTail) {
+  Address dequeueAndWait(int arity, boolean fromTail) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == this.arity);
     Address buf = dequeue(false, fromTail);
     if (buf.isZero() && (!complete())) {
@@ -167,7 +167,7 @@ public class SharedDeque extends Deque {
     clearCompletionFlag();
   }
 
-  public final void reset() {
+  public void reset() {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(numConsumersWaiting == 0);
     clearCompletionFlag();
     setNumConsumersWaiting(0);
@@ -196,7 +196,7 @@ public class SharedDeque extends Deque {
   }
 
   @Inline
-  public final int enqueuedPages() {
+  public int enqueuedPages() {
     return bufsenqueued * PAGES_PER_BUFFER;
   }
 
@@ -436,7 +436,7 @@ public class SharedDeque extends Deque {
    * Lock this shared queue.  We use one simple low-level lock to
    * synchronize access to the shared queue of buffers.
    */
-  private void lock() {
+  final void lock() {
     lock.acquire();
   }
 
@@ -444,7 +444,7 @@ public class SharedDeque extends Deque {
    * Release the lock.  We use one simple low-level lock to synchronize
    * access to the shared queue of buffers.
    */
-  private void unlock() {
+  final void unlock() {
     lock.release();
   }
 
@@ -0,0 +1,337 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.deque;
+
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.policy.RawPageSpace;
+import org.mmtk.utility.heap.Numa;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Extent;
+import org.vmmagic.unboxed.Offset;
+
+/**
+ * A shared deque that load-balances buffers between parallel collector
+ * threads by work stealing rather than through the locked buffer chain
+ * of {@link SharedDeque}.<p>
+ *
+ * Each parallel worker owns a fixed-size ring of buffers, managed as a
+ * Chase-Lev deque: the owner pushes and pops buffers at the bottom of its
+ * ring without synchronization, while idle workers steal the oldest buffers
+ * from the top of other workers' rings with a single compare-and-swap.
+ * Buffers enqueued by mutators, by non-parallel collector contexts, to the
+ * tail of the deque, or when the owner's ring is full, are placed on the
+ * underlying locked buffer chain as before.<p>
+ *
+ * Rings are allocated lazily from the deque's raw page space the first
+ * time a worker enqueues a buffer, and are retained across collections.
+ */
+@Uninterruptible
+public class StealingSharedDeque extends SharedDeque {
+
+  /** Offset of the (shared, CAS-updated) index of the oldest buffer in a ring */
+  private static final Offset TOP_OFFSET = Offset.zero();
+  /** Offset of the (owner-updated) index one past the newest buffer in a ring */
+  private static final Offset BOTTOM_OFFSET = Offset.fromIntSignExtend(BYTES_IN_INT);
+  /** Offset of the first buffer slot in a ring */
+  private static final Offset SLOTS_OFFSET = Offset.fromIntSignExtend(BYTES_IN_ADDRESS << 1);
+  /** Number of buffer slots in a ring: the largest power of two that fits in a page */
+  private static final int LOG_RING_CAPACITY = LOG_BYTES_IN_PAGE - LOG_BYTES_IN_ADDRESS - 1;
+  private static final int RING_CAPACITY = 1 << LOG_RING_CAPACITY;
+  private static final int RING_MASK = RING_CAPACITY - 1;
+  /** Maximum number of parallel workers (one ring pointer per word of the ring table) */
+  private static final int MAX_WORKERS = BYTES_IN_PAGE >>> LOG_BYTES_IN_ADDRESS;
+
+  /** A page holding the ring of each parallel worker, indexed by worker ordinal */
+  private volatile Address ringTable = Address.zero();
+
+  /****************************************************************************
+   *
+   * Public instance methods
+   */
+
+  /**
+   * @param name the queue's human-readable name
+   * @param rps the space to get pages from
+   * @param arity the arity (number of words per entry) of this queue
+   */
+  public StealingSharedDeque(String name, RawPageSpace rps, int arity) {
+    super(name, rps, arity);
+  }
+
+  /**
+   * Enqueue a block.  Blocks enqueued at the head by a parallel worker
+   * are pushed onto the bottom of that worker's ring.
+   */
+  @Override
+  final void enqueue(Address buf, int arity, boolean toTail) {
+    if (!toTail) {
+      Address ring = myRing(true);
+      if (!ring.isZero() && push(ring, buf)) return;
+    }
+    super.enqueue(buf, arity, toTail);
+  }
+
+  /**
+   * Dequeue a block.  A parallel worker first pops the newest block from
+   * its own ring before falling back to the shared buffer chain.
+   */
+  @Override
+  final Address dequeue(int arity, boolean fromTail) {
+    if (!fromTail) {
+      Address ring = myRing(false);
+      if (!ring.isZero()) {
+        Address buf = pop(ring);
+        if (!buf.isZero()) return buf;
+      }
+    }
+    return super.dequeue(arity, fromTail);
+  }
+
+  /**
+   * Dequeue a block, stealing from other workers' rings when both the
+   * local ring and the shared buffer chain are empty.  A worker only gives
+   * up once it has seen every ring and the shared buffer chain empty, so
+   * it keeps taking work for as long as any other worker has work queued.
+   * Work still being generated by busy workers is left to them: the shared
+   * deque does not block (see {@link SharedDeque#prepare()}), because
+   * consumers poll the pool again after it has been drained.
+   */
+  @Override
+  final Address dequeueAndWait(int arity, boolean fromTail) {
+    Address buf = dequeue(arity, fromTail);
+    while (buf.isZero()) {
+      buf = steal();
+      if (!buf.isZero()) break;
+      buf = super.dequeueAndWait(arity, fromTail);
+      if (!buf.isZero() || !hasQueuedWork()) break;
+    }
+    return buf;
+  }
+
+  @Override
+  public final void reset() {
+    super.reset();
+    Address table = ringTable;
+    if (table.isZero()) return;
+    for (int i = 0; i < MAX_WORKERS; i++) {
+      Address ring = table.loadAddress(Offset.fromIntZeroExtend(i << LOG_BYTES_IN_ADDRESS));
+      if (!ring.isZero()) {
+        if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(size(ring) == 0);
+        ring.store(0, TOP_OFFSET);
+        ring.store(0, BOTTOM_OFFSET);
+      }
+    }
+  }
+
+  @Override
+  public final int enqueuedPages() {
+    int bufs = 0;
+    Address table = ringTable;
+    if (!table.isZero()) {
+      for (int i = 0; i < MAX_WORKERS; i++) {
+        Address ring = table.loadAddress(Offset.fromIntZeroExtend(i << LOG_BYTES_IN_ADDRESS));
+        if (!ring.isZero()) bufs += size(ring);
+      }
+    }
+    return super.enqueuedPages() + bufs * PAGES_PER_BUFFER;
+  }
+
+  /****************************************************************************
+   *
+   * Private instance methods
+   */
+
+  /**
+   * Find the ring of the current thread, if it is one of several parallel
+   * workers.
+   *
+   * @param create whether to allocate the ring if it does not yet exist
+   * @return the ring of the current worker, or zero if the current thread
+   * does not own a ring
+   */
+  @Inline
+  private Address myRing(boolean create) {
+    if (VM.activePlan.isMutator()) return Address.zero();
+    CollectorContext collector = VM.activePlan.collector();
+    if (collector.parallelWorkerCount() <= 1) return Address.zero();
+    int ordinal = collector.parallelWorkerOrdinal();
+    Address table = ringTable;
+    if (!table.isZero()) {
+      Address ring = table.loadAddress(Offset.fromIntZeroExtend(ordinal << LOG_BYTES_IN_ADDRESS));
+      if (!ring.isZero() || !create) return ring;
+    } else if (!create) {
+      return Address.zero();
+    }
+    return createRing(ordinal);
+  }
+
+  /**
+   * Allocate (and publish) the ring for the given worker.
+   *
+   * @param ordinal the worker ordinal
+   * @return the newly allocated ring
+   */
+  @NoInline
+  private Address createRing(int ordinal) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(ordinal < MAX_WORKERS);
+    lock();
+    if (ringTable.isZero()) {
+      Address table = alloc();
+      VM.memory.zero(false, table, Extent.fromIntZeroExtend(BYTES_IN_PAGE));
+      VM.memory.sync();
+      ringTable = table;
+    }
+    unlock();
+    Address ring = alloc();
+    ring.store(0, TOP_OFFSET);
+    ring.store(0, BOTTOM_OFFSET);
+    VM.memory.sync();
+    ringTable.store(ring, Offset.fromIntZeroExtend(ordinal << LOG_BYTES_IN_ADDRESS));
+    return ring;
+  }
+
+  /**
+   * Steal the oldest buffer from another worker's ring.  Victims are
+   * visited round-robin starting from the worker after this one.  When
+   * collectors are bound to NUMA nodes, workers on the same node are
+   * visited before any on other nodes.
+   *
+   * @return the stolen buffer, or zero if every ring was empty
+   */
+  private Address steal() {
+    Address table = ringTable;
+    if (table.isZero() || VM.activePlan.isMutator()) return Address.zero();
+    CollectorContext collector = VM.activePlan.collector();
+    int workers = collector.parallelWorkerCount();
+    if (workers <= 1) return Address.zero();
+    int ordinal = collector.parallelWorkerOrdinal();
+    int pool = collector.parallelWorkerPoolSize();
+    boolean numa = Numa.isEnabled();
+    for (int pass = numa ? 0 : 1; pass < 2; pass++) {
+      for (int i = 1; i < workers; i++) {
+        int victim = (ordinal + i) % workers;
+        if (numa && (pass == 0) != Numa.sameNode(ordinal, victim, pool)) continue;
+        Address ring = table.loadAddress(Offset.fromIntZeroExtend(victim << LOG_BYTES_IN_ADDRESS));
+        if (ring.isZero()) continue;
+        Address buf = stealFrom(ring);
+        if (!buf.isZero()) return buf;
+      }
+    }
+    return Address.zero();
+  }
+
+  /**
+   * @return whether any worker's ring or the shared buffer chain holds
+   * a buffer
+   */
+  private boolean hasQueuedWork() {
+    if (!head.isZero()) return true;
+    Address table = ringTable;
+    if (table.isZero() || VM.activePlan.isMutator()) return false;
+    int workers = VM.activePlan.collector().parallelWorkerCount();
+    for (int i = 0; i < workers; i++) {
+      Address ring = table.loadAddress(Offset.fromIntZeroExtend(i << LOG_BYTES_IN_ADDRESS));
+      if (!ring.isZero() && size(ring) > 0) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Steal the oldest buffer from a ring.
+   *
+   * @param ring the ring
+   * @return the stolen buffer, or zero if the ring was empty
+   */
+  @Inline
+  private static Address stealFrom(Address ring) {
+    while (size(ring) > 0) {
+      int top = ring.prepareInt(TOP_OFFSET);
+      VM.memory.isync();
+      int bottom = ring.loadInt(BOTTOM_OFFSET);
+      if (top >= bottom) break;
+      Address buf = ring.loadAddress(slot(top));
+      if (ring.attempt(top, top + 1, TOP_OFFSET)) return buf;
+    }
+    return Address.zero();
+  }
+
+  /**
+   * Push a buffer onto the bottom of a ring.  Only the owner may push.
+   *
+   * @param ring the ring
+   * @param buf the buffer
+   * @return {@code false} if the ring was full
+   */
+  @Inline
+  private static boolean push(Address ring, Address buf) {
+    int bottom = ring.loadInt(BOTTOM_OFFSET);
+    int top = ring.loadInt(TOP_OFFSET);
+    if (bottom - top >= RING_CAPACITY) return false;
+    ring.store(buf, slot(bottom));
+    VM.memory.sync();
+    ring.store(bottom + 1, BOTTOM_OFFSET);
+    return true;
+  }
+
+  /**
+   * Pop the newest buffer from the bottom of a ring.  Only the owner may
+   * pop.  The last buffer in the ring is raced for against thieves.
+   *
+   * @param ring the ring
+   * @return the buffer, or zero if the ring was empty
+   */
+  @Inline
+  private static Address pop(Address ring) {
+    int bottom = ring.loadInt(BOTTOM_OFFSET) - 1;
+    ring.store(bottom, BOTTOM_OFFSET);
+    VM.memory.sync();
+    int top = ring.loadInt(TOP_OFFSET);
+    if (top > bottom) {
+      ring.store(top, BOTTOM_OFFSET);
+      return Address.zero();
+    }
+    Address buf = ring.loadAddress(slot(bottom));
+    if (top == bottom) {
+      if (!ring.attempt(top, top + 1, TOP_OFFSET)) {
+        buf = Address.zero();
+      }
+      ring.store(top + 1, BOTTOM_OFFSET);
+    }
+    return buf;
+  }
+
+  /**
+   * @param ring the ring
+   * @return the (approximate, if racing) number of buffers in a ring
+   */
+  @Inline
+  private static int size(Address ring) {
+    int size = ring.loadInt(BOTTOM_OFFSET) - ring.loadInt(TOP_OFFSET);
+    return size < 0 ? 0 : size;
+  }
+
+  /**
+   * @param index a ring index
+   * @return the offset within the ring of the slot for this index
+   */
+  @Inline
+  private static Offset slot(int index) {
+    return SLOTS_OFFSET.plus((index & RING_MASK) << LOG_BYTES_IN_ADDRESS);
+  }
+}
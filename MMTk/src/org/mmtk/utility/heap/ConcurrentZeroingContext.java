@@ -13,6 +13,8 @@
 
 package org.mmtk.utility.heap;
 
+import static org.mmtk.utility.heap.layout.HeapParameters.MAX_SPACES;
+
 import org.mmtk.utility.Log;
 import org.mmtk.plan.CollectorContext;
 import org.mmtk.utility.options.Options;
@@ -22,25 +24,78 @@ import org.mmtk.vm.VM;
 import org.vmmagic.pragma.*;
 
 /**
- * This context concurrently zeroes a space when triggered.
+ * This context zeroes memory in the background for every page resource
+ * that zeroes concurrently.  A single context serves all such page
+ * resources: each registers once, when its zeroing approach is set, and
+ * then triggers the context whenever it has memory to zero (a nursery
+ * after each collection, or a free list whose pool of pre-zeroed pages
+ * is running low).  Pending requests from several page resources are
+ * served in turn.
  */
 @Uninterruptible
 public class ConcurrentZeroingContext extends CollectorContext {
 
-  private final PageResource pr;
+  /** The single zeroing context, created on first registration */
+  private static ConcurrentZeroingContext context;
+
+  /** The page resources served by this context */
+  private final PageResource[] resources = new PageResource[MAX_SPACES];
+
+  /** Which page resources have requested zeroing */
+  private final boolean[] pending = new boolean[MAX_SPACES];
+
+  /** The number of registered page resources */
+  private int registered;
+
+  /** The number of outstanding requests */
+  private int trigger;
+
   private final Monitor lock;
-  private volatile int trigger;
 
-  public ConcurrentZeroingContext(PageResource pr) {
-    this.pr = pr;
+  private ConcurrentZeroingContext() {
     this.lock = VM.newHeavyCondLock("ConcurrentZeroingLock");
   }
 
-  public void trigger() {
+  /**
+   * Register a page resource with the zeroing context, creating and
+   * spawning the context if necessary.
+   *
+   * @param pr The page resource
+   * @return The index by which the page resource triggers zeroing
+   */
+  @Interruptible
+  static int register(PageResource pr) {
+    if (context == null) {
+      context = new ConcurrentZeroingContext();
+      VM.collection.spawnCollectorContext(context);
+    }
+    return context.add(pr);
+  }
+
+  private int add(PageResource pr) {
     lock.lock();
-    trigger++;
-    lock.broadcast();
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(registered < MAX_SPACES);
+    int index = registered++;
+    resources[index] = pr;
     lock.unlock();
+    return index;
+  }
+
+  /**
+   * Request zeroing for a registered page resource.  A request made
+   * while an earlier one is still pending is merged with it.
+   *
+   * @param index The index returned when the page resource registered
+   */
+  static void trigger(int index) {
+    ConcurrentZeroingContext ctx = context;
+    ctx.lock.lock();
+    if (!ctx.pending[index]) {
+      ctx.pending[index] = true;
+      ctx.trigger++;
+      ctx.lock.broadcast();
+    }
+    ctx.lock.unlock();
   }
 
   @Override
@@ -53,6 +108,13 @@ public class ConcurrentZeroingContext extends CollectorContext {
       while (trigger == 0) {
         lock.await();
       }
+      PageResource pr = null;
+      for (int i = 0; pr == null; i++) {
+        if (pending[i]) {
+          pending[i] = false;
+          pr = resources[i];
+        }
+      }
       trigger--;
       lock.unlock();
       pr.concurrentZeroing();
@@ -45,6 +45,27 @@ public final class FreeListPageResource extends PageResource {
   private final int metaDataPagesPerRegion;
   private int pagesCurrentlyOnFreeList = 0;
 
+  /**
+   * Size of each run in the pool of pre-zeroed pages: an Immix block,
+   * and the default bump pointer region.
+   */
+  private static final int ZEROED_RUN_PAGES = 8;
+  /** Capacity of the pool of pre-zeroed runs */
+  private static final int MAX_ZEROED_RUNS = 64;
+  /** The pool holds at most 1/2^n of the heap */
+  private static final int LOG_ZEROED_HEAP_FRACTION = 6;
+  /** The pool is refilled once it drops to this many runs */
+  private static final int ZEROED_RUNS_LOW_WATER = MAX_ZEROED_RUNS / 4;
+
+  /**
+   * Page offsets of runs that have been taken off the free list and
+   * zeroed by the concurrent zeroing context, or <code>null</code> if
+   * this resource does not zero concurrently.  Pages in the pool are
+   * still counted as free.
+   */
+  private int[] zeroedRuns;
+  private int zeroedRunCount = 0;
+
   /**
    * Constructor
    *
@@ -56,11 +77,7 @@ public final class FreeListPageResource extends PageResource {
    * @param bytes The size of the address rage allocated to this resource
    */
   public FreeListPageResource(Space space, Address start, Extent bytes) {
-    super(space, start);
-    int pages = Conversions.bytesToPages(bytes);
-    freeList = HeapLayout.vmMap.createFreeList(this);
-    pagesCurrentlyOnFreeList = pages;
-    this.metaDataPagesPerRegion = 0;
+    this(space, start, bytes, 0);
   }
 
   /**
@@ -155,10 +172,21 @@ public final class FreeListPageResource extends PageResource {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(metaDataPagesPerRegion == 0 || requiredPages <= PAGES_IN_CHUNK - metaDataPagesPerRegion);
     lock();
     boolean newChunk = false;
-    int pageOffset = freeList.alloc(requiredPages);
-    if (pageOffset == GenericFreeList.FAILURE && growable) {
-      pageOffset = allocateContiguousChunks(requiredPages);
-      newChunk = true;
+    boolean prezeroed = zeroed && requiredPages == ZEROED_RUN_PAGES && zeroedRunCount > 0;
+    boolean refill = zeroed && requiredPages == ZEROED_RUN_PAGES && zeroConcurrent && zeroedRunCount <= ZEROED_RUNS_LOW_WATER;
+    int pageOffset;
+    if (prezeroed) {
+      pageOffset = zeroedRuns[--zeroedRunCount];
+    } else {
+      pageOffset = freeList.alloc(requiredPages);
+      if (pageOffset == GenericFreeList.FAILURE && zeroedRunCount > 0) {
+        releaseZeroedRuns();
+        pageOffset = freeList.alloc(requiredPages);
+      }
+      if (pageOffset == GenericFreeList.FAILURE && growable) {
+        pageOffset = allocateContiguousChunks(requiredPages);
+        newChunk = true;
+      }
     }
     if (pageOffset == GenericFreeList.FAILURE) {
       unlock();
@@ -181,14 +209,70 @@ public final class FreeListPageResource extends PageResource {
       commitPages(reservedPages, requiredPages);
       space.growSpace(rtn, bytes, newChunk);
       unlock();
+      if (refill)
+        requestConcurrentZeroing();
       HeapLayout.mmapper.ensureMapped(rtn, requiredPages);
-      if (zeroed)
+      if (zeroed && !prezeroed)
         VM.memory.zero(zeroNT, rtn, bytes);
       VM.events.tracePageAcquired(space, rtn, requiredPages);
       return rtn;
     }
   }
 
+  /****************************************************************************
+   *
+   * Concurrent zeroing
+   */
+
+  @Override
+  @Interruptible
+  public void updateZeroingApproach(boolean nontemporal, boolean concurrent) {
+    if (concurrent && zeroedRuns == null) {
+      zeroedRuns = new int[MAX_ZEROED_RUNS];
+    }
+    super.updateZeroingApproach(nontemporal, concurrent);
+  }
+
+  /**
+   * Fill the pool of pre-zeroed runs from the free list.  Called by the
+   * concurrent zeroing context.  Runs are only taken from pages already
+   * on the free list; the space is never grown to fill the pool.
+   */
+  @Override
+  public void concurrentZeroing() {
+    int heapRuns = (VM.activePlan.global().getTotalPages() >> LOG_ZEROED_HEAP_FRACTION) / ZEROED_RUN_PAGES;
+    int limit = heapRuns < MAX_ZEROED_RUNS ? heapRuns : MAX_ZEROED_RUNS;
+    while (true) {
+      lock();
+      int pageOffset = GenericFreeList.FAILURE;
+      if (zeroConcurrent && zeroedRunCount < limit)
+        pageOffset = freeList.alloc(ZEROED_RUN_PAGES);
+      unlock();
+      if (pageOffset == GenericFreeList.FAILURE)
+        return;
+      Address run = start.plus(Conversions.pagesToBytes(pageOffset));
+      HeapLayout.mmapper.ensureMapped(run, ZEROED_RUN_PAGES);
+      VM.memory.zero(zeroNT, run, Conversions.pagesToBytes(ZEROED_RUN_PAGES));
+      lock();
+      zeroedRuns[zeroedRunCount++] = pageOffset;
+      unlock();
+    }
+  }
+
+  /**
+   * Return every run in the pool of pre-zeroed runs to the free list,
+   * so that a request the free list could not otherwise satisfy can be
+   * retried.  Must be called with the lock held.
+   */
+  private void releaseZeroedRuns() {
+    while (zeroedRunCount > 0) {
+      int pageOffset = zeroedRuns[--zeroedRunCount];
+      int freed = freeList.free(pageOffset, true);
+      if (!contiguous) // only discontiguous spaces use chunks
+        releaseFreeChunks(start.plus(Conversions.pagesToBytes(pageOffset)), freed);
+    }
+  }
+
   /**
    * Release a group of pages, associated with this page resource,
    * that were allocated together, optionally zeroing on release and
@@ -25,7 +25,14 @@ import org.vmmagic.unboxed.*;
 
 /**
  * This class is responsible for growing and shrinking the
- * heap size by observing heap utilization and GC load.
+ * heap size by observing heap utilization and GC load.<p>
+ *
+ * By default the heap is resized according to a fixed function of live
+ * ratio and GC load.  When a GC overhead target is given
+ * (<code>-X:gc:gcOverheadTarget</code>, a percentage) the heap is instead
+ * resized towards the size at which the observed GC load meets that
+ * target, and the nursery is shrunk or grown within its bounds to keep
+ * nursery pauses within the pause target (<code>-X:gc:pauseTarget</code>).
  */
 @Uninterruptible public abstract class HeapGrowthManager {
 
@@ -87,6 +94,36 @@ import org.vmmagic.unboxed.*;
   private static long endLastMajorGC;
   private static double accumulatedGCTime;
 
+  /**
+   * The longest pause (in milliseconds) of a collection that was not
+   * full heap since the last reset
+   */
+  private static double maxNurseryPause;
+
+  /**
+   * The GC load observed over recent major collections, used when
+   * steering towards a GC overhead target, or negative before the first
+   */
+  private static double smoothedGCLoad = -1;
+
+  /** The weight given to the history when folding in a newly observed GC load */
+  private static final double GC_LOAD_HISTORY_WEIGHT = 0.5;
+
+  /** A GC load within this fraction of the target leaves the heap size alone */
+  private static final double GC_LOAD_TOLERANCE = 0.2;
+
+  /** The largest factor by which the heap may grow at a time */
+  private static final double MAX_HEAP_GROWTH = 2.0;
+
+  /** The smallest factor by which the heap may shrink at a time */
+  private static final double MAX_HEAP_SHRINK = 0.75;
+
+  /** The smallest fraction of the free heap that may be assumed when steering */
+  private static final double MIN_FREE_RATIO = 0.05;
+
+  /** The smallest fraction of the bounded nursery size that may be used */
+  private static final double MIN_NURSERY_SCALE = 1.0 / 16;
+
   /**
    * Initialize heap size parameters and the mechanisms
    * used to adaptively change heap size.
@@ -151,6 +188,9 @@ import org.vmmagic.unboxed.*;
    */
   public static void recordGCTime(double time) {
     accumulatedGCTime += time;
+    if (!VM.activePlan.global().lastCollectionFullHeap() && time > maxNurseryPause) {
+      maxNurseryPause = time;
+    }
   }
 
   /**
@@ -159,6 +199,7 @@ import org.vmmagic.unboxed.*;
   public static void reset() {
     endLastMajorGC = VM.statistics.nanoTime();
     accumulatedGCTime = 0;
+    maxNurseryPause = 0;
   }
 
   /**
@@ -170,7 +211,27 @@ import org.vmmagic.unboxed.*;
     Extent oldSize = currentHeapSize;
     Extent reserved = Plan.reservedMemory();
     double liveRatio = reserved.toLong() / ((double) currentHeapSize.toLong());
-    double ratio = computeHeapChangeRatio(liveRatio);
+    if (liveRatio > 1) {
+      // Perhaps indicates bad bookkeeping in MMTk?
+      Log.write("GCWarning: Live ratio greater than 1: ");
+      Log.writeln(liveRatio);
+      liveRatio = 1;
+    }
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(liveRatio >= 0);
+    double gcLoad = computeGCLoad();
+    if (Options.verbose.getValue() > 2) {
+      Log.write("Live ratio ");
+      Log.writeln(liveRatio);
+      Log.write("GCLoad     ");
+      Log.writeln(gcLoad);
+    }
+    double ratio;
+    if (Options.gcOverheadTarget.getValue() > 0) {
+      ratio = computeOverheadRatio(liveRatio, gcLoad);
+      adjustNurserySize();
+    } else {
+      ratio = computeHeapChangeRatio(liveRatio, gcLoad);
+    }
     Extent newSize = Word.fromIntSignExtend((int)(ratio * (oldSize.toLong() >> LOG_BYTES_IN_MBYTE))).lsh(LOG_BYTES_IN_MBYTE).toExtent(); // do arith in MB to avoid overflow
     if (newSize.LT(reserved)) newSize = reserved;
     newSize = newSize.plus(BYTES_IN_MBYTE - 1).toWord().rshl(LOG_BYTES_IN_MBYTE).lsh(LOG_BYTES_IN_MBYTE).toExtent(); // round to next megabyte
@@ -192,18 +253,17 @@ import org.vmmagic.unboxed.*;
     }
   }
 
-  private static double computeHeapChangeRatio(double liveRatio) {
-    // (1) compute GC load.
+  /**
+   * Compute the fraction of the time since the end of the last major
+   * collection that was spent in the collector.
+   *
+   * @return the GC load, between 0 and 1
+   */
+  private static double computeGCLoad() {
     long totalNanos = VM.statistics.nanoTime() - endLastMajorGC;
     double totalTime = VM.statistics.nanosToMillis(totalNanos);
     double gcLoad = accumulatedGCTime / totalTime;
 
-    if (liveRatio > 1) {
-      // Perhaps indicates bad bookkeeping in MMTk?
-      Log.write("GCWarning: Live ratio greater than 1: ");
-      Log.writeln(liveRatio);
-      liveRatio = 1;
-    }
     if (gcLoad > 1) {
       if (gcLoad > 1.0001) {
         Log.write("GC Error: GC load was greater than 1!! ");
@@ -215,7 +275,6 @@ import org.vmmagic.unboxed.*;
       }
       gcLoad = 1;
     }
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(liveRatio >= 0);
     if (VM.VERIFY_ASSERTIONS && gcLoad < -0.0) {
       Log.write("gcLoad computed to be ");
       Log.writeln(gcLoad);
@@ -225,15 +284,77 @@ import org.vmmagic.unboxed.*;
       Log.writeln(totalTime);
       if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(false);
     }
+    return gcLoad;
+  }
 
+  /**
+   * Compute the factor by which to change the heap size so that the GC
+   * load approaches the GC overhead target.  The work done by the
+   * collector per unit of mutator progress is taken to be inversely
+   * proportional to the free space in the heap, so the free space is
+   * scaled by the ratio of the observed load to the target.
+   *
+   * @param liveRatio the fraction of the heap that is reserved
+   * @param gcLoad the GC load since the last major collection
+   * @return the factor by which to change the heap size
+   */
+  private static double computeOverheadRatio(double liveRatio, double gcLoad) {
+    if (smoothedGCLoad < 0) {
+      smoothedGCLoad = gcLoad;
+    } else {
+      smoothedGCLoad = GC_LOAD_HISTORY_WEIGHT * smoothedGCLoad + (1 - GC_LOAD_HISTORY_WEIGHT) * gcLoad;
+    }
+    double target = Options.gcOverheadTarget.getValue() / 100.0;
+    double factor = 1;
+    if (smoothedGCLoad > target * (1 + GC_LOAD_TOLERANCE) ||
+        smoothedGCLoad < target * (1 - GC_LOAD_TOLERANCE)) {
+      double freeRatio = 1 - liveRatio;
+      if (freeRatio < MIN_FREE_RATIO) freeRatio = MIN_FREE_RATIO;
+      factor = liveRatio + freeRatio * (smoothedGCLoad / target);
+      if (factor > MAX_HEAP_GROWTH) factor = MAX_HEAP_GROWTH;
+      if (factor < MAX_HEAP_SHRINK) factor = MAX_HEAP_SHRINK;
+    }
     if (Options.verbose.getValue() > 2) {
-      Log.write("Live ratio ");
-      Log.writeln(liveRatio);
-      Log.write("GCLoad     ");
-      Log.writeln(gcLoad);
+      Log.write("Smoothed GCLoad ");
+      Log.writeln(smoothedGCLoad);
+      Log.write("Heap adjustment factor is ");
+      Log.writeln(factor);
     }
+    return factor;
+  }
+
+  /**
+   * Shrink the nursery if nursery collections have exceeded the pause
+   * target, or grow it back towards its bound if the GC load is over the
+   * overhead target and the pauses leave room to do so.  The pause of a
+   * nursery collection is taken to be proportional to the nursery size.
+   */
+  private static void adjustNurserySize() {
+    if (maxNurseryPause <= 0) return;
+    double pauseTarget = Options.pauseTarget.getMicroseconds() / 1000.0;
+    double target = Options.gcOverheadTarget.getValue() / 100.0;
+    double oldScale = Options.nurserySize.getScale();
+    double scale = oldScale;
+    if (maxNurseryPause > pauseTarget) {
+      scale *= pauseTarget / maxNurseryPause;
+    } else if (smoothedGCLoad > target) {
+      double headroom = pauseTarget / maxNurseryPause;
+      scale *= headroom < MAX_HEAP_GROWTH ? headroom : MAX_HEAP_GROWTH;
+    }
+    if (scale > 1) scale = 1;
+    if (scale < MIN_NURSERY_SCALE) scale = MIN_NURSERY_SCALE;
+    if (scale != oldScale) {
+      Options.nurserySize.setScale(scale);
+      if (Options.verbose.getValue() >= 2) {
+        Log.write("GC Message: Nursery bound changed to ");
+        Log.write(Options.nurserySize.getMaxNursery());
+        Log.writeln(" pages");
+      }
+    }
+  }
 
-    // (2) Find the 4 points surrounding gcLoad and liveRatio
+  private static double computeHeapChangeRatio(double liveRatio, double gcLoad) {
+    // Find the 4 points surrounding gcLoad and liveRatio
     int liveRatioUnder = 1;
     int liveRatioAbove = function[0].length - 1;
     int gcLoadUnder = 1;
@@ -265,7 +386,7 @@ import org.vmmagic.unboxed.*;
       }
     }
 
-    // (3) Compute the heap change ratio
+    // Compute the heap change ratio
     double factor = function[gcLoadUnder][liveRatioUnder];
     if (liveRatioUnder != liveRatioAbove) {
       // interpolate for liveRatio values in between two specified values in function table
@@ -25,6 +25,7 @@ import org.mmtk.utility.options.Options;
 import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.Extent;
@@ -346,6 +347,14 @@ public final class MonotonePageResource extends PageResource {
 
   private static int CONCURRENT_ZEROING_BLOCKSIZE = 1 << 16;
 
+  @Override
+  @Interruptible
+  public void updateZeroingApproach(boolean nontemporal, boolean concurrent) {
+    // concurrent zeroing sweeps the address range from its start
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!concurrent || contiguous);
+    super.updateZeroingApproach(nontemporal, concurrent);
+  }
+
   @Override
   public void concurrentZeroing() {
     if (VM.VERIFY_ASSERTIONS) {
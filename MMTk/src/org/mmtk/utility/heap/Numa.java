@@ -0,0 +1,115 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.heap;
+
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
+
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class places memory and collector threads on the NUMA nodes of
+ * the host when the <code>numaAware</code> option is set.<p>
+ *
+ * Each mmap chunk prefers the node of the thread that first acquired
+ * pages in it, so that mutators allocate into local memory and
+ * collectors copy into memory local to the node they are bound to.
+ * A chunk keeps its node when its pages are released and reused.
+ * Parallel collectors are split into contiguous groups, one group per
+ * node.  The groups are based on the size of the collector pool, not on
+ * the number of collectors taking part in a collection, so a collector
+ * stays on the same node however many of its peers are parked.
+ */
+@Uninterruptible
+public final class Numa {
+
+  /** The number of nodes in use; 1 if NUMA placement is disabled */
+  private static int nodes = 1;
+
+  /**
+   * Determine the number of nodes to place memory and threads on.
+   * Called once options have been processed, and before the collector
+   * threads are spawned.
+   */
+  @Interruptible
+  public static void boot() {
+    if (!Options.numaAware.getValue()) return;
+    nodes = VM.memory.numaNodes();
+    if (Options.verbose.getValue() > 0) {
+      Log.write("NUMA placement over ");
+      Log.write(nodes);
+      Log.writeln(" nodes");
+    }
+  }
+
+  /** @return {@code true} if memory and threads are placed on more than one node */
+  @Inline
+  public static boolean isEnabled() {
+    return nodes > 1;
+  }
+
+  /**
+   * @param ordinal the ordinal of a parallel worker
+   * @param workers the number of parallel workers in the pool
+   * @return the node the worker is bound to
+   */
+  @Inline
+  public static int nodeOf(int ordinal, int workers) {
+    return (ordinal * nodes) / workers;
+  }
+
+  /**
+   * @param a the ordinal of a parallel worker
+   * @param b the ordinal of another parallel worker
+   * @param workers the number of parallel workers in the pool
+   * @return {@code true} if both workers are bound to the same node
+   */
+  @Inline
+  public static boolean sameNode(int a, int b, int workers) {
+    return nodeOf(a, workers) == nodeOf(b, workers);
+  }
+
+  /**
+   * Bind the current parallel worker to its node.
+   *
+   * @param ordinal the ordinal of the worker
+   * @param workers the number of parallel workers in the pool
+   */
+  public static void bindWorker(int ordinal, int workers) {
+    if (!isEnabled()) return;
+    int node = nodeOf(ordinal, workers);
+    if (!VM.collection.bindToNumaNode(node) && Options.verbose.getValue() > 0) {
+      Log.write("Failed to bind collector ");
+      Log.write(ordinal);
+      Log.write(" to NUMA node ");
+      Log.writeln(node);
+    }
+  }
+
+  /**
+   * Prefer the node of the current thread for a freshly mapped chunk.
+   * This must happen before the chunk is first touched, as pages that
+   * are already resident stay where they are.
+   *
+   * @param start the start of the chunk
+   * @param bytes the size of the chunk
+   */
+  @Inline
+  public static void bindChunk(Address start, int bytes) {
+    if (!isEnabled()) return;
+    VM.memory.numaBind(start, bytes, VM.memory.numaNode());
+  }
+}
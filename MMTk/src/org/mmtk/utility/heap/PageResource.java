@@ -74,7 +74,8 @@ public abstract class PageResource {
   // zeroing
   protected boolean zeroNT;
   protected boolean zeroConcurrent;
-  protected ConcurrentZeroingContext zeroingContext;
+  /** Index of this page resource in the concurrent zeroing context, or -1 */
+  private int zeroingIndex = -1;
 
   /****************************************************************************
    *
@@ -184,12 +185,10 @@ public abstract class PageResource {
    */
   @Interruptible
   public void updateZeroingApproach(boolean nontemporal, boolean concurrent) {
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!concurrent || contiguous);
     this.zeroNT = nontemporal;
     this.zeroConcurrent = concurrent;
-    if (concurrent) {
-      this.zeroingContext = new ConcurrentZeroingContext(this);
-      VM.collection.spawnCollectorContext(zeroingContext);
+    if (concurrent && zeroingIndex < 0) {
+      zeroingIndex = ConcurrentZeroingContext.register(this);
     }
   }
 
@@ -206,7 +205,16 @@ public abstract class PageResource {
    */
   public void triggerConcurrentZeroing() {
     zeroConcurrent = true;
-    this.zeroingContext.trigger();
+    requestConcurrentZeroing();
+  }
+
+  /**
+   * Ask the concurrent zeroing context to call {@link #concurrentZeroing()}
+   * for this page resource.
+   */
+  protected final void requestConcurrentZeroing() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(zeroingIndex >= 0);
+    ConcurrentZeroingContext.trigger(zeroingIndex);
   }
 
   /**
@@ -15,6 +15,7 @@ package org.mmtk.utility.heap.layout;
 import static org.mmtk.utility.Constants.*;
 
 import org.mmtk.utility.*;
+import org.mmtk.utility.heap.Numa;
 
 import org.mmtk.vm.Lock;
 import org.mmtk.vm.VM;
@@ -153,6 +154,8 @@ public final class ByteMapMmapper extends Mmapper {
           Log.writeln(" on address ", mmapStart);
           VM.assertions.fail("Can't get more space with mmap()");
         } else {
+          adviseHugePages(mmapStart);
+          Numa.bindChunk(mmapStart, MMAP_CHUNK_BYTES);
           if (verbose) {
             Log.write("mmap succeeded at chunk ", chunk);
             Log.write("  ", mmapStart);
@@ -16,6 +16,7 @@ import static org.mmtk.utility.Constants.*;
 
 import org.mmtk.utility.Conversions;
 import org.mmtk.utility.Log;
+import org.mmtk.utility.heap.Numa;
 import org.mmtk.utility.statistics.EventCounter;
 import org.mmtk.vm.Lock;
 import org.mmtk.vm.VM;
@@ -421,6 +422,8 @@ public final class FragmentedMmapper extends Mmapper {
             Log.writeln(" on address ", mmapStart);
             VM.assertions.fail("Can't get more space with mmap()");
           } else {
+            adviseHugePages(mmapStart);
+            Numa.bindChunk(mmapStart, MMAP_CHUNK_BYTES);
             if (VERBOSE) {
               Log.write("    mmap succeeded at chunk ", chunk);
               Log.write("  ", mmapStart);
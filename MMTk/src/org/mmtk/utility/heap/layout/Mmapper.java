@@ -12,6 +12,9 @@
  */
 package org.mmtk.utility.heap.layout;
 
+import org.mmtk.policy.Space;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
@@ -24,6 +27,8 @@ public abstract class Mmapper {
 
   protected static final int MMAP_CHUNK_BYTES = 1 << VMLayoutConstants.LOG_MMAP_CHUNK_BYTES;   // the granularity VMResource operates at
   protected static final int MMAP_CHUNK_MASK = MMAP_CHUNK_BYTES - 1;
+  /** The largest huge page that spaces may ask to be backed by */
+  private static final int LOG_BYTES_IN_HUGE_PAGE = 21;
 
   /****************************************************************************
    * Generic mmap and protection functionality
@@ -83,6 +88,26 @@ public abstract class Mmapper {
    */
   public abstract void protect(Address start, int pages);
 
+  /**
+   * Ask for a freshly mapped chunk to be backed by huge pages if the
+   * <code>hugePages</code> option is set and the space owning the chunk
+   * prefers them.<p>
+   *
+   * Space chunks are at least as large and as aligned as a huge page, so
+   * all the mmap chunks within a huge page belong to the same space and
+   * are given the same advice.  This lets the OS merge them into a single
+   * mapping that huge pages can back.
+   *
+   * @param mmapStart The start of the mmap chunk
+   */
+  protected static void adviseHugePages(Address mmapStart) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(VMLayoutConstants.LOG_BYTES_IN_CHUNK >= LOG_BYTES_IN_HUGE_PAGE);
+    if (!Options.hugePages.getValue()) return;
+    Space space = Space.getSpaceForAddress(mmapStart);
+    if (space == null || !space.prefersHugePages()) return;
+    VM.memory.adviseHugePages(mmapStart, MMAP_CHUNK_BYTES);
+  }
+
   /**
    * Return a given address rounded up to an mmap chunk size
    *
@@ -0,0 +1,28 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Should nursery collections use fewer collector threads when little
+ * of the nursery is expected to survive?
+ */
+public final class ElasticThreads extends org.vmutil.options.BooleanOption {
+  /**
+   * Create the option.
+   */
+  public ElasticThreads() {
+    super(Options.set, "Elastic Threads",
+          "If true, nursery collections only use as many collector threads as their expected survivors warrant",
+          false);
+  }
+}
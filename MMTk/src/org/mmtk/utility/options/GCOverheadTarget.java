@@ -0,0 +1,37 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The percentage of execution time that a variable sized heap should aim
+ * to spend in the collector.  When zero, the heap is sized from the
+ * built-in table of live ratio against GC load instead.
+ */
+public final class GCOverheadTarget extends org.vmutil.options.FloatOption {
+  /**
+   * Create the option.
+   */
+  public GCOverheadTarget() {
+    super(Options.set, "GC Overhead Target",
+          "Size the heap and nursery to spend this percentage of time in GC (0 to disable)",
+          0.0f);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf((this.value < 0 || this.value >= 100), "Overhead must be a percentage between 0 and 100");
+  }
+}
@@ -22,6 +22,8 @@ public final class NurserySize {
   // values
   private final FixedNursery fixedNursery;
   private final BoundedNursery boundedNursery;
+  /** The fraction of the bounded nursery currently in use */
+  private double scale = 1.0;
 
   /**
    * Create the options.
@@ -38,7 +40,9 @@ public final class NurserySize {
    */
   @Uninterruptible
   public int getMaxNursery() {
-    return boundedNursery.getPages();
+    int max = (int) (boundedNursery.getPages() * scale);
+    int min = fixedNursery.getPages();
+    return max < min ? min : max;
   }
 
   /**
@@ -50,4 +54,26 @@ public final class NurserySize {
   public int getMinNursery() {
     return fixedNursery.getPages();
   }
+
+  /**
+   * Read the fraction of the upper bound currently in use.
+   *
+   * @return the scale applied to the upper bound of the nursery size.
+   */
+  @Uninterruptible
+  public double getScale() {
+    return scale;
+  }
+
+  /**
+   * Shrink the upper bound of the nursery below the bounded size; the
+   * lower bound is never affected.  Used by the heap growth manager to
+   * trade nursery pause times against collection frequency.
+   *
+   * @param scale the fraction of the bounded size to use, in (0, 1].
+   */
+  @Uninterruptible
+  public void setScale(double scale) {
+    this.scale = scale;
+  }
 }
@@ -21,6 +21,7 @@ public final class Options {
   public static OptionSet set;
 
   /* Other options */
+  public static ConcurrentCycleCollection concurrentCycleCollection;
   public static ConcurrentTrigger concurrentTrigger;
   public static CycleFilterThreshold cycleFilterThreshold;
   public static CycleMetaDataLimit cycleMetaDataLimit;
@@ -37,24 +38,30 @@ public final class Options {
   public static DefragStress defragStress;
   public static EagerCompleteSweep eagerCompleteSweep;
   public static EagerMmapSpaces eagerMmapSpaces;
+  public static ElasticThreads elasticThreads;
   public static FragmentationStats fragmentationStats;
   public static FullHeapSystemGC fullHeapSystemGC;
+  public static GCOverheadTarget gcOverheadTarget;
   public static GCspyPort gcspyPort;
   public static GCspyTileSize gcspyTileSize;
   public static GCspyWait gcspyWait;
   public static GCTimeCap gcTimeCap;
   public static GenCycleDetection genCycleDetection;
   public static HarnessAll harnessAll;
+  public static HugePages hugePages;
   public static IgnoreSystemGC ignoreSystemGC;
   public static LineReuseRatio lineReuseRatio;
   public static MarkSweepMarkBits markSweepMarkBits;
   public static MetaDataLimit metaDataLimit;
   public static NoFinalizer noFinalizer;
   public static NoReferenceTypes noReferenceTypes;
+  public static NumaAware numaAware;
   public static NurserySize nurserySize;
+  public static PauseTarget pauseTarget;
   public static PerfEvents perfEvents;
   public static PretenureThresholdFraction pretenureThresholdFraction;
   public static PrintPhaseStats printPhaseStats;
+  public static SitePretenuring sitePretenuring;
   public static ProtectOnRelease protectOnRelease;
   public static SanityCheck sanityCheck;
   public static StressFactor stressFactor;
@@ -86,6 +86,15 @@ import org.vmmagic.pragma.*;
    */
   public abstract int getActiveThreads();
 
+  /**
+   * Binds the current thread to the processors of a NUMA node.
+   *
+   * @param node the node
+   * @return <code>true</code> if successful, otherwise
+   * <code>false</code>
+   */
+  public abstract boolean bindToNumaNode(int node);
+
   /**
    * Block for the garbage collector.
    */
@@ -140,6 +140,15 @@ public abstract class Factory {
    */
   public abstract FinalizableProcessor newFinalizableProcessor();
 
+  /**
+   * Create a new HeapCensus instance using the appropriate VM-specific
+   * concrete HeapCensus sub-class.
+   *
+   * @see HeapCensus
+   * @return A concrete VM-specific HeapCensus instance.
+   */
+  public abstract HeapCensus newHeapCensus();
+
   /**
    * Create a new Scanning instance using the appropriate VM-specific
    * concrete Scanning sub-class.
@@ -0,0 +1,68 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.vm;
+
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * This class receives a census of the live heap, taken as a by-product
+ * of a collection.<p>
+ *
+ * A census is requested with {@link org.mmtk.plan.Plan#requestHeapCensus()},
+ * and is taken by the next collection that traces the whole heap.  Each
+ * object found live by the trace is reported exactly once, by the
+ * collector thread that scanned it, after its reference fields have been
+ * traced.  The references it holds are therefore those that remain valid
+ * once the collection is over.
+ */
+@Uninterruptible
+public abstract class HeapCensus {
+
+  /**
+   * Start a census.  This is called by a single collector thread
+   * during the global prepare phase, before any object is reported.
+   */
+  public abstract void prepare();
+
+  /**
+   * Report a live object.  This is called by every collector thread,
+   * concurrently.
+   *
+   * @param object The live object
+   */
+  public abstract void liveObject(ObjectReference object);
+
+  /**
+   * Report a live object that is referenced directly from a root.
+   * This is called by every collector thread, concurrently, and may be
+   * called more than once for the same object.
+   *
+   * @param object The object referenced by the root
+   */
+  public abstract void liveRoot(ObjectReference object);
+
+  /**
+   * Finish a census.  This is called by a single collector thread
+   * during the global release phase, once every live object has been
+   * reported.
+   */
+  public abstract void release();
+
+  /**
+   * Report a census.  This is called by a single collector thread
+   * after {@link #release()}, once the mutators have resumed, and
+   * before the next census is prepared.
+   */
+  public abstract void report();
+}
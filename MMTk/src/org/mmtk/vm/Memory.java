@@ -98,6 +98,43 @@ import org.vmmagic.pragma.*;
   public abstract boolean munprotect(Address start, int size);
 
 
+  /**
+   * Asks for an area of virtual memory to be backed by huge pages
+   * where possible.
+   *
+   * @param start the address of the start of the area
+   * @param size the size, in bytes, of the area
+   * @return <code>true</code> if successful, otherwise
+   * <code>false</code>
+   */
+  public abstract boolean adviseHugePages(Address start, int size);
+
+  /**
+   * The nodes are numbered from 0 to one less than this count, whatever
+   * numbers the host gives the nodes that are online.
+   *
+   * @return The number of online NUMA nodes of the host, or 1 if it is not NUMA
+   */
+  public abstract int numaNodes();
+
+  /**
+   * @return The NUMA node (as numbered by <code>numaNodes</code>) of the
+   * processor the current thread is running on
+   */
+  public abstract int numaNode();
+
+  /**
+   * Prefers a NUMA node for the pages of an area of virtual memory that
+   * have not yet been touched.
+   *
+   * @param start the address of the start of the area
+   * @param size the size, in bytes, of the area
+   * @param node the node
+   * @return <code>true</code> if successful, otherwise
+   * <code>false</code>
+   */
+  public abstract boolean numaBind(Address start, int size, int node);
+
   /**
    * Zero a region of memory.
    *
@@ -146,6 +146,17 @@ import org.vmmagic.unboxed.*;
    */
   public abstract void computeBootImageRoots(TraceLocal trace);
 
+  /**
+   * Report every reference slot in the VM's boot image (if any) to the
+   * closure, as an edge with a null source.  This lets a plan which
+   * remembers stores into the boot image by card marking find the slots
+   * on a dirty card without scanning the whole boot image.  Called once,
+   * by a single thread.
+   *
+   * @param closure The closure to which each slot is reported.
+   */
+  public abstract void computeBootImageSlots(TransitiveClosure closure);
+
   /**
    * @return true if the runtime supports a return barrier
    */
@@ -2692,7 +2692,7 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
     int whichAllocator = MemoryManager.pickAllocator(typeRef, method);
     int align = ObjectModel.getAlignment(typeRef);
     int offset = ObjectModel.getOffsetForAlignment(typeRef, false);
-    int site = MemoryManager.getAllocationSite(true);
+    int site = MemoryManager.getAllocationSite(method, biStart);
     asm.emitLAddrToc(T0, Entrypoints.resolvedNewScalarMethod.getOffset());
     asm.emitMTCTR(T0);
     asm.emitLVAL(T0, instanceSize);
@@ -2708,7 +2708,7 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
 
   @Override
   protected void emit_unresolved_new(TypeReference typeRef) {
-    int site = MemoryManager.getAllocationSite(true);
+    int site = MemoryManager.getAllocationSite(method, biStart);
     asm.emitLAddrToc(T0, Entrypoints.unresolvedNewScalarMethod.getOffset());
     asm.emitMTCTR(T0);
     asm.emitLVAL(T0, typeRef.getId());
@@ -2723,7 +2723,7 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
     Offset tibOffset = array.getTibOffset();
     int headerSize = ObjectModel.computeArrayHeaderSize(array);
     int whichAllocator = MemoryManager.pickAllocator(array, method);
-    int site = MemoryManager.getAllocationSite(true);
+    int site = MemoryManager.getAllocationSite(method, biStart);
     int align = ObjectModel.getAlignment(array);
     int offset = ObjectModel.getOffsetForAlignment(array, false);
     asm.emitLAddrToc(T0, Entrypoints.resolvedNewArrayMethod.getOffset());
@@ -2742,7 +2742,7 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
 
   @Override
   protected void emit_unresolved_newarray(TypeReference typeRef) {
-    int site = MemoryManager.getAllocationSite(true);
+    int site = MemoryManager.getAllocationSite(method, biStart);
     asm.emitLAddrToc(T0, Entrypoints.unresolvedNewArrayMethod.getOffset());
     asm.emitMTCTR(T0);
     peekInt(T0, 0);                // T0 := number of elements
@@ -157,7 +157,8 @@ public final class ExpandRuntimeServices extends CompilerPhase {
           RVMClass cls = (RVMClass) Type.getVMType();
           IntConstantOperand hasFinalizer = IRTools.IC(cls.hasFinalizer() ? 1 : 0);
           RVMMethod callSite = inst.position().getMethod();
-          IntConstantOperand allocator = IRTools.IC(MemoryManager.pickAllocator(cls, callSite));
+          int siteId = MemoryManager.getAllocationSite(callSite, inst.getBytecodeIndex());
+          IntConstantOperand allocator = IRTools.IC(MemoryManager.pickAllocator(cls, callSite, siteId));
           IntConstantOperand align = IRTools.IC(ObjectModel.getAlignment(cls));
           IntConstantOperand offset = IRTools.IC(ObjectModel.getOffsetForAlignment(cls, false));
           Operand tib = ConvertToLowLevelIR.getTIB(inst, ir, Type);
@@ -167,7 +168,7 @@ public final class ExpandRuntimeServices extends CompilerPhase {
             inst.insertBefore(Move.create(REF_MOVE, tmp, tib));
             tib = tmp.copyRO();
           }
-          IntConstantOperand site = IRTools.IC(MemoryManager.getAllocationSite(true));
+          IntConstantOperand site = IRTools.IC(siteId);
           RVMMethod target = Entrypoints.resolvedNewScalarMethod;
           Call.mutate7(inst,
                        CALL,
@@ -195,7 +196,7 @@ public final class ExpandRuntimeServices extends CompilerPhase {
         case NEW_UNRESOLVED_opcode: {
           int typeRefId = New.getType(inst).getTypeRef().getId();
           RVMMethod target = Entrypoints.unresolvedNewScalarMethod;
-          IntConstantOperand site = IRTools.IC(MemoryManager.getAllocationSite(true));
+          IntConstantOperand site = IRTools.IC(MemoryManager.getAllocationSite(inst.position().getMethod(), inst.getBytecodeIndex()));
           Call.mutate2(inst,
                        CALL,
                        New.getClearResult(inst),
@@ -214,7 +215,8 @@ public final class ExpandRuntimeServices extends CompilerPhase {
           Operand width = IRTools.IC(array.getLogElementSize());
           Operand headerSize = IRTools.IC(ObjectModel.computeArrayHeaderSize(array));
           RVMMethod callSite = inst.position().getMethod();
-          IntConstantOperand allocator = IRTools.IC(MemoryManager.pickAllocator(array, callSite));
+          int siteId = MemoryManager.getAllocationSite(callSite, inst.getBytecodeIndex());
+          IntConstantOperand allocator = IRTools.IC(MemoryManager.pickAllocator(array, callSite, siteId));
           IntConstantOperand align = IRTools.IC(ObjectModel.getAlignment(array));
           IntConstantOperand offset = IRTools.IC(ObjectModel.getOffsetForAlignment(array, false));
           Operand tib = ConvertToLowLevelIR.getTIB(inst, ir, Array);
@@ -224,7 +226,7 @@ public final class ExpandRuntimeServices extends CompilerPhase {
             inst.insertBefore(Move.create(REF_MOVE, tmp, tib));
             tib = tmp.copyRO();
           }
-          IntConstantOperand site = IRTools.IC(MemoryManager.getAllocationSite(true));
+          IntConstantOperand site = IRTools.IC(siteId);
           RVMMethod target = Entrypoints.resolvedNewArrayMethod;
           Call.mutate8(inst,
                        CALL,
@@ -254,7 +256,7 @@ public final class ExpandRuntimeServices extends CompilerPhase {
           int typeRefId = NewArray.getType(inst).getTypeRef().getId();
           Operand numberElements = NewArray.getClearSize(inst);
           RVMMethod target = Entrypoints.unresolvedNewArrayMethod;
-          IntConstantOperand site = IRTools.IC(MemoryManager.getAllocationSite(true));
+          IntConstantOperand site = IRTools.IC(MemoryManager.getAllocationSite(inst.position().getMethod(), inst.getBytecodeIndex()));
           Call.mutate3(inst,
                        CALL,
                        NewArray.getClearResult(inst),
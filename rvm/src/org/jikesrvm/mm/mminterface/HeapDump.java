@@ -0,0 +1,733 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.mm.mminterface;
+
+import static org.jikesrvm.runtime.SysCall.sysCall;
+import static org.jikesrvm.runtime.UnboxedSizeConstants.BYTES_IN_ADDRESS;
+import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_ADDRESS;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.Atom;
+import org.jikesrvm.classloader.RVMArray;
+import org.jikesrvm.classloader.RVMClass;
+import org.jikesrvm.classloader.RVMField;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.classloader.TypeReference;
+import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.runtime.Memory;
+import org.mmtk.utility.options.Options;
+import org.vmmagic.pragma.Interruptible;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.AddressArray;
+import org.vmmagic.unboxed.Extent;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
+
+/**
+ * A dump of the live heap in HPROF format, taken as a by-product of
+ * a full heap collection.<p>
+ *
+ * The layout of every resolved type is recorded when the dump is
+ * created.  During the collection, each collector thread writes a
+ * record for every live object it scans into its own chain of buffers,
+ * which are allocated outside the Java heap and each hold one heap dump
+ * segment.  The class records are added once the trace is complete.
+ * The dump is only written to a file after the collection, by the thread
+ * that asked for it, so the pause is not lengthened by file I/O.<p>
+ *
+ * Objects are identified by their address after the collection.  Classes
+ * and strings have odd identifiers, which no object can have.  Instances
+ * of types that were not resolved when the dump was created are left out.
+ * An object may be reached from many roots, so the collectors only note
+ * the objects reached from roots, and each is written once, with the file.
+ */
+@Uninterruptible
+public final class HeapDump {
+
+  /* HPROF record tags */
+  private static final int TAG_STRING = 0x01;
+  private static final int TAG_LOAD_CLASS = 0x02;
+  private static final int TAG_HEAP_DUMP_SEGMENT = 0x1C;
+  private static final int TAG_HEAP_DUMP_END = 0x2C;
+
+  /* HPROF heap dump sub-record tags */
+  private static final int ROOT_UNKNOWN = 0xFF;
+  private static final int CLASS_DUMP = 0x20;
+  private static final int INSTANCE_DUMP = 0x21;
+  private static final int OBJ_ARRAY_DUMP = 0x22;
+  private static final int PRIM_ARRAY_DUMP = 0x23;
+
+  /* HPROF basic types */
+  private static final byte T_OBJECT = 2;
+  private static final byte T_BOOLEAN = 4;
+  private static final byte T_CHAR = 5;
+  private static final byte T_FLOAT = 6;
+  private static final byte T_DOUBLE = 7;
+  private static final byte T_BYTE = 8;
+  private static final byte T_SHORT = 9;
+  private static final byte T_INT = 10;
+  private static final byte T_LONG = 11;
+  private static final byte T_WORD = BYTES_IN_ADDRESS == 4 ? T_INT : T_LONG;
+
+  /** Usual size of a buffer; larger ones are made for large arrays */
+  private static final int BUFFER_BYTES = 1 << 20;
+
+  /** Initial number of entries in each collector's array of roots */
+  private static final int INITIAL_ROOTS = 1024;
+
+  /** Each buffer starts with the address of the next and the bytes used */
+  private static final int BUFFER_HEADER = 2 * BYTES_IN_ADDRESS;
+  private static final Offset USED_OFFSET = Offset.fromIntSignExtend(BYTES_IN_ADDRESS);
+
+  /** A heap dump segment record starts with a tag, a time and a length */
+  private static final int SEGMENT_HEADER = 1 + 4 + 4;
+  private static final int LENGTH_OFFSET = 1 + 4;
+
+  /****************************************************************************
+   *
+   * Type layouts, recorded when the dump is created
+   */
+
+  /** Number of entries in the per-type tables, which are indexed by type id */
+  private final int types;
+
+  /** For classes, the offset and HPROF type of each instance field, in HPROF order */
+  private final int[][] instanceFields;
+
+  /** For classes, the bytes of field values in an instance dump */
+  private final int[] instanceBytes;
+
+  /** For classes, the instance size */
+  private final int[] instanceSizes;
+
+  /** For classes, the name and HPROF type of each declared instance field */
+  private final int[][] declaredFields;
+
+  /** For classes, the JTOC offset, HPROF type and name of each static field */
+  private final int[][] staticFields;
+
+  /** For arrays, the HPROF type of the elements */
+  private final byte[] elementTypes;
+
+  /** The super class of each type, or zero */
+  private final int[] superTypes;
+
+  /** The name of each type, or -1 for types that are not dumped */
+  private final int[] typeNames;
+
+  /** The strings referred to by the dump */
+  private final ArrayList<byte[]> strings = new ArrayList<byte[]>();
+
+  /****************************************************************************
+   *
+   * Output, written during the collection
+   */
+
+  /** The first buffer of each collector */
+  private final AddressArray heads;
+
+  /** The buffer each collector is writing */
+  private final AddressArray tails;
+
+  /** The position in each collector's buffer */
+  private final AddressArray cursors;
+
+  /** The end of each collector's buffer */
+  private final AddressArray limits;
+
+  /** The objects reached from roots by each collector, in a native array */
+  private final AddressArray roots;
+
+  /** The number of objects in each collector's array of roots */
+  private final int[] rootCounts;
+
+  /** The capacity of each collector's array of roots */
+  private final int[] rootCapacities;
+
+  /** Objects left out because their type was not recorded */
+  private final int[] omitted;
+
+  /** Set if a buffer could not be allocated */
+  private boolean truncated;
+
+  /** Set once the collection has written the dump */
+  private volatile boolean complete;
+
+  /**
+   * Record the layout of every resolved type.
+   */
+  @Interruptible
+  public HeapDump() {
+    types = RVMType.numTypes() + 1;
+    instanceFields = new int[types][];
+    instanceBytes = new int[types];
+    instanceSizes = new int[types];
+    declaredFields = new int[types][];
+    staticFields = new int[types][];
+    elementTypes = new byte[types];
+    superTypes = new int[types];
+    typeNames = new int[types];
+
+    HashMap<Atom, Integer> fieldNames = new HashMap<Atom, Integer>();
+    for (int id = 1; id < types; id++) {
+      typeNames[id] = -1;
+      RVMType type = RVMType.getType(id);
+      if (type == null || !type.isResolved() || type.getTypeRef().isUnboxedType()) {
+        continue;
+      }
+      if (type.isClassType()) {
+        RVMClass cls = type.asClass();
+        RVMClass superClass = cls.getSuperClass();
+        superTypes[id] = superClass == null ? 0 : superClass.getId();
+        instanceSizes[id] = cls.getInstanceSize();
+        typeNames[id] = addString(className(cls.getDescriptor().toByteArray()));
+
+        int count = 0;
+        for (RVMClass c = cls; c != null; c = c.getSuperClass()) {
+          for (RVMField field : c.getDeclaredFields()) {
+            if (!field.isStatic()) count++;
+          }
+        }
+        int[] layout = new int[2 * count];
+        int bytes = 0;
+        int next = 0;
+        for (RVMClass c = cls; c != null; c = c.getSuperClass()) {
+          for (RVMField field : c.getDeclaredFields()) {
+            if (!field.isStatic()) {
+              byte fieldType = basicType(field.getType());
+              layout[next++] = field.getOffset().toInt();
+              layout[next++] = fieldType;
+              bytes += sizeOf(fieldType);
+            }
+          }
+        }
+        instanceFields[id] = layout;
+        instanceBytes[id] = bytes;
+
+        RVMField[] fields = cls.getDeclaredFields();
+        int statics = 0;
+        for (RVMField field : fields) {
+          if (field.isStatic()) statics++;
+        }
+        int[] declared = new int[2 * (fields.length - statics)];
+        int[] shared = new int[3 * statics];
+        int d = 0, s = 0;
+        for (RVMField field : fields) {
+          Integer name = fieldNames.get(field.getName());
+          if (name == null) {
+            name = addString(field.getName().toByteArray());
+            fieldNames.put(field.getName(), name);
+          }
+          if (field.isStatic()) {
+            shared[s++] = field.getOffset().toInt();
+            shared[s++] = basicType(field.getType());
+            shared[s++] = name;
+          } else {
+            declared[d++] = name;
+            declared[d++] = basicType(field.getType());
+          }
+        }
+        declaredFields[id] = declared;
+        staticFields[id] = shared;
+      } else if (type.isArrayType()) {
+        superTypes[id] = RVMType.JavaLangObjectType.getId();
+        elementTypes[id] = elementType(type.asArray());
+        typeNames[id] = addString(type.getDescriptor().toByteArray());
+      }
+    }
+
+    int collectors = Options.threads.getValue();
+    heads = AddressArray.create(collectors);
+    tails = AddressArray.create(collectors);
+    cursors = AddressArray.create(collectors);
+    limits = AddressArray.create(collectors);
+    roots = AddressArray.create(collectors);
+    rootCounts = new int[collectors];
+    rootCapacities = new int[collectors];
+    omitted = new int[collectors];
+  }
+
+  /**
+   * @param descriptor A class descriptor, such as <code>Ljava/lang/Object;</code>
+   * @return The class name as it appears in a dump, such as <code>java/lang/Object</code>
+   */
+  @Interruptible
+  private static byte[] className(byte[] descriptor) {
+    byte[] name = new byte[descriptor.length - 2];
+    System.arraycopy(descriptor, 1, name, 0, name.length);
+    return name;
+  }
+
+  @Interruptible
+  private int addString(byte[] bytes) {
+    strings.add(bytes);
+    return strings.size() - 1;
+  }
+
+  /**
+   * @param type A field or element type
+   * @return The HPROF basic type of its values
+   */
+  @Interruptible
+  private static byte basicType(TypeReference type) {
+    if (type.isBooleanType()) return T_BOOLEAN;
+    if (type.isByteType()) return T_BYTE;
+    if (type.isCharType()) return T_CHAR;
+    if (type.isShortType()) return T_SHORT;
+    if (type.isIntType()) return T_INT;
+    if (type.isFloatType()) return T_FLOAT;
+    if (type.isLongType()) return T_LONG;
+    if (type.isDoubleType()) return T_DOUBLE;
+    if (type.isUnboxedType()) return T_WORD;
+    return T_OBJECT;
+  }
+
+  /**
+   * Code arrays, runtime tables and arrays of unboxed types are dumped
+   * as primitive arrays with elements of the same size.
+   *
+   * @param array An array type
+   * @return The HPROF basic type of its elements
+   */
+  @Interruptible
+  private static byte elementType(RVMArray array) {
+    TypeReference ref = array.getTypeRef();
+    if (ref.isRuntimeTable() || ref.isCodeArrayType() || ref.isUnboxedArrayType()) {
+      switch (array.getLogElementSize()) {
+        case 0: return T_BYTE;
+        case 1: return T_SHORT;
+        case 2: return T_INT;
+        default: return T_LONG;
+      }
+    }
+    return basicType(array.getElementType().getTypeRef());
+  }
+
+  private static int sizeOf(int basicType) {
+    switch (basicType) {
+      case T_OBJECT: return BYTES_IN_ADDRESS;
+      case T_BOOLEAN: case T_BYTE: return 1;
+      case T_CHAR: case T_SHORT: return 2;
+      case T_INT: case T_FLOAT: return 4;
+      default: return 8;
+    }
+  }
+
+  private static Word classId(int typeId) {
+    return Word.fromIntZeroExtend(typeId).lsh(2).or(Word.one());
+  }
+
+  private static Word stringId(int string) {
+    return Word.fromIntZeroExtend(string).lsh(2).or(Word.fromIntZeroExtend(3));
+  }
+
+  /****************************************************************************
+   *
+   * Writing the dump during the collection
+   */
+
+  /**
+   * Write the record of a live object.
+   *
+   * @param collector The id of the collector thread
+   * @param object The object, which has been scanned
+   */
+  public void liveObject(int collector, ObjectReference object) {
+    RVMType type = Magic.getObjectType(object.toObject());
+    int id = type.getId();
+    if (id >= types || typeNames[id] < 0) {
+      omitted[collector]++;
+      return;
+    }
+    Address ref = object.toAddress();
+    if (type.isClassType()) {
+      int[] fields = instanceFields[id];
+      int bytes = instanceBytes[id];
+      Address cursor = reserve(collector, 1 + BYTES_IN_ADDRESS + 4 + BYTES_IN_ADDRESS + 4 + bytes);
+      if (cursor.isZero()) return;
+      cursor = putU1(cursor, INSTANCE_DUMP);
+      cursor = putID(cursor, ref.toWord());
+      cursor = putU4(cursor, 0);
+      cursor = putID(cursor, classId(id));
+      cursor = putU4(cursor, bytes);
+      for (int i = 0; i < fields.length; i += 2) {
+        cursor = putValue(cursor, ref.plus(fields[i]), fields[i + 1]);
+      }
+      cursors.set(collector, cursor);
+    } else {
+      int elementType = elementTypes[id];
+      int length = Magic.getArrayLength(object.toObject());
+      if (elementType == T_OBJECT) {
+        Address cursor = reserve(collector, 1 + BYTES_IN_ADDRESS + 4 + 4 + BYTES_IN_ADDRESS + (length << LOG_BYTES_IN_ADDRESS));
+        if (cursor.isZero()) return;
+        cursor = putU1(cursor, OBJ_ARRAY_DUMP);
+        cursor = putID(cursor, ref.toWord());
+        cursor = putU4(cursor, 0);
+        cursor = putU4(cursor, length);
+        cursor = putID(cursor, classId(id));
+        for (int i = 0; i < length; i++) {
+          cursor = putID(cursor, ref.loadWord(Offset.fromIntZeroExtend(i << LOG_BYTES_IN_ADDRESS)));
+        }
+        cursors.set(collector, cursor);
+      } else {
+        int size = sizeOf(elementType);
+        Address cursor = reserve(collector, 1 + BYTES_IN_ADDRESS + 4 + 4 + 1 + length * size);
+        if (cursor.isZero()) return;
+        cursor = putU1(cursor, PRIM_ARRAY_DUMP);
+        cursor = putID(cursor, ref.toWord());
+        cursor = putU4(cursor, 0);
+        cursor = putU4(cursor, length);
+        cursor = putU1(cursor, elementType);
+        for (int i = 0; i < length; i++) {
+          cursor = putValue(cursor, ref.plus(i * size), elementType);
+        }
+        cursors.set(collector, cursor);
+      }
+    }
+  }
+
+  /**
+   * Note an object reached from a root.  The same object may be noted
+   * more than once; its root record is written with the file.
+   *
+   * @param collector The id of the collector thread
+   * @param object The object
+   */
+  public void liveRoot(int collector, ObjectReference object) {
+    int count = rootCounts[collector];
+    if (count == rootCapacities[collector] && !growRoots(collector)) return;
+    roots.get(collector).store(object.toAddress(), Offset.fromIntZeroExtend(count << LOG_BYTES_IN_ADDRESS));
+    rootCounts[collector] = count + 1;
+  }
+
+  /**
+   * Double the capacity of a collector's array of roots.
+   *
+   * @param collector The id of the collector thread
+   * @return {@code false} if no array could be allocated
+   */
+  private boolean growRoots(int collector) {
+    int capacity = rootCapacities[collector] == 0 ? INITIAL_ROOTS : rootCapacities[collector] << 1;
+    Address array = truncated ? Address.zero() : sysCall.sysMalloc(capacity << LOG_BYTES_IN_ADDRESS);
+    if (array.isZero()) {
+      truncated = true;
+      return false;
+    }
+    Address old = roots.get(collector);
+    if (!old.isZero()) {
+      sysCall.sysCopy(array, old, Extent.fromIntZeroExtend(rootCounts[collector] << LOG_BYTES_IN_ADDRESS));
+      sysCall.sysFree(old);
+    }
+    roots.set(collector, array);
+    rootCapacities[collector] = capacity;
+    return true;
+  }
+
+  /**
+   * Write the class records and close the buffers of all collectors.
+   * Called by a single collector thread once the trace is complete.
+   *
+   * @param collector The id of the collector thread
+   */
+  public void release(int collector) {
+    Address jtoc = Magic.getTocPointer();
+    for (int id = 1; id < types; id++) {
+      if (typeNames[id] < 0) continue;
+      int[] shared = staticFields[id];
+      int[] declared = declaredFields[id];
+      int bytes = 1 + 7 * BYTES_IN_ADDRESS + 4 + 4 + 2 + 2 + 2;
+      if (shared != null) {
+        for (int i = 0; i < shared.length; i += 3) {
+          bytes += BYTES_IN_ADDRESS + 1 + sizeOf(shared[i + 1]);
+        }
+        bytes += (declared.length >> 1) * (BYTES_IN_ADDRESS + 1);
+      }
+      Address cursor = reserve(collector, bytes);
+      if (cursor.isZero()) break;
+      cursor = putU1(cursor, CLASS_DUMP);
+      cursor = putID(cursor, classId(id));
+      cursor = putU4(cursor, 0);
+      cursor = putID(cursor, superTypes[id] == 0 ? Word.zero() : classId(superTypes[id]));
+      for (int i = 0; i < 5; i++) {
+        // class loader, signers, protection domain and two reserved fields
+        cursor = putID(cursor, Word.zero());
+      }
+      cursor = putU4(cursor, instanceSizes[id]);
+      cursor = putU2(cursor, 0);
+      if (shared == null) {
+        cursor = putU2(cursor, 0);
+        cursor = putU2(cursor, 0);
+      } else {
+        cursor = putU2(cursor, shared.length / 3);
+        for (int i = 0; i < shared.length; i += 3) {
+          cursor = putID(cursor, stringId(shared[i + 2]));
+          cursor = putU1(cursor, shared[i + 1]);
+          cursor = putValue(cursor, jtoc.plus(shared[i]), shared[i + 1]);
+        }
+        cursor = putU2(cursor, declared.length >> 1);
+        for (int i = 0; i < declared.length; i += 2) {
+          cursor = putID(cursor, stringId(declared[i]));
+          cursor = putU1(cursor, declared[i + 1]);
+        }
+      }
+      cursors.set(collector, cursor);
+    }
+    for (int i = 0; i < heads.length(); i++) {
+      closeBuffer(i);
+    }
+    complete = true;
+  }
+
+  /**
+   * Make room in a collector's buffer for a record.
+   *
+   * @param collector The id of the collector thread
+   * @param bytes The size of the record
+   * @return The position at which to write the record, or zero if
+   * no buffer could be allocated
+   */
+  private Address reserve(int collector, int bytes) {
+    Address cursor = cursors.get(collector);
+    if (cursor.plus(bytes).LE(limits.get(collector))) {
+      return cursor;
+    }
+    closeBuffer(collector);
+    int size = BUFFER_HEADER + SEGMENT_HEADER + (bytes > BUFFER_BYTES ? bytes : BUFFER_BYTES);
+    Address buffer = truncated ? Address.zero() : sysCall.sysMalloc(size);
+    if (buffer.isZero()) {
+      truncated = true;
+      cursors.set(collector, Address.zero());
+      limits.set(collector, Address.zero());
+      return Address.zero();
+    }
+    buffer.store(Address.zero());
+    buffer.store(0, USED_OFFSET);
+    Address tail = tails.get(collector);
+    if (tail.isZero()) {
+      heads.set(collector, buffer);
+    } else {
+      tail.store(buffer);
+    }
+    tails.set(collector, buffer);
+    cursor = putU1(buffer.plus(BUFFER_HEADER), TAG_HEAP_DUMP_SEGMENT);
+    cursor = putU4(cursor, 0);
+    cursor = putU4(cursor, 0);
+    cursors.set(collector, cursor);
+    limits.set(collector, buffer.plus(size));
+    return cursor;
+  }
+
+  /**
+   * Record the length of the segment in a collector's current buffer.
+   *
+   * @param collector The id of the collector thread
+   */
+  private void closeBuffer(int collector) {
+    Address buffer = tails.get(collector);
+    Address cursor = cursors.get(collector);
+    if (buffer.isZero() || cursor.isZero()) return;
+    Address segment = buffer.plus(BUFFER_HEADER);
+    int used = cursor.diff(segment).toInt();
+    buffer.store(used, USED_OFFSET);
+    putU4(segment.plus(LENGTH_OFFSET), used - SEGMENT_HEADER);
+  }
+
+  private static Address putU1(Address cursor, int value) {
+    cursor.store((byte) value);
+    return cursor.plus(1);
+  }
+
+  private static Address putU2(Address cursor, int value) {
+    cursor.store((byte) (value >> 8));
+    cursor.plus(1).store((byte) value);
+    return cursor.plus(2);
+  }
+
+  private static Address putU4(Address cursor, int value) {
+    cursor.store((byte) (value >> 24));
+    cursor.plus(1).store((byte) (value >> 16));
+    cursor.plus(2).store((byte) (value >> 8));
+    cursor.plus(3).store((byte) value);
+    return cursor.plus(4);
+  }
+
+  private static Address putU8(Address cursor, long value) {
+    return putU4(putU4(cursor, (int) (value >>> 32)), (int) value);
+  }
+
+  private static Address putID(Address cursor, Word id) {
+    if (BYTES_IN_ADDRESS == 4) {
+      return putU4(cursor, id.toInt());
+    } else {
+      return putU8(cursor, id.toLong());
+    }
+  }
+
+  private static Address putValue(Address cursor, Address slot, int basicType) {
+    switch (basicType) {
+      case T_OBJECT: return putID(cursor, slot.loadWord());
+      case T_BOOLEAN: case T_BYTE: return putU1(cursor, slot.loadByte());
+      case T_CHAR: case T_SHORT: return putU2(cursor, slot.loadChar());
+      case T_INT: case T_FLOAT: return putU4(cursor, slot.loadInt());
+      default: return putU8(cursor, slot.loadLong());
+    }
+  }
+
+  /****************************************************************************
+   *
+   * Writing the dump to a file
+   */
+
+  /**
+   * @return {@code true} once a collection has written the dump
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Write the dump to a file, and free its buffers.  This must only be
+   * called once the dump is complete.
+   *
+   * @param fileName The name of the file
+   * @throws IOException If the file can not be written
+   */
+  @Interruptible
+  public void writeTo(String fileName) throws IOException {
+    if (VM.VerifyAssertions) VM._assert(complete);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+    try {
+      out.writeBytes("JAVA PROFILE 1.0.2");
+      out.writeByte(0);
+      out.writeInt(BYTES_IN_ADDRESS);
+      out.writeLong(System.currentTimeMillis());
+      for (int i = 0; i < strings.size(); i++) {
+        byte[] string = strings.get(i);
+        out.writeByte(TAG_STRING);
+        out.writeInt(0);
+        out.writeInt(BYTES_IN_ADDRESS + string.length);
+        writeID(out, stringId(i));
+        out.write(string);
+      }
+      int serial = 1;
+      for (int id = 1; id < types; id++) {
+        if (typeNames[id] < 0) continue;
+        out.writeByte(TAG_LOAD_CLASS);
+        out.writeInt(0);
+        out.writeInt(4 + BYTES_IN_ADDRESS + 4 + BYTES_IN_ADDRESS);
+        out.writeInt(serial++);
+        writeID(out, classId(id));
+        out.writeInt(0);
+        writeID(out, stringId(typeNames[id]));
+      }
+      writeRoots(out);
+      byte[] copy = new byte[BUFFER_BYTES + SEGMENT_HEADER];
+      for (int i = 0; i < heads.length(); i++) {
+        for (Address buffer = heads.get(i); !buffer.isZero(); buffer = buffer.loadAddress()) {
+          int used = buffer.loadInt(USED_OFFSET);
+          if (used > copy.length) copy = new byte[used];
+          Memory.memcopy(Magic.objectAsAddress(copy), buffer.plus(BUFFER_HEADER), used);
+          out.write(copy, 0, used);
+        }
+      }
+      out.writeByte(TAG_HEAP_DUMP_END);
+      out.writeInt(0);
+      out.writeInt(0);
+    } finally {
+      out.close();
+      free();
+    }
+    int left = 0;
+    for (int count : omitted) left += count;
+    if (truncated || left > 0) {
+      VM.sysWrite("Heap dump ", fileName);
+      if (truncated) VM.sysWrite(" is truncated: out of native memory;");
+      VM.sysWriteln(" objects of types loaded after the request: ", left);
+    }
+  }
+
+  /**
+   * Write a heap dump segment with one root record for each object
+   * reached from a root, however many roots reached it.
+   *
+   * @param out The stream to write to
+   * @throws IOException If the segment can not be written
+   */
+  @Interruptible
+  private void writeRoots(DataOutputStream out) throws IOException {
+    int total = 0;
+    for (int count : rootCounts) total += count;
+    if (total == 0) return;
+    long[] ids = new long[total];
+    int next = 0;
+    for (int i = 0; i < rootCounts.length; i++) {
+      Address array = roots.get(i);
+      for (int j = 0; j < rootCounts[i]; j++) {
+        ids[next++] = array.loadWord(Offset.fromIntZeroExtend(j << LOG_BYTES_IN_ADDRESS)).toLong();
+      }
+    }
+    Arrays.sort(ids);
+    int unique = 0;
+    for (int i = 0; i < total; i++) {
+      if (unique == 0 || ids[i] != ids[unique - 1]) ids[unique++] = ids[i];
+    }
+    out.writeByte(TAG_HEAP_DUMP_SEGMENT);
+    out.writeInt(0);
+    out.writeInt(unique * (1 + BYTES_IN_ADDRESS));
+    for (int i = 0; i < unique; i++) {
+      out.writeByte(ROOT_UNKNOWN);
+      writeID(out, Word.fromLong(ids[i]));
+    }
+  }
+
+  @Interruptible
+  private static void writeID(DataOutputStream out, Word id) throws IOException {
+    if (BYTES_IN_ADDRESS == 4) {
+      out.writeInt(id.toInt());
+    } else {
+      out.writeLong(id.toLong());
+    }
+  }
+
+  /**
+   * Free the buffers and root arrays of all collectors.
+   */
+  private void free() {
+    for (int i = 0; i < roots.length(); i++) {
+      if (!roots.get(i).isZero()) sysCall.sysFree(roots.get(i));
+      roots.set(i, Address.zero());
+      rootCounts[i] = 0;
+      rootCapacities[i] = 0;
+    }
+    for (int i = 0; i < heads.length(); i++) {
+      Address buffer = heads.get(i);
+      while (!buffer.isZero()) {
+        Address next = buffer.loadAddress();
+        sysCall.sysFree(buffer);
+        buffer = next;
+      }
+      heads.set(i, Address.zero());
+      tails.set(i, Address.zero());
+    }
+  }
+}
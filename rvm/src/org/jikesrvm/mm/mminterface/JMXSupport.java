@@ -12,12 +12,14 @@
  */
 package org.jikesrvm.mm.mminterface;
 
+import java.io.IOException;
 import java.lang.management.MemoryType;
 import java.lang.management.MemoryUsage;
 import java.util.HashMap;
 
 import org.jikesrvm.mm.mminterface.Selected.Plan;
 import org.jikesrvm.mm.mmtk.FinalizableProcessor;
+import org.jikesrvm.mm.mmtk.HeapCensus;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.Conversions;
 import org.mmtk.utility.options.Options;
@@ -211,4 +213,45 @@ public class JMXSupport {
     return Math.round(Plan.totalTime.getTotalMillis());
   }
 
+  /**
+   * Requests a histogram of the live heap. The histogram is printed
+   * after the next collection that traces the whole heap.
+   *
+   * @throws UnsupportedOperationException if the collector can not take
+   * a census of the live heap
+   */
+  public static void requestHeapHistogram() {
+    if (!HeapCensus.requestHistogram()) {
+      throw new UnsupportedOperationException("Heap histograms are not supported by this collector");
+    }
+  }
+
+  /**
+   * Writes a dump of the live heap in HPROF format. The dump is taken by
+   * the next collection that traces the whole heap, which this method
+   * requests, and is written to the file once the collection is over.
+   * If explicit collection requests are ignored, this waits for the next
+   * full heap collection triggered by the application.
+   *
+   * @param fileName the file to write the dump to
+   * @throws IOException if the file cannot be written
+   * @throws UnsupportedOperationException if the collector can not take
+   * a census of the live heap
+   */
+  public static synchronized void dumpHeap(String fileName) throws IOException {
+    HeapDump dump = new HeapDump();
+    if (!HeapCensus.requestDump(dump)) {
+      throw new UnsupportedOperationException("Heap dumps are not supported by this collector");
+    }
+    MemoryManager.gc();
+    while (!dump.isComplete()) {
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        // keep waiting: the buffers are only freed by writing the dump
+      }
+    }
+    dump.writeTo(fileName);
+  }
+
 }
@@ -35,6 +35,7 @@ import org.jikesrvm.classloader.SpecializedMethod;
 import org.jikesrvm.classloader.TypeReference;
 import org.jikesrvm.compilers.common.CodeArray;
 import org.jikesrvm.mm.mmtk.FinalizableProcessor;
+import org.jikesrvm.mm.mmtk.HeapCensus;
 import org.jikesrvm.mm.mmtk.ReferenceProcessor;
 import org.jikesrvm.mm.mmtk.SynchronizedCounter;
 import org.jikesrvm.objectmodel.BootImageInterface;
@@ -48,6 +49,7 @@ import org.jikesrvm.options.OptionSet;
 import org.jikesrvm.runtime.BootRecord;
 import org.jikesrvm.runtime.Callbacks;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.util.HashMapRVM;
 import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.Plan;
 import org.mmtk.policy.Space;
@@ -100,6 +102,12 @@ public final class MemoryManager {
    */
   private static boolean collectionEnabled = false;
 
+  /**
+   * Allocation sites of the optimizing compiler, keyed by method id
+   * and bytecode index.
+   */
+  private static final HashMapRVM<Long, Integer> allocationSites = new HashMapRVM<Long, Integer>();
+
   /***********************************************************************
    *
    * Initialization
@@ -264,6 +272,16 @@ public final class MemoryManager {
     Selected.Plan.handleUserCollectionRequest();
   }
 
+  /**
+   * Request a histogram of the live heap, printed by the next
+   * collection that traces the whole heap.
+   *
+   * @return {@code false} if the plan can not take a heap census
+   */
+  public static boolean requestHeapHistogram() {
+    return HeapCensus.requestHistogram();
+  }
+
   /****************************************************************************
    *
    * Check references, log information about references
@@ -349,6 +367,43 @@ public final class MemoryManager {
     return Plan.getAllocationSite(compileTime);
   }
 
+  /**
+   * Return the allocation site for an allocation at a given bytecode
+   * index.  The same site is returned each time the method is compiled,
+   * so that the nursery survival profile gathered for a site carries
+   * over to recompiled code.
+   *
+   * @param method the method containing the allocation
+   * @param bcIndex the bytecode index of the allocation, or a negative
+   * value if it is unknown
+   * @return an allocation site
+   */
+  @Interruptible
+  public static synchronized int getAllocationSite(RVMMethod method, int bcIndex) {
+    if (bcIndex < 0) return getAllocationSite(true);
+    Long key = ((long) method.getId() << 32) | bcIndex;
+    Integer site = allocationSites.get(key);
+    if (site == null) {
+      site = getAllocationSite(true);
+      allocationSites.put(key, site);
+    }
+    return site;
+  }
+
+  /**
+   * Returns the appropriate allocation scheme/area for an allocation
+   * site, taking into account the plan's profile of the site.
+   *
+   * @param type the type of the object to be allocated
+   * @param method the method requesting the allocation
+   * @param site the allocation site
+   * @return the identifier of the appropriate allocator
+   */
+  @Interruptible
+  public static int pickAllocator(RVMType type, RVMMethod method, int site) {
+    return Selected.Plan.get().siteAllocator(pickAllocator(type, method), site);
+  }
+
   /**
    * Returns the appropriate allocation scheme/area for the given
    * type.  This form is deprecated.  Without the RVMMethod argument,
@@ -497,7 +552,7 @@ public final class MemoryManager {
   @Inline
   public static Object allocateScalar(int size, TIB tib, int allocator, int align, int offset, int site) {
     Selected.Mutator mutator = Selected.Mutator.get();
-    allocator = mutator.checkAllocator(org.jikesrvm.runtime.Memory.alignUp(size, MIN_ALIGNMENT), align, allocator);
+    allocator = mutator.checkAllocator(org.jikesrvm.runtime.Memory.alignUp(size, MIN_ALIGNMENT), align, allocator, site);
     Address region = allocateSpace(mutator, size, align, offset, allocator, site);
     Object result = ObjectModel.initializeScalar(region, tib, size);
     mutator.postAlloc(ObjectReference.fromObject(result), ObjectReference.fromObject(tib), size, allocator);
@@ -563,7 +618,7 @@ public final class MemoryManager {
   private static Object allocateArrayInternal(int numElements, int size, TIB tib, int allocator,
                                               int align, int offset, int site) {
     Selected.Mutator mutator = Selected.Mutator.get();
-    allocator = mutator.checkAllocator(org.jikesrvm.runtime.Memory.alignUp(size, MIN_ALIGNMENT), align, allocator);
+    allocator = mutator.checkAllocator(org.jikesrvm.runtime.Memory.alignUp(size, MIN_ALIGNMENT), align, allocator, site);
     Address region = allocateSpace(mutator, size, align, offset, allocator, site);
     Object result = ObjectModel.initializeArray(region, tib, numElements, size);
     mutator.postAlloc(ObjectReference.fromObject(result), ObjectReference.fromObject(tib), size, allocator);
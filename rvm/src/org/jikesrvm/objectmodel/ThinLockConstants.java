@@ -14,7 +14,6 @@ package org.jikesrvm.objectmodel;
 
 import static org.jikesrvm.runtime.UnboxedSizeConstants.BITS_IN_ADDRESS;
 
-import org.jikesrvm.scheduler.RVMThread;
 import org.vmmagic.unboxed.Word;
 
 /**
@@ -43,7 +42,14 @@ public final class ThinLockConstants {
   // 10 -> fat unbiasable
 
   public static final int TL_NUM_BITS_STAT = 2;
-  public static final int TL_NUM_BITS_TID = RVMThread.LOG_MAX_THREADS;
+  /**
+   * Bits for the slot of the owning thread.  A thread whose slot does not
+   * fit (see {@link #TL_MAX_THIN_LOCK_THREADS}) never holds a thin lock,
+   * and always inflates the locks it takes.
+   */
+  public static final int TL_NUM_BITS_TID = 10;
+  /** The number of thread slots that fit in a thin lock */
+  public static final int TL_MAX_THIN_LOCK_THREADS = 1 << TL_NUM_BITS_TID;
   public static final int TL_NUM_BITS_RC = JavaHeader.NUM_THIN_LOCK_BITS - TL_NUM_BITS_TID - TL_NUM_BITS_STAT;
 
   public static final int TL_THREAD_ID_SHIFT = JavaHeader.THIN_LOCK_SHIFT;
@@ -59,7 +65,7 @@ public final class ThinLockConstants {
   public static final Word TL_THREAD_ID_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_TID).lsh(TL_THREAD_ID_SHIFT);
   public static final Word TL_LOCK_ID_MASK =
       Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - (TL_NUM_BITS_RC + TL_NUM_BITS_TID)).lsh(TL_LOCK_ID_SHIFT);
-  public static final Word TL_STAT_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_TID).lsh(TL_STAT_SHIFT);
+  public static final Word TL_STAT_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_STAT).lsh(TL_STAT_SHIFT);
   public static final Word TL_UNLOCK_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - JavaHeader
       .NUM_THIN_LOCK_BITS).lsh(JavaHeader.THIN_LOCK_SHIFT).not();
 
@@ -260,12 +260,18 @@ public class BootRecord {
   public Address sysMMapIP;
   public Address sysMMapErrnoIP;
   public Address sysMProtectIP;
+  public Address sysMAdviseHugePagesIP;
+  public Address sysNumaNodesIP;
+  public Address sysNumaNodeIP;
+  public Address sysNumaBindIP;
 
   // threads
   public Address sysNumProcessorsIP;
   public Address sysThreadBindSupportedIP;
   public Address sysThreadBindIP;
+  public Address sysThreadBindToNodeIP;
   public Address sysThreadCreateIP;
+  public Address sysThreadStartSampleTimerIP;
   public Address sysThreadYieldIP;
   public Address sysGetThreadIdIP;
   public Address sysStashVMThreadIP;
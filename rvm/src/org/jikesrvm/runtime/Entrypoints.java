@@ -198,6 +198,8 @@ public class Entrypoints {
       getField(org.jikesrvm.scheduler.RVMThread.class, "takeYieldpoint", int.class);
 
   public static final RVMField execStatusField = getField(org.jikesrvm.scheduler.RVMThread.class, "execStatus", int.class);
+  public static final RVMField timeSliceExpiredField =
+      getField(org.jikesrvm.scheduler.RVMThread.class, "timeSliceExpired", int.class);
 
   public static final RVMField referenceReferentField =
       getField(java.lang.ref.Reference.class, "_referent", org.vmmagic.unboxed.Address.class);
@@ -268,6 +270,18 @@ public class Entrypoints {
   public static final RVMField SQBEField = getField(org.mmtk.utility.deque.SharedDeque.class, "bufsenqueued", int.class);
   public static final RVMField synchronizedCounterField =
       getField(org.jikesrvm.mm.mmtk.SynchronizedCounter.class, "count", int.class);
+  public static final RVMField referenceProcessorMaxIndexField =
+      getField(org.jikesrvm.mm.mmtk.ReferenceProcessor.class, "maxIndex", int.class);
+  public static final RVMField referenceProcessorPublishedField =
+      getField(org.jikesrvm.mm.mmtk.ReferenceProcessor.class, "published", int.class);
+  public static final RVMField finalizableProcessorMaxIndexField =
+      getField(org.jikesrvm.mm.mmtk.FinalizableProcessor.class, "maxIndex", int.class);
+  public static final RVMField finalizableProcessorPublishedField =
+      getField(org.jikesrvm.mm.mmtk.FinalizableProcessor.class, "published", int.class);
+  public static final RVMField finalizableProcessorNextReadyIndexField =
+      getField(org.jikesrvm.mm.mmtk.FinalizableProcessor.class, "nextReadyIndex", int.class);
+  public static final RVMField finalizableProcessorLastReadyIndexField =
+      getField(org.jikesrvm.mm.mmtk.FinalizableProcessor.class, "lastReadyIndex", int.class);
 
   public static final NormalMethod booleanFieldWriteBarrierMethod =
     getMethod(org.jikesrvm.mm.mminterface.Barriers.class, "booleanFieldWrite", "(Ljava/lang/Object;ZLorg/vmmagic/unboxed/Offset;I)V");
@@ -387,6 +401,11 @@ public class Entrypoints {
   public static final RVMField latestContenderField =
       getField(org.jikesrvm.scheduler.SpinLock.class, "latestContender", org.jikesrvm.scheduler.RVMThread.class);
 
+  public static final RVMField threadSlotsFreeSlotsField =
+      getField(org.jikesrvm.scheduler.ThreadSlots.class, "freeSlots", int.class);
+  public static final RVMField threadSlotsNextSlotField =
+      getField(org.jikesrvm.scheduler.ThreadSlots.class, "nextSlot", int.class);
+
   public static final RVMField depthField = getField(org.jikesrvm.classloader.RVMType.class, "depth", int.class);
   public static final RVMField idField = getField(org.jikesrvm.classloader.RVMType.class, "id", int.class);
   public static final RVMField dimensionField = getField(org.jikesrvm.classloader.RVMType.class, "dimension", int.class);
@@ -161,6 +161,19 @@ public abstract class SysCall {
   @SysCallTemplate
   public abstract int sysMProtect(Address start, Extent length, int prot);
 
+  @SysCallTemplate
+  public abstract int sysMAdviseHugePages(Address start, Extent length);
+
+  // NUMA placement
+  @SysCallTemplate
+  public abstract int sysNumaNodes();
+
+  @SysCallTemplate
+  public abstract int sysNumaNode();
+
+  @SysCallTemplate
+  public abstract int sysNumaBind(Address start, Extent length, int node);
+
   // threads
   @SysCallTemplate
   public abstract int sysNumProcessors();
@@ -183,9 +196,29 @@ public abstract class SysCall {
   @SysCallTemplate
   public abstract int sysThreadBindSupported();
 
+  /**
+   * Starts a timer that samples the current thread each time it has used
+   * the given amount of CPU time, by setting its takeYieldpoint when it is
+   * running Java code.  The timer is stopped when the thread terminates.
+   *
+   * @param periodNanos the CPU time between samples
+   * @return 1 if the timer was started, 0 if per-thread timers are not
+   *  supported or could not be created
+   */
+  @SysCallTemplate
+  public abstract int sysThreadStartSampleTimer(long periodNanos);
+
   @SysCallTemplate
   public abstract void sysThreadBind(int cpuId);
 
+  /**
+   * Binds the current thread to the processors of a NUMA node.
+   * @param node the node
+   * @return 0 if successful, -1 otherwise
+   */
+  @SysCallTemplate
+  public abstract int sysThreadBindToNode(int node);
+
   @SysCallTemplate
   public abstract void sysThreadYield();
 
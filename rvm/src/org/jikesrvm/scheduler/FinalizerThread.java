@@ -21,44 +21,53 @@ import org.vmmagic.pragma.NonMoving;
 /**
  * Finalizer thread.
  * <p>
- * This thread is created by RVMThread.boot() at runtime startup.
- * Its "run" method does the following:
+ * A pool of these threads (<code>-X:vm:finalizerThreads</code>, one by
+ * default) is created by RVMThread.boot() at runtime startup.
+ * The "run" method of each does the following:
  * <ul>
  *   <li>1. yield to the gcwaitqueue, until scheduled by GC.
  *   <li> 2. For all objects on finalize queue, run the finalize() method
  *   <li> 3. Go to 1
  * </ul>
  * <p>
- * This thread comes out of wait state via notify from the garbage collector
+ * These threads come out of wait state via notify from the garbage collector,
+ * and take objects from the finalize queue without locking, so that they
+ * may all work through a backlog at once.
  */
 @NonMoving
 public class FinalizerThread extends SystemThread {
 
   private static final int verbose = 0; // currently goes up to 2
 
-  private final Object[] none = new Object[0];
-  private static boolean shouldRun;
+  /** Incremented each time the garbage collector schedules the finalizer threads */
+  private static int schedules;
   private static Monitor schedLock;
 
+  /** The value of <code>schedules</code> when this thread last woke up */
+  private int lastSchedule;
+
   public static void boot() {
     schedLock = new Monitor();
-    FinalizerThread ft = new FinalizerThread();
-    ft.start();
+    int threads = VM.finalizerThreads > 0 ? VM.finalizerThreads : 1;
+    for (int i = 0; i < threads; i++) {
+      FinalizerThread ft = new FinalizerThread(threads == 1 ? "FinalizerThread" : "FinalizerThread-" + i);
+      ft.start();
+    }
   }
 
   @Uninterruptible
   public static void schedule() {
     schedLock.lockNoHandshake();
-    shouldRun = true;
+    schedules++;
     schedLock.broadcast();
     schedLock.unlock();
   }
 
-  public FinalizerThread() {
-    super("FinalizerThread");
+  public FinalizerThread(String name) {
+    super(name);
   }
 
-  /** Run the finalizer thread (one per RVM) */
+  /** Run a finalizer thread */
   @Override
   public void run() {
     if (verbose >= 1) {
@@ -71,13 +80,13 @@ public class FinalizerThread extends SystemThread {
         // suspend this thread: it will resume when the garbage collector
         // places objects on the finalizer queue and notifies.
         schedLock.lockNoHandshake();
-        if (!shouldRun) {
+        while (schedules == lastSchedule) {
           if (verbose >= 1) {
             VM.sysWriteln("finalizer thread sleeping.");
           }
           schedLock.waitWithHandshake();
         }
-        shouldRun = false;
+        lastSchedule = schedules;
         schedLock.unlock();
 
         if (verbose >= 1) {
@@ -23,6 +23,7 @@ import org.jikesrvm.runtime.Magic;
 import org.jikesrvm.util.Services;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Interruptible;
+import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.pragma.Unpreemptible;
 import org.vmmagic.pragma.UnpreemptibleNoWarn;
@@ -125,6 +126,16 @@ public final class Lock {
   /** Control the gathering of statistics */
   public static final boolean STATS = false;
 
+  /** Number of backoff rounds a contender first spins for on a fresh lock */
+  private static final int INITIAL_SPIN_ROUNDS = 4;
+  /** Most backoff rounds a contender spins for before parking */
+  private static final int MAX_SPIN_ROUNDS = 10;
+  /**
+   * Number of times contenders park without spinning, once spinning has
+   * stopped paying off, before they spin again to see whether it pays now
+   */
+  private static final int PARKS_BEFORE_RESPIN = 64;
+
   /** The (fixed) number of entries in the lock table spine */
   protected static final int LOCK_SPINE_SIZE = 128;
   /** The log size of each chunk in the spine */
@@ -137,6 +148,8 @@ public final class Lock {
   protected static final int MAX_LOCKS = LOCK_SPINE_SIZE * LOCK_CHUNK_SIZE;
   /** The number of chunks to allocate on startup */
   protected static final int INITIAL_CHUNKS = 1;
+  /** The number of locks the table must grow past before it is reclaimed */
+  private static final int MIN_RECLAIM_THRESHOLD = INITIAL_CHUNKS * LOCK_CHUNK_SIZE;
 
   /**
    * Should we give up or persist in the attempt to get a heavy-weight lock,
@@ -155,6 +168,8 @@ public final class Lock {
   /** The number of locks allocated (these may either be in use, on a global
    * freelist, or on a thread's freelist. */
   private static int nextLockIndex;
+  /** The number of locks allocated past which the next collection reclaims locks */
+  private static int reclaimThreshold = MIN_RECLAIM_THRESHOLD;
 
   // Global free list.
 
@@ -192,8 +207,20 @@ public final class Lock {
   protected boolean active;
   /** The next free lock on the free lock list */
   private Lock nextFreeLock;
+  /** Is this lock a thread's cached free lock? */
+  private boolean cached;
   /** This lock's index in the lock table*/
   protected int index;
+  /**
+   * Number of backoff rounds a contender spins for, waiting for the owner
+   * to release this lock, before parking.  Raised when spinning pays off
+   * and lowered when it does not, so short critical sections are waited
+   * out without parking while long ones do not burn CPU.  Guarded by
+   * mutex.
+   */
+  private int spinRounds = INITIAL_SPIN_ROUNDS;
+  /** Number of contenders parked without spinning, guarded by mutex. */
+  private int parksWithoutSpinning;
   /** Queue for entering the lock, guarded by mutex. */
   ThreadQueue entering;
   /** Queue for waiting on a notify, guarded by mutex as well. */
@@ -235,32 +262,83 @@ public final class Lock {
    */
   @Unpreemptible
   public boolean lockHeavyLocked(Object o) {
-    if (lockedObject != o) { // lock disappeared before we got here
-      mutex.unlock(); // thread switching benign
-      return false;
-    }
-    if (STATS) lockOperations++;
     RVMThread me = RVMThread.getCurrentThread();
     int threadId = me.getLockingId();
-    if (ownerId == threadId) {
-      recursionCount++;
-    } else if (ownerId == 0) {
-      ownerId = threadId;
-      recursionCount = 1;
-    } else {
-      entering.enqueue(me);
-      mutex.unlock();
-      me.monitor().lockNoHandshake();
-      while (entering.isQueued(me)) {
-        me.monitor().waitWithHandshake(); // this may spuriously return
+    boolean spun = false;
+    for (;;) {
+      if (lockedObject != o) { // lock disappeared before we got here
+        mutex.unlock(); // thread switching benign
+        return false;
+      }
+      if (STATS && !spun) lockOperations++;
+      if (ownerId == threadId) {
+        recursionCount++;
+        break;
+      } else if (ownerId == 0) {
+        ownerId = threadId;
+        recursionCount = 1;
+        if (spun && spinRounds < MAX_SPIN_ROUNDS) {
+          spinRounds++;
+        }
+        break;
+      } else if (!spun && spinRounds > 0 && RVMThread.availableProcessors > 1) {
+        int rounds = spinRounds;
+        mutex.unlock(); // thread-switching benign
+        spinWhileOwned(rounds);
+        spun = true;
+        mutex.lock();
+      } else {
+        if (spun) {
+          spinRounds--;
+        } else if (spinRounds == 0 && ++parksWithoutSpinning == PARKS_BEFORE_RESPIN) {
+          parksWithoutSpinning = 0;
+          spinRounds = 1;
+        }
+        entering.enqueue(me);
+        mutex.unlock();
+        me.monitor().lockNoHandshake();
+        while (entering.isQueued(me)) {
+          me.monitor().waitWithHandshake(); // this may spuriously return
+        }
+        me.monitor().unlock();
+        return false;
       }
-      me.monitor().unlock();
-      return false;
     }
     mutex.unlock(); // thread-switching benign
     return true;
   }
 
+  /**
+   * Spins with exponential backoff until this lock appears to have no
+   * owner, or the given number of backoff rounds have passed.  The owner
+   * is read without holding the mutex, so the caller must check again.
+   *
+   * @param rounds the number of backoff rounds
+   */
+  @Unpreemptible
+  private void spinWhileOwned(int rounds) {
+    for (int round = 0; round < rounds; round++) {
+      backoff(round);
+      if (ownerId == 0) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Waits for a time that doubles with each round, executing pause
+   * instructions to reduce the cost of the spin on IA.  Not inlined, so
+   * that callers reload the lock state after each round.
+   *
+   * @param round the number of rounds already waited
+   */
+  @NoInline
+  static void backoff(int round) {
+    for (int i = 1 << round; i > 0; i--) {
+      Magic.pause();
+    }
+  }
+
   @UnpreemptibleNoWarn
   private static void raiseIllegalMonitorStateException(String msg, Object o) {
     throw new IllegalMonitorStateException(msg + o);
@@ -476,6 +554,7 @@ public final class Lock {
     if (me.cachedFreeLock != null) {
       Lock l = me.cachedFreeLock;
       me.cachedFreeLock = null;
+      l.cached = false;
       if (trace) {
         VM.sysWriteln("Lock.allocate: returning ",Magic.objectAsAddress(l),
                       ", a cached free lock from Thread #",me.getThreadSlot());
@@ -545,6 +624,8 @@ public final class Lock {
    */
   protected static void free(Lock l) {
     l.active = false;
+    l.spinRounds = INITIAL_SPIN_ROUNDS;
+    l.parksWithoutSpinning = 0;
     RVMThread me = RVMThread.getCurrentThread();
     if (me.cachedFreeLock == null) {
       if (trace) {
@@ -552,6 +633,7 @@ public final class Lock {
                       " as the cached free lock for Thread #",
                       me.getThreadSlot());
       }
+      l.cached = true;
       me.cachedFreeLock = l;
     } else {
       if (trace) {
@@ -569,6 +651,7 @@ public final class Lock {
                     RVMThread.getCurrentThreadSlot());
     }
     lockAllocationMutex.lock();
+    l.cached = false;
     l.nextFreeLock = globalFreeLock;
     globalFreeLock = l;
     globalFreeLocks++;
@@ -576,6 +659,112 @@ public final class Lock {
     lockAllocationMutex.unlock();
   }
 
+  /**
+   * Deflates idle heavy-weight locks and shrinks the lock table.  Called
+   * by the collector once all mutators are stopped, before the heap is
+   * traced, so the objects of deflated locks can be reclaimed by the
+   * collection.
+   * <p>
+   * Scanning the table costs time in every pause, so nothing is done
+   * until the table has grown past a threshold.  The threshold is then
+   * set to twice the size the table shrinks to, so the scans are paid
+   * for by the growth of the table.
+   * <p>
+   * Every unused lock that is not cached by a thread is put back on the
+   * global free list, lowest index first.  Locks with low indices are
+   * therefore reused first, and the top of the table drains.  Free locks
+   * above the highest lock in use are dropped, along with their spine
+   * chunks.  A thread whose cached free lock is dropped is given one from
+   * the bottom of the table in its place.
+   */
+  public static void reclaimLocks() {
+    if (nextLockIndex <= reclaimThreshold) return;
+
+    RVMThread.acctLock.lockNoHandshake();
+    lockAllocationMutex.lock();
+    // Find the highest index in use.  An index with no lock in the table
+    // is being allocated by a thread that stopped for this collection.
+    int limit = nextLockIndex;
+    while (limit > 1) {
+      Lock[] chunk = locks[(limit - 1) >> LOG_LOCK_CHUNK_SIZE];
+      if (chunk == null) break;
+      Lock l = chunk[(limit - 1) & LOCK_CHUNK_MASK];
+      if (l == null || (l.active && !l.deflateIfIdle())) break;
+      limit--;
+    }
+    // Rebuild the free list below it, lowest index first
+    globalFreeLock = null;
+    globalFreeLocks = 0;
+    for (int id = limit - 1; id > 0; id--) {
+      Lock[] chunk = locks[id >> LOG_LOCK_CHUNK_SIZE];
+      Lock l = chunk == null ? null : chunk[id & LOCK_CHUNK_MASK];
+      if (l != null && !l.cached && (!l.active || l.deflateIfIdle())) {
+        l.nextFreeLock = globalFreeLock;
+        globalFreeLock = l;
+        globalFreeLocks++;
+      }
+    }
+    // Replace the cached free locks that are about to be dropped
+    for (int i = 0; i < RVMThread.numThreads; i++) {
+      RVMThread t = RVMThread.threads[i];
+      Lock l = t.cachedFreeLock;
+      if (l != null && l.index >= limit) {
+        l.cached = false;
+        l = globalFreeLock;
+        if (l != null) {
+          globalFreeLock = l.nextFreeLock;
+          l.nextFreeLock = null;
+          l.cached = true;
+          globalFreeLocks--;
+        }
+        t.cachedFreeLock = l;
+      }
+    }
+    // Drop the unused locks above the limit, and the chunks that held only them
+    for (int id = limit; id < nextLockIndex; id++) {
+      Lock[] chunk = locks[id >> LOG_LOCK_CHUNK_SIZE];
+      Services.setArrayUninterruptible(chunk, id & LOCK_CHUNK_MASK, null);
+      globalLocksAllocated--;
+    }
+    nextLockIndex = limit;
+    int chunks = (limit + LOCK_CHUNK_SIZE - 1) >> LOG_LOCK_CHUNK_SIZE;
+    if (chunks < INITIAL_CHUNKS) chunks = INITIAL_CHUNKS;
+    for (int i = chunks; i < chunksAllocated; i++) {
+      locks[i] = null;
+    }
+    if (chunks < chunksAllocated) chunksAllocated = chunks;
+    reclaimThreshold = 2 * limit;
+    if (reclaimThreshold < MIN_RECLAIM_THRESHOLD) reclaimThreshold = MIN_RECLAIM_THRESHOLD;
+    lockAllocationMutex.unlock();
+    RVMThread.acctLock.unlock();
+  }
+
+  /**
+   * Deflates this lock if it is associated with an object but is neither
+   * held nor has any threads on its queues.  Only called while mutators
+   * are stopped.
+   *
+   * @return whether this lock is now unused
+   */
+  private boolean deflateIfIdle() {
+    if (!active) return true;
+    if (lockedObject == null || ownerId != 0 || !entering.isEmpty() || !waiting.isEmpty()) {
+      return false;
+    }
+    Offset lockOffset = Magic.getObjectType(lockedObject).getThinLockOffset();
+    if (lockOffset.isMax() || !mutex.tryLock()) {
+      return false;
+    }
+    if (STATS) deflations++;
+    ThinLock.markDeflated(lockedObject, lockOffset, index);
+    lockedObject = null;
+    active = false;
+    spinRounds = INITIAL_SPIN_ROUNDS;
+    parksWithoutSpinning = 0;
+    mutex.unlock();
+    return true;
+  }
+
   /**
    * Grow the locks table by allocating a new spine chunk.
    *
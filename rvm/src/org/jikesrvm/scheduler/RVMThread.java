@@ -437,12 +437,17 @@ public final class RVMThread extends ThreadContext {
   private int priority;
 
   /**
-   * Index of this thread in {@link #threadBySlot}[]. This value must be non-zero
+   * Slot of this thread in the thread slot tables (see {@link ThreadSlots}). This value must be non-zero
    * because it is shifted and used in {@link Object} lock ownership tests.
    */
   @Entrypoint
   public int threadSlot;
 
+  /**
+   * The slot of this thread, shifted into place for the thread id field of
+   * a thin lock.  For a slot too high to fit in that field, this does not
+   * match any thin lock, so the thread always takes fat locks.
+   */
   public int lockingId;
 
   /**
@@ -468,6 +473,20 @@ public final class RVMThread extends ThreadContext {
    */
   public static long timerTicks;
 
+  /**
+   * Number of threads that the timer thread must sample on each tick.
+   * Threads normally sample themselves with a CPU time timer of their own
+   * (see {@link #startSampleTimer()}); this counts the live threads that
+   * could not start one.  Protected by {@link #acctLock}.
+   */
+  static volatile int threadsSampledByTimerThread;
+
+  /**
+   * Must the timer thread sample this thread on each tick, because it
+   * could not start a sample timer of its own?
+   */
+  boolean sampledByTimerThread;
+
   private long yieldpointsTaken;
 
   private long yieldpointsTakenFully;
@@ -1035,8 +1054,10 @@ public final class RVMThread extends ThreadContext {
 
   /**
    * How many times has the "timeslice" expired? This is only used for profiling
-   * and OSR (in particular base-to-opt OSR).
+   * and OSR (in particular base-to-opt OSR).  Bumped by the thread's sample
+   * timer, which runs in a signal handler on the thread itself.
    */
+  @Entrypoint
   public int timeSliceExpired;
 
   /** Is a running thread permitted to ignore the next park request */
@@ -1191,24 +1212,24 @@ public final class RVMThread extends ThreadContext {
   /** Index of thread in which "VM.boot()" runs */
   public static final int PRIMORDIAL_THREAD_INDEX = 1;
 
-  /** Maximum number of RVMThread's that we can support. */
-  public static final int LOG_MAX_THREADS = 10;
-
-  public static final int MAX_THREADS = 1 << LOG_MAX_THREADS;
-
   /**
-   * thread array - all threads are stored in this array according to their
-   * threadSlot.
+   * Maximum number of RVMThread's that we can support.  This only bounds
+   * the thread slot tables, which grow as threads are created (see
+   * {@link ThreadSlots}).  Thin locks have room for the slots of the first
+   * {@link org.jikesrvm.objectmodel.ThinLockConstants#TL_MAX_THIN_LOCK_THREADS}
+   * threads only; threads in higher slots always take fat locks.
    */
-  public static RVMThread[] threadBySlot = new RVMThread[MAX_THREADS];
+  public static final int LOG_MAX_THREADS = 16;
 
-  /**
-   * Per-thread monitors. Note that this array is statically initialized. It
-   * starts out all null. When a new thread slot is allocated, a monitor is
-   * added for that slot.
+  public static final int MAX_THREADS = 1 << LOG_MAX_THREADS;
+
+  /*
+   * The threads, per-thread monitors and communication locks are kept by
+   * thread slot in growable tables (see ThreadSlots).  A monitor is added
+   * for a slot when the slot is first allocated.
    * <p>
    * Question: what is the outcome, if any, of taking a yieldpoint while holding
-   * this lock?
+   * a thread's monitor?
    * <ol>
    * <li>If there is a GC request we will wait on this condition variable and
    * thus release it. Someone else might then acquire the lock before realizing
@@ -1218,17 +1239,14 @@ public final class RVMThread extends ThreadContext {
    * <li>???</li>
    * </ol>
    */
-  private static final NoYieldpointsMonitor[] monitorBySlot = new NoYieldpointsMonitor[MAX_THREADS];
-
-  private static final Monitor[] communicationLockBySlot = new Monitor[MAX_THREADS];
 
   /**
    * Lock (mutex) used for creating and destroying threads as well as thread
-   * accounting.  This mutex should not be held while thread monitors (see monitorBySlot)
-   * are held.  Use this mutex only to protect accesses to:
+   * accounting.  This mutex should not be held while thread monitors (see
+   * {@link #monitor()}) are held.  Thread slots are allocated and freed
+   * without it.  Use this mutex only to protect accesses to:
    * <ul>
-   * <li>the global thread lists, such as threadBySlot, aboutToTerminate, threads, and
-   *     freeLots</li>
+   * <li>the global thread lists, such as aboutToTerminate and threads</li>
    * <li>threadIdx field of RVMThread</li>
    * <li>numThreads, numActiveThreads, numActiveSystemThreads, numActiveDaemons static fields of RVMThread</li>
    * </ul>
@@ -1245,34 +1263,24 @@ public final class RVMThread extends ThreadContext {
    */
   private static NoYieldpointsMonitor outputLock;
 
+  /**
+   * The initial capacity of the thread lists, which grow as threads are
+   * created (see {@link #growThreadLists(int)}).
+   */
+  private static final int INITIAL_THREAD_LIST_CAPACITY = ThreadSlots.SLOT_CHUNK_SIZE;
+
   /**
    * Thread slots of threads that are about to terminate.  This must be
    * an int array because it's accessed from code that cannot have
    * barriers.
    */
-  private static final int[] aboutToTerminate = new int[MAX_THREADS];
+  private static int[] aboutToTerminate = new int[INITIAL_THREAD_LIST_CAPACITY];
 
   /**
    * Number of threads that are about to terminate.
    */
   private static int aboutToTerminateN;
 
-  /**
-   * Free thread slots
-   */
-  private static final int[] freeSlots = new int[MAX_THREADS];
-
-  /**
-   * Number of free thread slots.
-   */
-  private static int freeSlotN;
-
-  /**
-   * When there are no thread slots on the free list, this is the next one to
-   * use.
-   */
-  public static int nextSlot = 2;
-
   /**
    * Number of threads in the system (some of which may not be active).
    */
@@ -1286,18 +1294,23 @@ public final class RVMThread extends ThreadContext {
    * <p>
    * Note further that threads remain in this array even after the Java
    * libraries no longer consider the thread to be active.
+   * <p>
+   * The array is replaced by a larger copy when it fills, so it must be
+   * reloaded after numThreads is read.
    */
-  public static final RVMThread[] threads = new RVMThread[MAX_THREADS];
+  public static RVMThread[] threads = new RVMThread[INITIAL_THREAD_LIST_CAPACITY];
 
   /**
    * Preallocated array for use in handshakes. Protected by handshakeLock.
+   * Always at least as long as {@link #threads}.
    */
-  public static final RVMThread[] handshakeThreads = new RVMThread[MAX_THREADS];
+  public static RVMThread[] handshakeThreads = new RVMThread[INITIAL_THREAD_LIST_CAPACITY];
 
   /**
    * Preallocated array for use in debug requested. Protected by debugLock.
+   * Always at least as long as {@link #threads}.
    */
-  public static final RVMThread[] debugThreads = new RVMThread[MAX_THREADS];
+  public static RVMThread[] debugThreads = new RVMThread[INITIAL_THREAD_LIST_CAPACITY];
 
   /**
    * Number of active threads in the system.
@@ -1329,7 +1342,7 @@ public final class RVMThread extends ThreadContext {
    * @return a NoYieldpointsCondLock for a given thread slot.
    */
   static NoYieldpointsMonitor monitorForSlot(int slot) {
-    NoYieldpointsMonitor result = monitorBySlot[slot];
+    NoYieldpointsMonitor result = ThreadSlots.getMonitor(slot);
     if (VM.VerifyAssertions)
       VM._assert(result != null);
     return result;
@@ -1343,7 +1356,7 @@ public final class RVMThread extends ThreadContext {
   }
 
   public Monitor communicationLockForSlot(int slot) {
-    Monitor result = communicationLockBySlot[slot];
+    Monitor result = ThreadSlots.getCommunicationLock(slot);
     if (VM.VerifyAssertions)
       VM._assert(result != null);
     return result;
@@ -1449,8 +1462,8 @@ public final class RVMThread extends ThreadContext {
     softHandshakeDataLock = new Monitor();
     handshakeLock = new Monitor();
     doProfileReport = new Latch(false);
-    monitorBySlot[getCurrentThread().threadSlot] = new NoYieldpointsMonitor();
-    communicationLockBySlot[getCurrentThread().threadSlot] = new Monitor();
+    ThreadSlots.setMonitor(getCurrentThread().threadSlot, new NoYieldpointsMonitor());
+    ThreadSlots.setCommunicationLock(getCurrentThread().threadSlot, new Monitor());
     sysCall.sysStashVMThread(getCurrentThread());
 
     if (traceAcct) {
@@ -1518,7 +1531,7 @@ public final class RVMThread extends ThreadContext {
         int notKilled = 0;
         acctLock.lockNoHandshake();
         for (int i = 0; i < aboutToTerminateN; ++i) {
-          RVMThread t = threadBySlot[aboutToTerminate[i]];
+          RVMThread t = ThreadSlots.getThread(aboutToTerminate[i]);
           if (t.getExecStatus() == TERMINATED) {
             aboutToTerminate[i--] = aboutToTerminate[--aboutToTerminateN];
             acctLock.unlock();
@@ -1545,49 +1558,46 @@ public final class RVMThread extends ThreadContext {
   void assignThreadSlot() {
     if (!VM.runningVM) {
       // primordial thread
-      threadSlot = 1;
-      threadBySlot[1] = this;
+      threadSlot = PRIMORDIAL_THREAD_INDEX;
+      ThreadSlots.setThread(threadSlot, this);
       threads[0] = this;
       threadIdx = 0;
       numThreads = 1;
     } else {
       processAboutToTerminate();
-      acctLock.lockNoHandshake();
-      if (freeSlotN > 0) {
-        threadSlot = freeSlots[--freeSlotN];
-      } else {
-        if (nextSlot == threads.length) {
-          VM.sysFail("too many threads");
-        }
-        threadSlot = nextSlot++;
-      }
-      acctLock.unlock();
+      threadSlot = ThreadSlots.allocate();
       // before we actually use this slot, ensure that there is a monitor
       // for it. note that if the slot doesn't have a monitor, then we
       // "own" it since we allocated it above but haven't done anything
       // with it (it's not assigned to a thread, so nobody else can touch
       // it)
-      if (monitorBySlot[threadSlot] == null) {
-        monitorBySlot[threadSlot] = new NoYieldpointsMonitor();
+      if (ThreadSlots.getMonitor(threadSlot) == null) {
+        ThreadSlots.setMonitor(threadSlot, new NoYieldpointsMonitor());
       }
-      if (communicationLockBySlot[threadSlot] == null) {
+      if (ThreadSlots.getCommunicationLock(threadSlot) == null) {
         Monitor m = new Monitor();
         handshakeLock.lockWithHandshake();
-        communicationLockBySlot[threadSlot] = m;
+        ThreadSlots.setCommunicationLock(threadSlot, m);
         handshakeLock.unlock();
       }
       Magic.sync(); /*
                      * make sure that nobody sees the thread in any of the
                      * tables until the thread slot is inited
                      */
+      ThreadSlots.setThread(threadSlot, this);
 
-      acctLock.lockNoHandshake();
-      threadBySlot[threadSlot] = this;
-
-      threadIdx = numThreads++;
-      threads[threadIdx] = this;
-
-      acctLock.unlock();
+      while (true) {
+        acctLock.lockNoHandshake();
+        int capacity = threads.length;
+        if (numThreads < capacity) {
+          threadIdx = numThreads++;
+          threads[threadIdx] = this;
+          acctLock.unlock();
+          break;
+        }
+        acctLock.unlock();
+        growThreadLists(capacity);
+      }
     }
     lockingId = threadSlot << TL_THREAD_ID_SHIFT;
     if (traceAcct) {
@@ -1615,8 +1625,55 @@ public final class RVMThread extends ThreadContext {
                    * arrangement at worst they will see it twice)
                    */
     threads[--numThreads] = null;
-    threadBySlot[threadSlot] = null;
-    freeSlots[freeSlotN++] = threadSlot;
+    acctLock.unlock();
+    ThreadSlots.setThread(threadSlot, null);
+    ThreadSlots.free(threadSlot);
+  }
+
+  /**
+   * Grow the list of threads, and the arrays used to take snapshots of
+   * it, once the list is full.  The new arrays are allocated before any
+   * lock is taken.  The snapshot arrays are empty except while the
+   * handshake or debug request that owns them runs, so they are simply
+   * replaced under the lock protecting them, before the list itself.
+   *
+   * @param capacity the capacity of the list that was found to be full
+   */
+  @Interruptible
+  @NoCheckStore
+  private static void growThreadLists(int capacity) {
+    int newCapacity = capacity << 1;
+    RVMThread[] newThreads = new RVMThread[newCapacity];
+    RVMThread[] newHandshakeThreads = new RVMThread[newCapacity];
+    RVMThread[] newDebugThreads = new RVMThread[newCapacity];
+    int[] newAboutToTerminate = new int[newCapacity];
+
+    handshakeLock.lockWithHandshake();
+    if (handshakeThreads.length < newCapacity) {
+      handshakeThreads = newHandshakeThreads;
+    }
+    handshakeLock.unlock();
+    debugLock.lockNoHandshake();
+    if (debugThreads.length < newCapacity) {
+      debugThreads = newDebugThreads;
+    }
+    debugLock.unlock();
+
+    acctLock.lockNoHandshake();
+    if (threads.length < newCapacity) {
+      for (int i = 0; i < numThreads; i++) {
+        newThreads[i] = threads[i];
+      }
+      for (int i = 0; i < aboutToTerminateN; i++) {
+        newAboutToTerminate[i] = aboutToTerminate[i];
+      }
+      aboutToTerminate = newAboutToTerminate;
+      Magic.sync(); /*
+                     * make sure that anyone scanning the threads array
+                     * without holding the acctLock sees the copy filled in
+                     */
+      threads = newThreads;
+    }
     acctLock.unlock();
   }
 
@@ -2546,6 +2603,13 @@ public final class RVMThread extends ThreadContext {
 
         VM.sysWriteln("Timer ticks = ", timerTicks);
         doProfileReport.openNoHandshake();
+        if (VM.HeapHistogramOnQuit) {
+          if (MemoryManager.requestHeapHistogram()) {
+            VM.sysWriteln("Heap histogram will be printed at the next full heap collection");
+          } else {
+            VM.sysWriteln("Heap histogram is not supported by this collector");
+          }
+        }
         // snapshot the threads
         acctLock.lockNoHandshake();
         int numDebugThreads = numThreads;
@@ -2563,6 +2627,24 @@ public final class RVMThread extends ThreadContext {
     }
   }
 
+  /**
+   * Start the timer that samples the current thread for the adaptive
+   * system.  The timer measures the CPU time used by the thread, so a
+   * thread that is blocked or idle costs nothing to sample, and the cost
+   * of a tick does not grow with the number of threads.  If the timer
+   * cannot be started, the timer thread falls back to sampling this
+   * thread on each tick.
+   */
+  private static void startSampleTimer() {
+    if (sysCall.sysThreadStartSampleTimer(1000L * 1000L * VM.interruptQuantum) == 0) {
+      RVMThread t = getCurrentThread();
+      acctLock.lockNoHandshake();
+      t.sampledByTimerThread = true;
+      threadsSampledByTimerThread++;
+      acctLock.unlock();
+    }
+  }
+
   void timerTick() {
     if (shouldBeSampled()) {
       timeSliceExpired++;
@@ -2773,6 +2855,9 @@ public final class RVMThread extends ThreadContext {
 
     currentThread.enableYieldpoints();
     sysCall.sysStashVMThread(currentThread);
+    if (VM.BuildForAdaptiveSystem && !currentThread.ignoreHandshakesAndGC()) {
+      startSampleTimer();
+    }
     if (traceAcct) {
       VM.sysWriteln("Thread #", currentThread.threadSlot, " with pthread id ",
           currentThread.pthread_id, " running!");
@@ -2988,6 +3073,13 @@ public final class RVMThread extends ThreadContext {
       cachedFreeLock = null;
     }
 
+    if (sampledByTimerThread) {
+      acctLock.lockNoHandshake();
+      sampledByTimerThread = false;
+      threadsSampledByTimerThread--;
+      acctLock.unlock();
+    }
+
     if (traceAcct)
       VM.sysWriteln("adding to aboutToTerminate...");
 
@@ -3213,8 +3305,8 @@ public final class RVMThread extends ThreadContext {
     if (VM.VerifyAssertions) VM._assert(isTrampolineIP(Magic.getReturnAddressUnchecked(hijackedFp)));
     RVMThread t = getCurrentThread();
       if (!t.hijackedReturnCalleeFp.EQ(hijackedFp)) {
-        for (int tid = 0; tid < nextSlot; tid++) {
-          t = threadBySlot[tid];
+        for (int tid = 0; tid < ThreadSlots.limit(); tid++) {
+          t = ThreadSlots.getThread(tid);
           if (t != null && t.hijackedReturnCalleeFp.EQ(hijackedFp))
             break;
         }
@@ -4043,8 +4135,8 @@ public final class RVMThread extends ThreadContext {
 
     handshakeLock.lockWithHandshake();
     int numLockedLocks = 0;
-    for (int i = 0; i < nextSlot;++i) {
-      Monitor l = communicationLockBySlot[i];
+    for (int i = 0; i < ThreadSlots.limit();++i) {
+      Monitor l = ThreadSlots.getCommunicationLock(i);
       if (l != null) {
         l.lockWithHandshake();
         numLockedLocks++;
@@ -4101,8 +4193,8 @@ public final class RVMThread extends ThreadContext {
                                 */
 
     int numUnlockedLocks = 0;
-    for (int i = 0; i < nextSlot;++i) {
-      Monitor l = communicationLockBySlot[i];
+    for (int i = 0; i < ThreadSlots.limit();++i) {
+      Monitor l = ThreadSlots.getCommunicationLock(i);
       if (l != null) {
         l.unlock();
         numUnlockedLocks++;
@@ -5109,7 +5201,7 @@ public final class RVMThread extends ThreadContext {
       VM.sysWrite(i, ":");
       int threadSlot = array[i];
       VM.sysWrite(threadSlot, ",");
-      dumpThread(threadBySlot[array[i]]);
+      dumpThread(ThreadSlots.getThread(array[i]));
     }
   }
 
@@ -5131,16 +5223,17 @@ public final class RVMThread extends ThreadContext {
     acctLock.lockNoHandshake();
     dumpLock.lockNoHandshake();
     VM.sysWriteln("====== Begin Thread Accounting Dump ======");
-    dumpThreadArray("threadBySlot", threadBySlot, nextSlot);
-    dumpThreadSlotArray("aboutToTerminate", aboutToTerminate, aboutToTerminateN);
-    VM.sysWrite("freeSlots: ");
-    for (int i = 0; i < freeSlotN; ++i) {
+    VM.sysWrite("threadBySlot: ");
+    for (int i = 0; i < ThreadSlots.limit(); ++i) {
       if (i != 0) {
         VM.sysWrite(", ");
       }
-      VM.sysWrite(i, ":", freeSlots[i]);
+      VM.sysWrite(i, ":");
+      dumpThread(ThreadSlots.getThread(i));
     }
     VM.sysWriteln();
+    dumpThreadSlotArray("aboutToTerminate", aboutToTerminate, aboutToTerminateN);
+    ThreadSlots.dumpFreeSlots();
     dumpThreadArray("threads", threads, numThreads);
     VM.sysWriteln("====== End Thread Accounting Dump ======");
     dumpLock.unlock();
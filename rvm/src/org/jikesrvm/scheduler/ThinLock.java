@@ -59,7 +59,7 @@ public final class ThinLock {
         setDedicatedU16(o, lockOffset, changed);
         return;
       }
-    } else if (id.EQ(TL_STAT_THIN)) {
+    } else if (id.EQ(TL_STAT_THIN) && tid.LE(TL_THREAD_ID_MASK)) {
       // lock is thin and not held by anyone
       if (Magic.attemptWord(o, lockOffset, old, old.or(tid))) {
         Magic.isync();
@@ -81,7 +81,8 @@ public final class ThinLock {
         setDedicatedU16(o, lockOffset, old.minus(TL_LOCK_COUNT_UNIT));
         return;
       }
-    } else if (old.xor(tid).rshl(TL_LOCK_COUNT_SHIFT).EQ(TL_STAT_THIN.rshl(TL_LOCK_COUNT_SHIFT))) {
+    } else if (tid.LE(TL_THREAD_ID_MASK) &&
+               old.xor(tid).rshl(TL_LOCK_COUNT_SHIFT).EQ(TL_STAT_THIN.rshl(TL_LOCK_COUNT_SHIFT))) {
       Magic.sync();
       if (Magic.attemptWord(o, lockOffset, old, old.and(TL_UNLOCK_MASK).or(TL_STAT_THIN))) {
         return;
@@ -97,6 +98,10 @@ public final class ThinLock {
     if (STATS) fastLocks++;
 
     Word threadId = Word.fromIntZeroExtend(RVMThread.getCurrentThread().getLockingId());
+    if (threadId.GT(TL_THREAD_ID_MASK)) {
+      lockInflated(o, lockOffset);
+      return;
+    }
 
     for (int cnt = 0;;cnt++) {
       Word old = Magic.getWordAtOffset(o, lockOffset);
@@ -178,12 +183,41 @@ public final class ThinLock {
         if (inflateAndLock(o, lockOffset)) {
           return;
         }
+      } else if (cnt < spinRounds && RVMThread.availableProcessors > 1) {
+        Lock.backoff(cnt);
       } else {
         RVMThread.yieldNoHandshake();
       }
     }
   }
 
+  /**
+   * Locks an object for a thread whose slot does not fit in the thread id
+   * bits of a thin lock.  Such a thread cannot hold a thin or biased lock,
+   * so the lock is inflated (which unbiases it if need be) and the thread
+   * contends for the fat lock.
+   *
+   * @param o the object to lock
+   * @param lockOffset the offset of the thin lock word in the object
+   */
+  @NoInline
+  @NoNullCheck
+  @Unpreemptible
+  private static void lockInflated(Object o, Offset lockOffset) {
+    for (;;) {
+      Word old = Magic.getWordAtOffset(o, lockOffset);
+      if (isFat(old)) {
+        if (Lock.getLock(getLockIndex(old)).lockHeavy(o)) {
+          return;
+        }
+      } else if (inflateAndLock(o, lockOffset)) {
+        return;
+      }
+      // the lock was deflated under us; try again
+      RVMThread.yieldNoHandshake();
+    }
+  }
+
   @NoInline
   @NoNullCheck
   @Unpreemptible
@@ -347,7 +381,7 @@ public final class ThinLock {
       if (false) VM.sysWriteln("id = ",id);
       int slot = id.toInt() >> TL_THREAD_ID_SHIFT;
       if (false) VM.sysWriteln("slot = ",slot);
-      RVMThread owner = RVMThread.threadBySlot[slot];
+      RVMThread owner = ThreadSlots.getThread(slot);
       if (owner == me /* I own it, so I can unbias it trivially.  This occurs
                        when we are inflating due to, for example, wait() */ ||
           owner == null /* the thread that owned it is dead, so it's safe to
@@ -602,6 +636,12 @@ public final class ThinLock {
    */
   private static final int retryLimit = 40;
 
+  /**
+   * Number of the first retries that spin, with exponential backoff,
+   * rather than yield: a thin lock is usually held only briefly.
+   */
+  private static final int spinRounds = 6;
+
   static final boolean STATS = Lock.STATS;
 
   static final boolean trace = false;
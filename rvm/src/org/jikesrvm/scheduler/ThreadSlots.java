@@ -0,0 +1,232 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.scheduler;
+
+import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_ADDRESS;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.runtime.Entrypoints;
+import org.jikesrvm.runtime.Magic;
+import org.vmmagic.pragma.Entrypoint;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Interruptible;
+import org.vmmagic.pragma.NoCheckStore;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Offset;
+
+/**
+ * The per-slot thread tables, and the allocation of thread slots.<p>
+ *
+ * Like the lock table (see {@link Lock}), the tables are held in chunks
+ * hanging off a fixed size spine.  A chunk is only allocated when one of
+ * its slots is first handed out, so the tables grow with the number of
+ * threads, up to {@link RVMThread#MAX_THREADS}.  The spine is sized for
+ * that limit alone: slots too high for the thread id bits of a thin lock
+ * are handed out like any other, and their threads take fat locks.<p>
+ *
+ * Slots are allocated and freed without locking: chunks are installed in
+ * the spine with a compare and swap, and free slots are kept on a lock
+ * free stack, linked through the chunks.  The head of the stack carries
+ * a tag that is bumped by every update, so that a slot popped and pushed
+ * again while another thread is popping is not mistaken for the old head.
+ */
+@Uninterruptible
+public final class ThreadSlots {
+
+  /** The log size of each chunk in the spine */
+  private static final int LOG_SLOT_CHUNK_SIZE = 8;
+  /** The number of slots in each chunk in the spine */
+  static final int SLOT_CHUNK_SIZE = 1 << LOG_SLOT_CHUNK_SIZE;
+  /** The mask used to get the chunk-level index */
+  private static final int SLOT_CHUNK_MASK = SLOT_CHUNK_SIZE - 1;
+  /** The (fixed) number of entries in the spine */
+  private static final int SLOT_SPINE_SIZE = RVMThread.MAX_THREADS >> LOG_SLOT_CHUNK_SIZE;
+
+  /** The bits of the free stack head that hold the slot on top (0 if empty) */
+  private static final int FREE_SLOT_MASK = RVMThread.MAX_THREADS - 1;
+  /** The amount by which each update of the free stack head bumps its tag */
+  private static final int FREE_TAG_UNIT = RVMThread.MAX_THREADS;
+
+  /** The slot tables of the virtual machine */
+  private static final ThreadSlots slots = new ThreadSlots();
+
+  /** The state of a chunk of thread slots */
+  @Uninterruptible
+  private static final class SlotChunk {
+    /** The thread using each slot */
+    final RVMThread[] threads = new RVMThread[SLOT_CHUNK_SIZE];
+    /** The monitor of each slot, allocated when the slot is first used */
+    final NoYieldpointsMonitor[] monitors = new NoYieldpointsMonitor[SLOT_CHUNK_SIZE];
+    /** The communication lock of each slot, allocated when the slot is first used */
+    final Monitor[] communicationLocks = new Monitor[SLOT_CHUNK_SIZE];
+    /** The next free slot after each free slot */
+    final int[] nextFree = new int[SLOT_CHUNK_SIZE];
+  }
+
+  /** The spine */
+  private final SlotChunk[] spine = new SlotChunk[SLOT_SPINE_SIZE];
+
+  /** The head of the free slot stack: a tag, and the slot on top */
+  @Entrypoint
+  private volatile int freeSlots;
+
+  /**
+   * The next slot never handed out.  Slot 0 is never used, and slot
+   * {@link RVMThread#PRIMORDIAL_THREAD_INDEX} is taken by the boot thread.
+   */
+  @Entrypoint
+  private volatile int nextSlot = RVMThread.PRIMORDIAL_THREAD_INDEX + 1;
+
+  private ThreadSlots() {
+    spine[0] = new SlotChunk();
+  }
+
+  @Inline
+  private static SlotChunk chunkFor(int slot) {
+    return slots.spine[slot >> LOG_SLOT_CHUNK_SIZE];
+  }
+
+  /**
+   * @return one more than the highest slot handed out.  Slots below this
+   * may be unused, in which case their entries are {@code null}.
+   */
+  static int limit() {
+    return slots.nextSlot;
+  }
+
+  /**
+   * @param slot a thread slot
+   * @return the thread using the slot, or {@code null}
+   */
+  static RVMThread getThread(int slot) {
+    SlotChunk chunk = chunkFor(slot);
+    return chunk == null ? null : chunk.threads[slot & SLOT_CHUNK_MASK];
+  }
+
+  @NoCheckStore
+  static void setThread(int slot, RVMThread thread) {
+    chunkFor(slot).threads[slot & SLOT_CHUNK_MASK] = thread;
+  }
+
+  /**
+   * @param slot a thread slot
+   * @return the monitor of the slot, or {@code null} if it was never used
+   */
+  static NoYieldpointsMonitor getMonitor(int slot) {
+    SlotChunk chunk = chunkFor(slot);
+    return chunk == null ? null : chunk.monitors[slot & SLOT_CHUNK_MASK];
+  }
+
+  @Interruptible
+  static void setMonitor(int slot, NoYieldpointsMonitor monitor) {
+    chunkFor(slot).monitors[slot & SLOT_CHUNK_MASK] = monitor;
+  }
+
+  /**
+   * @param slot a thread slot
+   * @return the communication lock of the slot, or {@code null} if it
+   * was never used
+   */
+  static Monitor getCommunicationLock(int slot) {
+    SlotChunk chunk = chunkFor(slot);
+    return chunk == null ? null : chunk.communicationLocks[slot & SLOT_CHUNK_MASK];
+  }
+
+  @Interruptible
+  static void setCommunicationLock(int slot, Monitor lock) {
+    chunkFor(slot).communicationLocks[slot & SLOT_CHUNK_MASK] = lock;
+  }
+
+  /**
+   * Allocate a thread slot, reusing a freed slot if there is one.  The
+   * chunk holding the slot is allocated if need be.
+   *
+   * @return a slot not in use by any other thread
+   */
+  @Interruptible
+  static int allocate() {
+    int slot = popFreeSlot();
+    if (slot == 0) {
+      slot = Synchronization.fetchAndAdd(slots, Entrypoints.threadSlotsNextSlotField.getOffset(), 1);
+      if (slot >= RVMThread.MAX_THREADS) {
+        VM.sysFail("too many threads");
+      }
+      if (chunkFor(slot) == null) {
+        growSlots(slot);
+      }
+    }
+    return slot;
+  }
+
+  /**
+   * Return a slot no longer in use to the free stack.
+   *
+   * @param slot the slot
+   */
+  static void free(int slot) {
+    if (VM.VerifyAssertions) VM._assert(slot > RVMThread.PRIMORDIAL_THREAD_INDEX && getThread(slot) == null);
+    int[] nextFree = chunkFor(slot).nextFree;
+    Offset offset = Entrypoints.threadSlotsFreeSlotsField.getOffset();
+    int head;
+    do {
+      head = slots.freeSlots;
+      nextFree[slot & SLOT_CHUNK_MASK] = head & FREE_SLOT_MASK;
+      Magic.sync(); // publish the link before the slot
+    } while (!Synchronization.tryCompareAndSwap(slots, offset, head, ((head & ~FREE_SLOT_MASK) + FREE_TAG_UNIT) | slot));
+  }
+
+  /**
+   * @return the slot popped from the free stack, or 0 if it is empty
+   */
+  private static int popFreeSlot() {
+    Offset offset = Entrypoints.threadSlotsFreeSlotsField.getOffset();
+    int head;
+    int slot;
+    do {
+      head = slots.freeSlots;
+      slot = head & FREE_SLOT_MASK;
+      if (slot == 0) return 0;
+      Magic.isync(); // read the link after the slot
+    } while (!Synchronization.tryCompareAndSwap(slots, offset, head,
+        ((head & ~FREE_SLOT_MASK) + FREE_TAG_UNIT) | chunkFor(slot).nextFree[slot & SLOT_CHUNK_MASK]));
+    return slot;
+  }
+
+  /**
+   * Install the chunk holding a slot, unless another thread beats us to it.
+   *
+   * @param slot the slot
+   */
+  @Interruptible
+  private static void growSlots(int slot) {
+    int index = slot >> LOG_SLOT_CHUNK_SIZE;
+    SlotChunk chunk = new SlotChunk();
+    Synchronization.tryCompareAndSwap(slots.spine, Offset.fromIntZeroExtend(index << LOG_BYTES_IN_ADDRESS), null, chunk);
+  }
+
+  /**
+   * Dump the free stack, for debugging.
+   */
+  static void dumpFreeSlots() {
+    VM.sysWrite("freeSlots: ");
+    int slot = slots.freeSlots & FREE_SLOT_MASK;
+    for (int i = 0; slot != 0 && i < RVMThread.MAX_THREADS; i++) {
+      if (i != 0) {
+        VM.sysWrite(", ");
+      }
+      VM.sysWrite(i, ":", slot);
+      slot = chunkFor(slot).nextFree[slot & SLOT_CHUNK_MASK];
+    }
+    VM.sysWriteln();
+  }
+}
@@ -22,6 +22,11 @@ import org.vmmagic.pragma.UninterruptibleNoWarn;
  * The timer thread.  Although we are using purely native threading, threads
  * need to occasionally be poked for the purposes of sampling and OSR.
  * <p>
+ * Where the operating system supports it, each thread is poked by a timer
+ * of its own that measures the CPU time the thread uses, so a tick here
+ * only pokes the threads that could not start such a timer (see
+ * {@link RVMThread#threadsSampledByTimerThread}).
+ * <p>
  * It should be noted that the implementation of this class prioritizes
  * unobtrusiveness and lock-freedom over precision.  For example, on any given
  * timer release some threads may be missed or poked more than once, with the
@@ -49,18 +54,19 @@ public class TimerThread extends SystemThread {
         sysCall.sysNanoSleep(1000L * 1000L * VM.interruptQuantum);
 
         if (VM.BuildForAdaptiveSystem) {
-          // grab the lock to prevent threads from getting GC'd while we are
-          // iterating (since this thread doesn't stop for GC)
-          RVMThread.acctLock.lockNoHandshake();
           RVMThread.timerTicks++;
-          for (int i = 0; i < RVMThread.numThreads; ++i) {
-            RVMThread candidate = RVMThread.threads[i];
-            if (candidate != null && candidate.shouldBeSampled()) {
-              candidate.timeSliceExpired++;
-              candidate.takeYieldpoint = 1;
+          if (RVMThread.threadsSampledByTimerThread > 0) {
+            // grab the lock to prevent threads from getting GC'd while we are
+            // iterating (since this thread doesn't stop for GC)
+            RVMThread.acctLock.lockNoHandshake();
+            for (int i = 0; i < RVMThread.numThreads; ++i) {
+              RVMThread candidate = RVMThread.threads[i];
+              if (candidate != null && candidate.sampledByTimerThread) {
+                candidate.timerTick();
+              }
             }
+            RVMThread.acctLock.unlock();
           }
-          RVMThread.acctLock.unlock();
         }
 
         RVMThread.checkDebugRequest();
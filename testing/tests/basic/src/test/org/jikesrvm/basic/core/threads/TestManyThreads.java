@@ -0,0 +1,78 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.basic.core.threads;
+
+/**
+ * Test that more threads than fit in a thin lock can be live at once.
+ * <p/>
+ * Every thread stays alive until all of them have started.  Each one
+ * locks an object of its own recursively, so threads in high slots take
+ * fat locks, and they all contend for a shared lock while they wait.
+ */
+class TestManyThreads {
+
+  /** More threads than there are thread ids in a thin lock */
+  private static final int COUNT = 1100;
+
+  private static final Object lock = new Object();
+  private static int started;
+  private static int total;
+  private static boolean release;
+
+  public static void main(String[] args) throws InterruptedException {
+    Thread[] threads = new Thread[COUNT];
+    for (int i = 0; i < COUNT; i++) {
+      final int id = i;
+      threads[i] = new Thread("Worker" + i) {
+        private final Object own = new Object();
+        @Override
+        public void run() {
+          int value;
+          synchronized (own) {
+            synchronized (own) {
+              value = id + 1;
+            }
+          }
+          synchronized (lock) {
+            started++;
+            total += value;
+            lock.notifyAll();
+            while (!release) {
+              try {
+                lock.wait();
+              } catch (InterruptedException e) {
+                // ignore
+              }
+            }
+          }
+        }
+      };
+      threads[i].start();
+    }
+
+    synchronized (lock) {
+      while (started < COUNT) {
+        lock.wait();
+      }
+      System.out.println(started + " threads live at once");
+      release = true;
+      lock.notifyAll();
+    }
+
+    for (Thread t : threads) {
+      t.join();
+    }
+    System.out.println("total " + total + ", expected " + (COUNT * (COUNT + 1) / 2));
+    System.out.println("bye");
+  }
+}
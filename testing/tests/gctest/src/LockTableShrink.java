@@ -0,0 +1,65 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+import org.jikesrvm.scheduler.Lock;
+
+/**
+ * Checks that the heavy-weight lock table shrinks at a collection once a
+ * burst of inflated locks has been released.
+ * <p>
+ * Each object is locked in turn, one inside the other, and inflated by a
+ * timed wait, so that all of them hold a heavy-weight lock at the same
+ * time and the table grows well past its initial chunk.  Once they are
+ * all released, a collection must give the unused top of the table back.
+ */
+class LockTableShrink {
+
+  /** Number of locks held at once, enough to need several table chunks */
+  private static final int LOCKS = 5000;
+
+  private static final Object[] objects = new Object[LOCKS];
+
+  public static void main(String[] args) throws InterruptedException {
+    for (int i = 0; i < LOCKS; i++) {
+      objects[i] = new Object();
+    }
+    int before = Lock.numLocks();
+    inflate(0);
+    int grown = Lock.numLocks();
+    System.gc();
+    int after = Lock.numLocks();
+
+    System.out.println("Lock table: " + before + " before, " + grown + " grown, " + after + " after collection");
+    if (grown <= before) {
+      System.out.println("FAILED: the lock table did not grow");
+    } else if (after >= grown) {
+      System.out.println("FAILED: the lock table did not shrink");
+    } else {
+      System.out.println("ALL TESTS PASSED");
+    }
+  }
+
+  /**
+   * Inflates the lock of each object from <code>i</code> on, holding each
+   * while the rest are inflated.
+   */
+  private static void inflate(int i) throws InterruptedException {
+    if (i < LOCKS) {
+      Object o = objects[i];
+      synchronized (o) {
+        o.wait(1);
+        inflate(i + 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.deque;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.Assert;
+import org.mmtk.harness.Harness;
+import org.mmtk.harness.scheduler.Scheduler;
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.plan.Plan;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * Junit unit-tests for StealingSharedDeque, run on real (Java) threads
+ * so that thieves race with the owner of a ring.
+ */
+public class StealingSharedDequeConcurrentTest {
+
+  /** Number of parallel workers: one owner, the rest thieves */
+  private static final int WORKERS = 4;
+
+  /** Number of times the owner publishes a buffer and then takes it back */
+  private static final int ROUNDS = 5000;
+
+  /** Entries in each published buffer */
+  private static final int ENTRIES_PER_ROUND = 4;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    Harness.initArchitecture(Arrays.asList("bits=32"));
+    Harness.initOnce();
+    Scheduler.setThreadModel(Scheduler.Model.JAVA);
+    /* Yield at short, irregular intervals to vary how the threads interleave */
+    Harness.policy.setValue("RANDOM");
+    Harness.randomPolicyMin.setValue(1);
+    Harness.randomPolicyMax.setValue(8);
+    /* Must call this after switching scheduler */
+    org.mmtk.harness.scheduler.Scheduler.initCollectors();
+  }
+
+  private static ObjectReference o(int val) {
+    return Address.fromIntSignExtend(val).toObjectReference();
+  }
+
+  private void runTest(final CollectorContext... items) {
+    for (CollectorContext item : items) {
+      Scheduler.scheduleCollectorContext(item);
+    }
+    Scheduler.scheduleGcThreads();
+  }
+
+  /**
+   * A collector context that claims to be one of several parallel workers.
+   */
+  private abstract static class Worker extends CollectorContext {
+    private final int ordinal;
+    Worker(int ordinal) {
+      this.ordinal = ordinal;
+    }
+    @Override
+    public int parallelWorkerCount() {
+      return WORKERS;
+    }
+    @Override
+    public int parallelWorkerOrdinal() {
+      return ordinal;
+    }
+  }
+
+  /**
+   * The owner repeatedly publishes a single buffer to its ring and then
+   * pops it back, while the other workers try to steal it.  Each pop of
+   * the owner's last buffer races with a thief's compare-and-swap on the
+   * top of the ring, and every entry must be taken exactly once.
+   */
+  @Test
+  public void testOwnerRacesThieves() {
+    final StealingSharedDeque shared = new StealingSharedDeque("shared",Plan.metaDataSpace,1);
+    final AtomicIntegerArray seen = new AtomicIntegerArray(ROUNDS * ENTRIES_PER_ROUND + 1);
+    final boolean[] done = new boolean[1];
+    shared.prepareNonBlocking();
+
+    CollectorContext[] workers = new CollectorContext[WORKERS];
+    workers[0] = new Worker(0) {
+      @Override
+      public void run() {
+        ObjectReferenceDeque deque = new ObjectReferenceDeque("owner",shared);
+        int next = 1;
+        for (int r = 0; r < ROUNDS; r++) {
+          for (int i = 0; i < ENTRIES_PER_ROUND; i++) {
+            deque.push(o(next++));
+          }
+          deque.flushLocal();
+          for (ObjectReference obj = deque.pop(); !obj.isNull(); obj = deque.pop()) {
+            take(seen, obj);
+          }
+        }
+        synchronized (done) {
+          done[0] = true;
+        }
+      }
+    };
+    for (int w = 1; w < WORKERS; w++) {
+      workers[w] = new Worker(w) {
+        @Override
+        public void run() {
+          ObjectReferenceDeque deque = new ObjectReferenceDeque("thief",shared);
+          while (true) {
+            ObjectReference obj = deque.pop();
+            if (!obj.isNull()) {
+              take(seen, obj);
+            } else {
+              synchronized (done) {
+                if (done[0]) break;
+              }
+            }
+          }
+        }
+      };
+    }
+    runTest(workers);
+
+    for (int i = 1; i < seen.length(); i++) {
+      Assert.assertEquals("entry " + i, 1, seen.get(i));
+    }
+    Assert.assertEquals(0, shared.enqueuedPages());
+  }
+
+  private static void take(AtomicIntegerArray seen, ObjectReference obj) {
+    int val = obj.toAddress().toInt();
+    if (seen.getAndIncrement(val) != 0) {
+      throw new AssertionError("entry " + val + " taken twice");
+    }
+  }
+}
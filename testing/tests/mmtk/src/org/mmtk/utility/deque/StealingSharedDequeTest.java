@@ -0,0 +1,133 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.deque;
+
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.Assert;
+import org.mmtk.harness.Harness;
+import org.mmtk.harness.scheduler.Scheduler;
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.plan.Plan;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * Junit unit-tests for StealingSharedDeque.
+ */
+public class StealingSharedDequeTest {
+
+  /** Enough entries to overflow a few buffers */
+  private static final int ENTRIES = 5000;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    Harness.initArchitecture(Arrays.asList("bits=32"));
+    Harness.initOnce();
+    Scheduler.setThreadModel(Scheduler.Model.DETERMINISTIC);
+    Harness.policy.setValue("FIXED");
+    Harness.yieldInterval.setValue(1);
+    /* Must call this after switching scheduler */
+    org.mmtk.harness.scheduler.Scheduler.initCollectors();
+  }
+
+  private static ObjectReference o(int val) {
+    return Address.fromIntSignExtend(val).toObjectReference();
+  }
+
+  private void runTest(final CollectorContext... items) {
+    for (CollectorContext item : items) {
+      Scheduler.scheduleCollectorContext(item);
+    }
+    Scheduler.scheduleGcThreads();
+  }
+
+  /**
+   * A collector context that claims to be one of several parallel workers.
+   */
+  private abstract static class Worker extends CollectorContext {
+    private final int ordinal;
+    Worker(int ordinal) {
+      this.ordinal = ordinal;
+    }
+    @Override
+    public int parallelWorkerCount() {
+      return 2;
+    }
+    @Override
+    public int parallelWorkerOrdinal() {
+      return ordinal;
+    }
+  }
+
+  @Test
+  public void testSingleWorker() {
+    runTest(new Worker(0) {
+      @Override
+      public void run() {
+        StealingSharedDeque shared = new StealingSharedDeque("shared",Plan.metaDataSpace,1);
+        ObjectReferenceDeque deque = new ObjectReferenceDeque("deque",shared);
+
+        shared.prepareNonBlocking();
+        for (int i = 1; i <= ENTRIES; i++) {
+          deque.push(o(i));
+        }
+        Assert.assertTrue(shared.enqueuedPages() > 0);
+        for (int i = ENTRIES; i >= 1; i--) {
+          Assert.assertEquals(o(i), deque.pop());
+        }
+        Assert.assertTrue(deque.isEmpty());
+        Assert.assertEquals(0, shared.enqueuedPages());
+        shared.reset();
+      }
+    });
+  }
+
+  @Test
+  public void testSteal() {
+    final StealingSharedDeque[] shared = new StealingSharedDeque[1];
+    runTest(new Worker(0) {
+      @Override
+      public void run() {
+        shared[0] = new StealingSharedDeque("shared",Plan.metaDataSpace,1);
+        ObjectReferenceDeque deque = new ObjectReferenceDeque("deque0",shared[0]);
+
+        shared[0].prepareNonBlocking();
+        for (int i = 1; i <= ENTRIES; i++) {
+          deque.push(o(i));
+        }
+        deque.flushLocal();
+        Assert.assertTrue(shared[0].enqueuedPages() > 0);
+      }
+    });
+    runTest(new Worker(1) {
+      @Override
+      public void run() {
+        ObjectReferenceDeque deque = new ObjectReferenceDeque("deque1",shared[0]);
+        boolean[] seen = new boolean[ENTRIES + 1];
+        for (int i = 1; i <= ENTRIES; i++) {
+          ObjectReference obj = deque.pop();
+          Assert.assertFalse(obj.isNull());
+          int val = obj.toAddress().toInt();
+          Assert.assertFalse(seen[val]);
+          seen[val] = true;
+        }
+        Assert.assertTrue(deque.isEmpty());
+        Assert.assertEquals(0, shared[0].enqueuedPages());
+        shared[0].reset();
+      }
+    });
+  }
+}
@@ -125,6 +125,8 @@ extern Extent pageSize;
 extern void* checkMalloc(int length);
 extern void* checkCalloc(int numElements, int sizeOfOneElement);
 extern void checkFree(void* mem);
+// sysMemory
+extern int numaHostNode(int node);
 
 // sysAlignmentCheck
 extern volatile int numEnableAlignCheckingCalls;
@@ -231,6 +233,10 @@ EXTERNAL void * sysMMapErrno(char *start , size_t length ,
                              int protection , int flags ,
                              int fd , Offset offset);
 EXTERNAL int sysMProtect(char *start, size_t length, int prot);
+EXTERNAL int sysMAdviseHugePages(char *start, size_t length);
+EXTERNAL int sysNumaNodes();
+EXTERNAL int sysNumaNode();
+EXTERNAL int sysNumaBind(char *start, size_t length, int node);
 EXTERNAL void sysCopy(void *dst, const void *src, Extent cnt);
 EXTERNAL void sysMemmove(void *dst, const void *src, Extent cnt);
 EXTERNAL void sysSyncCache(void *address, size_t size);
@@ -288,11 +294,13 @@ EXTERNAL void sysMonitorWait(Word);
 EXTERNAL void sysMonitorBroadcast(Word);
 EXTERNAL int sysNumProcessors();
 EXTERNAL Address sysThreadCreate(Address ip, Address fp, Address tr, Address jtoc);
+EXTERNAL int sysThreadStartSampleTimer(long long periodNanos);
 EXTERNAL void sysStartMainThread(jboolean vmInSeparateThread, Address ip, Address sp, Address tr, Address jtoc, uint32_t *bootCompleted);
 EXTERNAL void sysCreateThreadSpecificDataKeys(void);
 EXTERNAL void sysStashVMThread(Address vmThread);
 EXTERNAL int sysThreadBindSupported();
 EXTERNAL void sysThreadBind(int cpuId);
+EXTERNAL int sysThreadBindToNode(int node);
 EXTERNAL void * sysThreadStartup(void *args);
 EXTERNAL Word sysGetThreadId();
 EXTERNAL void sysThreadTerminate();
@@ -17,6 +17,16 @@
 #include <errno.h> // error numbers
 #include <string.h> // memcpy & memmove
 #include <sys/mman.h> // mmap
+#include <unistd.h> // syscall
+#ifdef RVM_FOR_LINUX
+#  include <sys/syscall.h> // SYS_mbind, SYS_getcpu
+#endif
+
+/** Upper bound on the number of NUMA nodes we bind memory to */
+#define MAX_NUMA_NODES 64
+#ifndef MPOL_PREFERRED
+#define MPOL_PREFERRED 1
+#endif
 
 int inRVMAddressSpace(Address a);
 
@@ -257,6 +267,134 @@ EXTERNAL int sysMProtect(char *start, size_t length, int prot)
   return mprotect(start, length, prot);
 }
 
+/**
+ * Ask for a region to be backed by transparent huge pages.
+ * Taken:     start address (Java ADDRESS)
+ *            length of region (Java EXTENT)
+ * Returned:  0 (success) or -1 (failure) (Java int)
+ */
+EXTERNAL int sysMAdviseHugePages(char *start, size_t length)
+{
+  TRACE_PRINTF("%s: sysMAdviseHugePages %p %zu\n", Me, start, length);
+#ifdef MADV_HUGEPAGE
+  return madvise(start, length, MADV_HUGEPAGE);
+#else
+  return -1;
+#endif
+}
+
+/**
+ * The host numbers of the online NUMA nodes, in increasing order.  The
+ * VM numbers the nodes densely, by their index in this table, as the
+ * host numbers need not be contiguous.
+ */
+static int numaNodeIds[MAX_NUMA_NODES];
+static int numaNodeCount = 0;
+
+/**
+ * Read the online NUMA nodes of the host, if not done already.  The
+ * mask is of the form "0-1,4".  If it cannot be read, the host is
+ * taken to have the single node 0.
+ */
+static void readOnlineNumaNodes()
+{
+  if (numaNodeCount != 0) return;
+#ifdef RVM_FOR_LINUX
+  FILE *online = fopen("/sys/devices/system/node/online", "r");
+  if (online != NULL) {
+    int lo, hi, c;
+    int count = 0;
+    while (fscanf(online, "%d", &lo) == 1) {
+      hi = lo;
+      c = fgetc(online);
+      if (c == '-') {
+        if (fscanf(online, "%d", &hi) != 1) break;
+        c = fgetc(online);
+      }
+      for (; lo <= hi && count < MAX_NUMA_NODES; lo++) {
+        numaNodeIds[count++] = lo;
+      }
+      if (c != ',') break;
+    }
+    fclose(online);
+    if (count > 0) {
+      numaNodeCount = count;
+      return;
+    }
+  }
+#endif
+  numaNodeIds[0] = 0;
+  numaNodeCount = 1;
+}
+
+/**
+ * Translate the VM's number for a NUMA node into the host's.
+ * Taken:     node [in] the VM's number for the node
+ * Returned:  the host's number for the node, or -1 if there is no such node
+ */
+int numaHostNode(int node)
+{
+  readOnlineNumaNodes();
+  if (node < 0 || node >= numaNodeCount) return -1;
+  return numaNodeIds[node];
+}
+
+/**
+ * Count the online NUMA nodes of the host.
+ * Returned:  the number of nodes, 1 if the host is not NUMA or the
+ *            topology cannot be determined (Java int)
+ */
+EXTERNAL int sysNumaNodes()
+{
+  TRACE_PRINTF("%s: sysNumaNodes\n", Me);
+  readOnlineNumaNodes();
+  return numaNodeCount;
+}
+
+/**
+ * Find the NUMA node of the processor the calling thread is running on.
+ * Returned:  the VM's number for the node (Java int)
+ */
+EXTERNAL int sysNumaNode()
+{
+  unsigned int cpu = 0;
+  unsigned int node = 0;
+  int i;
+#if defined(RVM_FOR_LINUX) && defined(SYS_getcpu)
+  if (syscall(SYS_getcpu, &cpu, &node, NULL) != 0) {
+    node = 0;
+  }
+#endif
+  readOnlineNumaNodes();
+  for (i = 0; i < numaNodeCount; i++) {
+    if (numaNodeIds[i] == (int) node) return i;
+  }
+  return 0;
+}
+
+/**
+ * Prefer a NUMA node for the pages of a region of memory.  Pages that
+ * have already been touched stay where they are.
+ * Taken:     start address (Java ADDRESS)
+ *            length of region (Java EXTENT)
+ *            the VM's number for the node (Java int)
+ * Returned:  0 (success) or -1 (failure) (Java int)
+ */
+EXTERNAL int sysNumaBind(char *start, size_t length, int node)
+{
+  TRACE_PRINTF("%s: sysNumaBind %p %zu %d\n", Me, start, length, node);
+#if defined(RVM_FOR_LINUX) && defined(SYS_mbind)
+  unsigned long mask[(MAX_NUMA_NODES + 8 * sizeof(unsigned long) - 1) / (8 * sizeof(unsigned long))];
+  node = numaHostNode(node);
+  if (node < 0 || node >= MAX_NUMA_NODES) return -1;
+  memset(mask, 0, sizeof(mask));
+  mask[node / (8 * sizeof(unsigned long))] |= 1UL << (node % (8 * sizeof(unsigned long)));
+  return syscall(SYS_mbind, start, length, MPOL_PREFERRED, mask, 8 * sizeof(mask) + 1, 0) == 0 ? 0 : -1;
+#else
+  return -1;
+#endif
+}
+
 /** Memory to memory copy. Memory regions must not overlap. */
 EXTERNAL void sysCopy(void *dst, const void *src, Extent cnt)
 {
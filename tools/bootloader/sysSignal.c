@@ -269,10 +269,18 @@ EXTERNAL void* sysStartChildThreadSignals()
   /*
    * Block the CONT signal.  This makes SIGCONT reach this
    * pthread only when this pthread performs a sigwait().
+   *
+   * Also block the signal of the sample timer, which SA_RESTART does not
+   * keep from interrupting calls such as nanosleep() or poll().  Only a
+   * thread that starts a sample timer of its own unblocks it (see
+   * sysThreadStartSampleTimer).
    */
   sigset_t input_set, output_set;
   sigemptyset(&input_set);
   sigaddset(&input_set, SIGCONT);
+#if defined(RVM_FOR_LINUX) && !defined(RVM_FOR_HARMONY)
+  sigaddset(&input_set, SIGVTALRM);
+#endif
 
   rc = pthread_sigmask(SIG_BLOCK, &input_set, &output_set);
   /* pthread_sigmask can only return the following errors.  Either of them
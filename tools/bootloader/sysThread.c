@@ -24,6 +24,11 @@
 #ifdef RVM_FOR_LINUX
 #  include <sys/sysinfo.h> // get_nprocs
 #  include <sys/ucontext.h>
+#  include <sys/syscall.h> // SYS_gettid
+#  include <time.h> // timer_create, timer_settime, timer_delete
+#  ifndef sigev_notify_thread_id
+#    define sigev_notify_thread_id _sigev_un._tid
+#  endif
 #endif // def RVM_FOR_LINUX
 
 /** Constant to show that the newly created thread is a child */
@@ -79,6 +84,7 @@ extern TLS_KEY_TYPE VmThreadKey;
 static TLS_KEY_TYPE threadDataKey;
 static TLS_KEY_TYPE trKey;
 static TLS_KEY_TYPE sigStackKey;
+static TLS_KEY_TYPE sampleTimerKey;
 
 void createThreadLocal(TLS_KEY_TYPE *key) {
   int rc;
@@ -104,6 +110,7 @@ static void createThreadSpecificDataKeys()
   createThreadLocal(&threadDataKey);
   createThreadLocal(&trKey);
   createThreadLocal(&sigStackKey);
+  createThreadLocal(&sampleTimerKey);
   TRACE_PRINTF("%s: vm thread key=%lu\n", Me, (long unsigned int)VmThreadKey);
   TRACE_PRINTF("%s: thread data key key=%lu\n", Me, (long unsigned int)threadDataKey);
   TRACE_PRINTF("%s: thread register key=%lu\n", Me, (long unsigned int)trKey);
@@ -190,11 +197,12 @@ EXTERNAL void sysNanoSleep(long long howLongNanos)
   TRACE_PRINTF("%s: sysNanosleep %lld\n", Me, howLongNanos);
   req.tv_sec = howLongNanos / nanosPerSec;
   req.tv_nsec = howLongNanos % nanosPerSec;
-  int ret = nanosleep(&req, (struct timespec *) NULL);
+  int ret;
+  /* EINTR is expected, since we do use signals internally, so sleep
+   * for the rest of the time. */
+  while ((ret = nanosleep(&req, &req)) < 0 && errno == EINTR)
+    ;
   if (ret < 0) {
-    if (errno == EINTR)
-      /* EINTR is expected, since we do use signals internally. */
-      return;
 
     ERROR_PRINTF("%s: nanosleep(<tv_sec=%ld,tv_nsec=%ld>) failed:"
                  " %s (errno=%d)\n"
@@ -458,6 +466,100 @@ EXTERNAL Address sysThreadCreate(Address ip, Address fp, Address tr, Address jto
   return (Word)sysThreadHandle;
 }
 
+#if defined(RVM_FOR_LINUX) && !defined(RVM_FOR_HARMONY)
+/**
+ * Handler for the signal raised by a thread's sample timer.  Runs on the
+ * sampled thread, and does what the timer thread would do for it.
+ */
+static void sampleTimerHandler(int UNUSED signo, siginfo_t UNUSED *si, void UNUSED *context)
+{
+  Address tr = (Address) GET_THREAD_LOCAL(trKey);
+  if (tr && *(int *)(tr + RVMThread_execStatus_offset) == RVMThread_IN_JAVA) {
+    (*(int *)(tr + RVMThread_timeSliceExpired_offset))++;
+    *(int *)(tr + RVMThread_takeYieldpoint_offset) = 1;
+  }
+}
+#endif
+
+/**
+ * Start a timer that samples the current thread each time it has used
+ * periodNanos of CPU time.  As the timer measures CPU time, blocked and
+ * idle threads are never signalled.  The timer's signal is unblocked on
+ * the current thread only; every other thread keeps it blocked.
+ *
+ * Taken:     periodNanos [in] the CPU time between samples
+ * Returned:  1 if the timer was started, 0 otherwise
+ */
+EXTERNAL int sysThreadStartSampleTimer(long long periodNanos)
+{
+  TRACE_PRINTF("%s: sysThreadStartSampleTimer %lld\n", Me, periodNanos);
+#if defined(RVM_FOR_LINUX) && !defined(RVM_FOR_HARMONY)
+  static int handlerInstalled = 0;
+  struct sigaction action;
+  struct sigevent event;
+  struct itimerspec period;
+  timer_t *timer;
+
+  if (!handlerInstalled) {
+    memset(&action, 0, sizeof action);
+    action.sa_sigaction = sampleTimerHandler;
+    sigemptyset(&action.sa_mask);
+    action.sa_flags = SA_SIGINFO | SA_ONSTACK | SA_RESTART;
+    if (sigaction(SIGVTALRM, &action, 0)) {
+      ERROR_PRINTF("%s: sigaction failed (errno=%d)\n", Me, errno);
+      return 0;
+    }
+    handlerInstalled = 1;
+  }
+
+  timer = (timer_t *) checkMalloc(sizeof(timer_t));
+  memset(&event, 0, sizeof event);
+  event.sigev_notify = SIGEV_THREAD_ID;
+  event.sigev_signo = SIGVTALRM;
+  event.sigev_notify_thread_id = (pid_t) syscall(SYS_gettid);
+  if (timer_create(CLOCK_THREAD_CPUTIME_ID, &event, timer)) {
+    TRACE_PRINTF("%s: timer_create failed (errno=%d)\n", Me, errno);
+    checkFree(timer);
+    return 0;
+  }
+  period.it_value.tv_sec = periodNanos / 1000000000LL;
+  period.it_value.tv_nsec = periodNanos % 1000000000LL;
+  period.it_interval = period.it_value;
+  if (timer_settime(*timer, 0, &period, NULL)) {
+    TRACE_PRINTF("%s: timer_settime failed (errno=%d)\n", Me, errno);
+    timer_delete(*timer);
+    checkFree(timer);
+    return 0;
+  }
+  setThreadLocal(sampleTimerKey, (void *) timer);
+  /* Child threads start with the signal blocked; only this thread needs it */
+  sigset_t set;
+  sigemptyset(&set);
+  sigaddset(&set, SIGVTALRM);
+  pthread_sigmask(SIG_UNBLOCK, &set, NULL);
+  return 1;
+#else
+  return 0;
+#endif
+}
+
+/** Stop the sample timer of the current thread, if it has one. */
+static void stopSampleTimer()
+{
+#if defined(RVM_FOR_LINUX) && !defined(RVM_FOR_HARMONY)
+  timer_t *timer = (timer_t *) GET_THREAD_LOCAL(sampleTimerKey);
+  if (timer) {
+    sigset_t set;
+    sigemptyset(&set);
+    sigaddset(&set, SIGVTALRM);
+    pthread_sigmask(SIG_BLOCK, &set, NULL);
+    setThreadLocal(sampleTimerKey, NULL);
+    timer_delete(*timer);
+    checkFree(timer);
+  }
+#endif
+}
+
 EXTERNAL int sysThreadBindSupported()
 {
   int result=0;
@@ -482,6 +584,51 @@ EXTERNAL void sysThreadBind(int cpuId)
 #endif
 }
 
+/**
+ * Bind the calling thread to the processors of a NUMA node.
+ *
+ * Taken:     node [in] the VM's number for the node
+ * Returned:  0 (success) or -1 (failure)
+ */
+EXTERNAL int sysThreadBindToNode(int node)
+{
+  TRACE_PRINTF("%s: sysThreadBindToNode %d\n", Me, node);
+#ifndef RVM_FOR_HARMONY
+#ifdef RVM_FOR_LINUX
+  char path[64];
+  cpu_set_t cpuset;
+  int lo, hi, c;
+  int cpus = 0;
+  FILE *list;
+
+  node = numaHostNode(node);
+  if (node < 0) return -1;
+  snprintf(path, sizeof(path), "/sys/devices/system/node/node%d/cpulist", node);
+  list = fopen(path, "r");
+  if (list == NULL) return -1;
+  /* The list is of the form "0-7,16-23" */
+  CPU_ZERO(&cpuset);
+  while (fscanf(list, "%d", &lo) == 1) {
+    hi = lo;
+    c = fgetc(list);
+    if (c == '-') {
+      if (fscanf(list, "%d", &hi) != 1) break;
+      c = fgetc(list);
+    }
+    for (; lo <= hi && lo < CPU_SETSIZE; lo++) {
+      CPU_SET(lo, &cpuset);
+      cpus++;
+    }
+    if (c != ',') break;
+  }
+  fclose(list);
+  if (cpus == 0) return -1;
+  return pthread_setaffinity_np(pthread_self(), sizeof(cpuset), &cpuset) == 0 ? 0 : -1;
+#endif
+#endif
+  return -1;
+}
+
 /**
  * Function called by pthread startup
  *
@@ -802,6 +949,7 @@ EXTERNAL void sysThreadTerminate()
   *(int*)(tr + RVMThread_execStatus_offset) = RVMThread_TERMINATED;
   Address threadData = (Address) GET_THREAD_LOCAL(threadDataKey);
   void * sigStack = (void *) GET_THREAD_LOCAL(sigStackKey);
+  stopSampleTimer();
   sysEndThreadSignals(sigStack);
   if (threadData == MAIN_THREAD_DONT_TERMINATE) {
     while(1) pause();